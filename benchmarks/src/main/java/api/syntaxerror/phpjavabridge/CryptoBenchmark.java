@@ -0,0 +1,298 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Benchmarks {@link Bridge#encrypt(byte[])} and {@link Bridge#decrypt(byte[])} with AES enabled, both end to end and split into their stages
+ * (length prefix and padding, IV generation, cipher initialization, AES, array copies and Base64).<br>
+ * <br>
+ * The current implementation ({@code encrypt}, {@code decrypt}) is compared to the following alternatives:
+ * <ul>
+ * 	<li>{@code cachedCipher}: the {@link Cipher}, key and {@link SecureRandom} are reused</li>
+ * 	<li>{@code inPlace}: additionally, IV, length, data and padding are laid out in a single buffer which is encrypted in place</li>
+ * 	<li>{@code binary}: additionally, the data is not Base64-encoded (like binary chunks, see {@link Bridge#FLAG_BINARY})</li>
+ * </ul>
+ * {@code size} is the length of the plain text in bytes.<br>
+ * <br>
+ * Run with {@code ./gradlew jmh -Pjmh=CryptoBenchmark}, the results are written to {@code benchmarks/build/results/jmh/results.json}.
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations=3,time=1)
+@Measurement(iterations=5,time=1)
+@Fork(1)
+@State(Scope.Thread)
+public class CryptoBenchmark {
+	
+	private static final String PASSWORD="benchmark";
+	
+	@Param({"16","1024","65536","1048576","16777216"})
+	public int size;
+	
+	private Bridge bridge;
+	
+	private SecretKeySpec key;
+	private SecureRandom random;
+	private Cipher encryptor,decryptor;
+	
+	private byte[]plainText,wrapped,iv,encrypted,full,encoded,binary,receiveBuffer;
+	
+	@Setup
+	public void setup()throws Exception {
+		bridge=new Bridge(0,true,PASSWORD,Integer.MAX_VALUE) {};
+		
+		key=new SecretKeySpec(MessageDigest.getInstance("SHA3-256").digest(PASSWORD.getBytes(StandardCharsets.UTF_8)),"AES");
+		random=new SecureRandom();
+		encryptor=Cipher.getInstance("AES/CBC/NoPadding");
+		decryptor=Cipher.getInstance("AES/CBC/NoPadding");
+		
+		plainText=new byte[size];
+		random.nextBytes(plainText);
+		
+		wrapped=bridge.wrap(plainText,false);
+		iv=new byte[16];
+		random.nextBytes(iv);
+		
+		// the stages operate on the same data, so the cipher is initialized once
+		encryptor.init(Cipher.ENCRYPT_MODE,key,new IvParameterSpec(iv));
+		decryptor.init(Cipher.DECRYPT_MODE,key,new IvParameterSpec(iv));
+		
+		encrypted=encryptor.doFinal(wrapped);
+		full=new byte[16+encrypted.length];
+		System.arraycopy(iv,0,full,0,16);
+		System.arraycopy(encrypted,0,full,16,encrypted.length);
+		
+		encoded=Base64.getEncoder().encode(full);
+		binary=full;
+		receiveBuffer=new byte[full.length];
+		
+		if(!Arrays.equals(bridge.decrypt(encoded),plainText)||!Arrays.equals(decryptCachedCipher(),plainText)||
+				!Arrays.equals(decryptBinary(),plainText)||!Arrays.equals(bridge.decrypt(encryptInPlace()),plainText))
+			throw new IllegalStateException("The implementations are not compatible");
+	}
+	
+	// STAGES
+	
+	/**
+	 * Length prefix and AES padding (one copy of the plain text)
+	 */
+	@Benchmark
+	public byte[]stageWrap() {
+		return bridge.wrap(plainText,false);
+	}
+	
+	/**
+	 * A new {@link SecureRandom} generating the IV
+	 */
+	@Benchmark
+	public byte[]stageIV() {
+		byte[]iv=new byte[16];
+		new SecureRandom().nextBytes(iv);
+		return iv;
+	}
+	
+	/**
+	 * Looking up and initializing a new {@link Cipher}
+	 */
+	@Benchmark
+	public Cipher stageCipherInit()throws Exception {
+		Cipher cipher=Cipher.getInstance("AES/CBC/NoPadding");
+		cipher.init(Cipher.ENCRYPT_MODE,new SecretKeySpec(key.getEncoded(),"AES"),new IvParameterSpec(iv));
+		return cipher;
+	}
+	
+	/**
+	 * AES-CBC encryption of the wrapped data
+	 */
+	@Benchmark
+	public byte[]stageEncrypt()throws Exception {
+		return encryptor.doFinal(wrapped);
+	}
+	
+	/**
+	 * Concatenation of IV and encrypted data
+	 */
+	@Benchmark
+	public byte[]stageConcat() {
+		byte[]full=new byte[16+encrypted.length];
+		
+		System.arraycopy(iv,0,full,0,16);
+		System.arraycopy(encrypted,0,full,16,encrypted.length);
+		
+		return full;
+	}
+	
+	@Benchmark
+	public byte[]stageBase64Encode() {
+		return Base64.getEncoder().encode(full);
+	}
+	
+	@Benchmark
+	public byte[]stageBase64Decode() {
+		return Base64.getDecoder().decode(encoded);
+	}
+	
+	/**
+	 * AES-CBC decryption into a separate buffer
+	 */
+	@Benchmark
+	public byte[]stageDecrypt()throws Exception {
+		decryptor.doFinal(full,16,full.length-16,receiveBuffer,0);
+		return receiveBuffer;
+	}
+	
+	/**
+	 * Extraction of the plain text
+	 */
+	@Benchmark
+	public byte[]stageUnwrap() {
+		return Arrays.copyOfRange(wrapped,4,4+size);
+	}
+	
+	// END TO END
+	
+	@Benchmark
+	public byte[]encrypt() {
+		return bridge.encrypt(plainText);
+	}
+	
+	@Benchmark
+	public byte[]decrypt() {
+		return bridge.decrypt(encoded);
+	}
+	
+	@Benchmark
+	public byte[]encryptCachedCipher()throws Exception {
+		byte[]raw=bridge.wrap(plainText,false),iv=new byte[16];
+		random.nextBytes(iv);
+		
+		encryptor.init(Cipher.ENCRYPT_MODE,key,new IvParameterSpec(iv));
+		byte[]encrypted=encryptor.doFinal(raw);
+		
+		byte[]full=new byte[16+encrypted.length];
+		System.arraycopy(iv,0,full,0,16);
+		System.arraycopy(encrypted,0,full,16,encrypted.length);
+		
+		return Base64.getEncoder().encode(full);
+	}
+	
+	@Benchmark
+	public byte[]decryptCachedCipher()throws Exception {
+		byte[]buf=Base64.getDecoder().decode(encoded);
+		
+		decryptor.init(Cipher.DECRYPT_MODE,key,new IvParameterSpec(buf,0,16));
+		decryptor.doFinal(buf,16,buf.length-16,buf,0);
+		
+		return unwrap(buf,0);
+	}
+	
+	@Benchmark
+	public byte[]encryptInPlace()throws Exception {
+		return Base64.getEncoder().encode(sealInPlace());
+	}
+	
+	@Benchmark
+	public byte[]encryptBinary()throws Exception {
+		return sealInPlace();
+	}
+	
+	/**
+	 * Decrypts binary data, as it would be read from a channel (into a reused buffer)
+	 */
+	@Benchmark
+	public byte[]decryptBinary()throws Exception {
+		decryptor.init(Cipher.DECRYPT_MODE,key,new IvParameterSpec(binary,0,16));
+		decryptor.doFinal(binary,16,binary.length-16,receiveBuffer,0);
+		
+		return unwrap(receiveBuffer,0);
+	}
+	
+	/**
+	 * @return IV, length, data and padding, encrypted in place
+	 */
+	private byte[]sealInPlace()throws Exception {
+		int len=4+size+16-((4+size)%16);
+		byte[]buf=new byte[16+len],iv=new byte[16];
+		
+		random.nextBytes(iv);
+		System.arraycopy(iv,0,buf,0,16);
+		
+		buf[16]=(byte)(size>>>24);
+		buf[17]=(byte)(size>>>16);
+		buf[18]=(byte)(size>>>8);
+		buf[19]=(byte)size;
+		
+		System.arraycopy(plainText,0,buf,20,size);
+		
+		encryptor.init(Cipher.ENCRYPT_MODE,key,new IvParameterSpec(buf,0,16));
+		encryptor.doFinal(buf,16,len,buf,16);
+		
+		return buf;
+	}
+	
+	private static byte[]unwrap(byte[]buf,int offset) {
+		int len=((buf[offset]&0xFF)<<24)|
+				((buf[offset+1]&0xFF)<<16)|
+				((buf[offset+2]&0xFF)<<8)|
+				(buf[offset+3]&0xFF);
+		
+		return Arrays.copyOfRange(buf,offset+4,offset+4+len);
+	}
+	
+}
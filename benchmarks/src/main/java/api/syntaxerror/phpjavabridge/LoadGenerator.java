@@ -0,0 +1,485 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * End-to-end load generator for the {@link BridgeImpl.TCP TCP} and {@link BridgeImpl.UDP UDP} Bridges.<br>
+ * <br>
+ * For every combination of transport and encryption, a Bridge echoing byte arrays is started on the loopback interface
+ * and driven by {@code connections} clients speaking the wire protocol. Each client either sends its requests back to back (closed loop, {@code rate=0}),
+ * or according to a fixed schedule (open loop, {@code rate} requests per second in total).<br>
+ * <br>
+ * In open loop mode, latencies are measured from the time a request <i>should</i> have been sent, so a stalled server is not hidden
+ * by clients which wait for it (coordinated omission). The latencies measured from the actual send time are reported, too.<br>
+ * <br>
+ * Options (all optional):
+ * <pre>
+ * --transports=tcp,udp      transports to be compared
+ * --aes=off,on              encryption settings to be compared
+ * --connections=8           number of concurrent clients
+ * --rate=0                  requests per second (all clients), 0: as fast as possible
+ * --duration=10             measured seconds per scenario
+ * --warmup=3                unmeasured seconds per scenario
+ * --mix=64:70,4096:25,32768:5   payload sizes (bytes) and their weights
+ * --report=path             also writes the report (Markdown) to a file
+ * </pre>
+ * Run with {@code ./gradlew loadtest -Pargs="--rate=20000 --connections=16"}
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+public class LoadGenerator {
+	
+	private static final int PID=1;
+	private static final int MAX_PACKET_LENGTH=65535;
+	private static final String PASSWORD="load-generator";
+	/** the highest trackable latency (1 minute) */
+	private static final long MAX_LATENCY=TimeUnit.MINUTES.toNanos(1);
+	
+	private List<String>transports=List.of("tcp","udp");
+	private List<Boolean>aes=List.of(false,true);
+	private int connections=8,rate=0,duration=10,warmup=3;
+	private Map<Integer,Integer>mix=parseMix("64:70,4096:25,32768:5");
+	private Path report;
+	
+	public static void main(String[]args)throws Exception {
+		LoadGenerator generator=new LoadGenerator();
+		
+		for(String arg:args) {
+			String[]kv=arg.replaceFirst("^--","").split("=",2);
+			
+			if(kv.length!=2)
+				throw new IllegalArgumentException("Expected --option=value, got "+arg);
+			
+			switch(kv[0]) {
+			case "transports":generator.transports=List.of(kv[1].toLowerCase(Locale.ROOT).split(","));break;
+			case "aes":generator.aes=Arrays.stream(kv[1].split(",")).map(s->s.equals("on")||s.equals("true")).toList();break;
+			case "connections":generator.connections=Integer.parseInt(kv[1]);break;
+			case "rate":generator.rate=Integer.parseInt(kv[1]);break;
+			case "duration":generator.duration=Integer.parseInt(kv[1]);break;
+			case "warmup":generator.warmup=Integer.parseInt(kv[1]);break;
+			case "mix":generator.mix=parseMix(kv[1]);break;
+			case "report":generator.report=Path.of(kv[1]);break;
+			default:throw new IllegalArgumentException("Unknown option: "+kv[0]);
+			}
+		}
+		
+		List<Result>results=new ArrayList<>();
+		
+		for(String transport:generator.transports)
+			for(boolean useAES:generator.aes) {
+				Result result=generator.run(transport,useAES);
+				System.out.println(result.summary());
+				results.add(result);
+			}
+		
+		String text=generator.report(results);
+		System.out.println();
+		System.out.println(text);
+		
+		if(generator.report!=null)
+			Files.writeString(generator.report,text);
+	}
+	
+	/**
+	 * @param mix {@code size:weight,...}
+	 * 
+	 * @return the payload sizes and their weights
+	 */
+	private static Map<Integer,Integer>parseMix(String mix) {
+		Map<Integer,Integer>sizes=new LinkedHashMap<>();
+		
+		for(String entry:mix.split(",")) {
+			String[]parts=entry.split(":");
+			sizes.put(Integer.parseInt(parts[0].trim()),parts.length>1?Integer.parseInt(parts[1].trim()):1);
+		}
+		
+		return sizes;
+	}
+	
+	/**
+	 * Runs a single scenario
+	 * 
+	 * @param transport either "tcp" or "udp"
+	 * @param useAES whether or not the Bridge uses AES
+	 * 
+	 * @return the measured results
+	 */
+	Result run(String transport,boolean useAES)throws Exception {
+		boolean tcp=transport.equals("tcp");
+		
+		if(!tcp&&!transport.equals("udp"))
+			throw new IllegalArgumentException("Unsupported transport: "+transport);
+		
+		int port=freePort(tcp);
+		Bridge bridge=tcp?Bridge.newTCP(port,useAES,PASSWORD,MAX_PACKET_LENGTH):Bridge.newUDP(port,useAES,PASSWORD,MAX_PACKET_LENGTH);
+		
+		bridge.setPacketHandler((client,incoming)->{
+			Packet outgoing=new Packet(PID);
+			outgoing.writeByteArray(incoming.readByteArray());
+			return outgoing;
+		},PID);
+		bridge.start();
+		
+		long start=System.nanoTime()+TimeUnit.MILLISECONDS.toNanos(100),
+				measureFrom=start+TimeUnit.SECONDS.toNanos(warmup),
+				end=measureFrom+TimeUnit.SECONDS.toNanos(duration),
+				interval=rate>0?TimeUnit.SECONDS.toNanos(connections)/rate:0;
+		
+		List<Worker>workers=new ArrayList<>();
+		
+		for(int i=0;i<connections;++i) {
+			Worker worker=new Worker(bridge,tcp,port,i,start+i*interval/connections,interval,measureFrom,end);
+			workers.add(worker);
+			worker.start();
+		}
+		
+		Result result=new Result(transport.toUpperCase(Locale.ROOT)+(useAES?" + AES":""),duration);
+		
+		try {
+			for(Worker worker:workers) {
+				worker.join();
+				
+				if(worker.failure!=null)
+					throw new IllegalStateException("Client #"+worker.id+" failed",worker.failure);
+				
+				result.corrected.add(worker.corrected);
+				result.uncorrected.add(worker.uncorrected);
+				result.errors+=worker.errors;
+			}
+		} finally {
+			bridge.shutdown(Duration.ofSeconds(5));
+		}
+		
+		return result;
+	}
+	
+	private static int freePort(boolean tcp)throws IOException {
+		if(tcp)
+			try(ServerSocket socket=new ServerSocket(0,50,InetAddress.getLocalHost())) {
+				return socket.getLocalPort();
+			}
+		
+		try(DatagramSocket socket=new DatagramSocket(0,InetAddress.getLocalHost())) {
+			return socket.getLocalPort();
+		}
+	}
+	
+	/**
+	 * @return the comparison of all the scenarios (Markdown), relative to the first one
+	 */
+	String report(List<Result>results) {
+		StringBuilder sb=new StringBuilder();
+		
+		sb.append(String.format(Locale.ROOT,"connections: %d, rate: %s, duration: %ds (+%ds warmup), payload mix (bytes:weight): %s%n%n",
+			connections,rate>0?rate+"/s":"unlimited",duration,warmup,mix));
+		sb.append("| Scenario | Requests | Throughput (req/s) | p50 (us) | p90 (us) | p99 (us) | p99.9 (us) | max (us) | p99 uncorrected (us) | Errors | Throughput vs. first | p99 vs. first |\n");
+		sb.append("|---|---:|---:|---:|---:|---:|---:|---:|---:|---:|---:|---:|\n");
+		
+		Result first=results.isEmpty()?null:results.get(0);
+		
+		for(Result result:results) {
+			Histogram h=result.corrected;
+			
+			sb.append(String.format(Locale.ROOT,"| %s | %d | %.0f | %.1f | %.1f | %.1f | %.1f | %.1f | %.1f | %d | %+.1f%% | %+.1f%% |%n",
+				result.name,h.getTotalCount(),result.throughput(),
+				micros(h.getValueAtPercentile(50)),micros(h.getValueAtPercentile(90)),micros(h.getValueAtPercentile(99)),
+				micros(h.getValueAtPercentile(99.9)),micros(h.getMaxValue()),
+				micros(result.uncorrected.getValueAtPercentile(99)),result.errors,
+				change(result.throughput(),first.throughput()),
+				change(h.getValueAtPercentile(99),first.corrected.getValueAtPercentile(99))));
+		}
+		
+		return sb.toString();
+	}
+	
+	private static double micros(long nanos) {
+		return nanos/1000D;
+	}
+	
+	private static double change(double value,double baseline) {
+		return baseline==0?0:(value/baseline-1)*100;
+	}
+	
+	static class Result {
+		
+		final String name;
+		final int seconds;
+		final Histogram corrected=new Histogram(MAX_LATENCY,3),uncorrected=new Histogram(MAX_LATENCY,3);
+		long errors;
+		
+		Result(String name,int seconds) {
+			this.name=name;
+			this.seconds=seconds;
+		}
+		
+		double throughput() {
+			return corrected.getTotalCount()/(double)seconds;
+		}
+		
+		String summary() {
+			return String.format(Locale.ROOT,"%-10s %9.0f req/s  p50 %8.1fus  p99 %8.1fus  p99.9 %8.1fus  errors %d",
+				name,throughput(),micros(corrected.getValueAtPercentile(50)),
+				micros(corrected.getValueAtPercentile(99)),micros(corrected.getValueAtPercentile(99.9)),errors);
+		}
+		
+	}
+	
+	/**
+	 * A single client
+	 */
+	private class Worker extends Thread {
+		
+		final int id;
+		final Histogram corrected=new Histogram(MAX_LATENCY,3),uncorrected=new Histogram(MAX_LATENCY,3);
+		long errors;
+		Throwable failure;
+		
+		private final Bridge bridge;
+		private final boolean tcp;
+		private final int port;
+		private final long start,interval,measureFrom,end;
+		private final byte[][]payloads;
+		private final int[]weights;
+		private final SplittableRandom random;
+		
+		Worker(Bridge bridge,boolean tcp,int port,int id,long start,long interval,long measureFrom,long end) {
+			this.bridge=bridge;
+			this.tcp=tcp;
+			this.port=port;
+			this.id=id;
+			this.start=start;
+			this.interval=interval;
+			this.measureFrom=measureFrom;
+			this.end=end;
+			
+			random=new SplittableRandom(id);
+			payloads=new byte[mix.size()][];
+			weights=new int[mix.size()];
+			
+			int i=0,total=0;
+			
+			for(Map.Entry<Integer,Integer>entry:mix.entrySet()) {
+				payloads[i]=new byte[Math.max(8,entry.getKey())];
+				random.nextBytes(payloads[i]);
+				weights[i++]=total+=entry.getValue();
+			}
+			
+			setName("LoadGenerator #"+id);
+		}
+		
+		@Override
+		public void run() {
+			try(Client client=tcp?new TCPClient(port):new UDPClient(port)) {
+				LockSupport.parkNanos(start-System.nanoTime());
+				
+				for(long n=0,sequence=0;;++n) {
+					long intended=interval>0?start+n*interval:System.nanoTime();
+					
+					if(intended>=end)
+						break;
+					
+					long wait=intended-System.nanoTime();
+					
+					if(wait>0)
+						LockSupport.parkNanos(wait);
+					
+					byte[]payload=payload(++sequence);
+					long sent=System.nanoTime();
+					
+					if(!exchange(client,payload))
+						++errors;
+					else if(intended>=measureFrom) {
+						long done=System.nanoTime();
+						
+						corrected.recordValue(Math.min(done-intended,MAX_LATENCY));
+						uncorrected.recordValue(Math.min(done-sent,MAX_LATENCY));
+					}
+				}
+			} catch(Throwable t) {
+				failure=t;
+			}
+		}
+		
+		/**
+		 * @return a random payload of the mix, starting with the sequence number
+		 */
+		private byte[]payload(long sequence) {
+			int r=random.nextInt(weights[weights.length-1]),i=0;
+			
+			while(r>=weights[i])
+				++i;
+			
+			byte[]payload=payloads[i];
+			
+			for(int j=0;j<8;++j)
+				payload[j]=(byte)(sequence>>>(56-8*j));
+			
+			return payload;
+		}
+		
+		/**
+		 * @return whether or not the payload has been echoed correctly
+		 */
+		private boolean exchange(Client client,byte[]payload)throws IOException {
+			Packet request=new Packet(PID,payload.length+5);
+			request.writeByteArray(payload);
+			
+			byte[]frame=BridgeImpl.frame(bridge,PID,Bridge.FLAG_LITTLE_ENDIAN,bridge.encrypt(Arrays.copyOf(request.data,request.size())));
+			byte[]body=client.exchange(frame,payload);
+			
+			if(body==null)
+				return false;
+			
+			try(Packet response=new Packet(PID)) {
+				response.littleEndian=true;
+				response.validate(bridge.decrypt(body));
+				
+				return Arrays.equals(response.readByteArray(),payload);
+			} catch(MalformedRequestException|RuntimeException e) {
+				return false;
+			}
+		}
+		
+	}
+	
+	private static interface Client extends AutoCloseable {
+		
+		/**
+		 * @param frame the encoded request
+		 * @param payload the payload (used to recognize the matching response)
+		 * 
+		 * @return the encrypted data of the response, or {@code null} if there was none
+		 */
+		byte[]exchange(byte[]frame,byte[]payload)throws IOException;
+		
+		@Override
+		void close()throws IOException;
+		
+	}
+	
+	private static class TCPClient implements Client {
+		
+		private final Socket socket;
+		private final OutputStream out;
+		private final DataInputStream in;
+		
+		TCPClient(int port)throws IOException {
+			socket=new Socket(InetAddress.getLocalHost(),port);
+			socket.setTcpNoDelay(true);
+			
+			out=socket.getOutputStream();
+			in=new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		}
+		
+		public byte[]exchange(byte[]frame,byte[]payload)throws IOException {
+			out.write(frame);
+			out.flush();
+			
+			in.readUnsignedByte();
+			in.readUnsignedByte();
+			
+			byte[]body=new byte[in.readInt()];
+			in.readFully(body);
+			
+			return body;
+		}
+		
+		public void close()throws IOException {
+			socket.close();
+		}
+		
+	}
+	
+	private static class UDPClient implements Client {
+		
+		private final DatagramSocket socket;
+		private final DatagramPacket received=new DatagramPacket(new byte[MAX_PACKET_LENGTH],MAX_PACKET_LENGTH);
+		
+		UDPClient(int port)throws IOException {
+			socket=new DatagramSocket();
+			socket.connect(InetAddress.getLocalHost(),port);
+			socket.setSoTimeout(1000);
+		}
+		
+		public byte[]exchange(byte[]frame,byte[]payload)throws IOException {
+			socket.send(new DatagramPacket(frame,frame.length));
+			
+			try {
+				socket.receive(received);
+			} catch(SocketTimeoutException e) {
+				return null;
+			}
+			
+			byte[]data=received.getData();
+			int length=received.getLength();
+			
+			if(length<6)
+				return null;
+			
+			// late answers to lost requests are not matched here, but rejected by the payload comparison
+			return Arrays.copyOfRange(data,6,length);
+		}
+		
+		public void close() {
+			socket.close();
+		}
+		
+	}
+	
+}
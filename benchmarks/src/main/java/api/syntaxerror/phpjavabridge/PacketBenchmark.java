@@ -0,0 +1,269 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Benchmarks the {@link Packet} codec for every data type stored in the Packet itself (streams are sent separately).<br>
+ * <br>
+ * {@code size} is the number of values for fixed-size data types, and the length (in characters, bytes or elements) of a single value otherwise.
+ * Incoming Packets are encoded the way a client with the given endianness would send them.<br>
+ * <br>
+ * Run with {@code ./gradlew jmh}, which enables allocation profiling ({@code -prof gc}).
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations=3,time=1)
+@Measurement(iterations=5,time=1)
+@Fork(1)
+@State(Scope.Thread)
+public class PacketBenchmark {
+	
+	public static enum DataType {
+		BOOLEAN,BYTE,UNSIGNED_BYTE,SHORT,UNSIGNED_SHORT,INT,UNSIGNED_INT,LONG,FLOAT,DOUBLE,
+		STRING_UTF8,STRING_ASCII,STRING_C,BYTE_ARRAY,LIST,MAP
+	}
+	
+	@Param
+	public DataType type;
+	
+	@Param({"16","4096"})
+	public int size;
+	
+	@Param({"true","false"})
+	public boolean littleEndian;
+	
+	private String utf8,ascii;
+	private byte[]bytes;
+	private List<Integer>list;
+	private Map<String,Integer>map;
+	
+	/** the data of an incoming Packet */
+	private byte[]incoming;
+	
+	@Setup
+	public void setup() {
+		StringBuilder sb=new StringBuilder();
+		
+		for(int i=0;i<size;++i)
+			sb.append(i%8==0?'ä':(char)('a'+i%26));
+		
+		utf8=sb.toString();
+		ascii=utf8.replace('ä','_');
+		
+		bytes=new byte[size];
+		list=new ArrayList<>(size);
+		map=new LinkedHashMap<>();
+		
+		for(int i=0;i<size;++i) {
+			bytes[i]=(byte)i;
+			list.add(i);
+			map.put("key"+i,i);
+		}
+		
+		Packet packet=write();
+		incoming=new byte[packet.size()];
+		System.arraycopy(packet.data,0,incoming,0,incoming.length);
+		
+		if(!littleEndian)
+			toClientOrder(incoming);
+	}
+	
+	@Benchmark
+	public Packet write() {
+		Packet packet=new Packet(1);
+		
+		switch(type) {
+		case BOOLEAN:		for(int i=0;i<size;++i)packet.writeBoolean((i&1)==0);break;
+		case BYTE:			for(int i=0;i<size;++i)packet.writeByte((byte)i);break;
+		case UNSIGNED_BYTE:	for(int i=0;i<size;++i)packet.writeUnsignedByte(i);break;
+		case SHORT:			for(int i=0;i<size;++i)packet.writeShort((short)i);break;
+		case UNSIGNED_SHORT:for(int i=0;i<size;++i)packet.writeUnsignedShort(i);break;
+		case INT:			for(int i=0;i<size;++i)packet.writeInt(i*31);break;
+		case UNSIGNED_INT:	for(int i=0;i<size;++i)packet.writeUnsignedInt(i*31L);break;
+		case LONG:			for(int i=0;i<size;++i)packet.writeLong(i*31L<<32);break;
+		case FLOAT:			for(int i=0;i<size;++i)packet.writeFloat(i/3F);break;
+		case DOUBLE:		for(int i=0;i<size;++i)packet.writeDouble(i/3D);break;
+		case STRING_UTF8:	packet.writeStringUTF8(utf8);break;
+		case STRING_ASCII:	packet.writeStringASCII(ascii);break;
+		case STRING_C:		packet.writeStringC(ascii);break;
+		case BYTE_ARRAY:	packet.writeByteArray(bytes);break;
+		case LIST:			packet.writeList(list);break;
+		case MAP:			packet.writeMap(map);break;
+		}
+		
+		return packet;
+	}
+	
+	/**
+	 * Reads the values without validating the Packet first
+	 */
+	@Benchmark
+	public void read(Blackhole bh) {
+		Packet packet=incoming();
+		
+		packet.data=incoming;
+		packet.size=incoming.length;
+		
+		read(packet,bh);
+	}
+	
+	/**
+	 * Validates the Packet, like the Bridge does before passing it to a {@link PacketHandler}
+	 */
+	@Benchmark
+	public Packet validate()throws MalformedRequestException {
+		Packet packet=incoming();
+		
+		packet.validate(incoming);
+		
+		return packet;
+	}
+	
+	/**
+	 * Validates the Packet and reads the values, like a {@link PacketHandler} would
+	 */
+	@Benchmark
+	public void validateAndRead(Blackhole bh)throws MalformedRequestException {
+		Packet packet=incoming();
+		
+		packet.validate(incoming);
+		
+		read(packet,bh);
+	}
+	
+	private Packet incoming() {
+		Packet packet=new Packet(1);
+		packet.littleEndian=littleEndian;
+		return packet;
+	}
+	
+	private void read(Packet packet,Blackhole bh) {
+		switch(type) {
+		case BOOLEAN:		for(int i=0;i<size;++i)bh.consume(packet.readBoolean());break;
+		case BYTE:			for(int i=0;i<size;++i)bh.consume(packet.readByte());break;
+		case UNSIGNED_BYTE:	for(int i=0;i<size;++i)bh.consume(packet.readUnsignedByte());break;
+		case SHORT:			for(int i=0;i<size;++i)bh.consume(packet.readShort());break;
+		case UNSIGNED_SHORT:for(int i=0;i<size;++i)bh.consume(packet.readUnsignedShort());break;
+		case INT:			for(int i=0;i<size;++i)bh.consume(packet.readInt());break;
+		case UNSIGNED_INT:	for(int i=0;i<size;++i)bh.consume(packet.readUnsignedInt());break;
+		case LONG:			for(int i=0;i<size;++i)bh.consume(packet.readLong());break;
+		case FLOAT:			for(int i=0;i<size;++i)bh.consume(packet.readFloat());break;
+		case DOUBLE:		for(int i=0;i<size;++i)bh.consume(packet.readDouble());break;
+		case STRING_UTF8:	bh.consume(packet.readStringUTF8());break;
+		case STRING_ASCII:	bh.consume(packet.readStringASCII());break;
+		case STRING_C:		bh.consume(packet.readStringC());break;
+		case BYTE_ARRAY:	bh.consume(packet.readByteArray());break;
+		case LIST:			bh.consume(packet.readList());break;
+		case MAP:			bh.consume(packet.readMap());break;
+		}
+	}
+	
+	/**
+	 * Reverses the fields which a Big Endian client sends in its native byte order (shorts, ints, longs and lengths of byte arrays and containers).
+	 * Only the data types written by {@link #write()} are supported.
+	 */
+	private static void toClientOrder(byte[]data) {
+		for(int pos=0;pos<data.length;) {
+			int type=data[pos++];
+			
+			switch(type) {
+			case 3:reverse(data,pos,2);pos+=2;break;
+			case 5:reverse(data,pos,4);pos+=4;break;
+			case 7:reverse(data,pos,8);pos+=8;break;
+			case 13:
+				reverse(data,pos,4);
+				pos+=4+length(data,pos);
+				break;
+			case 15: // list of ints
+				reverse(data,pos+1,4);
+				int count=length(data,pos+1);
+				pos+=5;
+				
+				for(int i=0;i<count;++i,pos+=4)
+					reverse(data,pos,4);
+				break;
+			case 16: // map of UTF-8 strings and ints
+				reverse(data,pos+2,4);
+				count=length(data,pos+2);
+				pos+=6;
+				
+				for(int i=0;i<count;++i) {
+					pos+=2+(((data[pos]&0xFF)<<8)|(data[pos+1]&0xFF));
+					reverse(data,pos,4);
+					pos+=4;
+				}
+				break;
+			default: // not affected by the byte order, neither are the other values (all of them have the same type)
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * @return the Little Endian length at {@code pos}
+	 */
+	private static int length(byte[]data,int pos) {
+		return (data[pos]&0xFF)|((data[pos+1]&0xFF)<<8)|((data[pos+2]&0xFF)<<16)|((data[pos+3]&0x7F)<<24);
+	}
+	
+	private static void reverse(byte[]data,int pos,int len) {
+		for(int i=0,j=len-1;i<j;++i,--j) {
+			byte b=data[pos+i];
+			data[pos+i]=data[pos+j];
+			data[pos+j]=b;
+		}
+	}
+	
+}
@@ -1,21 +1,43 @@
 package api.syntaxerror.phpjavabridge;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 /**
- * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * PHP-Java-Bridge provides a TCP-, UDP-, Unix Domain Socket- or Shared Memory-based connection between PHP (Client) and Java (Server)<br>
  * <br>
  * licensed under the Apache License 2.0:<br>
  * <br>
@@ -49,6 +71,26 @@ import javax.crypto.spec.SecretKeySpec;
  * @author SyntaxError404, 2020
  */
 public abstract class Bridge {
+	
+	/** header flag: shorts, ints and longs are stored in Little Endian format */
+	static final int FLAG_LITTLE_ENDIAN=0x01;
+	/** header flag: the frame is a chunk of a stream (see {@link Packet#readStream()}) */
+	static final int FLAG_CHUNK=0x02;
+	/** header flag: the datagram is a fragment of a larger message (see {@link Fragmentation}) */
+	static final int FLAG_FRAGMENT=0x04;
+	/** header flag: the datagram requests lost fragments again (see {@link Fragmentation}) */
+	static final int FLAG_NACK=0x08;
+	/** header flag: the frame contains several {@link Packet}s (see {@link #setBatchExecutor(Executor)}) */
+	static final int FLAG_BATCH=0x10;
+	/** header flag: the client accepts compressed data (see {@link #setCompressionThreshold(int)}) */
+	static final int FLAG_COMPRESSION=0x20;
+	/** header flag: the client uses the string dictionary of the connection (see {@link StringDictionary}) */
+	static final int FLAG_DICTIONARY=0x40;
+	/** header flag: requests: the client accepts binary chunks. chunks: the data is neither encrypted nor Base64-encoded (see {@link FileRegion}) */
+	static final int FLAG_BINARY=0x80;
+	
+	/** upper limit for the size of a single chunk of a stream */
+	static final int MAX_CHUNK_LENGTH=65536;
 
 	protected int port,maxPacketLength;
 	private boolean useAES;
@@ -56,9 +98,44 @@ public abstract class Bridge {
 	protected Thread thread;
 	protected Map<Integer,PacketHandler>handlers;
 	protected UncaughtExceptionHandler exceptionHandler;
+	protected Executor batchExecutor;
+	protected int compressionThreshold=1024;
+	/** see {@link #setIdleTimeout(long)}, {@link #setReadTimeout(long)} and {@link #setWriteTimeout(long)} */
+	protected long idleTimeout=300000,readTimeout=30000,writeTimeout=30000;
+	/** see {@link #setMaxOutstandingRequests(int)} */
+	protected int maxOutstandingRequests=256;
+	/** see {@link #setMaxConnectionBufferedBytes(long)} */
+	protected long maxConnectionBufferedBytes=16<<20;
+	protected ResponseCache responseCache;
+	/** the request statistics, or {@code null} if metrics are disabled */
+	volatile BridgeMetrics metrics;
+	/** see {@link BridgeMXBean} */
+	final AtomicInteger activeRequests=new AtomicInteger(),handlerThreads=new AtomicInteger();
+	/** see {@link BridgeMXBean} */
+	final LongAdder reapedConnections=new LongAdder(),rejectedRequests=new LongAdder();
+	/** the number of requests which arrived on a connection while it was being closed, see {@link ShutdownReport#getRejectedRequests()} */
+	final AtomicInteger lateRequests=new AtomicInteger();
+	/** the open connections of stream-based {@link Bridge}s */
+	final Set<Connection>connections=ConcurrentHashMap.newKeySet();
+	/** whether or not the {@link Bridge} accepts new connections and requests */
+	volatile boolean running;
+	/** receives the spans of traced requests, or {@code null} */
+	volatile SpanExporter spanExporter;
+	private ObjectName mbeanName;
+	private MetricsServer metricsServer;
+	
+	/** the Packet-IDs whose concurrent identical requests share a single {@link PacketHandler} call */
+	final Set<Integer>coalescedPIDs=ConcurrentHashMap.newKeySet();
+	/** the {@link PacketHandler} calls currently in progress for {@link #coalescedPIDs} */
+	final Map<RequestKey,CompletableFuture<Packet>>inFlight=new ConcurrentHashMap<>();
+	
+	private static final Queue<Deflater>DEFLATERS=new ConcurrentLinkedQueue<>();
+	private static final Queue<Inflater>INFLATERS=new ConcurrentLinkedQueue<>();
 	
 	/**@see {@link BridgeImpl.TCP#TCP(int, boolean, String, int)}
 	 * @see {@link BridgeImpl.UDP#UDP(int, boolean, String, int)}
+	 * @see {@link BridgeImpl.Unix#Unix(String, boolean, String, int)}
+	 * @see {@link BridgeImpl.SharedMemory#SharedMemory(String, int, boolean, String, int)}
 	 */
 	Bridge(int port,boolean useAES,String password,int maxPacketLength) {
 		handlers=new HashMap<>();
@@ -85,29 +162,149 @@ public abstract class Bridge {
 		
 		this.maxPacketLength=maxPacketLength;
 		
+		// handlers usually block (e.g. database lookups), so there are at least 4 threads
+		int threads=Math.max(4,Runtime.getRuntime().availableProcessors());
+		
+		ThreadPoolExecutor executor=new ThreadPoolExecutor(threads,threads,60,TimeUnit.SECONDS,new ArrayBlockingQueue<>(1024),r->{
+			Thread thread=new Thread(r,"BatchHandler PHP-Java");
+			thread.setDaemon(true);
+			return thread;
+		},new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		
+		batchExecutor=executor;
+		
 		thread=new Thread(()->{});
 	}
 	
+	/**
+	 * @return whether or not AES-256-CBC is used
+	 */
+	public boolean isUsingAES() {
+		return useAES;
+	}
+	
 	public int getPort() {
 		return port;
 	}
 
 	/**
-	 * Starts the Server-Thread.
+	 * Starts the Server-Thread.<br>
+	 * After {@link #stop()} or {@link #shutdown(Duration)}, the {@link Bridge} can be started again.
+	 * 
+	 * @throws IllegalStateException if the {@link Bridge} is already running
+	 * @throws UncheckedIOException if the socket could not be bound again
 	 */
-	public void start() {
+	public synchronized void start() {
+		if(running)
+			throw new IllegalStateException("Bridge already running");
+		
+		try {
+			open();
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		
+		if(thread.getState()!=Thread.State.NEW)
+			thread=newServerThread();
+		
+		running=true;
 		thread.start();
 	}
 
 	/**
-	 * Stops the Server Thread.<br>
-	 * You cannot call {@link #start()} afterwards.
+	 * Stops the Server-Thread gracefully, waiting up to 30 seconds for in-flight requests (see {@link #shutdown(Duration)}).<br>
+	 * You can call {@link #start()} afterwards.
 	 * 
-	 * @throws InterruptedException thrown by {@link Thread#join()}
+	 * @throws InterruptedException if the current thread was interrupted while waiting
 	 */
 	public void stop()throws InterruptedException {
+		shutdown(Duration.ofSeconds(30));
+	}
+	
+	/**
+	 * Stops the {@link Bridge} gracefully:
+	 * <ol>
+	 * 	<li>no new connections are accepted, the Server-Thread is stopped</li>
+	 * 	<li>idle connections are closed immediately, busy ones after their answer has been sent
+	 * 		(a request arriving while its connection is being closed is rejected)</li>
+	 * 	<li>if there are still requests in progress after {@code timeout}, their connections are closed forcibly</li>
+	 * </ol>
+	 * Afterwards, {@link #start()} can be called again.
+	 * 
+	 * @param timeout how long in-flight requests may take to complete
+	 * 
+	 * @return what has been closed and dropped
+	 * 
+	 * @throws InterruptedException if the current thread was interrupted while waiting
+	 */
+	public synchronized ShutdownReport shutdown(Duration timeout)throws InterruptedException {
+		Objects.requireNonNull(timeout,"timeout");
+		
+		if(!running)
+			return new ShutdownReport(0,0,0,0,0,Duration.ZERO);
+		
+		long start=System.nanoTime(),deadline=start+timeout.toNanos();
+		
+		running=false;
+		lateRequests.set(0);
+		closeServer();
 		thread.join();
+		
+		int inFlight=activeRequests.get(),open=connections.size(),dropped=0;
+		
+		while((activeRequests.get()>0||!connections.isEmpty())&&System.nanoTime()-deadline<0) {
+			for(Connection connection:connections)
+				connection.closeIfIdle();
+			
+			Thread.sleep(10);
+		}
+		
+		for(Connection connection:connections) {
+			if(connection.isBusy())
+				++dropped;
+			
+			connection.close();
+		}
+		
+		int droppedRequests=activeRequests.get();
+		
+		closeTransport();
+		
+		return new ShutdownReport(inFlight,open-dropped,dropped,droppedRequests,lateRequests.get(),Duration.ofNanos(System.nanoTime()-start));
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * (Re-)binds the socket, if it has been closed by {@link #shutdown(Duration)}
+	 * 
+	 * @throws IOException if the socket could not be bound
+	 */
+	void open()throws IOException {}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * @return a new Server-Thread, after the previous one has terminated
+	 */
+	Thread newServerThread() {
+		return new Thread(()->{});
 	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * Stops accepting new connections, called by {@link #shutdown(Duration)} before the connections are drained
+	 */
+	void closeServer() {}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * Releases the resources which are still needed to answer in-flight requests, called by {@link #shutdown(Duration)} after the connections are drained
+	 */
+	void closeTransport() {}
 
 	/**
 	 * If a {@link Packet} couldn't be handled (because there was no {@link PacketHandler} set via {@link #setPacketHandler(PacketHandler, int...)}), this handler is called.<br>
@@ -145,6 +342,294 @@ public abstract class Bridge {
 		this.exceptionHandler=exceptionHandler;
 	}
 	
+	/**
+	 * Sets the {@link ResponseCache} used in front of the {@link PacketHandler}s.<br>
+	 * Only responses to the Packet-IDs enabled via {@link ResponseCache#enable(java.time.Duration, int...)} are cached.
+	 * 
+	 * @param responseCache the {@link ResponseCache}, or {@code null} to disable caching
+	 */
+	public void setResponseCache(ResponseCache responseCache) {
+		this.responseCache=responseCache;
+	}
+	
+	/**
+	 * @return the {@link ResponseCache}, or {@code null} if caching is disabled
+	 */
+	public ResponseCache getResponseCache() {
+		return responseCache;
+	}
+	
+	/**
+	 * Enables the collection of request statistics (see {@link BridgeMetrics}).<br>
+	 * If metrics are already enabled, the existing statistics are kept.
+	 * 
+	 * @return the statistics
+	 */
+	public synchronized BridgeMetrics enableMetrics() {
+		if(metrics==null)
+			metrics=new BridgeMetrics();
+		
+		return metrics;
+	}
+	
+	/**
+	 * Disables the collection of request statistics and discards them
+	 */
+	public synchronized void disableMetrics() {
+		metrics=null;
+	}
+	
+	/**
+	 * @return the request statistics, or {@code null} if metrics are disabled (see {@link #enableMetrics()})
+	 */
+	public BridgeMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Sets the {@link SpanExporter} receiving the {@link Span}s of sampled, traced requests (see {@link TraceContext})
+	 * 
+	 * @param spanExporter the {@link SpanExporter}, or {@code null} to disable exporting
+	 */
+	public void setSpanExporter(SpanExporter spanExporter) {
+		this.spanExporter=spanExporter;
+	}
+	
+	/**
+	 * @return the {@link SpanExporter}, or {@code null} if spans are not exported
+	 */
+	public SpanExporter getSpanExporter() {
+		return spanExporter;
+	}
+	
+	/**
+	 * Registers the {@link BridgeMXBean} of this Bridge at the platform MBean server as
+	 * {@code api.syntaxerror.phpjavabridge:type=Bridge,name=<name>}.<br>
+	 * Request statistics are enabled, too (see {@link #enableMetrics()}).
+	 * 
+	 * @param name the name of this Bridge, e.g. {@code "TCP-4000"}
+	 * 
+	 * @return the name of the MBean
+	 * 
+	 * @throws IllegalStateException if the MBean couldn't be registered (e.g. because the name is already in use)
+	 */
+	public synchronized ObjectName registerMBean(String name) {
+		if(mbeanName!=null)
+			throw new IllegalStateException("MBean already registered: "+mbeanName);
+		
+		enableMetrics();
+		
+		try {
+			ObjectName objectName=new ObjectName("api.syntaxerror.phpjavabridge:type=Bridge,name="+ObjectName.quote(name));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new BridgeMonitor(this),objectName);
+			return mbeanName=objectName;
+		} catch(JMException e) {
+			throw new IllegalStateException("Couldn't register MBean: "+e.getMessage(),e);
+		}
+	}
+	
+	/**
+	 * Unregisters the {@link BridgeMXBean} registered via {@link #registerMBean(String)}, if any
+	 */
+	public synchronized void unregisterMBean() {
+		if(mbeanName==null)
+			return;
+		
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+		} catch(JMException e) {
+			throw new IllegalStateException("Couldn't unregister MBean: "+e.getMessage(),e);
+		} finally {
+			mbeanName=null;
+		}
+	}
+	
+	/**
+	 * Starts an HTTP server on all interfaces, serving the metrics of this Bridge in the Prometheus text format at {@code /metrics}
+	 * 
+	 * @param port the port of the HTTP server (0: any free port)
+	 * 
+	 * @return the address of the HTTP server
+	 * 
+	 * @see #startMetricsServer(InetSocketAddress)
+	 */
+	public InetSocketAddress startMetricsServer(int port) {
+		return startMetricsServer(new InetSocketAddress(port));
+	}
+	
+	/**
+	 * Starts an HTTP server serving the metrics of this Bridge in the Prometheus text format at {@code /metrics}.<br>
+	 * Request statistics are enabled, too (see {@link #enableMetrics()}).
+	 * 
+	 * @param address the address of the HTTP server
+	 * 
+	 * @return the address the HTTP server is bound to
+	 * 
+	 * @throws IllegalStateException if the HTTP server is already running
+	 */
+	public synchronized InetSocketAddress startMetricsServer(InetSocketAddress address) {
+		if(metricsServer!=null)
+			throw new IllegalStateException("Metrics server already running at "+metricsServer.getAddress());
+		
+		enableMetrics();
+		
+		try {
+			metricsServer=new MetricsServer(this,address);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		
+		return metricsServer.getAddress();
+	}
+	
+	/**
+	 * Stops the HTTP server started via {@link #startMetricsServer(InetSocketAddress)}, if any
+	 */
+	public synchronized void stopMetricsServer() {
+		if(metricsServer!=null) {
+			metricsServer.stop();
+			metricsServer=null;
+		}
+	}
+	
+	/**
+	 * Enables request coalescing for specific Packet-IDs:<br>
+	 * If a request arrives while an identical one (same Packet-ID and data) is still being handled,
+	 * it doesn't call the {@link PacketHandler} again, but waits for the running call and receives a copy of its response
+	 * (or its exception).<br>
+	 * <br>
+	 * This only makes sense for {@link PacketHandler}s which answer identical requests identically.
+	 * Requests and responses containing streams are never coalesced.
+	 * 
+	 * @param pids the Packet-IDs
+	 */
+	public void enableCoalescing(int...pids) {
+		for(int pid:pids)
+			coalescedPIDs.add(pid);
+	}
+	
+	/**
+	 * Disables request coalescing for specific Packet-IDs (see {@link #enableCoalescing(int...)})
+	 * 
+	 * @param pids the Packet-IDs
+	 */
+	public void disableCoalescing(int...pids) {
+		for(int pid:pids)
+			coalescedPIDs.remove(pid);
+	}
+	
+	/**
+	 * Sets the {@link Executor} used to handle the {@link Packet}s of a batch (sent by PHP via {@code Bridge::sendBatch()}) in parallel.<br>
+	 * The responses are collected and sent back as a single batch, in the same order as the requests.<br>
+	 * <br>
+	 * By default, a bounded thread pool with one thread per processor (at least 4) is used.
+	 * If the pool is saturated, the receiving thread handles the {@link Packet}s itself.
+	 * {@code Runnable::run} handles all {@link Packet}s sequentially.
+	 * 
+	 * @param batchExecutor the {@link Executor}
+	 */
+	public void setBatchExecutor(Executor batchExecutor) {
+		this.batchExecutor=Objects.requireNonNull(batchExecutor);
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * @return the max. number of raw bytes per chunk, so that an encrypted chunk does not exceed {@link #maxPacketLength}
+	 */
+	int maxChunkLength() {
+		// Base64 (4/3), IV (16), length (4), padding (up to 16) and Base64 padding (up to 2)
+		return Math.max(1,Math.min(MAX_CHUNK_LENGTH,(maxPacketLength-6)/4*3-38));
+	}
+	
+	/**
+	 * Sets the min. size of the data sent to a client before it is compressed (zlib/Deflate, before encryption).<br>
+	 * Data is only compressed if the client accepts it (PHP: {@code Bridge::enableCompression()})
+	 * and if the compressed data is actually smaller.<br>
+	 * <br>
+	 * default 1024 bytes
+	 * 
+	 * @param compressionThreshold the threshold in bytes, or a negative value to disable compression
+	 */
+	public void setCompressionThreshold(int compressionThreshold) {
+		this.compressionThreshold=compressionThreshold;
+	}
+	
+	/**
+	 * Sets how long a connection ({@link BridgeImpl.TCP TCP} or {@link BridgeImpl.Unix Unix}) may stay idle between two {@link Packet}s
+	 * before it is closed.<br>
+	 * <br>
+	 * default 300000 ms (5 minutes)
+	 * 
+	 * @param millis the timeout in milliseconds, or 0 to disable it
+	 */
+	public void setIdleTimeout(long millis) {
+		idleTimeout=checkTimeout0(millis);
+	}
+	
+	/**
+	 * Sets how long a client may take to send the rest of a request after its first byte, or a chunk of a stream sent along with it ({@link BridgeImpl.TCP TCP} and {@link BridgeImpl.Unix Unix}).
+	 * Stalled clients are disconnected, so they cannot occupy a thread forever.<br>
+	 * <br>
+	 * default 30000 ms (30 seconds)
+	 * 
+	 * @param millis the timeout in milliseconds, or 0 to disable it
+	 */
+	public void setReadTimeout(long millis) {
+		readTimeout=checkTimeout0(millis);
+	}
+	
+	/**
+	 * Sets how long writing an answer (including its streams) may take ({@link BridgeImpl.TCP TCP} and {@link BridgeImpl.Unix Unix}).
+	 * Clients which don't read their answers are disconnected.<br>
+	 * <br>
+	 * default 30000 ms (30 seconds)
+	 * 
+	 * @param millis the timeout in milliseconds, or 0 to disable it
+	 */
+	public void setWriteTimeout(long millis) {
+		writeTimeout=checkTimeout0(millis);
+	}
+	
+	private static long checkTimeout0(long millis) {
+		if(millis<0)
+			throw new IllegalArgumentException("Timeout must not be negative: "+millis);
+		
+		return millis;
+	}
+	
+	/**
+	 * Sets the max. number of requests a single client may have in progress:
+	 * the {@link Packet}s of a batch (see {@link #setBatchExecutor(Executor)}) or the datagrams handled concurrently ({@link BridgeImpl.UDP UDP}).
+	 * Excess requests are rejected.<br>
+	 * <br>
+	 * default 256
+	 * 
+	 * @param maxOutstandingRequests the max. number of requests
+	 */
+	public void setMaxOutstandingRequests(int maxOutstandingRequests) {
+		if(maxOutstandingRequests<1)
+			throw new IllegalArgumentException("Max. outstanding requests must be positive: "+maxOutstandingRequests);
+		
+		this.maxOutstandingRequests=maxOutstandingRequests;
+	}
+	
+	/**
+	 * Sets the max. number of bytes a single connection ({@link BridgeImpl.TCP TCP} or {@link BridgeImpl.Unix Unix}) may buffer
+	 * for a request and its answer. Streams are sent in chunks, only the chunk being read counts.
+	 * Connections exceeding it are closed.<br>
+	 * <br>
+	 * default 16 MiB
+	 * 
+	 * @param maxBufferedBytes the max. number of bytes
+	 */
+	public void setMaxConnectionBufferedBytes(long maxBufferedBytes) {
+		if(maxBufferedBytes<1)
+			throw new IllegalArgumentException("Max. buffered bytes must be positive: "+maxBufferedBytes);
+		
+		maxConnectionBufferedBytes=maxBufferedBytes;
+	}
+	
 	/**
 	 * internal use only<br><br>
 	 * 
@@ -155,18 +640,77 @@ public abstract class Bridge {
 	 * @return the encrypted data
 	 */
 	public final byte[]encrypt(byte[]plainText) {
+		return encrypt(plainText,false);
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * AES-256-CBC encryption with SHA3-256 hashed password.<br>
+	 * If the data is compressed, the highest bit of the length is set and the data is preceded by its uncompressed length.
+	 * 
+	 * @param plainText the raw data
+	 * @param compress whether or not the data may be compressed (see {@link #setCompressionThreshold(int)})
+	 * 
+	 * @return the encrypted data
+	 */
+	final byte[]encrypt(byte[]plainText,boolean compress) {
+		return seal(wrap(plainText,compress));
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * Prepends the length and appends the padding required by AES (compressing the data, if allowed).<br>
+	 * The result does not depend on the IV, so it can be reused (see {@link FrozenPacket}).
+	 * 
+	 * @param plainText the raw data
+	 * @param compress whether or not the data may be compressed (see {@link #setCompressionThreshold(int)})
+	 * 
+	 * @return the data to be passed to {@link #seal(byte[])}
+	 */
+	final byte[]wrap(byte[]plainText,boolean compress) {
 		int len=plainText.length;
+		byte[]compressed=null;
 		
-		byte[]raw=new byte[4+len+16-((4+len)%16)];
+		if(compress&&compressionThreshold>=0&&len>=compressionThreshold)
+			compressed=compress(plainText);
 		
-		raw[0]=(byte)((len>>>24)&0xFF);
-		raw[1]=(byte)((len>>>16)&0xFF);
-		raw[2]=(byte)((len>>>8)&0xFF);
-		raw[3]=(byte)(len&0xFF);
+		int payloadLength=compressed==null?len:4+compressed.length;
+		int header=compressed==null?len:payloadLength|0x80000000;
 		
-		System.arraycopy(plainText,0,raw,4,len);
+		byte[]raw=new byte[4+payloadLength+16-((4+payloadLength)%16)];
 		
+		raw[0]=(byte)((header>>>24)&0xFF);
+		raw[1]=(byte)((header>>>16)&0xFF);
+		raw[2]=(byte)((header>>>8)&0xFF);
+		raw[3]=(byte)(header&0xFF);
 		
+		if(compressed==null)
+			System.arraycopy(plainText,0,raw,4,len);
+		
+		else {
+			raw[4]=(byte)((len>>>24)&0xFF);
+			raw[5]=(byte)((len>>>16)&0xFF);
+			raw[6]=(byte)((len>>>8)&0xFF);
+			raw[7]=(byte)(len&0xFF);
+			
+			System.arraycopy(compressed,0,raw,8,compressed.length);
+		}
+		
+		return raw;
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * Encrypts (using a new IV) and encodes data prepared by {@link #wrap(byte[], boolean)}
+	 * 
+	 * @param raw the wrapped data
+	 * 
+	 * @return the encrypted data
+	 */
+	final byte[]seal(byte[]raw) {
 		if(!useAES)
 			return Base64.getEncoder().encode(raw);
 		
@@ -200,31 +744,122 @@ public abstract class Bridge {
 	public final byte[]decrypt(byte[]cipherText) {
 		cipherText=Base64.getDecoder().decode(cipherText);
 		
-		if(!useAES) {
-			int len=((cipherText[0]&0xFF)<<24)|
-					((cipherText[1]&0xFF)<<16)|
-					((cipherText[2]&0xFF)<<8)|
-					(cipherText[3]&0xFF);
-			
-			return Arrays.copyOfRange(cipherText,4,4+len);
-		}
+		if(!useAES)
+			return unwrap(cipherText,0,cipherText.length);
 		
-		byte[]iv=Arrays.copyOf(cipherText,16);
-		cipherText=Arrays.copyOfRange(cipherText,16,cipherText.length);
+		int plainLength;
 		
 		try {
+			// decrypted in place, the plain text starts at the beginning of the buffer
 			Cipher cipher=Cipher.getInstance("AES/CBC/NoPadding");
-			cipher.init(Cipher.DECRYPT_MODE,new SecretKeySpec(password,"AES"),new IvParameterSpec(iv));
-			byte[]buf=cipher.doFinal(cipherText);
-			int len=((buf[0]&0xFF)<<24)|
-					((buf[1]&0xFF)<<16)|
-					((buf[2]&0xFF)<<8)|
-					(buf[3]&0xFF);
-			
-			return Arrays.copyOfRange(buf,4,4+len);
+			cipher.init(Cipher.DECRYPT_MODE,new SecretKeySpec(password,"AES"),new IvParameterSpec(cipherText,0,16));
+			plainLength=cipher.doFinal(cipherText,16,cipherText.length-16,cipherText,0);
 		} catch(Exception e) {
 			throw new RuntimeException(e);
 		}
+		
+		// the trailing 16 bytes still hold cipher text, only the first plainLength bytes are plain text
+		return unwrap(cipherText,0,plainLength);
+	}
+	
+	/**
+	 * Extracts the plain text from decrypted data (length, data and padding) and decompresses it, if necessary
+	 * 
+	 * @param buf the decrypted data
+	 * @param offset the offset of the length
+	 * @param end the end of the decrypted data (exclusive)
+	 * 
+	 * @return the plain text
+	 */
+	private byte[]unwrap(byte[]buf,int offset,int end) {
+		if(offset+4>end)
+			throw new IllegalArgumentException("Missing data length");
+		
+		int len=((buf[offset]&0xFF)<<24)|
+				((buf[offset+1]&0xFF)<<16)|
+				((buf[offset+2]&0xFF)<<8)|
+				(buf[offset+3]&0xFF);
+		
+		if(len>=0) {
+			if(len>end-offset-4)
+				throw new IllegalArgumentException("Invalid data length: "+len);
+			
+			return Arrays.copyOfRange(buf,offset+4,offset+4+len);
+		}
+		
+		len&=0x7FFFFFFF;
+		
+		if(len<4||len>end-offset-4)
+			throw new IllegalArgumentException("Invalid compressed data length: "+len);
+		
+		int rawLength=((buf[offset+4]&0xFF)<<24)|
+				((buf[offset+5]&0xFF)<<16)|
+				((buf[offset+6]&0xFF)<<8)|
+				(buf[offset+7]&0xFF);
+		
+		if(rawLength<0||rawLength>maxPacketLength)
+			throw new IllegalArgumentException("Decompressed data too large: "+rawLength+" (max. "+maxPacketLength+")");
+		
+		Inflater inflater=INFLATERS.poll();
+		
+		if(inflater==null)
+			inflater=new Inflater();
+		
+		try {
+			byte[]raw=new byte[rawLength];
+			
+			inflater.setInput(buf,offset+8,len-4);
+			
+			int n=0;
+			
+			while(n<rawLength&&!inflater.finished()&&!inflater.needsInput())
+				n+=inflater.inflate(raw,n,rawLength-n);
+			
+			if(n!=rawLength||!inflater.finished()&&inflater.inflate(new byte[1])!=0)
+				throw new IllegalArgumentException("Decompressed data does not match its length: "+rawLength);
+			
+			return raw;
+		} catch(DataFormatException e) {
+			throw new IllegalArgumentException("Invalid compressed data",e);
+		} finally {
+			inflater.reset();
+			INFLATERS.offer(inflater);
+		}
+	}
+	
+	/**
+	 * @param plainText the data to be compressed
+	 * 
+	 * @return the compressed data (zlib format), or {@code null} if it would not be smaller than {@code plainText}
+	 */
+	private static byte[]compress(byte[]plainText) {
+		// the compressed data is preceded by the uncompressed length
+		int max=plainText.length-4;
+		
+		if(max<=0)
+			return null;
+		
+		Deflater deflater=DEFLATERS.poll();
+		
+		if(deflater==null)
+			deflater=new Deflater(Deflater.BEST_SPEED);
+		
+		try {
+			byte[]buf=new byte[max];
+			
+			deflater.setInput(plainText);
+			deflater.finish();
+			
+			int n=0;
+			
+			while(n<max&&!deflater.finished())
+				n+=deflater.deflate(buf,n,max-n);
+			
+			return deflater.finished()?Arrays.copyOf(buf,n):null;
+		} finally {
+			deflater.reset();
+			DEFLATERS.offer(deflater);
+		}
 	}
 	
 	// STATIC METHODS
@@ -368,5 +1003,125 @@ public abstract class Bridge {
 	public static Bridge newUDP(int port,boolean useAES,String password,int maxPacketLength) {
 		return new BridgeImpl.UDP(port,useAES,password,maxPacketLength);
 	}
+
+	/**
+	 * Creates a new {@link BridgeImpl.Unix Unix Domain Socket-Bridge}<br><br>
+	 * 
+	 * see {@link Bridge#Bridge(int, boolean, String, int)}<br>
+	 * see {@link BridgeImpl.Unix#Unix(String, boolean, String, int)}
+	 * 
+	 * @param path the path of the socket file
+	 * 
+	 * @return Unix Domain Socket-based {@link Bridge}
+	 */
+	public static Bridge newUnix(String path) {
+		return newUnix(path,false,null,65535);
+	}
+	/**
+	 * Creates a new {@link BridgeImpl.Unix Unix Domain Socket-Bridge}<br><br>
+	 * 
+	 * see {@link Bridge#Bridge(int, boolean, String, int)}<br>
+	 * see {@link BridgeImpl.Unix#Unix(String, boolean, String, int)}
+	 * 
+	 * @param path the path of the socket file
+	 * @param maxPacketLength the max. length of a single {@link Packet}
+	 * 
+	 * @return Unix Domain Socket-based {@link Bridge}
+	 */
+	public static Bridge newUnix(String path,int maxPacketLength) {
+		return newUnix(path,false,null,maxPacketLength);
+	}
+	/**
+	 * Creates a new {@link BridgeImpl.Unix Unix Domain Socket-Bridge}<br><br>
+	 * 
+	 * see {@link Bridge#Bridge(int, boolean, String, int)}<br>
+	 * see {@link BridgeImpl.Unix#Unix(String, boolean, String, int)}
+	 * 
+	 * @param path the path of the socket file
+	 * @param useAES whether or not AES-256-CBC should be used. requires {@code password}
+	 * @param password the password to be used. Required by AES
+	 * 
+	 * @return Unix Domain Socket-based {@link Bridge}
+	 */
+	public static Bridge newUnix(String path,boolean useAES,String password) {
+		return newUnix(path,useAES,password,65535);
+	}
+	/**
+	 * Creates a new {@link BridgeImpl.Unix Unix Domain Socket-Bridge}<br><br>
+	 * 
+	 * see {@link Bridge#Bridge(int, boolean, String, int)}<br>
+	 * see {@link BridgeImpl.Unix#Unix(String, boolean, String, int)}
+	 * 
+	 * @param path the path of the socket file
+	 * @param useAES whether or not AES-256-CBC should be used. requires {@code password}
+	 * @param password the password to be used. Required by AES
+	 * @param maxPacketLength the max. length of a single {@link Packet}
+	 * 
+	 * @return Unix Domain Socket-based {@link Bridge}
+	 */
+	public static Bridge newUnix(String path,boolean useAES,String password,int maxPacketLength) {
+		return new BridgeImpl.Unix(path,useAES,password,maxPacketLength);
+	}
+
+	/**
+	 * Creates a new {@link BridgeImpl.SharedMemory Shared Memory-Bridge} with 16 slots<br><br>
+	 * 
+	 * see {@link Bridge#Bridge(int, boolean, String, int)}<br>
+	 * see {@link BridgeImpl.SharedMemory#SharedMemory(String, int, boolean, String, int)}
+	 * 
+	 * @param path the path of the memory-mapped file, e.g. {@code /dev/shm/phpjava}
+	 * 
+	 * @return Shared Memory-based {@link Bridge}
+	 */
+	public static Bridge newSharedMemory(String path) {
+		return newSharedMemory(path,16,false,null,65535);
+	}
+	/**
+	 * Creates a new {@link BridgeImpl.SharedMemory Shared Memory-Bridge}<br><br>
+	 * 
+	 * see {@link Bridge#Bridge(int, boolean, String, int)}<br>
+	 * see {@link BridgeImpl.SharedMemory#SharedMemory(String, int, boolean, String, int)}
+	 * 
+	 * @param path the path of the memory-mapped file, e.g. {@code /dev/shm/phpjava}
+	 * @param slots the max. number of concurrent requests
+	 * 
+	 * @return Shared Memory-based {@link Bridge}
+	 */
+	public static Bridge newSharedMemory(String path,int slots) {
+		return newSharedMemory(path,slots,false,null,65535);
+	}
+	/**
+	 * Creates a new {@link BridgeImpl.SharedMemory Shared Memory-Bridge}<br><br>
+	 * 
+	 * see {@link Bridge#Bridge(int, boolean, String, int)}<br>
+	 * see {@link BridgeImpl.SharedMemory#SharedMemory(String, int, boolean, String, int)}
+	 * 
+	 * @param path the path of the memory-mapped file, e.g. {@code /dev/shm/phpjava}
+	 * @param slots the max. number of concurrent requests
+	 * @param useAES whether or not AES-256-CBC should be used. requires {@code password}
+	 * @param password the password to be used. Required by AES
+	 * 
+	 * @return Shared Memory-based {@link Bridge}
+	 */
+	public static Bridge newSharedMemory(String path,int slots,boolean useAES,String password) {
+		return newSharedMemory(path,slots,useAES,password,65535);
+	}
+	/**
+	 * Creates a new {@link BridgeImpl.SharedMemory Shared Memory-Bridge}<br><br>
+	 * 
+	 * see {@link Bridge#Bridge(int, boolean, String, int)}<br>
+	 * see {@link BridgeImpl.SharedMemory#SharedMemory(String, int, boolean, String, int)}
+	 * 
+	 * @param path the path of the memory-mapped file, e.g. {@code /dev/shm/phpjava}
+	 * @param slots the max. number of concurrent requests
+	 * @param useAES whether or not AES-256-CBC should be used. requires {@code password}
+	 * @param password the password to be used. Required by AES
+	 * @param maxPacketLength the max. length of a single {@link Packet} (= the size of a single slot)
+	 * 
+	 * @return Shared Memory-based {@link Bridge}
+	 */
+	public static Bridge newSharedMemory(String path,int slots,boolean useAES,String password,int maxPacketLength) {
+		return new BridgeImpl.SharedMemory(path,slots,useAES,password,maxPacketLength);
+	}
 	
 }
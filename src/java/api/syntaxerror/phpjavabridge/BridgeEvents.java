@@ -0,0 +1,212 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.net.SocketAddress;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * JDK Flight Recorder events emitted by {@link BridgeImpl} for every request:
+ * {@link RequestAccepted}, {@link FrameDecoded}, {@link HandlerInvoked} and {@link ResponseWritten}.<br>
+ * <br>
+ * The events are enabled by default and recorded like any other JFR event, e.g. via {@code -XX:StartFlightRecording}.
+ * If an event is not recorded, its fields are not computed.
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+final class BridgeEvents {
+	
+	private static final String CATEGORY="PHP-Java-Bridge";
+	
+	private BridgeEvents() {}
+	
+	/**
+	 * A frame has been read (the duration starts when its first byte arrived)
+	 */
+	@Name("api.syntaxerror.phpjavabridge.RequestAccepted")
+	@Label("Request Accepted")
+	@Category(CATEGORY)
+	@Description("A frame has been read from a client")
+	static class RequestAccepted extends Event {
+		
+		@Label("Packet-ID")
+		int packetID;
+		
+		@Label("Remote Address")
+		String remoteAddress;
+		
+		@Label("Frame Size")
+		@DataAmount
+		long frameSize;
+		
+		@Label("Flags")
+		int flags;
+		
+		void report(int pid,SocketAddress sender,long frameSize,int flags) {
+			if(!shouldCommit())
+				return;
+			
+			packetID=pid;
+			remoteAddress=String.valueOf(sender);
+			this.frameSize=frameSize;
+			this.flags=flags&0xFF;
+			commit();
+		}
+		
+	}
+	
+	/**
+	 * The data of a {@link Packet} has been decrypted and validated
+	 */
+	@Name("api.syntaxerror.phpjavabridge.FrameDecoded")
+	@Label("Frame Decoded")
+	@Category(CATEGORY)
+	@Description("The data of a Packet has been decrypted and validated")
+	static class FrameDecoded extends Event {
+		
+		@Label("Packet-ID")
+		int packetID;
+		
+		@Label("Encrypted Size")
+		@DataAmount
+		long encryptedSize;
+		
+		@Label("Decoded Size")
+		@DataAmount
+		long decodedSize;
+		
+		void report(int pid,long encryptedSize,long decodedSize) {
+			if(!shouldCommit())
+				return;
+			
+			packetID=pid;
+			this.encryptedSize=encryptedSize;
+			this.decodedSize=decodedSize;
+			commit();
+		}
+		
+	}
+	
+	/**
+	 * A {@link Packet} has been answered by a {@link PacketHandler} (or by the {@link ResponseCache} or a coalesced request)
+	 */
+	@Name("api.syntaxerror.phpjavabridge.HandlerInvoked")
+	@Label("Handler Invoked")
+	@Category(CATEGORY)
+	@Description("A Packet has been answered by a PacketHandler, the response cache or a coalesced request")
+	static class HandlerInvoked extends Event {
+		
+		@Label("Packet-ID")
+		int packetID;
+		
+		@Label("Remote Address")
+		String remoteAddress;
+		
+		@Label("Handler")
+		String handler;
+		
+		@Label("Trace ID")
+		String traceId;
+		
+		@Label("Request Size")
+		@DataAmount
+		long requestSize;
+		
+		@Label("Response Size")
+		@DataAmount
+		long responseSize;
+		
+		@Label("Succeeded")
+		boolean succeeded;
+		
+		void report(Bridge bridge,SocketAddress sender,Packet incoming,Packet outgoing) {
+			if(!shouldCommit())
+				return;
+			
+			PacketHandler h=bridge.handlers.getOrDefault(incoming.getPacketID(),bridge.handlers.get(-1));
+			
+			packetID=incoming.getPacketID();
+			remoteAddress=String.valueOf(sender);
+			handler=h==null?null:h.getClass().getName();
+			traceId=incoming.traceContext==null?null:incoming.traceContext.getTraceId();
+			requestSize=incoming.size();
+			responseSize=outgoing==null?0:outgoing.size();
+			succeeded=outgoing!=null;
+			commit();
+		}
+		
+	}
+	
+	/**
+	 * The answer has been sent to the client (including its streams)
+	 */
+	@Name("api.syntaxerror.phpjavabridge.ResponseWritten")
+	@Label("Response Written")
+	@Category(CATEGORY)
+	@Description("The answer has been sent to the client, including its streams")
+	static class ResponseWritten extends Event {
+		
+		@Label("Packet-ID")
+		int packetID;
+		
+		@Label("Remote Address")
+		String remoteAddress;
+		
+		@Label("Frame Size")
+		@DataAmount
+		long frameSize;
+		
+		@Label("Streams")
+		int streams;
+		
+		void report(int pid,SocketAddress sender,long frameSize,int streams) {
+			if(!shouldCommit())
+				return;
+			
+			packetID=pid;
+			remoteAddress=String.valueOf(sender);
+			this.frameSize=frameSize;
+			this.streams=streams;
+			commit();
+		}
+		
+	}
+	
+}
@@ -1,16 +1,51 @@
 package api.syntaxerror.phpjavabridge;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
@@ -45,7 +80,7 @@ import java.util.Arrays;
  * 
  * <hr>
  * 
- * This class contains the {@link Bridge}-implementations for {@link TCP} and {@link UDP}
+ * This class contains the {@link Bridge}-implementations for {@link TCP}, {@link UDP}, {@link Unix} and {@link SharedMemory}
  * 
  * @version 1.0
  * @author SyntaxError404, 2020
@@ -53,6 +88,709 @@ import java.util.Arrays;
 public class BridgeImpl {
 	
 	private BridgeImpl() {}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * Reads a single {@link Packet} from a stream-based connection ({@link TCP} or {@link Unix}),
+	 * passes it to the matching {@link PacketHandler} and writes the answer back to the client.<br>
+	 * <br>
+	 * The frame is read completely, even if it arrives in several segments.
+	 * The announced length is checked against {@link Bridge#maxPacketLength} before any memory is allocated.
+	 * 
+	 * @param bridge the {@link Bridge} which received the {@link Packet}
+	 * @param sender the client's address
+	 * @param in the connection's {@link InputStream}
+	 * @param out the connection's {@link OutputStream}
+	 * @param channel the connection's channel (used to send files, see {@link FileRegion}), or {@code null}
+	 * @param connection the state of the connection, or {@code null} if the connection doesn't persist
+	 * 
+	 * @return {@code false} if the connection was closed before another {@link Packet} was sent, {@code true} otherwise
+	 * 
+	 * @throws Exception if the {@link Packet} could not be processed
+	 */
+	static boolean serve(Bridge bridge,SocketAddress sender,InputStream in,OutputStream out,WritableByteChannel channel,Connection connection)throws Exception {
+		int pid=in.read();
+		
+		if(pid<0)
+			return false;
+		
+		if(connection!=null&&!connection.begin()) {
+			// the connection has been closed while the request arrived, it cannot be answered anymore
+			bridge.rejectedRequests.increment();
+			bridge.lateRequests.incrementAndGet();
+			return false;
+		}
+		
+		BridgeMetrics.PacketStats stats=BridgeMetrics.stats(bridge,pid);
+		long time=BridgeMetrics.start(stats);
+		
+		BridgeEvents.RequestAccepted accepted=new BridgeEvents.RequestAccepted();
+		accepted.begin();
+		
+		bridge.activeRequests.incrementAndGet();
+		
+		try {
+			byte[]header=in.readNBytes(5);
+			
+			if(header.length!=5)
+				throw new MalformedRequestException("Expected a 6 byte header, got "+(header.length+1)+" bytes instead");
+			
+			long length=readLength(header,1);
+			
+			if(length+6>bridge.maxPacketLength)
+				throw new MalformedRequestException("Incoming Packet too large: "+(length+6)+" (max. "+bridge.maxPacketLength+")");
+			
+			if(connection!=null)
+				connection.receive(6+length);
+			
+			byte[]buf=in.readNBytes((int)length);
+			
+			if(buf.length!=length)
+				throw new MalformedRequestException("Expected "+length+" bytes, got "+buf.length+" instead");
+			
+			if(connection!=null)
+				connection.received();
+			
+			if(stats!=null)
+				stats.request(6+length);
+			
+			BridgeMetrics.record(stats,BridgeMetrics.Stage.READ,time);
+			accepted.report(pid,sender,6+length,header[0]);
+			
+			if((header[0]&Bridge.FLAG_BATCH)!=0) {
+				byte[]data=batch(bridge,sender,pid,header[0],buf);
+				
+				BridgeEvents.ResponseWritten written=new BridgeEvents.ResponseWritten();
+				written.begin();
+				
+				if(connection!=null)
+					connection.send(data.length);
+				
+				time=BridgeMetrics.start(stats);
+				out.write(data);
+				out.flush();
+				BridgeMetrics.record(stats,BridgeMetrics.Stage.WRITE,time);
+				written.report(pid,sender,data.length,0);
+				
+				if(stats!=null)
+					stats.response(data.length);
+				
+				return true;
+			}
+			
+			StringDictionary dictionary=connection!=null&&(header[0]&Bridge.FLAG_DICTIONARY)!=0?connection.dictionary:null;
+			
+			try(Packet incoming=new Packet(pid)) {
+				incoming.littleEndian=(header[0]&Bridge.FLAG_LITTLE_ENDIAN)!=0;
+				incoming.dictionary=dictionary;
+				
+				decode(bridge,incoming,buf);
+				
+				ChunkInputStream previous=null;
+				
+				for(int i=0;i<incoming.streamCount;++i)
+					incoming.inputStreams.add(previous=new ChunkInputStream(bridge,in,connection,pid,previous));
+				
+				Packet outgoing=dispatch(bridge,sender,incoming);
+				
+				// unread chunks must not be mistaken for the next Packet
+				for(ChunkInputStream stream:incoming.inputStreams)
+					stream.close();
+				
+				boolean compress=(header[0]&Bridge.FLAG_COMPRESSION)!=0,
+						binary=(header[0]&Bridge.FLAG_BINARY)!=0&&!bridge.isUsingAES();
+				
+				time=BridgeMetrics.start(stats);
+				byte[]data=encode(bridge,outgoing,compress,dictionary);
+				time=BridgeMetrics.record(stats,BridgeMetrics.Stage.ENCRYPT,time);
+				
+				if(connection!=null)
+					connection.send(data.length);
+				
+				BridgeEvents.ResponseWritten written=new BridgeEvents.ResponseWritten();
+				written.begin();
+				
+				out.write(data);
+				
+				// the client only knows the new entries once the frame has been written
+				if(dictionary!=null)
+					dictionary.commit();
+				
+				for(Packet.StreamWriter writer:outgoing.outputStreams)
+					if(binary&&channel!=null&&writer instanceof FileRegion) {
+						out.flush();
+						((FileRegion)writer).transferTo(bridge,outgoing.getPacketID(),channel);
+					} else {
+						ChunkOutputStream stream=new ChunkOutputStream(bridge,out,outgoing.getPacketID(),compress,binary&&!compress);
+						
+						// if the writer fails, the end of the stream is not sent. The connection is closed instead,
+						// so the client cannot mistake the truncated stream for a complete one
+						writer.writeTo(stream);
+						stream.close();
+					}
+				
+				out.flush();
+				BridgeMetrics.record(stats,BridgeMetrics.Stage.WRITE,time);
+				written.report(outgoing.getPacketID(),sender,data.length,outgoing.outputStreams.size());
+				
+				if(stats!=null)
+					stats.response(data.length);
+			}
+		} catch(Exception|Error e) {
+			if(stats!=null)
+				stats.error();
+			
+			throw e;
+		} finally {
+			bridge.activeRequests.decrementAndGet();
+			
+			if(connection!=null)
+				connection.end();
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * Processes a {@link Packet} received by a datagram-based {@link Bridge} ({@link UDP} or {@link SharedMemory}).
+	 * Since there is no connection, streams ({@link Packet#readStream()}, {@link Packet#writeStream(Packet.StreamWriter)}) are not supported.
+	 * 
+	 * @param bridge the {@link Bridge} which received the {@link Packet}
+	 * @param sender the client's address
+	 * @param incoming the incoming {@link Packet} (ID and endianness already set)
+	 * @param buf the encrypted data of the incoming {@link Packet}
+	 * @param compress whether or not the client accepts compressed data
+	 * 
+	 * @return the encoded answer (including the 6 byte header)
+	 * 
+	 * @throws Exception if the {@link Packet} could not be processed
+	 */
+	static byte[]handle(Bridge bridge,SocketAddress sender,Packet incoming,byte[]buf,boolean compress)throws Exception {
+		decode(bridge,incoming,buf);
+		
+		if(incoming.streamCount>0)
+			throw new UnsupportedOperationException("Streams require a stream-based Bridge (TCP or Unix)");
+		
+		Packet outgoing=dispatch(bridge,sender,incoming);
+		
+		if(!outgoing.outputStreams.isEmpty())
+			throw new UnsupportedOperationException("Streams require a stream-based Bridge (TCP or Unix)");
+		
+		BridgeMetrics.PacketStats stats=BridgeMetrics.stats(bridge,incoming.getPacketID());
+		long time=BridgeMetrics.start(stats);
+		
+		byte[]data=encode(bridge,outgoing,compress);
+		
+		BridgeMetrics.record(stats,BridgeMetrics.Stage.ENCRYPT,time);
+		
+		return data;
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * Processes a complete frame received by a datagram-based {@link Bridge} ({@link UDP} or {@link SharedMemory})
+	 * and passes the encoded answer to {@code reply}. Streams are not supported (see {@link #handle(Bridge, SocketAddress, Packet, byte[], boolean)}).
+	 * 
+	 * @param bridge the {@link Bridge} which received the frame
+	 * @param sender the client's address
+	 * @param frame the buffer containing the frame
+	 * @param offset the offset of the frame
+	 * @param length the length of the frame
+	 * @param reply sends the answer back to the client
+	 * 
+	 * @throws Exception if the {@link Packet} could not be processed
+	 */
+	static void answer(Bridge bridge,SocketAddress sender,byte[]frame,int offset,int length,Reply reply)throws Exception {
+		try(InputStream in=new ByteArrayInputStream(frame,offset,length)) {
+			
+			int pid=in.read();
+			byte[]header=in.readNBytes(5);
+			
+			if(pid<0||header.length!=5)
+				throw new MalformedRequestException("Expected a 6 byte header, got "+length+" bytes instead");
+			
+			BridgeMetrics.PacketStats stats=BridgeMetrics.stats(bridge,pid);
+			long time=BridgeMetrics.start(stats);
+			
+			BridgeEvents.RequestAccepted accepted=new BridgeEvents.RequestAccepted();
+			accepted.begin();
+			
+			bridge.activeRequests.incrementAndGet();
+			
+			try {
+				long declared=readLength(header,1);
+				
+				if(declared+6>length)
+					throw new MalformedRequestException("Expected "+declared+" bytes, got "+(length-6)+" instead");
+				
+				if(stats!=null)
+					stats.request(6+declared);
+				
+				byte[]buf=in.readNBytes((int)declared);
+				byte[]data;
+				
+				BridgeMetrics.record(stats,BridgeMetrics.Stage.READ,time);
+				accepted.report(pid,sender,6+declared,header[0]);
+				
+				if((header[0]&Bridge.FLAG_BATCH)!=0)
+					data=batch(bridge,sender,pid,header[0],buf);
+				
+				else try(Packet incoming=new Packet(pid)) {
+					incoming.littleEndian=(header[0]&Bridge.FLAG_LITTLE_ENDIAN)!=0;
+					data=handle(bridge,sender,incoming,buf,(header[0]&Bridge.FLAG_COMPRESSION)!=0);
+				}
+				
+				time=BridgeMetrics.start(stats);
+				
+				BridgeEvents.ResponseWritten written=new BridgeEvents.ResponseWritten();
+				written.begin();
+				
+				reply.send(data);
+				
+				BridgeMetrics.record(stats,BridgeMetrics.Stage.WRITE,time);
+				written.report(pid,sender,data.length,0);
+				
+				if(stats!=null)
+					stats.response(data.length);
+			} catch(Exception|Error e) {
+				if(stats!=null)
+					stats.error();
+				
+				throw e;
+			} finally {
+				bridge.activeRequests.decrementAndGet();
+			}
+		}
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * Sends the answer of a datagram-based {@link Bridge} (see {@link BridgeImpl#answer(Bridge, SocketAddress, byte[], int, int, Reply)})
+	 */
+	@FunctionalInterface
+	static interface Reply {
+		
+		/**
+		 * @param data the encoded answer (including the 6 byte header)
+		 * 
+		 * @throws IOException if the answer could not be sent
+		 */
+		void send(byte[]data)throws IOException;
+		
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * Processes a batch of {@link Packet}s. The decrypted data of a batch is a sequence of
+	 * <pre>
+	 * &lt;int8 Packet-ID&gt; &lt;int32 length&gt; &lt;data&gt;
+	 * </pre>
+	 * The {@link Packet}s are handled by {@link Bridge#batchExecutor}, the answers are sent back as a single batch in the same order.
+	 * Streams are not supported.
+	 * 
+	 * @param bridge the {@link Bridge} which received the batch
+	 * @param sender the client's address
+	 * @param pid the Packet-ID of the batch itself
+	 * @param flags the flags of the batch
+	 * @param buf the encrypted data of the batch
+	 * 
+	 * @return the encoded answer (including the 6 byte header)
+	 * 
+	 * @throws Exception if the batch could not be processed
+	 */
+	static byte[]batch(Bridge bridge,SocketAddress sender,int pid,int flags,byte[]buf)throws Exception {
+		BridgeMetrics.PacketStats stats=BridgeMetrics.stats(bridge,pid);
+		long time=BridgeMetrics.start(stats);
+		
+		buf=bridge.decrypt(buf);
+		
+		BridgeMetrics.record(stats,BridgeMetrics.Stage.DECRYPT,time);
+		
+		List<Packet>requests=new ArrayList<>();
+		
+		try {
+			for(int offset=0;offset<buf.length;) {
+				if(offset+5>buf.length)
+					throw new MalformedRequestException("Expected a 5 byte batch entry header, got "+(buf.length-offset)+" bytes instead");
+				
+				int id=buf[offset]&0xFF;
+				long length=readLength(buf,offset+1);
+				
+				offset+=5;
+				
+				if(length>buf.length-offset)
+					throw new MalformedRequestException("Expected "+length+" bytes, got "+(buf.length-offset)+" instead");
+				
+				if(requests.size()>=bridge.maxOutstandingRequests) {
+					bridge.rejectedRequests.increment();
+					throw new MalformedRequestException("Too many Packets in batch (max. "+bridge.maxOutstandingRequests+")");
+				}
+				
+				byte[]data=Arrays.copyOfRange(buf,offset,offset+(int)length);
+				offset+=length;
+				
+				Packet incoming=new Packet(id);
+				incoming.littleEndian=(flags&Bridge.FLAG_LITTLE_ENDIAN)!=0;
+				requests.add(incoming);
+				
+				data=TraceContext.extract(incoming,data);
+				
+				BridgeMetrics.PacketStats entry=BridgeMetrics.stats(bridge,id);
+				long validated=BridgeMetrics.start(entry);
+				
+				if(entry!=null)
+					entry.request(5+length);
+				
+				incoming.validate(data);
+				BridgeMetrics.record(entry,BridgeMetrics.Stage.VALIDATE,validated);
+				incoming.data=data;
+				incoming.size=data.length;
+				
+				if(incoming.streamCount>0)
+					throw new UnsupportedOperationException("Streams are not supported in batches");
+			}
+			
+			List<CompletableFuture<Packet>>responses=new ArrayList<>(requests.size());
+			
+			for(Packet incoming:requests)
+				responses.add(CompletableFuture.supplyAsync(()->dispatch(bridge,sender,incoming),bridge.batchExecutor));
+			
+			// wait for all handlers before failing, since the incoming Packets are closed afterwards
+			List<Packet>outgoings=new ArrayList<>(responses.size());
+			Exception failure=null;
+			
+			for(int i=0;i<responses.size();++i)
+				try {
+					outgoings.add(responses.get(i).join());
+				} catch(CompletionException e) {
+					BridgeMetrics.PacketStats entry=BridgeMetrics.stats(bridge,requests.get(i).getPacketID());
+					
+					if(entry!=null)
+						entry.error();
+					
+					if(failure==null)
+						failure=e.getCause() instanceof Exception?(Exception)e.getCause():e;
+				}
+			
+			if(failure!=null)
+				throw failure;
+			
+			ByteArrayOutputStream out=new ByteArrayOutputStream();
+			
+			for(Packet outgoing:outgoings) {
+				if(!outgoing.outputStreams.isEmpty())
+					throw new UnsupportedOperationException("Streams are not supported in batches");
+				
+				int length=outgoing.size();
+				
+				out.write(outgoing.getPacketID());
+				out.write(new byte[] {
+					(byte)((length>>24)&0xFF),
+					(byte)((length>>16)&0xFF),
+					(byte)((length>>8)&0xFF),
+					(byte)(length&0xFF)
+				});
+				out.write(outgoing.data,0,length);
+				
+				BridgeMetrics.PacketStats entry=BridgeMetrics.stats(bridge,outgoing.getPacketID());
+				
+				if(entry!=null)
+					entry.response(5+length);
+			}
+			
+			time=BridgeMetrics.start(stats);
+			
+			byte[]data=frame(bridge,pid,Bridge.FLAG_BATCH,bridge.encrypt(out.toByteArray(),(flags&Bridge.FLAG_COMPRESSION)!=0));
+			
+			BridgeMetrics.record(stats,BridgeMetrics.Stage.ENCRYPT,time);
+			
+			return data;
+		} finally {
+			for(Packet incoming:requests)
+				incoming.close();
+		}
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * Decrypts and validates the data of an incoming {@link Packet}
+	 * 
+	 * @param bridge the {@link Bridge} which received the {@link Packet}
+	 * @param incoming the incoming {@link Packet} (ID and endianness already set)
+	 * @param buf the encrypted data of the incoming {@link Packet}
+	 * 
+	 * @throws MalformedRequestException if the request is malformed
+	 */
+	static void decode(Bridge bridge,Packet incoming,byte[]buf)throws MalformedRequestException {
+		BridgeMetrics.PacketStats stats=BridgeMetrics.stats(bridge,incoming.getPacketID());
+		long time=BridgeMetrics.start(stats);
+		
+		BridgeEvents.FrameDecoded decoded=new BridgeEvents.FrameDecoded();
+		decoded.begin();
+		
+		int encryptedSize=buf.length;
+		buf=TraceContext.extract(incoming,bridge.decrypt(buf));
+		
+		time=BridgeMetrics.record(stats,BridgeMetrics.Stage.DECRYPT,time);
+		incoming.validate(buf);
+		BridgeMetrics.record(stats,BridgeMetrics.Stage.VALIDATE,time);
+		decoded.report(incoming.getPacketID(),encryptedSize,buf.length);
+		
+		incoming.data=buf;
+		incoming.size=buf.length;
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * Passes a decoded {@link Packet} to the matching {@link PacketHandler}, or answers it from the {@link ResponseCache}
+	 * or from an identical request being handled concurrently
+	 * 
+	 * @param bridge the {@link Bridge} which received the {@link Packet}
+	 * @param sender the client's address
+	 * @param incoming the decoded {@link Packet}
+	 * 
+	 * @return the answer
+	 */
+	static Packet dispatch(Bridge bridge,SocketAddress sender,Packet incoming) {
+		BridgeMetrics.PacketStats stats=BridgeMetrics.stats(bridge,incoming.getPacketID());
+		long time=BridgeMetrics.start(stats);
+		
+		BridgeEvents.HandlerInvoked invoked=new BridgeEvents.HandlerInvoked();
+		invoked.begin();
+		
+		if(incoming.traceContext!=null)
+			return trace(bridge,sender,incoming,stats,time,invoked);
+		
+		Packet outgoing=null;
+		
+		try {
+			return outgoing=dispatch0(bridge,sender,incoming);
+		} finally {
+			BridgeMetrics.record(stats,BridgeMetrics.Stage.HANDLE,time);
+			invoked.report(bridge,sender,incoming,outgoing);
+		}
+	}
+	
+	/**
+	 * Dispatches a traced {@link Packet}: its {@link TraceContext} is made available to the {@link PacketHandler} via {@link TraceContext#current()}
+	 * and its {@link Span} is exported afterwards
+	 */
+	private static Packet trace(Bridge bridge,SocketAddress sender,Packet incoming,BridgeMetrics.PacketStats stats,long time,BridgeEvents.HandlerInvoked invoked) {
+		TraceContext previous=TraceContext.enter(incoming.traceContext);
+		Instant start=Instant.now();
+		long startNanos=System.nanoTime();
+		
+		Packet outgoing=null;
+		Throwable error=null;
+		
+		try {
+			return outgoing=dispatch0(bridge,sender,incoming);
+		} catch(RuntimeException|Error e) {
+			error=e;
+			throw e;
+		} finally {
+			TraceContext.restore(previous);
+			
+			BridgeMetrics.record(stats,BridgeMetrics.Stage.HANDLE,time);
+			invoked.report(bridge,sender,incoming,outgoing);
+			
+			SpanExporter exporter=bridge.spanExporter;
+			
+			if(exporter!=null&&incoming.traceContext.isSampled())
+				exporter.export(new Span(incoming.traceContext,incoming.getPacketID(),sender,start,Duration.ofNanos(System.nanoTime()-startNanos),error));
+		}
+	}
+	
+	private static Packet dispatch0(Bridge bridge,SocketAddress sender,Packet incoming) {
+		ResponseCache cache=bridge.responseCache;
+		int pid=incoming.getPacketID();
+		
+		// dictionary strings mean different things on different connections
+		boolean shareable=incoming.streamCount==0&&!incoming.usesDictionary,
+				cached=shareable&&cache!=null&&cache.isEnabled(pid),
+				coalesced=shareable&&bridge.coalescedPIDs.contains(pid);
+		
+		if(!cached&&!coalesced)
+			return invoke(bridge,sender,incoming);
+		
+		RequestKey key=new RequestKey(pid,incoming.littleEndian?Bridge.FLAG_LITTLE_ENDIAN:0,incoming.data,incoming.size());
+		Packet outgoing=cached?cache.get(key):null;
+		
+		if(outgoing!=null)
+			return outgoing;
+		
+		outgoing=coalesced?coalesce(bridge,sender,incoming,key):invoke(bridge,sender,incoming);
+		
+		if(cached)
+			outgoing=cache.put(key,outgoing);
+		
+		return outgoing;
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * Calls the matching {@link PacketHandler}, unless an identical request is already being handled.
+	 * In that case, a frozen copy of the running call's response is shared (see {@link Bridge#enableCoalescing(int...)} and {@link Packet#freeze()}).
+	 * 
+	 * @param bridge the {@link Bridge} which received the {@link Packet}
+	 * @param sender the client's address
+	 * @param incoming the decoded {@link Packet}
+	 * @param key the request
+	 * 
+	 * @return the answer
+	 */
+	static Packet coalesce(Bridge bridge,SocketAddress sender,Packet incoming,RequestKey key) {
+		CompletableFuture<Packet>future=new CompletableFuture<>(),
+				running=bridge.inFlight.putIfAbsent(key,future);
+		
+		if(running!=null) {
+			Packet shared;
+			
+			try {
+				shared=running.join();
+			} catch(CompletionException e) {
+				if(e.getCause() instanceof RuntimeException)
+					throw (RuntimeException)e.getCause();
+				
+				throw e;
+			}
+			
+			// streams can only be sent once
+			if(shared==null||!shared.outputStreams.isEmpty())
+				return invoke(bridge,sender,incoming);
+			
+			return shared;
+		}
+		
+		try {
+			Packet outgoing=invoke(bridge,sender,incoming);
+			
+			// the waiters get an immutable copy (including the byte order), taken before the leader's Packets are closed
+			future.complete(outgoing==null||!outgoing.outputStreams.isEmpty()?outgoing:outgoing.freeze());
+			return outgoing;
+		} catch(RuntimeException|Error e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			bridge.inFlight.remove(key,future);
+		}
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * Calls the matching {@link PacketHandler}, bypassing the {@link ResponseCache}
+	 * 
+	 * @param bridge the {@link Bridge} which received the {@link Packet}
+	 * @param sender the client's address
+	 * @param incoming the decoded {@link Packet}
+	 * 
+	 * @return the answer
+	 */
+	static Packet invoke(Bridge bridge,SocketAddress sender,Packet incoming) {
+		PacketHandler handler=bridge.handlers.getOrDefault(incoming.getPacketID(),bridge.handlers.getOrDefault(-1,null));
+		
+		if(handler==null)
+			throw new UnsupportedOperationException("Cannot process Packet: No handler for ID #"+incoming.getPacketID()+" found");
+		
+		return handler.handle(sender,incoming);
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * @param bridge the {@link Bridge} sending the {@link Packet}
+	 * @param outgoing the {@link Packet} to be sent
+	 * @param compress whether or not the client accepts compressed data
+	 * 
+	 * @return the encrypted {@link Packet}, including the 6 byte header
+	 * 
+	 * @throws MalformedRequestException if the {@link Packet} exceeds {@link Bridge#maxPacketLength}
+	 */
+	static byte[]encode(Bridge bridge,Packet outgoing,boolean compress)throws MalformedRequestException {
+		if(outgoing instanceof FrozenPacket)
+			return ((FrozenPacket)outgoing).encode(bridge,compress);
+		
+		return frame(bridge,outgoing.getPacketID(),0,bridge.encrypt(Arrays.copyOf(outgoing.data,outgoing.size()),compress));
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * @param bridge the {@link Bridge} sending the {@link Packet}
+	 * @param outgoing the {@link Packet} to be sent
+	 * @param compress whether or not the client accepts compressed data
+	 * @param dictionary the connection's {@link StringDictionary}, or {@code null} if the client doesn't use one
+	 * 
+	 * @return the encrypted {@link Packet}, including the 6 byte header
+	 * 
+	 * @throws MalformedRequestException if the {@link Packet} exceeds {@link Bridge#maxPacketLength}
+	 */
+	static byte[]encode(Bridge bridge,Packet outgoing,boolean compress,StringDictionary dictionary)throws MalformedRequestException {
+		if(dictionary==null||outgoing.stringCount==0)
+			return encode(bridge,outgoing,compress);
+		
+		return frame(bridge,outgoing.getPacketID(),0,bridge.encrypt(dictionary.encode(outgoing),compress));
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * Prepends the 6 byte header
+	 * 
+	 * @param bridge the {@link Bridge} sending the frame
+	 * @param pid the Packet-ID
+	 * @param flags the flags (see {@link Bridge#FLAG_LITTLE_ENDIAN})
+	 * @param data the encrypted data
+	 * 
+	 * @return the frame
+	 * 
+	 * @throws MalformedRequestException if the frame exceeds {@link Bridge#maxPacketLength}
+	 */
+	static byte[]frame(Bridge bridge,int pid,int flags,byte[]data)throws MalformedRequestException {
+		int len=data.length;
+		
+		if(len+6>bridge.maxPacketLength)
+			throw new MalformedRequestException("Outgoing Packet too large: "+(len+6)+" (max. "+bridge.maxPacketLength+")");
+		
+		byte[]finalData=new byte[len+6];
+		
+		finalData[0]=(byte)(pid&0xFF);
+		finalData[1]=(byte)flags;
+		
+		finalData[2]=(byte)((len>>24)&0xFF);
+		finalData[3]=(byte)((len>>16)&0xFF);
+		finalData[4]=(byte)((len>>8)&0xFF);
+		finalData[5]=(byte)(len&0xFF);
+		
+		System.arraycopy(data,0,finalData,6,len);
+		
+		return finalData;
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * @param buf the buffer containing the length
+	 * @param offset the offset of the length's first byte
+	 * 
+	 * @return the unsigned 32 bit Big Endian length starting at {@code offset}
+	 */
+	static long readLength(byte[]buf,int offset) {
+		return	((buf[offset]&0xFFL)<<24)|
+				((buf[offset+1]&0xFFL)<<16)|
+				((buf[offset+2]&0xFFL)<<8)|
+				(buf[offset+3]&0xFFL);
+	}
 
 	/**
 	 * The <b>Transmission Control Protocol</b> (TCP) is a connection-based data transmission protocol<br>
@@ -81,7 +819,7 @@ public class BridgeImpl {
 			super(port,useAES,password,maxPacketLength);
 			
 			try {
-				socket=new ServerSocket(port,50,InetAddress.getLocalHost());
+				open();
 			} catch(IOException e) {
 				throw new UncheckedIOException(e);
 			}
@@ -89,6 +827,29 @@ public class BridgeImpl {
 			thread=new ServerThread(this);
 		}
 		
+		@Override
+		void open()throws IOException {
+			if(socket!=null&&!socket.isClosed())
+				return;
+			
+			// bound via a channel, so the accepted sockets have channels, too (see FileRegion)
+			socket=ServerSocketChannel.open().socket();
+			socket.setReuseAddress(true);
+			socket.bind(new InetSocketAddress(InetAddress.getLocalHost(),port),50);
+		}
+		
+		@Override
+		Thread newServerThread() {
+			return new ServerThread(this);
+		}
+		
+		@Override
+		void closeServer() {
+			try {
+				socket.close();
+			} catch(IOException e) {}
+		}
+		
 		static class ServerThread extends Thread {
 			
 			private TCP bridge;
@@ -99,9 +860,14 @@ public class BridgeImpl {
 			}
 			
 			public void run() {
-				while(true)
+				while(bridge.running)
 					try {
-						new ClientHandler(bridge,bridge.socket.accept()).start();
+						Socket client=bridge.socket.accept();
+						Connection connection=new Connection(bridge,client);
+						
+						// registered before the handler starts, so shutdown() cannot miss it
+						bridge.connections.add(connection);
+						new ClientHandler(bridge,client,connection).start();
 					} catch(Exception e) {
 						e=new SocketFailureException(e);
 					}
@@ -113,66 +879,28 @@ public class BridgeImpl {
 			
 			private TCP bridge;
 			private Socket client;
+			private Connection connection;
 			
-			public ClientHandler(TCP bridge,Socket client) {
+			public ClientHandler(TCP bridge,Socket client,Connection connection) {
 				this.bridge=bridge;
 				this.client=client;
+				this.connection=connection;
 				setName("ClientHandler PHP-Java [TCP] @"+bridge.socket.getLocalSocketAddress());
 			}
 			
 			@Override
 			public void run() {
-				try(InputStream in=client.getInputStream();
-					OutputStream out=client.getOutputStream();
-					Packet incoming=new Packet(in.read()&0xFF)) {
-					
-					incoming.littleEndian=in.read()!=0;
-					int length=	(in.read()>>>24)|
-								(in.read()>>>16)|
-								(in.read()>>>8)|
-								in.read();
-					
-					byte[]buf=new byte[length];
+				bridge.handlerThreads.incrementAndGet();
+				connection.await();
+				
+				try(InputStream in=new BufferedInputStream(client.getInputStream());
+					OutputStream out=client.getOutputStream()) {
 					
-					int bytesRead=in.read(buf);
-					
-					if(bytesRead+6>bridge.maxPacketLength)
-						throw new MalformedRequestException("Incoming Packet too large: "+(bytesRead+6)+" (max. "+bridge.maxPacketLength+")");
-						
-					if(bytesRead!=length)
-						throw new MalformedRequestException("Expected "+length+" bytes, got "+bytesRead+" instead");
-					
-					buf=bridge.decrypt(buf);
-					
-					incoming.validate(buf);
-					incoming.data=buf;
-					incoming.size=buf.length;
-					
-					PacketHandler handler=bridge.handlers.getOrDefault(incoming.getPacketID(),bridge.handlers.getOrDefault(-1,null));
-					
-					if(handler==null)
-						throw new UnsupportedOperationException("Cannot process Packet: No handler for ID #"+incoming.getPacketID()+" found");
-					
-					Packet outgoing=handler.handle(client.getRemoteSocketAddress(),incoming);
-					
-					byte[]data=bridge.encrypt(Arrays.copyOf(outgoing.data,outgoing.size()));
-					
-					out.write(outgoing.getPacketID()&0xFF);
-					out.write(0);
-					
-					if(data.length+6>bridge.maxPacketLength)
-						throw new MalformedRequestException("Outgoing Packet too large: "+(data.length+6)+" (max. "+bridge.maxPacketLength+")");
-					
-					int len=data.length;
-					
-					out.write((len>>24)&0xFF);
-					out.write((len>>16)&0xFF);
-					out.write((len>>8)&0xFF);
-					out.write(len&0xFF);
-					
-					out.write(data);
-					out.flush();
+					while(bridge.running&&serve(bridge,client.getRemoteSocketAddress(),in,out,client.getChannel(),connection));
 				} catch(Exception e) {
+					if(connection.isClosed()) // closed by shutdown()
+						return;
+					
 					if(bridge.exceptionHandler!=null)
 						bridge.exceptionHandler.uncaughtException(Thread.currentThread(),e);
 					
@@ -182,6 +910,13 @@ public class BridgeImpl {
 					
 					throw new RuntimeException(e);
 				} finally {
+					connection.close();
+					bridge.connections.remove(connection);
+					bridge.handlerThreads.decrementAndGet();
+					
+					if(connection.getExpired()!=null&&bridge.exceptionHandler!=null)
+						bridge.exceptionHandler.uncaughtException(this,new SocketTimeoutException(connection.getExpired()));
+					
 					System.gc();
 				}
 			}
@@ -199,11 +934,19 @@ public class BridgeImpl {
 	 * 	<li>unreliable</li>
 	 * </ul>
 	 * <br>
+	 * Packets larger than a single datagram can be sent as fragments; lost fragments are requested again (see {@link Fragmentation})<br>
+	 * <br>
 	 * see the <a href=https://en.wikipedia.org/wiki/Transmission_Control_Protocol>Wikipedia Article</a>
 	 */
 	public static class UDP extends Bridge {
 
+		/** how often (in milliseconds) the server thread checks for stalled and expired fragmented messages */
+		static final int TICK=10;
+		
 		protected DatagramSocket socket;
+		final Fragmentation fragmentation;
+		/** the number of datagrams being handled per client (see {@link #setMaxOutstandingRequests(int)}) */
+		private final Map<SocketAddress,Integer>outstanding=new ConcurrentHashMap<>();
 		
 		/**
 		 * Instantiates a new UDP-based PHP-Java-Bridge
@@ -216,8 +959,10 @@ public class BridgeImpl {
 		public UDP(int port,boolean useAES,String password,int maxPacketLength) {
 			super(port,useAES,password,maxPacketLength);
 			
+			fragmentation=new Fragmentation(this);
+			
 			try {
-				socket=new DatagramSocket(port,InetAddress.getLocalHost());
+				open();
 			} catch(IOException e) {
 				throw new UncheckedIOException(e);
 			}
@@ -225,6 +970,82 @@ public class BridgeImpl {
 			thread=new ServerThread(this);
 		}
 		
+		@Override
+		void open()throws IOException {
+			if(socket!=null&&!socket.isClosed())
+				return;
+			
+			socket=new DatagramSocket(port,InetAddress.getLocalHost());
+			socket.setSoTimeout(TICK);
+		}
+		
+		@Override
+		Thread newServerThread() {
+			return new ServerThread(this);
+		}
+		
+		/** the socket is still needed to answer in-flight requests, the Server-Thread stops within {@link #TICK} milliseconds */
+		@Override
+		void closeTransport() {
+			socket.close();
+		}
+		
+		private boolean acquire0(SocketAddress client) {
+			if(outstanding.merge(client,1,Integer::sum)<=maxOutstandingRequests)
+				return true;
+			
+			release0(client);
+			rejectedRequests.increment();
+			
+			if(exceptionHandler!=null)
+				exceptionHandler.uncaughtException(Thread.currentThread(),new MalformedRequestException("Too many outstanding requests from "+client+" (max. "+maxOutstandingRequests+")"));
+			
+			return false;
+		}
+		
+		private void release0(SocketAddress client) {
+			outstanding.computeIfPresent(client,(k,n)->n>1?n-1:null);
+		}
+		
+		/**
+		 * Sets the max. number of data bytes per fragment when sending fragmented responses.<br>
+		 * Responses are only fragmented if the request was fragmented, too (see {@link Fragmentation}).<br>
+		 * The default (1400) fits into a single Ethernet frame.
+		 * 
+		 * @param fragmentSize the fragment size in range [1;65493]
+		 */
+		public void setFragmentSize(int fragmentSize) {
+			if(fragmentSize<1||fragmentSize>65507-Fragmentation.HEADER_SIZE)
+				throw new IllegalArgumentException("Fragment size out of range [1;"+(65507-Fragmentation.HEADER_SIZE)+"]: "+fragmentSize);
+			
+			fragmentation.fragmentSize=fragmentSize;
+		}
+		
+		/**
+		 * Sets the time after which incomplete fragmented requests are discarded. default 2000 ms
+		 * 
+		 * @param millis the timeout in milliseconds
+		 */
+		public void setReassemblyTimeout(long millis) {
+			if(millis<1)
+				throw new IllegalArgumentException("Reassembly timeout must be positive: "+millis);
+			
+			fragmentation.reassemblyTimeout=millis;
+		}
+		
+		/**
+		 * Sets the max. number of bytes buffered per client for incomplete requests and responses kept for retransmission.
+		 * default 4 MiB
+		 * 
+		 * @param maxBufferedBytes the max. number of bytes
+		 */
+		public void setMaxBufferedBytes(long maxBufferedBytes) {
+			if(maxBufferedBytes<1)
+				throw new IllegalArgumentException("Max. buffered bytes must be positive: "+maxBufferedBytes);
+			
+			fragmentation.maxBufferedBytes=maxBufferedBytes;
+		}
+		
 		static class ServerThread extends Thread {
 			
 			private UDP bridge;
@@ -235,17 +1056,47 @@ public class BridgeImpl {
 			}
 			
 			public void run() {
-				while(true)
+				int length=Math.min(bridge.maxPacketLength,65535);
+				long nextTick=System.currentTimeMillis()+TICK;
+				
+				while(bridge.running)
 					try {
-						System.out.println("Listening @ "+bridge.socket.getLocalSocketAddress());
-						DatagramPacket client=new DatagramPacket(new byte[bridge.maxPacketLength],bridge.maxPacketLength);
-						bridge.socket.receive(client);
+						DatagramPacket client=new DatagramPacket(new byte[length],length);
+						
+						try {
+							bridge.socket.receive(client);
+						} catch(SocketTimeoutException e) {
+							client=null;
+						}
 						
-						System.out.println("Client: "+client.getSocketAddress());
+						if(client!=null) {
+							int flags=client.getLength()>1?client.getData()[client.getOffset()+1]:0;
+							
+							if((flags&Bridge.FLAG_NACK)!=0)
+								bridge.fragmentation.nack(bridge.socket,client);
+							
+							else if((flags&Bridge.FLAG_FRAGMENT)!=0) {
+								Fragmentation.Message message=bridge.fragmentation.receive(bridge.socket,client);
+								
+								if(message!=null) {
+									if(bridge.acquire0(client.getSocketAddress())) {
+										byte[]frame=message.toFrame();
+										new ClientHandler(bridge,new DatagramPacket(frame,frame.length,client.getSocketAddress()),message.messageID,true).start();
+									} else bridge.fragmentation.discard(client.getSocketAddress(),message.messageID);
+								}
+							}
+							
+							else if(bridge.acquire0(client.getSocketAddress()))
+								new ClientHandler(bridge,client,0,false).start();
+						}
 						
-						new ClientHandler(bridge,client).start();
+						if(System.currentTimeMillis()>=nextTick) {
+							bridge.fragmentation.tick(bridge.socket);
+							nextTick=System.currentTimeMillis()+TICK;
+						}
 					} catch(Exception e) {
-						e=new SocketFailureException(e);
+						if(bridge.exceptionHandler!=null)
+							bridge.exceptionHandler.uncaughtException(this,new SocketFailureException(e));
 					}
 			}
 			
@@ -254,76 +1105,451 @@ public class BridgeImpl {
 		static class ClientHandler extends Thread {
 			
 			private UDP bridge;
+			/** the socket which received the request (the {@link UDP} might have been restarted in the meantime) */
+			private DatagramSocket socket;
 			private DatagramPacket client;
+			private int messageID;
+			private boolean fragmented;
 			
-			public ClientHandler(UDP bridge,DatagramPacket client) {
+			public ClientHandler(UDP bridge,DatagramPacket client,int messageID,boolean fragmented) {
 				this.bridge=bridge;
+				socket=bridge.socket;
 				this.client=client;
+				this.messageID=messageID;
+				this.fragmented=fragmented;
 				setName("ClientHandler PHP-Java [UDP] @"+bridge.socket.getLocalSocketAddress());
 			}
 			
 			@Override
 			public void run() {
-				try(InputStream in=new ByteArrayInputStream(client.getData());
-					Packet incoming=new Packet(in.read()&0xFF)) {
-					
-					incoming.littleEndian=in.read()!=0;
-					int length=	(in.read()>>>24)|
-								(in.read()>>>16)|
-								(in.read()>>>8)|
-								in.read();
-					
-					byte[]buf=new byte[length];
-					
-					int bytesRead=in.read(buf);
-					
-					if(bytesRead+6>bridge.maxPacketLength)
-						throw new MalformedRequestException("Incoming Packet too large: "+(bytesRead+6)+" (max. "+bridge.maxPacketLength+")");
+				bridge.handlerThreads.incrementAndGet();
+				
+				try {
+					answer(bridge,client.getSocketAddress(),client.getData(),client.getOffset(),client.getLength(),data->{
+						if(fragmented)
+							bridge.fragmentation.send(socket,client.getSocketAddress(),messageID,data);
 						
-					if(bytesRead!=length)
-						throw new MalformedRequestException("Expected "+length+" bytes, got "+bytesRead+" instead");
+						else {
+							DatagramPacket packet=new DatagramPacket(data,data.length,client.getSocketAddress());
+							socket.send(packet);
+						}
+					});
+				} catch(Exception e) {
+					if(socket.isClosed()) // dropped by shutdown()
+						return;
 					
-					buf=bridge.decrypt(buf);
+					if(bridge.exceptionHandler!=null)
+						bridge.exceptionHandler.uncaughtException(Thread.currentThread(),e);
 					
-					incoming.validate(buf);
-					incoming.data=buf;
-					incoming.size=buf.length;
+					throw new RuntimeException(e);
+				} finally {
+					// a no-op if the answer has been sent
+					if(fragmented)
+						bridge.fragmentation.discard(client.getSocketAddress(),messageID);
 					
-					PacketHandler handler=bridge.handlers.getOrDefault(incoming.getPacketID(),bridge.handlers.getOrDefault(-1,null));
+					bridge.release0(client.getSocketAddress());
+					bridge.handlerThreads.decrementAndGet();
+					System.gc();
+				}
+			}
+			
+		}
+		
+	}
+
+	/**
+	 * <b>Unix Domain Sockets</b> (AF_UNIX) are a connection-based inter-process communication mechanism<br>
+	 * <br>
+	 * Compared to {@link TCP}:
+	 * <ul>
+	 * 	<li>reliable data transmission</li>
+	 * 	<li>faster than TCP, because the network stack is bypassed</li>
+	 * 	<li>PHP and Java must run on the same host</li>
+	 * </ul>
+	 * <br>
+	 * see the <a href=https://en.wikipedia.org/wiki/Unix_domain_socket>Wikipedia Article</a>
+	 */
+	public static class Unix extends Bridge {
+		
+		protected Path path;
+		protected ServerSocketChannel socket;
+		
+		/**
+		 * Instantiates a new Unix Domain Socket-based PHP-Java-Bridge<br>
+		 * <br>
+		 * If there is a stale socket file at {@code path} (e.g. left behind by a crashed server), it is deleted.
+		 * 
+		 * @param path the path of the socket file
+		 * @param useAES whether or not AES-256-CBC is used (requres {@code password})
+		 * @param password the password required for AES encryption
+		 * @param maxPacketLength the max. packet length. default 65535
+		 */
+		public Unix(String path,boolean useAES,String password,int maxPacketLength) {
+			super(0,useAES,password,maxPacketLength);
+			
+			this.path=Path.of(path);
+			
+			try {
+				open();
+			} catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			
+			thread=new ServerThread(this);
+		}
+		
+		@Override
+		void open()throws IOException {
+			if(socket!=null&&socket.isOpen())
+				return;
+			
+			if(Files.exists(path,LinkOption.NOFOLLOW_LINKS)&&
+				((int)Files.getAttribute(path,"unix:mode",LinkOption.NOFOLLOW_LINKS)&0170000)==0140000)
+				Files.delete(path);
+			
+			socket=ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+			socket.bind(UnixDomainSocketAddress.of(path));
+		}
+		
+		@Override
+		Thread newServerThread() {
+			return new ServerThread(this);
+		}
+		
+		/** the socket file is deleted, so PHP fails fast instead of connecting to a dead socket */
+		@Override
+		void closeServer() {
+			try {
+				socket.close();
+				Files.deleteIfExists(path);
+			} catch(IOException e) {}
+		}
+		
+		/**
+		 * @return the path of the socket file
+		 */
+		public Path getPath() {
+			return path;
+		}
+		
+		static class ServerThread extends Thread {
+			
+			private Unix bridge;
+			
+			public ServerThread(Unix bridge) {
+				this.bridge=bridge;
+				setName("PHP-Java [Unix] @"+bridge.path);
+			}
+			
+			public void run() {
+				while(bridge.running)
+					try {
+						SocketChannel client=bridge.socket.accept();
+						Connection connection=new Connection(bridge,client);
+						
+						// registered before the handler starts, so shutdown() cannot miss it
+						bridge.connections.add(connection);
+						new ClientHandler(bridge,client,connection).start();
+					} catch(Exception e) {
+						e=new SocketFailureException(e);
+					}
+			}
+			
+		}
+		
+		static class ClientHandler extends Thread {
+			
+			private Unix bridge;
+			private SocketChannel client;
+			private Connection connection;
+			
+			public ClientHandler(Unix bridge,SocketChannel client,Connection connection) {
+				this.bridge=bridge;
+				this.client=client;
+				this.connection=connection;
+				setName("ClientHandler PHP-Java [Unix] @"+bridge.path);
+			}
+			
+			@Override
+			public void run() {
+				bridge.handlerThreads.incrementAndGet();
+				connection.await();
+				
+				try(InputStream in=new BufferedInputStream(Channels.newInputStream(client));
+					OutputStream out=Channels.newOutputStream(client)) {
 					
-					if(handler==null)
-						throw new UnsupportedOperationException("Cannot process Packet: No handler for ID #"+incoming.getPacketID()+" found");
+					while(bridge.running&&serve(bridge,client.getRemoteAddress(),in,out,client,connection));
+				} catch(Exception e) {
+					if(connection.isClosed()) // closed by shutdown()
+						return;
 					
-					Packet outgoing=handler.handle(client.getSocketAddress(),incoming);
+					if(bridge.exceptionHandler!=null)
+						bridge.exceptionHandler.uncaughtException(Thread.currentThread(),e);
 					
-					byte[]data=bridge.encrypt(Arrays.copyOf(outgoing.data,outgoing.size()));
+					try {
+						client.close();
+					} catch(Exception e2) {}
 					
-					int len=data.length;
+					throw new RuntimeException(e);
+				} finally {
+					connection.close();
+					bridge.connections.remove(connection);
+					bridge.handlerThreads.decrementAndGet();
 					
-					if(data.length+6>bridge.maxPacketLength)
-						throw new MalformedRequestException("Outgoing Packet too large: "+(data.length+6)+" (max. "+bridge.maxPacketLength+")");
+					if(connection.getExpired()!=null&&bridge.exceptionHandler!=null)
+						bridge.exceptionHandler.uncaughtException(this,new SocketTimeoutException(connection.getExpired()));
 					
-					byte[]finalData=new byte[len+6];
+					System.gc();
+				}
+			}
+			
+		}
+		
+	}
+
+	/**
+	 * <b>Shared Memory</b> exchanges {@link Packet}s through a memory-mapped file (usually located in {@code /dev/shm})<br>
+	 * <br>
+	 * <b>Note:</b> this transport is experimental<br>
+	 * <br>
+	 * Compared to {@link Unix}:
+	 * <ul>
+	 * 	<li>no system calls on the Java side, requests are picked up by a spinning/parking server thread</li>
+	 * 	<li>the number of concurrent clients is limited by the number of slots</li>
+	 * 	<li>PHP and Java must run on the same host</li>
+	 * 	<li>PHP and Java must run as the same user: the file is only accessible by its owner (permissions {@code 0600})</li>
+	 * </ul>
+	 * <br>
+	 * Layout of the file (all integers are Big Endian):
+	 * <pre>
+	 * &lt;int32 magic 'PJSM'&gt; &lt;int32 version&gt; &lt;int32 slot count&gt; &lt;int32 slot size&gt; &lt;48 bytes reserved&gt;
+	 * [&lt;int32 slot state&gt; &lt;12 bytes reserved&gt; &lt;slot size bytes: Packet frame&gt;] * slot count
+	 * </pre>
+	 * Each slot holds exactly one frame (the usual 6 byte header followed by the encrypted data).<br>
+	 * A client claims a slot, writes its request and sets the state to {@link #STATE_REQUEST}.
+	 * The server answers in the same slot and sets the state to {@link #STATE_RESPONSE} (or {@link #STATE_ERROR}).
+	 * Afterwards, the client releases the slot by setting the state back to {@link #STATE_FREE}.
+	 */
+	public static class SharedMemory extends Bridge {
+		
+		public static final int MAGIC=0x504A534D; // 'PJSM'
+		public static final int VERSION=1;
+		
+		public static final int STATE_FREE=0;
+		public static final int STATE_REQUEST=1;
+		public static final int STATE_PROCESSING=2;
+		public static final int STATE_RESPONSE=3;
+		public static final int STATE_ERROR=4;
+		
+		static final int HEADER_SIZE=64;
+		static final int SLOT_HEADER_SIZE=16;
+		
+		/** the permissions of the file ({@code rw-------}), so other users can neither read nor forge requests */
+		private static final Set<PosixFilePermission>PERMISSIONS=PosixFilePermissions.fromString("rw-------");
+		
+		/** volatile access to the slot states, which are shared with the PHP processes */
+		private static final VarHandle INT=MethodHandles.byteBufferViewVarHandle(int[].class,ByteOrder.BIG_ENDIAN);
+		
+		protected Path path;
+		protected FileChannel channel;
+		protected MappedByteBuffer buffer;
+		protected int slots,slotSize;
+		/** serves the slots, there is at most one request per slot */
+		private ThreadPoolExecutor workers;
+		
+		/**
+		 * Instantiates a new Shared Memory-based PHP-Java-Bridge<br>
+		 * <br>
+		 * The file at {@code path} is created (or truncated, if it already exists) with permissions {@code 0600},
+		 * so the PHP processes must run as the user who owns it (the user running the Java server).
+		 * 
+		 * @param path the path of the memory-mapped file, e.g. {@code /dev/shm/phpjava}
+		 * @param slots the number of slots (= the max. number of concurrent requests)
+		 * @param useAES whether or not AES-256-CBC is used (requres {@code password})
+		 * @param password the password required for AES encryption
+		 * @param maxPacketLength the max. packet length (= the size of a single slot). default 65535
+		 */
+		public SharedMemory(String path,int slots,boolean useAES,String password,int maxPacketLength) {
+			super(0,useAES,password,maxPacketLength);
+			
+			if(slots<1)
+				throw new IllegalArgumentException("slots must be greater than or equal to 1");
+			
+			this.path=Path.of(path);
+			this.slots=slots;
+			slotSize=(maxPacketLength+7)&~7; // keeps the slot states 8-byte-aligned
+			
+			long fileSize=HEADER_SIZE+(long)slots*(SLOT_HEADER_SIZE+slotSize);
+			
+			if(fileSize>Integer.MAX_VALUE)
+				throw new IllegalArgumentException("Shared memory too large: "+fileSize+" bytes");
+			
+			try {
+				open();
+			} catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			
+			thread=new ServerThread(this);
+		}
+		
+		@Override
+		void open()throws IOException {
+			if(channel!=null&&channel.isOpen())
+				return;
+			
+			Set<StandardOpenOption>options=Set.of(StandardOpenOption.CREATE,StandardOpenOption.READ,StandardOpenOption.WRITE,StandardOpenOption.TRUNCATE_EXISTING);
+			
+			if(path.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+				channel=FileChannel.open(path,options,PosixFilePermissions.asFileAttribute(PERMISSIONS));
+				
+				// only applied to new files by open()
+				Files.setPosixFilePermissions(path,PERMISSIONS);
+			} else channel=FileChannel.open(path,options);
+			buffer=channel.map(FileChannel.MapMode.READ_WRITE,0,HEADER_SIZE+(long)slots*(SLOT_HEADER_SIZE+slotSize));
+			
+			buffer.putInt(4,VERSION);
+			buffer.putInt(8,slots);
+			buffer.putInt(12,slotSize);
+			
+			for(int i=0;i<slots;++i)
+				INT.setVolatile(buffer,stateOffset(i),STATE_FREE);
+			
+			INT.setVolatile(buffer,0,MAGIC); // published last, clients wait for it
+			
+			workers=new ThreadPoolExecutor(slots,slots,60,TimeUnit.SECONDS,new LinkedBlockingQueue<>(),r->{
+				Thread thread=new Thread(r,"ClientHandler PHP-Java [SharedMemory] @"+path);
+				thread.setDaemon(true);
+				return thread;
+			});
+			workers.allowCoreThreadTimeOut(true);
+		}
+		
+		@Override
+		Thread newServerThread() {
+			return new ServerThread(this);
+		}
+		
+		/** the mapping itself cannot be released explicitly, it is unmapped once the buffer has been garbage-collected */
+		@Override
+		void closeTransport() {
+			workers.shutdown();
+			
+			try {
+				channel.close();
+			} catch(IOException e) {}
+		}
+		
+		/**
+		 * @return the path of the memory-mapped file
+		 */
+		public Path getPath() {
+			return path;
+		}
+		
+		int stateOffset(int slot) {
+			return HEADER_SIZE+slot*(SLOT_HEADER_SIZE+slotSize);
+		}
+		
+		int getState(int slot) {
+			return(int)INT.getVolatile(buffer,stateOffset(slot));
+		}
+		
+		void setState(int slot,int state) {
+			INT.setVolatile(buffer,stateOffset(slot),state);
+		}
+		
+		static class ServerThread extends Thread {
+			
+			/** number of empty polling rounds before the thread starts parking */
+			private static final int SPIN_ROUNDS=1000;
+			private static final long MAX_PARK_NANOS=1_000_000L;
+			
+			private SharedMemory bridge;
+			
+			public ServerThread(SharedMemory bridge) {
+				this.bridge=bridge;
+				setName("PHP-Java [SharedMemory] @"+bridge.path);
+			}
+			
+			public void run() {
+				int idle=0;
+				long parkNanos=1_000L;
+				
+				while(bridge.running)
+					try {
+						boolean found=false;
+						
+						for(int i=0;i<bridge.slots;++i)
+							if(bridge.getState(i)==STATE_REQUEST) {
+								bridge.setState(i,STATE_PROCESSING);
+								bridge.workers.execute(new ClientHandler(bridge,i));
+								found=true;
+							}
+						
+						if(found) {
+							idle=0;
+							parkNanos=1_000L;
+						} else if(++idle<SPIN_ROUNDS)
+							Thread.onSpinWait();
+						else {
+							LockSupport.parkNanos(parkNanos);
+							parkNanos=Math.min(parkNanos<<1,MAX_PARK_NANOS);
+						}
+					} catch(Exception e) {
+						if(bridge.exceptionHandler!=null)
+							bridge.exceptionHandler.uncaughtException(this,new SocketFailureException(e));
+					}
+			}
+			
+		}
+		
+		static class ClientHandler implements Runnable {
+			
+			private SharedMemory bridge;
+			/** the mapping which holds the request (the {@link SharedMemory} might have been restarted in the meantime) */
+			private MappedByteBuffer buffer;
+			private int slot;
+			
+			public ClientHandler(SharedMemory bridge,int slot) {
+				this.bridge=bridge;
+				buffer=bridge.buffer;
+				this.slot=slot;
+			}
+			
+			@Override
+			public void run() {
+				int offset=bridge.stateOffset(slot)+SLOT_HEADER_SIZE;
+				
+				bridge.handlerThreads.incrementAndGet();
+				
+				try {
+					byte[]header=new byte[6];
+					buffer.get(offset,header);
 					
-					finalData[0]=(byte)(outgoing.getPacketID()&0xFF);
+					long length=readLength(header,2);
 					
-					finalData[2]=(byte)((len>>24)&0xFF);
-					finalData[3]=(byte)((len>>16)&0xFF);
-					finalData[4]=(byte)((len>>8)&0xFF);
-					finalData[5]=(byte)(len&0xFF);
+					if(length+6>bridge.slotSize)
+						throw new MalformedRequestException("Incoming Packet too large: "+(length+6)+" (max. "+bridge.slotSize+")");
 					
-					System.arraycopy(data,0,finalData,6,len);
-					data=null;
+					byte[]request=new byte[6+(int)length];
+					buffer.get(offset,request);
 					
-					DatagramPacket packet=new DatagramPacket(finalData,finalData.length,client.getSocketAddress());
-					bridge.socket.send(packet);
+					answer(bridge,UnixDomainSocketAddress.of(bridge.path),request,0,request.length,data->{
+						if(data.length>bridge.slotSize)
+							throw new MalformedRequestException("Outgoing Packet too large: "+data.length+" (max. "+bridge.slotSize+")");
+						
+						buffer.put(offset,data);
+					});
+					INT.setVolatile(buffer,bridge.stateOffset(slot),STATE_RESPONSE);
 				} catch(Exception e) {
+					INT.setVolatile(buffer,bridge.stateOffset(slot),STATE_ERROR);
+					
+					// the worker threads are reused, so the exception is not rethrown
 					if(bridge.exceptionHandler!=null)
 						bridge.exceptionHandler.uncaughtException(Thread.currentThread(),e);
-					
-					throw new RuntimeException(e);
 				} finally {
-					System.gc();
+					bridge.handlerThreads.decrementAndGet();
 				}
 			}
 			
@@ -0,0 +1,224 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * The management interface of a {@link Bridge}, registered via {@link Bridge#registerMBean(String)}.<br>
+ * <br>
+ * The request statistics ({@link #getRequestCount()}, {@link #getErrorCount()}, {@link #getPacketStatistics()})
+ * are only collected while metrics are enabled (see {@link Bridge#enableMetrics()}).
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+public interface BridgeMXBean {
+	
+	/**
+	 * @return the number of open connections (TCP and Unix Domain Sockets)
+	 */
+	int getActiveConnections();
+	
+	/**
+	 * @return the number of requests currently being processed
+	 */
+	int getActiveRequests();
+	
+	/**
+	 * @return the number of threads currently serving connections, datagrams or shared memory slots
+	 */
+	int getHandlerThreads();
+	
+	/**
+	 * @return the number of connections closed because of an expired idle, read or write timeout (see {@link Bridge#setIdleTimeout(long)})
+	 */
+	long getReapedConnections();
+	
+	/**
+	 * @return the number of requests rejected because of a per-connection limit (see {@link Bridge#setMaxOutstandingRequests(int)})
+	 * or because their connection was being closed (see {@link ShutdownReport#getRejectedRequests()})
+	 */
+	long getRejectedRequests();
+	
+	/**
+	 * @return the number of batched {@link Packet}s waiting for a thread of the batch executor, or -1 if it isn't a {@link java.util.concurrent.ThreadPoolExecutor}
+	 */
+	int getBatchQueueDepth();
+	
+	/**
+	 * @return the number of threads of the batch executor handling {@link Packet}s, or -1 if it isn't a {@link java.util.concurrent.ThreadPoolExecutor}
+	 */
+	int getBatchActiveThreads();
+	
+	/**
+	 * @return the number of threads of the batch executor, or -1 if it isn't a {@link java.util.concurrent.ThreadPoolExecutor}
+	 */
+	int getBatchPoolSize();
+	
+	/**
+	 * @return the max. number of threads of the batch executor, or -1 if it isn't a {@link java.util.concurrent.ThreadPoolExecutor}
+	 */
+	int getBatchMaxPoolSize();
+	
+	/**
+	 * @return the ratio of active threads to the max. number of threads of the batch executor in range [0;1], or -1 if it isn't a {@link java.util.concurrent.ThreadPoolExecutor}
+	 */
+	double getBatchPoolUtilization();
+	
+	/**
+	 * @return whether or not request statistics are collected
+	 */
+	boolean isMetricsEnabled();
+	
+	/**
+	 * @param enabled whether or not request statistics are collected (see {@link Bridge#enableMetrics()})
+	 */
+	void setMetricsEnabled(boolean enabled);
+	
+	/**
+	 * @return the number of received requests (all Packet-IDs)
+	 */
+	long getRequestCount();
+	
+	/**
+	 * @return the number of requests which could not be processed (all Packet-IDs)
+	 */
+	long getErrorCount();
+	
+	/**
+	 * @return the statistics of every Packet-ID received so far
+	 */
+	List<PacketStatistics>getPacketStatistics();
+	
+	/**
+	 * A snapshot of {@link BridgeMetrics.PacketStats}
+	 */
+	public static class PacketStatistics {
+		
+		private final int packetID;
+		private final long requestCount,errorCount,bytesIn,bytesOut;
+		private final List<LatencySummary>latencies=new ArrayList<>();
+		
+		public PacketStatistics(BridgeMetrics.PacketStats stats) {
+			packetID=stats.getPacketID();
+			requestCount=stats.getRequestCount();
+			errorCount=stats.getErrorCount();
+			bytesIn=stats.getBytesIn();
+			bytesOut=stats.getBytesOut();
+			
+			for(BridgeMetrics.Stage stage:BridgeMetrics.Stage.values())
+				latencies.add(new LatencySummary(stage,stats.getLatency(stage)));
+		}
+		
+		public int getPacketID() {
+			return packetID;
+		}
+		
+		public long getRequestCount() {
+			return requestCount;
+		}
+		
+		public long getErrorCount() {
+			return errorCount;
+		}
+		
+		public long getBytesIn() {
+			return bytesIn;
+		}
+		
+		public long getBytesOut() {
+			return bytesOut;
+		}
+		
+		/**
+		 * @return the latencies of the stages (see {@link BridgeMetrics.Stage})
+		 */
+		public List<LatencySummary>getLatencies() {
+			return latencies;
+		}
+		
+	}
+	
+	/**
+	 * A snapshot of a {@link BridgeMetrics.Histogram}, all latencies in nanoseconds
+	 */
+	public static class LatencySummary {
+		
+		private final String stage;
+		private final long count,p50,p90,p99,max;
+		private final double mean;
+		
+		public LatencySummary(BridgeMetrics.Stage stage,BridgeMetrics.Histogram histogram) {
+			this.stage=stage.name();
+			
+			count=histogram.getCount();
+			mean=histogram.getMean();
+			p50=histogram.getPercentile(50);
+			p90=histogram.getPercentile(90);
+			p99=histogram.getPercentile(99);
+			max=histogram.getMax();
+		}
+		
+		public String getStage() {
+			return stage;
+		}
+		
+		public long getCount() {
+			return count;
+		}
+		
+		public double getMean() {
+			return mean;
+		}
+		
+		public long getP50() {
+			return p50;
+		}
+		
+		public long getP90() {
+			return p90;
+		}
+		
+		public long getP99() {
+			return p99;
+		}
+		
+		public long getMax() {
+			return max;
+		}
+		
+	}
+	
+}
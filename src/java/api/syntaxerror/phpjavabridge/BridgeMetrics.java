@@ -0,0 +1,376 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Per-Packet-ID request statistics of a {@link Bridge}:
+ * request and error counts, the bytes received and sent, and a latency histogram for every {@link Stage} of a request.<br>
+ * <br>
+ * All counters are {@link LongAdder}s, so recording does not block the connections.
+ * The histograms are log-scale (one bucket per power of two nanoseconds), so percentiles are accurate to a factor of 2.<br>
+ * <br>
+ * see {@link Bridge#enableMetrics()}
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+public class BridgeMetrics {
+	
+	/**
+	 * The stages of a request
+	 */
+	public static enum Stage {
+		/** reading the frame, after its first byte arrived */
+		READ,
+		/** decryption, Base64 decoding and decompression */
+		DECRYPT,
+		/** validating the decrypted data */
+		VALIDATE,
+		/** the {@link PacketHandler} (including {@link ResponseCache} lookups and coalesced requests) */
+		HANDLE,
+		/** compression, encryption, Base64 encoding and framing of the answer */
+		ENCRYPT,
+		/** writing the answer, including its streams */
+		WRITE
+	}
+	
+	private final AtomicReferenceArray<PacketStats>stats=new AtomicReferenceArray<>(256);
+	
+	BridgeMetrics() {}
+	
+	/**
+	 * @param pid the Packet-ID
+	 * 
+	 * @return the statistics of the Packet-ID, or {@code null} if no such {@link Packet} has been received yet
+	 */
+	public PacketStats get(int pid) {
+		if(pid<0||pid>255)
+			throw new IndexOutOfBoundsException("Invalid Packet-ID: "+pid);
+		
+		return stats.get(pid);
+	}
+	
+	/**
+	 * @return the statistics of all the Packet-IDs received so far, sorted by Packet-ID
+	 */
+	public Map<Integer,PacketStats>getAll() {
+		Map<Integer,PacketStats>all=new TreeMap<>();
+		
+		for(int pid=0;pid<256;++pid) {
+			PacketStats s=stats.get(pid);
+			
+			if(s!=null)
+				all.put(pid,s);
+		}
+		
+		return all;
+	}
+	
+	/**
+	 * Discards all the statistics
+	 */
+	public void reset() {
+		for(int pid=0;pid<256;++pid)
+			stats.set(pid,null);
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * @return the statistics of the Packet-ID, created if necessary
+	 */
+	PacketStats stats(int pid) {
+		PacketStats s=stats.get(pid);
+		
+		if(s!=null)
+			return s;
+		
+		stats.compareAndSet(pid,null,new PacketStats(pid));
+		return stats.get(pid);
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * @param bridge the {@link Bridge}
+	 * @param pid the Packet-ID
+	 * 
+	 * @return the statistics of the Packet-ID, or {@code null} if metrics are disabled
+	 */
+	static PacketStats stats(Bridge bridge,int pid) {
+		BridgeMetrics metrics=bridge.metrics;
+		
+		return metrics==null?null:metrics.stats(pid&0xFF);
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * @param stats the statistics, or {@code null} if metrics are disabled
+	 * 
+	 * @return the start time of a stage (see {@link #record(PacketStats, Stage, long)})
+	 */
+	static long start(PacketStats stats) {
+		return stats==null?0:System.nanoTime();
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * @param stats the statistics, or {@code null} if metrics are disabled
+	 * @param stage the stage which just finished
+	 * @param start the start time of the stage
+	 * 
+	 * @return the current time, i.e. the start time of the next stage
+	 */
+	static long record(PacketStats stats,Stage stage,long start) {
+		if(stats==null)
+			return 0;
+		
+		long now=System.nanoTime();
+		stats.latencies.get(stage).record(now-start);
+		return now;
+	}
+	
+	/**
+	 * The statistics of a single Packet-ID
+	 */
+	public static class PacketStats {
+		
+		private final int pid;
+		private final LongAdder requests=new LongAdder(),errors=new LongAdder(),bytesIn=new LongAdder(),bytesOut=new LongAdder();
+		private final Map<Stage,Histogram>latencies=new EnumMap<>(Stage.class);
+		
+		PacketStats(int pid) {
+			this.pid=pid;
+			
+			for(Stage stage:Stage.values())
+				latencies.put(stage,new Histogram());
+		}
+		
+		/**
+		 * internal use only<br><br>
+		 * 
+		 * @param length the length of the received frame
+		 */
+		void request(long length) {
+			requests.increment();
+			bytesIn.add(length);
+		}
+		
+		/**
+		 * internal use only<br><br>
+		 * 
+		 * @param length the length of the sent frame
+		 */
+		void response(long length) {
+			bytesOut.add(length);
+		}
+		
+		/**
+		 * internal use only<br><br>
+		 */
+		void error() {
+			errors.increment();
+		}
+		
+		/**
+		 * @return the Packet-ID
+		 */
+		public int getPacketID() {
+			return pid;
+		}
+		
+		/**
+		 * @return the number of received requests
+		 */
+		public long getRequestCount() {
+			return requests.sum();
+		}
+		
+		/**
+		 * @return the number of requests which could not be processed (malformed requests, exceptions thrown by the {@link PacketHandler}, I/O errors)
+		 */
+		public long getErrorCount() {
+			return errors.sum();
+		}
+		
+		/**
+		 * @return the number of bytes received (frames including their headers, excluding streams)
+		 */
+		public long getBytesIn() {
+			return bytesIn.sum();
+		}
+		
+		/**
+		 * @return the number of bytes sent (frames including their headers, excluding streams)
+		 */
+		public long getBytesOut() {
+			return bytesOut.sum();
+		}
+		
+		/**
+		 * @param stage the stage
+		 * 
+		 * @return the latency histogram of the stage
+		 */
+		public Histogram getLatency(Stage stage) {
+			return latencies.get(stage);
+		}
+		
+	}
+	
+	/**
+	 * A log-scale latency histogram in nanoseconds.<br>
+	 * Bucket {@code i} contains the values in range [2<sup>i-1</sup>;2<sup>i</sup>-1], bucket 0 contains 0.
+	 */
+	public static class Histogram {
+		
+		/** the number of buckets */
+		public static final int BUCKETS=64;
+		
+		private final LongAdder[]buckets=new LongAdder[BUCKETS];
+		private final LongAdder sum=new LongAdder();
+		private final LongAccumulator max=new LongAccumulator(Math::max,0);
+		
+		Histogram() {
+			for(int i=0;i<BUCKETS;++i)
+				buckets[i]=new LongAdder();
+		}
+		
+		/**
+		 * internal use only<br><br>
+		 * 
+		 * @param nanos the latency in nanoseconds
+		 */
+		void record(long nanos) {
+			nanos=Math.max(0,nanos);
+			
+			buckets[Math.min(BUCKETS-1,64-Long.numberOfLeadingZeros(nanos))].increment();
+			sum.add(nanos);
+			max.accumulate(nanos);
+		}
+		
+		/**
+		 * @return the number of recorded values per bucket
+		 */
+		public long[]getBuckets() {
+			long[]counts=new long[BUCKETS];
+			
+			for(int i=0;i<BUCKETS;++i)
+				counts[i]=buckets[i].sum();
+			
+			return counts;
+		}
+		
+		/**
+		 * @param bucket the index of the bucket
+		 * 
+		 * @return the highest value of the bucket in nanoseconds
+		 */
+		public static long getUpperBound(int bucket) {
+			return bucket>=63?Long.MAX_VALUE:(1L<<bucket)-1;
+		}
+		
+		/**
+		 * @return the number of recorded values
+		 */
+		public long getCount() {
+			long count=0;
+			
+			for(LongAdder bucket:buckets)
+				count+=bucket.sum();
+			
+			return count;
+		}
+		
+		/**
+		 * @return the sum of all recorded values in nanoseconds
+		 */
+		public long getSum() {
+			return sum.sum();
+		}
+		
+		/**
+		 * @return the mean of all recorded values in nanoseconds, or 0 if there are none
+		 */
+		public double getMean() {
+			long count=getCount();
+			
+			return count==0?0:(double)getSum()/count;
+		}
+		
+		/**
+		 * @return the highest recorded value in nanoseconds
+		 */
+		public long getMax() {
+			return max.get();
+		}
+		
+		/**
+		 * @param percentile the percentile in range [0;100]
+		 * 
+		 * @return the upper bound of the bucket containing the percentile (at most {@link #getMax()}) in nanoseconds, or 0 if there are no values
+		 */
+		public long getPercentile(double percentile) {
+			if(percentile<0||percentile>100)
+				throw new IllegalArgumentException("Percentile out of range [0;100]: "+percentile);
+			
+			long[]counts=getBuckets();
+			long total=0;
+			
+			for(long count:counts)
+				total+=count;
+			
+			if(total==0)
+				return 0;
+			
+			long rank=Math.max(1,(long)Math.ceil(total*percentile/100)),seen=0;
+			
+			for(int i=0;i<BUCKETS;++i)
+				if((seen+=counts[i])>=rank)
+					return Math.min(getUpperBound(i),getMax());
+			
+			return getMax();
+		}
+		
+	}
+	
+}
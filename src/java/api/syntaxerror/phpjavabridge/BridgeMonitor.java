@@ -0,0 +1,169 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * The {@link BridgeMXBean} of a {@link Bridge}, also used by the {@link MetricsServer}
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class BridgeMonitor implements BridgeMXBean {
+	
+	private final Bridge bridge;
+	
+	BridgeMonitor(Bridge bridge) {
+		this.bridge=bridge;
+	}
+	
+	@Override
+	public int getActiveConnections() {
+		return bridge.connections.size();
+	}
+	
+	@Override
+	public int getActiveRequests() {
+		return bridge.activeRequests.get();
+	}
+	
+	@Override
+	public int getHandlerThreads() {
+		return bridge.handlerThreads.get();
+	}
+	
+	@Override
+	public long getReapedConnections() {
+		return bridge.reapedConnections.sum();
+	}
+	
+	@Override
+	public long getRejectedRequests() {
+		return bridge.rejectedRequests.sum();
+	}
+	
+	@Override
+	public int getBatchQueueDepth() {
+		ThreadPoolExecutor pool=pool();
+		
+		return pool==null?-1:pool.getQueue().size();
+	}
+	
+	@Override
+	public int getBatchActiveThreads() {
+		ThreadPoolExecutor pool=pool();
+		
+		return pool==null?-1:pool.getActiveCount();
+	}
+	
+	@Override
+	public int getBatchPoolSize() {
+		ThreadPoolExecutor pool=pool();
+		
+		return pool==null?-1:pool.getPoolSize();
+	}
+	
+	@Override
+	public int getBatchMaxPoolSize() {
+		ThreadPoolExecutor pool=pool();
+		
+		return pool==null?-1:pool.getMaximumPoolSize();
+	}
+	
+	@Override
+	public double getBatchPoolUtilization() {
+		ThreadPoolExecutor pool=pool();
+		
+		return pool==null?-1:(double)pool.getActiveCount()/pool.getMaximumPoolSize();
+	}
+	
+	private ThreadPoolExecutor pool() {
+		Executor executor=bridge.batchExecutor;
+		
+		return executor instanceof ThreadPoolExecutor?(ThreadPoolExecutor)executor:null;
+	}
+	
+	@Override
+	public boolean isMetricsEnabled() {
+		return bridge.metrics!=null;
+	}
+	
+	@Override
+	public void setMetricsEnabled(boolean enabled) {
+		if(enabled)
+			bridge.enableMetrics();
+		
+		else bridge.disableMetrics();
+	}
+	
+	@Override
+	public long getRequestCount() {
+		BridgeMetrics metrics=bridge.metrics;
+		long count=0;
+		
+		if(metrics!=null)
+			for(BridgeMetrics.PacketStats stats:metrics.getAll().values())
+				count+=stats.getRequestCount();
+		
+		return count;
+	}
+	
+	@Override
+	public long getErrorCount() {
+		BridgeMetrics metrics=bridge.metrics;
+		long count=0;
+		
+		if(metrics!=null)
+			for(BridgeMetrics.PacketStats stats:metrics.getAll().values())
+				count+=stats.getErrorCount();
+		
+		return count;
+	}
+	
+	@Override
+	public List<PacketStatistics>getPacketStatistics() {
+		BridgeMetrics metrics=bridge.metrics;
+		List<PacketStatistics>all=new ArrayList<>();
+		
+		if(metrics!=null)
+			for(BridgeMetrics.PacketStats stats:metrics.getAll().values())
+				all.add(new PacketStatistics(stats));
+		
+		return all;
+	}
+	
+}
@@ -0,0 +1,183 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or Unix Domain Socket-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Reads a stream sent as a sequence of chunks (see {@link Packet#readStream()}).<br>
+ * <br>
+ * Each chunk is a separate frame (6 byte header with the {@link Bridge#FLAG_CHUNK} flag set, followed by the encrypted data).
+ * An empty chunk marks the end of the stream.<br>
+ * Only a single chunk is kept in memory at a time. It is charged to the {@link Connection}'s buffer, and has to arrive within the read timeout
+ * (see {@link Bridge#setReadTimeout(long)}), so a stalled client cannot occupy the handler forever.<br>
+ * <br>
+ * Only stream-based {@link Bridge}s ({@link BridgeImpl.TCP TCP} and {@link BridgeImpl.Unix Unix}) receive streams,
+ * datagram-based ones ({@link BridgeImpl.UDP UDP} and {@link BridgeImpl.SharedMemory SharedMemory}) reject them.
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class ChunkInputStream extends InputStream {
+	
+	private Bridge bridge;
+	private InputStream in;
+	private Connection connection;
+	private int pid;
+	private ChunkInputStream previous;
+	
+	private byte[]chunk;
+	private int position;
+	private boolean finished;
+	/** the number of bytes reserved for the current chunk */
+	private long reserved;
+	
+	/**
+	 * @param bridge the {@link Bridge} used for decryption
+	 * @param in the connection's {@link InputStream}
+	 * @param connection the state of the connection, or {@code null}
+	 * @param pid the ID of the {@link Packet} the stream belongs to
+	 * @param previous the stream sent before this one (which is skipped if it hasn't been read completely), or {@code null}
+	 */
+	ChunkInputStream(Bridge bridge,InputStream in,Connection connection,int pid,ChunkInputStream previous) {
+		this.bridge=bridge;
+		this.in=in;
+		this.connection=connection;
+		this.pid=pid;
+		this.previous=previous;
+	}
+	
+	/**
+	 * Makes sure there is at least one unread byte in {@link #chunk}
+	 * 
+	 * @return {@code false} if the end of the stream has been reached
+	 */
+	private boolean fill()throws IOException {
+		if(previous!=null) {
+			previous.close();
+			previous=null;
+		}
+		
+		while(chunk==null||position>=chunk.length) {
+			if(finished)
+				return false;
+			
+			release0();
+			
+			if(connection!=null)
+				connection.resume();
+			
+			int id=in.read();
+			byte[]header=in.readNBytes(5);
+			
+			if(id<0||header.length!=5)
+				throw new MalformedRequestException("Connection closed while reading a stream");
+			
+			if(id!=pid||(header[0]&Bridge.FLAG_CHUNK)==0)
+				throw new MalformedRequestException("Expected a chunk of Packet #"+pid+", got Packet #"+id+" instead");
+			
+			long length=BridgeImpl.readLength(header,1);
+			
+			if(length+6>bridge.maxPacketLength)
+				throw new MalformedRequestException("Incoming chunk too large: "+(length+6)+" (max. "+bridge.maxPacketLength+")");
+			
+			if(connection!=null) {
+				connection.receive(6+length);
+				reserved=6+length;
+			}
+			
+			byte[]buf=in.readNBytes((int)length);
+			
+			if(buf.length!=length)
+				throw new MalformedRequestException("Expected "+length+" bytes, got "+buf.length+" instead");
+			
+			if(connection!=null)
+				connection.received();
+			
+			chunk=bridge.decrypt(buf);
+			position=0;
+			finished=chunk.length==0;
+		}
+		
+		return true;
+	}
+	
+	@Override
+	public int read()throws IOException {
+		if(!fill())
+			return-1;
+		
+		return chunk[position++]&0xFF;
+	}
+	
+	@Override
+	public int read(byte[]b,int off,int len)throws IOException {
+		if(len==0)
+			return 0;
+		
+		if(!fill())
+			return-1;
+		
+		len=Math.min(len,chunk.length-position);
+		System.arraycopy(chunk,position,b,off,len);
+		position+=len;
+		
+		return len;
+	}
+	
+	@Override
+	public int available() {
+		return chunk==null?0:chunk.length-position;
+	}
+	
+	/**
+	 * Skips the remaining chunks, so the connection is ready for the next frame.
+	 */
+	@Override
+	public void close()throws IOException {
+		while(fill())
+			position=chunk.length;
+		
+		chunk=null;
+		release0();
+	}
+	
+	private void release0() {
+		if(reserved!=0) {
+			connection.release(reserved);
+			reserved=0;
+		}
+	}
+	
+}
@@ -0,0 +1,161 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or Unix Domain Socket-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Sends a stream as a sequence of chunks (see {@link Packet#writeStream(Packet.StreamWriter)}).<br>
+ * <br>
+ * Data is buffered until a chunk is full ({@link Bridge#maxChunkLength()}), then it is encrypted and written to the connection.
+ * Since the connection is written to synchronously, a slow client automatically slows down the writer.<br>
+ * {@link #close()} sends the remaining data and the (empty) final chunk.<br>
+ * <br>
+ * Only stream-based {@link Bridge}s ({@link BridgeImpl.TCP TCP} and {@link BridgeImpl.Unix Unix}) send streams,
+ * datagram-based ones ({@link BridgeImpl.UDP UDP} and {@link BridgeImpl.SharedMemory SharedMemory}) reject them.
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class ChunkOutputStream extends OutputStream {
+	
+	private Bridge bridge;
+	private OutputStream out;
+	private int pid;
+	private boolean compress,binary;
+	
+	private byte[]buf;
+	private int count;
+	private boolean closed;
+	
+	/**
+	 * @param bridge the {@link Bridge} used for encryption
+	 * @param out the connection's {@link OutputStream}
+	 * @param pid the ID of the {@link Packet} the stream belongs to
+	 * @param compress whether or not the client accepts compressed chunks
+	 * @param binary whether or not the chunks are sent without encryption and Base64 (see {@link Bridge#FLAG_BINARY})
+	 */
+	ChunkOutputStream(Bridge bridge,OutputStream out,int pid,boolean compress,boolean binary) {
+		this.bridge=bridge;
+		this.out=out;
+		this.pid=pid;
+		this.compress=compress;
+		this.binary=binary;
+		
+		buf=new byte[binary?Math.min(Bridge.MAX_CHUNK_LENGTH,bridge.maxPacketLength-6):bridge.maxChunkLength()];
+	}
+	
+	private void ensureOpen()throws IOException {
+		if(closed)
+			throw new IOException("Stream is closed");
+	}
+	
+	/**
+	 * Encrypts and sends a single chunk
+	 * 
+	 * @param chunk the raw data
+	 */
+	private void writeChunk(byte[]chunk)throws IOException {
+		if(binary)
+			out.write(BridgeImpl.frame(bridge,pid,Bridge.FLAG_CHUNK|Bridge.FLAG_BINARY,chunk));
+		else out.write(BridgeImpl.frame(bridge,pid,Bridge.FLAG_CHUNK,bridge.encrypt(chunk,compress)));
+	}
+	
+	/**
+	 * Sends the buffered data (if there is any)
+	 */
+	private void flushChunk()throws IOException {
+		if(count==0)
+			return;
+		
+		writeChunk(Arrays.copyOf(buf,count));
+		count=0;
+	}
+	
+	@Override
+	public void write(int b)throws IOException {
+		ensureOpen();
+		
+		buf[count++]=(byte)b;
+		
+		if(count==buf.length)
+			flushChunk();
+	}
+	
+	@Override
+	public void write(byte[]b,int off,int len)throws IOException {
+		ensureOpen();
+		
+		while(len>0) {
+			int n=Math.min(len,buf.length-count);
+			
+			System.arraycopy(b,off,buf,count,n);
+			count+=n;
+			off+=n;
+			len-=n;
+			
+			if(count==buf.length)
+				flushChunk();
+		}
+	}
+	
+	/**
+	 * Sends the buffered data as a (possibly smaller) chunk
+	 */
+	@Override
+	public void flush()throws IOException {
+		ensureOpen();
+		
+		flushChunk();
+		out.flush();
+	}
+	
+	/**
+	 * Sends the buffered data and marks the end of the stream. The connection itself is not closed.
+	 */
+	@Override
+	public void close()throws IOException {
+		if(closed)
+			return;
+		
+		flushChunk();
+		writeChunk(new byte[0]);
+		out.flush();
+		
+		closed=true;
+		buf=null;
+	}
+	
+}
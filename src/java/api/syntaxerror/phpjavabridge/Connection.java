@@ -0,0 +1,237 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * The state of a single connection of a stream-based {@link Bridge} ({@link BridgeImpl.TCP TCP} or {@link BridgeImpl.Unix Unix}).<br>
+ * <br>
+ * A connection is either idle (waiting for the next {@link Packet}), busy (processing a {@link Packet}) or closed.
+ * Only idle connections are closed when the {@link Bridge} shuts down, busy ones are closed after their answer has been sent
+ * (see {@link Bridge#shutdown(java.time.Duration)}).<br>
+ * <br>
+ * Stalled connections are reaped by the {@link TimerWheel}: each phase (waiting, reading the request, writing the answer) arms its own timeout.
+ * Closing the socket unblocks the handler thread, since blocking socket I/O cannot be interrupted otherwise.
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+final class Connection implements Closeable {
+	
+	private static final int IDLE=0,BUSY=1,CLOSED=2;
+	
+	/** the string dictionary of this connection */
+	final StringDictionary dictionary=new StringDictionary();
+	
+	private final Bridge bridge;
+	private final Closeable socket;
+	private final AtomicInteger state=new AtomicInteger(IDLE);
+	/** the number of bytes buffered for the current request and its answer */
+	private long buffered;
+	private TimerWheel.Timeout timeout;
+	/** why the connection has been reaped, or {@code null} */
+	private volatile String expired;
+	
+	/**
+	 * @param bridge the {@link Bridge} which accepted the connection
+	 * @param socket the socket of the connection
+	 */
+	Connection(Bridge bridge,Closeable socket) {
+		this.bridge=bridge;
+		this.socket=socket;
+	}
+	
+	/**
+	 * Arms the idle timeout, while waiting for the next {@link Packet}
+	 */
+	void await() {
+		arm0(bridge.idleTimeout,"Idle");
+	}
+	
+	/**
+	 * Marks the connection as busy and arms the read timeout, after the first byte of a {@link Packet} has been received
+	 * 
+	 * @return {@code false} if the connection has been closed
+	 */
+	boolean begin() {
+		if(!state.compareAndSet(IDLE,BUSY))
+			return false;
+		
+		arm0(bridge.readTimeout,"Read");
+		return true;
+	}
+	
+	/**
+	 * Reserves the buffer for a request, before the rest of its frame is read
+	 * 
+	 * @param length the length of the frame
+	 * 
+	 * @throws MalformedRequestException if the connection would exceed {@link Bridge#setMaxConnectionBufferedBytes(long)}
+	 */
+	void receive(long length)throws MalformedRequestException {
+		reserve0(length,"Incoming");
+	}
+	
+	/**
+	 * Disarms the read timeout, after the frame has been read completely. The {@link PacketHandler} runs without a timeout.
+	 */
+	void received() {
+		disarm0();
+	}
+	
+	/**
+	 * Arms the read timeout again, before a chunk of a stream is read (see {@link ChunkInputStream})
+	 */
+	void resume() {
+		arm0(bridge.readTimeout,"Read");
+	}
+	
+	/**
+	 * Releases the buffer of a chunk which has been read completely
+	 * 
+	 * @param length the length reserved for the chunk
+	 */
+	void release(long length) {
+		buffered-=length;
+	}
+	
+	/**
+	 * Reserves the buffer for the answer and arms the write timeout, before the answer is written
+	 * 
+	 * @param length the length of the answer
+	 * 
+	 * @throws MalformedRequestException if the connection would exceed {@link Bridge#setMaxConnectionBufferedBytes(long)}
+	 */
+	void send(long length)throws MalformedRequestException {
+		reserve0(length,"Outgoing");
+		arm0(bridge.writeTimeout,"Write");
+	}
+	
+	/**
+	 * Marks the connection as idle and arms the idle timeout, after the answer has been sent
+	 */
+	void end() {
+		buffered=0;
+		
+		if(state.compareAndSet(BUSY,IDLE))
+			await();
+		else disarm0();
+	}
+	
+	/**
+	 * @return why the connection has been reaped by the {@link TimerWheel}, or {@code null}
+	 */
+	String getExpired() {
+		return expired;
+	}
+	
+	private void reserve0(long length,String direction)throws MalformedRequestException {
+		if(buffered+length>bridge.maxConnectionBufferedBytes) {
+			bridge.rejectedRequests.increment();
+			throw new MalformedRequestException(direction+" Packet exceeds the connection's buffer: "+(buffered+length)+" bytes (max. "+bridge.maxConnectionBufferedBytes+")");
+		}
+		
+		buffered+=length;
+	}
+	
+	private synchronized void arm0(long millis,String phase) {
+		disarm0();
+		
+		if(millis>0&&state.get()!=CLOSED)
+			timeout=TimerWheel.SHARED.schedule(()->expire0(phase+" timeout expired ("+millis+" ms)"),millis);
+	}
+	
+	private synchronized void disarm0() {
+		if(timeout!=null) {
+			timeout.cancel();
+			timeout=null;
+		}
+	}
+	
+	private void expire0(String reason) {
+		if(state.get()==CLOSED)
+			return;
+		
+		expired=reason;
+		bridge.reapedConnections.increment();
+		close();
+	}
+	
+	/**
+	 * @return whether or not a {@link Packet} is being processed
+	 */
+	boolean isBusy() {
+		return state.get()==BUSY;
+	}
+	
+	/**
+	 * @return whether or not the connection has been closed by the server
+	 */
+	boolean isClosed() {
+		return state.get()==CLOSED;
+	}
+	
+	/**
+	 * Closes the connection, unless a {@link Packet} is being processed
+	 * 
+	 * @return whether or not the connection has been closed by this call
+	 */
+	boolean closeIfIdle() {
+		if(!state.compareAndSet(IDLE,CLOSED))
+			return false;
+		
+		close0();
+		return true;
+	}
+	
+	/**
+	 * Closes the connection, even if a {@link Packet} is being processed
+	 */
+	@Override
+	public void close() {
+		state.set(CLOSED);
+		close0();
+	}
+	
+	private void close0() {
+		disarm0();
+		
+		try {
+			socket.close();
+		} catch(IOException e) {}
+	}
+	
+}
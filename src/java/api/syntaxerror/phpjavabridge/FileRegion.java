@@ -0,0 +1,159 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * internal use only<br><br>
+ * 
+ * A region of a file, sent as a stream (see {@link Packet#writeFile(Path, long, long)}).<br>
+ * <br>
+ * If the {@link Bridge} doesn't use AES and the client accepts binary chunks ({@link Bridge#FLAG_BINARY}),
+ * the chunks are sent as they are, using {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
+ * This way, the data is copied from the file to the socket by the operating system (e.g. via {@code sendfile}) and never enters the heap.
+ * Otherwise, the region is sent like any other stream.
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+final class FileRegion implements Packet.StreamWriter {
+	
+	/** upper limit for the size of a single binary chunk, so the client doesn't have to buffer too much data */
+	static final int MAX_CHUNK_LENGTH=1<<20;
+	
+	private final Path path;
+	private final long position,count;
+	
+	/**
+	 * @param path the file
+	 * @param position the offset of the region's first byte
+	 * @param count the max. number of bytes
+	 */
+	FileRegion(Path path,long position,long count) {
+		this.path=path;
+		this.position=position;
+		this.count=count;
+	}
+	
+	@Override
+	public void writeTo(OutputStream out)throws IOException {
+		try(FileChannel file=FileChannel.open(path,StandardOpenOption.READ)) {
+			WritableByteChannel target=Channels.newChannel(out);
+			long end=end(file);
+			
+			for(long pos=position;pos<end;)
+				pos+=transfer(file,pos,end-pos,target);
+		}
+	}
+	
+	/**
+	 * Sends the region as binary chunks (see {@link Bridge#FLAG_BINARY}), followed by an empty chunk
+	 * 
+	 * @param bridge the {@link Bridge} sending the region
+	 * @param pid the ID of the {@link Packet} the stream belongs to
+	 * @param target the connection's channel
+	 * 
+	 * @throws IOException if an I/O error occurs
+	 */
+	void transferTo(Bridge bridge,int pid,WritableByteChannel target)throws IOException {
+		int maxChunkLength=Math.min(MAX_CHUNK_LENGTH,bridge.maxPacketLength-6);
+		
+		try(FileChannel file=FileChannel.open(path,StandardOpenOption.READ)) {
+			long end=end(file);
+			
+			for(long pos=position;pos<end;) {
+				int len=(int)Math.min(maxChunkLength,end-pos);
+				
+				writeHeader(pid,len,target);
+				
+				for(long n=len;n>0;) {
+					long sent=transfer(file,pos,n,target);
+					
+					pos+=sent;
+					n-=sent;
+				}
+			}
+			
+			writeHeader(pid,0,target);
+		}
+	}
+	
+	/**
+	 * @return the offset after the region's last byte, limited by the file's size
+	 */
+	private long end(FileChannel file)throws IOException {
+		long size=file.size();
+		
+		if(position>size)
+			return position;
+		
+		return position+Math.min(count,size-position);
+	}
+	
+	/**
+	 * @return the number of bytes transferred (at least 1)
+	 * 
+	 * @throws IOException if the file has been truncated meanwhile
+	 */
+	private static long transfer(FileChannel file,long position,long count,WritableByteChannel target)throws IOException {
+		long sent=file.transferTo(position,count,target);
+		
+		if(sent<=0&&position>=file.size())
+			throw new IOException("File has been truncated while being sent");
+		
+		return sent;
+	}
+	
+	/**
+	 * Writes the 6 byte header of a binary chunk
+	 */
+	private static void writeHeader(int pid,int len,WritableByteChannel target)throws IOException {
+		ByteBuffer header=ByteBuffer.allocate(6)
+			.put((byte)pid)
+			.put((byte)(Bridge.FLAG_CHUNK|Bridge.FLAG_BINARY))
+			.putInt(len)
+			.flip();
+		
+		while(header.hasRemaining())
+			target.write(header);
+	}
+	
+}
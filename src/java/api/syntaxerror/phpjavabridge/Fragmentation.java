@@ -0,0 +1,537 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Splits {@link Packet}s which don't fit into a single datagram into fragments and reassembles them ({@link BridgeImpl.UDP UDP} only).<br>
+ * <br>
+ * Structure of a fragment:
+ * <pre>
+ * &lt;int8 Packet-ID&gt; &lt;int8 flags | FLAG_FRAGMENT&gt; &lt;int32 fragment length&gt; &lt;int32 message-ID&gt; &lt;uint16 index&gt; &lt;uint16 count&gt; &lt;fragment&gt;
+ * </pre>
+ * The fragments of a message are consecutive slices of the encrypted data. A client that sends its request as fragments
+ * (even if there is only a single fragment) receives the response as fragments, too; both use the same message-ID.<br>
+ * <br>
+ * Lost fragments are requested again via a NACK:
+ * <pre>
+ * &lt;int8 Packet-ID&gt; &lt;int8 FLAG_NACK&gt; &lt;int32 length&gt; &lt;int32 message-ID&gt; [&lt;uint16 missing index&gt; [...]]
+ * </pre>
+ * The server sends NACKs for incomplete requests and keeps sent responses for a while, so it can answer the client's NACKs.
+ * Incomplete messages are discarded after a timeout. Both incomplete messages and kept responses are limited to a number of bytes per client.
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class Fragmentation {
+	
+	/** size of a fragment's header: 6 byte frame header, message-ID, index and count */
+	static final int HEADER_SIZE=14;
+	
+	/** max. number of NACKs sent for a single message */
+	static final int MAX_NACKS=5;
+	
+	/** number of bytes charged per fragment of an incomplete message for its slot in the fragment table, even if it has not been received yet */
+	static final int SLOT_SIZE=8;
+	
+	int fragmentSize=1400;
+	long nackDelay=20,reassemblyTimeout=2000,retention=5000;
+	long maxBufferedBytes=4<<20;
+	/** max. number of incomplete messages per client, the oldest one is discarded when another one arrives */
+	int maxPendingMessages=64;
+	
+	private final Bridge bridge;
+	private final Map<SocketAddress,Peer>peers=new ConcurrentHashMap<>();
+	
+	Fragmentation(Bridge bridge) {
+		this.bridge=bridge;
+	}
+	
+	/**
+	 * Adds a fragment to its message
+	 * 
+	 * @param socket the socket used for answering duplicate requests
+	 * @param datagram the received fragment
+	 * 
+	 * @return the complete message (see {@link Message}), or {@code null} if it is still incomplete
+	 * 
+	 * @throws IOException if the fragment is malformed or an I/O error occurs
+	 */
+	Message receive(DatagramSocket socket,DatagramPacket datagram)throws IOException {
+		byte[]buf=datagram.getData();
+		int off=datagram.getOffset(),len=datagram.getLength();
+		
+		if(len<HEADER_SIZE)
+			throw new MalformedRequestException("Expected a "+HEADER_SIZE+" byte fragment header, got "+len+" bytes instead");
+		
+		long length=BridgeImpl.readLength(buf,off+2);
+		int messageID=(int)BridgeImpl.readLength(buf,off+6),
+			index=((buf[off+10]&0xFF)<<8)|(buf[off+11]&0xFF),
+			count=((buf[off+12]&0xFF)<<8)|(buf[off+13]&0xFF);
+		
+		if(length+HEADER_SIZE!=len)
+			throw new MalformedRequestException("Expected "+length+" bytes, got "+(len-HEADER_SIZE)+" instead");
+		
+		if(index>=count)
+			throw new MalformedRequestException("Invalid fragment: #"+index+" of "+count);
+		
+		// otherwise, a message could consist of up to 65535 fragments without any data
+		if(length==0&&count>1)
+			throw new MalformedRequestException("Invalid fragment: #"+index+" of "+count+" is empty");
+		
+		if(count+6>bridge.maxPacketLength)
+			throw new MalformedRequestException("Too many fragments: "+count+" (max. "+(bridge.maxPacketLength-6)+")");
+		
+		long now=System.currentTimeMillis();
+		
+		for(;;) {
+			Peer peer=peers.computeIfAbsent(datagram.getSocketAddress(),Peer::new);
+			
+			synchronized(peer) {
+				if(peer.removed) // by tick(), after the lookup
+					continue;
+				
+				return receive0(socket,peer,buf,off,length,messageID,index,count,now);
+			}
+		}
+	}
+	
+	/**
+	 * Adds a fragment to its message, while holding the lock of the {@link Peer}
+	 */
+	private Message receive0(DatagramSocket socket,Peer peer,byte[]buf,int off,long length,int messageID,int index,int count,long now)throws IOException {
+		Response response=peer.responses.get(messageID);
+		
+		if(response!=null) {
+			// the response has been lost completely, the client sent the request again
+			if(index==0&&response.fragments!=null)
+				for(byte[]fragment:response.fragments)
+					socket.send(new DatagramPacket(fragment,fragment.length,peer.address));
+			
+			return null;
+		}
+		
+		Message message=peer.messages.get(messageID);
+		
+		if(message==null) {
+			if(length*count+6>bridge.maxPacketLength)
+				throw new MalformedRequestException("Incoming Packet too large: ~"+(length*count+6)+" (max. "+bridge.maxPacketLength+")");
+			
+			if(peer.messages.size()>=maxPendingMessages)
+				peer.remove(peer.messages.values().iterator().next());
+			
+			peer.messages.put(messageID,message=new Message(buf[off]&0xFF,buf[off+1]&~Bridge.FLAG_FRAGMENT,messageID,count));
+			peer.bufferedBytes+=message.size();
+		} else if(message.fragments.length!=count)
+			throw new MalformedRequestException("Invalid fragment: #"+index+" of "+count+" (expected "+message.fragments.length+" fragments)");
+		
+		message.lastSeen=now;
+		
+		if(message.fragments[index]!=null)
+			return null;
+		
+		if(message.length+length+6>bridge.maxPacketLength) {
+			peer.remove(message);
+			throw new MalformedRequestException("Incoming Packet too large: "+(message.length+length+6)+" (max. "+bridge.maxPacketLength+")");
+		}
+		
+		byte[]fragment=new byte[(int)length];
+		System.arraycopy(buf,off+HEADER_SIZE,fragment,0,fragment.length);
+		
+		message.fragments[index]=fragment;
+		message.length+=length;
+		peer.bufferedBytes+=length;
+		
+		if(++message.received<count) {
+			peer.evict(message);
+			return null;
+		}
+		
+		peer.remove(message);
+		peer.responses.put(messageID,new Response(now)); // requests sent again are ignored while processing
+		
+		return message;
+	}
+	
+	/**
+	 * Sends a response as fragments and keeps them for NACKs and repeated requests
+	 * 
+	 * @param socket the socket to send the fragments with
+	 * @param address the client's address
+	 * @param messageID the message-ID of the request
+	 * @param frame the response (including the 6 byte header)
+	 * 
+	 * @throws IOException if an I/O error occurs
+	 */
+	void send(DatagramSocket socket,SocketAddress address,int messageID,byte[]frame)throws IOException {
+		byte[][]fragments=split(frame,messageID,fragmentSize);
+		
+		for(;;) {
+			Peer peer=peers.computeIfAbsent(address,Peer::new);
+			
+			synchronized(peer) {
+				if(peer.removed) // by tick(), after the lookup
+					continue;
+				
+				Response response=peer.responses.get(messageID);
+				
+				if(response==null)
+					peer.responses.put(messageID,response=new Response(System.currentTimeMillis()));
+				
+				response.fragments=fragments;
+				response.length=frame.length;
+				peer.bufferedBytes+=frame.length;
+				peer.evict(null);
+				break;
+			}
+		}
+		
+		for(byte[]fragment:fragments)
+			socket.send(new DatagramPacket(fragment,fragment.length,address));
+	}
+	
+	/**
+	 * Sends the fragments requested by a NACK again
+	 * 
+	 * @param socket the socket to send the fragments with
+	 * @param datagram the received NACK
+	 * 
+	 * @throws IOException if an I/O error occurs
+	 */
+	void nack(DatagramSocket socket,DatagramPacket datagram)throws IOException {
+		byte[]buf=datagram.getData();
+		int off=datagram.getOffset(),len=datagram.getLength();
+		
+		if(len<10)
+			return;
+		
+		int messageID=(int)BridgeImpl.readLength(buf,off+6);
+		Peer peer=peers.get(datagram.getSocketAddress());
+		
+		if(peer==null)
+			return;
+		
+		List<byte[]>resend=new ArrayList<>();
+		
+		synchronized(peer) {
+			Response response=peer.responses.get(messageID);
+			
+			if(response==null||response.fragments==null)
+				return;
+			
+			for(int i=off+10;i+1<off+len;i+=2) {
+				int index=((buf[i]&0xFF)<<8)|(buf[i+1]&0xFF);
+				
+				if(index<response.fragments.length)
+					resend.add(response.fragments[index]);
+			}
+		}
+		
+		for(byte[]fragment:resend)
+			socket.send(new DatagramPacket(fragment,fragment.length,peer.address));
+	}
+	
+	/**
+	 * Discards the placeholder of a request which has not been answered (the handler failed or the request was rejected),
+	 * so the client can send it again
+	 * 
+	 * @param address the client's address
+	 * @param messageID the message-ID of the request
+	 */
+	void discard(SocketAddress address,int messageID) {
+		Peer peer=peers.get(address);
+		
+		if(peer==null)
+			return;
+		
+		synchronized(peer) {
+			Response response=peer.responses.get(messageID);
+			
+			if(response!=null&&response.fragments==null)
+				peer.responses.remove(messageID);
+		}
+	}
+	
+	/**
+	 * Sends NACKs for stalled messages and discards expired messages and responses.<br>
+	 * Called periodically by the server thread.
+	 * 
+	 * @param socket the socket to send the NACKs with
+	 * 
+	 * @throws IOException if an I/O error occurs
+	 */
+	void tick(DatagramSocket socket)throws IOException {
+		long now=System.currentTimeMillis();
+		
+		for(Iterator<Peer>peerIterator=peers.values().iterator();peerIterator.hasNext();) {
+			Peer peer=peerIterator.next();
+			List<byte[]>nacks=new ArrayList<>();
+			
+			synchronized(peer) {
+				for(Iterator<Message>it=peer.messages.values().iterator();it.hasNext();) {
+					Message message=it.next();
+					long idle=now-message.lastSeen;
+					
+					if(idle>reassemblyTimeout) {
+						it.remove();
+						peer.bufferedBytes-=message.size();
+					} else if(message.nacks<MAX_NACKS&&idle>=nackDelay*(message.nacks+1)) {
+						++message.nacks;
+						nacks.add(nackFor(message));
+					}
+				}
+				
+				// placeholders expire, too, in case their request has never been answered
+				for(Iterator<Response>it=peer.responses.values().iterator();it.hasNext();) {
+					Response response=it.next();
+					
+					if(now-response.created>retention) {
+						it.remove();
+						peer.bufferedBytes-=response.length;
+					}
+				}
+				
+				if(peer.messages.isEmpty()&&peer.responses.isEmpty()) {
+					peer.removed=true;
+					peerIterator.remove();
+				}
+			}
+			
+			for(byte[]nack:nacks)
+				socket.send(new DatagramPacket(nack,nack.length,peer.address));
+		}
+	}
+	
+	/**
+	 * @param message an incomplete message
+	 * 
+	 * @return a NACK containing (as many as fit into a fragment) missing indices
+	 */
+	private byte[]nackFor(Message message) {
+		int missing=0;
+		
+		for(byte[]fragment:message.fragments)
+			if(fragment==null)
+				++missing;
+		
+		missing=Math.min(missing,Math.max(1,(fragmentSize-4)/2));
+		
+		byte[]nack=new byte[10+2*missing];
+		int len=4+2*missing;
+		
+		nack[0]=(byte)message.pid;
+		nack[1]=(byte)Bridge.FLAG_NACK;
+		nack[2]=(byte)((len>>24)&0xFF);
+		nack[3]=(byte)((len>>16)&0xFF);
+		nack[4]=(byte)((len>>8)&0xFF);
+		nack[5]=(byte)(len&0xFF);
+		writeInt(nack,6,message.messageID);
+		
+		for(int i=0,j=10;i<message.fragments.length&&j<nack.length;++i)
+			if(message.fragments[i]==null) {
+				nack[j++]=(byte)(i>>8);
+				nack[j++]=(byte)i;
+			}
+		
+		return nack;
+	}
+	
+	/**
+	 * @param frame a complete frame (including the 6 byte header)
+	 * @param messageID the message-ID
+	 * @param fragmentSize the max. number of data bytes per fragment
+	 * 
+	 * @return the fragments
+	 */
+	static byte[][]split(byte[]frame,int messageID,int fragmentSize) {
+		int len=frame.length-6;
+		int count=Math.max(1,(len+fragmentSize-1)/fragmentSize);
+		
+		if(count>0xFFFF)
+			throw new IllegalArgumentException("Too many fragments: "+count+" (max. 65535)");
+		
+		byte[][]fragments=new byte[count][];
+		
+		for(int i=0;i<count;++i) {
+			int partOffset=i*fragmentSize,
+				partLength=Math.min(fragmentSize,len-partOffset);
+			
+			byte[]fragment=new byte[HEADER_SIZE+partLength];
+			
+			fragment[0]=frame[0];
+			fragment[1]=(byte)(frame[1]|Bridge.FLAG_FRAGMENT);
+			writeInt(fragment,2,partLength);
+			writeInt(fragment,6,messageID);
+			fragment[10]=(byte)(i>>8);
+			fragment[11]=(byte)i;
+			fragment[12]=(byte)(count>>8);
+			fragment[13]=(byte)count;
+			
+			System.arraycopy(frame,6+partOffset,fragment,HEADER_SIZE,partLength);
+			
+			fragments[i]=fragment;
+		}
+		
+		return fragments;
+	}
+	
+	private static void writeInt(byte[]buf,int off,int i) {
+		buf[off]=(byte)((i>>24)&0xFF);
+		buf[off+1]=(byte)((i>>16)&0xFF);
+		buf[off+2]=(byte)((i>>8)&0xFF);
+		buf[off+3]=(byte)(i&0xFF);
+	}
+	
+	/**
+	 * A (possibly incomplete) fragmented message
+	 */
+	static class Message {
+		
+		final int pid,flags,messageID;
+		final byte[][]fragments;
+		int received,nacks;
+		long length,lastSeen;
+		
+		Message(int pid,int flags,int messageID,int count) {
+			this.pid=pid;
+			this.flags=flags;
+			this.messageID=messageID;
+			fragments=new byte[count][];
+		}
+		
+		/**
+		 * @return the number of bytes charged for this message, i.e. the received data and the fragment table
+		 */
+		long size() {
+			return length+(long)SLOT_SIZE*fragments.length;
+		}
+		
+		/**
+		 * @return the reassembled frame (including the 6 byte header)
+		 */
+		byte[]toFrame() {
+			byte[]frame=new byte[6+(int)length];
+			
+			frame[0]=(byte)pid;
+			frame[1]=(byte)flags;
+			writeInt(frame,2,(int)length);
+			
+			int off=6;
+			
+			for(byte[]fragment:fragments) {
+				System.arraycopy(fragment,0,frame,off,fragment.length);
+				off+=fragment.length;
+			}
+			
+			return frame;
+		}
+		
+	}
+	
+	/**
+	 * A response kept for NACKs. {@code fragments} is {@code null} while the request is still being processed
+	 */
+	static class Response {
+		
+		final long created;
+		byte[][]fragments;
+		long length;
+		
+		Response(long created) {
+			this.created=created;
+		}
+		
+	}
+	
+	/**
+	 * The fragmentation state of a single client
+	 */
+	class Peer {
+		
+		final SocketAddress address;
+		final LinkedHashMap<Integer,Message>messages=new LinkedHashMap<>();
+		final LinkedHashMap<Integer,Response>responses=new LinkedHashMap<>();
+		long bufferedBytes;
+		/** set by {@link Fragmentation#tick(DatagramSocket)} when the peer has been removed from the map, it must not be used anymore */
+		boolean removed;
+		
+		Peer(SocketAddress address) {
+			this.address=address;
+		}
+		
+		void remove(Message message) {
+			messages.remove(message.messageID);
+			bufferedBytes-=message.size();
+		}
+		
+		/**
+		 * Discards the oldest incomplete messages (except {@code keep}) and responses until the client is within its limit
+		 * 
+		 * @param keep the message which must not be discarded, or {@code null}
+		 */
+		void evict(Message keep) {
+			for(Iterator<Message>it=messages.values().iterator();bufferedBytes>maxBufferedBytes&&it.hasNext();) {
+				Message message=it.next();
+				
+				if(message!=keep) {
+					it.remove();
+					bufferedBytes-=message.size();
+				}
+			}
+			
+			for(Iterator<Response>it=responses.values().iterator();bufferedBytes>maxBufferedBytes&&it.hasNext();) {
+				Response response=it.next();
+				
+				if(response.fragments!=null) {
+					it.remove();
+					bufferedBytes-=response.length;
+				}
+			}
+			
+			if(bufferedBytes>maxBufferedBytes&&keep!=null)
+				remove(keep);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,129 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.util.Arrays;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * An immutable {@link Packet} (see {@link Packet#freeze()}), which can be returned by a {@link PacketHandler} as often as needed, even concurrently.<br>
+ * <br>
+ * Its data is only serialized once: Without AES, the complete frame is cached and written as it is.
+ * With AES, the padded (and possibly compressed) data is cached, so only the encryption remains.<br>
+ * <br>
+ * Neither reading nor writing is supported. Closing a FrozenPacket has no effect.
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+public final class FrozenPacket extends Packet {
+	
+	/** the most recently used encoded form */
+	private volatile Encoded encoded;
+	
+	/**
+	 * @param packet the {@link Packet} to be copied
+	 */
+	FrozenPacket(Packet packet) {
+		super(packet.getPacketID());
+		
+		data=Arrays.copyOf(packet.data,packet.size());
+		size=data.length;
+		stringOffsets=packet.stringOffsets==null?null:Arrays.copyOf(packet.stringOffsets,packet.stringCount);
+		stringCount=packet.stringCount;
+		littleEndian=packet.littleEndian;
+	}
+	
+	@Override
+	void ensureAccessible() {
+		throw new UnsupportedOperationException("Packet is frozen");
+	}
+	
+	/**
+	 * @return this FrozenPacket
+	 */
+	@Override
+	public FrozenPacket freeze() {
+		return this;
+	}
+	
+	/**
+	 * has no effect, since a FrozenPacket may be shared
+	 */
+	@Override
+	public void close() {}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * @param bridge the {@link Bridge} sending the {@link Packet}
+	 * @param compress whether or not the client accepts compressed data
+	 * 
+	 * @return the encrypted {@link Packet}, including the 6 byte header
+	 * 
+	 * @throws MalformedRequestException if the {@link Packet} exceeds {@link Bridge#maxPacketLength}
+	 */
+	byte[]encode(Bridge bridge,boolean compress)throws MalformedRequestException {
+		Encoded encoded=this.encoded;
+		
+		if(encoded==null||encoded.bridge!=bridge||encoded.compress!=compress||encoded.compressionThreshold!=bridge.compressionThreshold) {
+			byte[]raw=bridge.wrap(data,compress);
+			
+			this.encoded=encoded=new Encoded(bridge,compress,
+				raw,bridge.isUsingAES()?null:BridgeImpl.frame(bridge,getPacketID(),0,bridge.seal(raw)));
+		}
+		
+		if(encoded.frame!=null)
+			return encoded.frame;
+		
+		return BridgeImpl.frame(bridge,getPacketID(),0,bridge.seal(encoded.raw));
+	}
+	
+	private static class Encoded {
+		
+		final Bridge bridge;
+		final boolean compress;
+		final int compressionThreshold;
+		final byte[]raw,frame;
+		
+		Encoded(Bridge bridge,boolean compress,byte[]raw,byte[]frame) {
+			this.bridge=bridge;
+			this.compress=compress;
+			this.raw=raw;
+			this.frame=frame;
+			
+			compressionThreshold=bridge.compressionThreshold;
+		}
+		
+	}
+	
+}
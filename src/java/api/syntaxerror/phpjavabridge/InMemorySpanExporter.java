@@ -0,0 +1,69 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * A {@link SpanExporter} keeping all the {@link Span}s in memory, e.g. for tests
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+public class InMemorySpanExporter implements SpanExporter {
+	
+	private final Queue<Span>spans=new ConcurrentLinkedQueue<>();
+	
+	@Override
+	public void export(Span span) {
+		spans.add(span);
+	}
+	
+	/**
+	 * @return the exported {@link Span}s, in the order they finished
+	 */
+	public List<Span>getSpans() {
+		return new ArrayList<>(spans);
+	}
+	
+	/**
+	 * Discards all the {@link Span}s
+	 */
+	public void reset() {
+		spans.clear();
+	}
+	
+}
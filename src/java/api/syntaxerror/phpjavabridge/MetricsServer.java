@@ -0,0 +1,219 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Serves the {@link BridgeMXBean} attributes and the {@link BridgeMetrics} of a {@link Bridge} in the Prometheus text format (at {@code /metrics}).<br>
+ * <br>
+ * The latency histograms are exported in seconds. To keep the number of series low, only every second bucket of
+ * {@link BridgeMetrics.Histogram} (from about 1 &micro;s to about 69 s) is exported.<br>
+ * <br>
+ * see {@link Bridge#startMetricsServer(InetSocketAddress)}
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class MetricsServer {
+	
+	private static final String CONTENT_TYPE="text/plain; version=0.0.4; charset=utf-8";
+	/** the first and last exported bucket of a {@link BridgeMetrics.Histogram} */
+	private static final int FIRST_BUCKET=10,LAST_BUCKET=36;
+	
+	private final Bridge bridge;
+	private final BridgeMonitor monitor;
+	private final HttpServer server;
+	
+	/**
+	 * Starts a new MetricsServer
+	 * 
+	 * @param bridge the {@link Bridge}
+	 * @param address the address to bind to
+	 * 
+	 * @throws IOException if the address cannot be bound
+	 */
+	MetricsServer(Bridge bridge,InetSocketAddress address)throws IOException {
+		this.bridge=bridge;
+		
+		monitor=new BridgeMonitor(bridge);
+		
+		server=HttpServer.create(address,0);
+		server.createContext("/metrics",this::handle);
+		server.start();
+	}
+	
+	/**
+	 * @return the address the server is bound to
+	 */
+	InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+	
+	void stop() {
+		server.stop(0);
+	}
+	
+	private void handle(HttpExchange exchange)throws IOException {
+		try {
+			String method=exchange.getRequestMethod();
+			
+			if(!method.equals("GET")&&!method.equals("HEAD")) {
+				exchange.getResponseHeaders().set("Allow","GET, HEAD");
+				exchange.sendResponseHeaders(405,-1);
+				return;
+			}
+			
+			byte[]body=scrape().getBytes(StandardCharsets.UTF_8);
+			
+			exchange.getResponseHeaders().set("Content-Type",CONTENT_TYPE);
+			exchange.sendResponseHeaders(200,method.equals("HEAD")?-1:body.length);
+			
+			if(method.equals("GET"))
+				try(OutputStream out=exchange.getResponseBody()) {
+					out.write(body);
+				}
+		} finally {
+			exchange.close();
+		}
+	}
+	
+	/**
+	 * @return the current metrics in the Prometheus text format
+	 */
+	String scrape() {
+		StringBuilder sb=new StringBuilder();
+		
+		gauge(sb,"phpjavabridge_active_connections","Open connections (TCP and Unix Domain Sockets)",monitor.getActiveConnections());
+		gauge(sb,"phpjavabridge_active_requests","Requests currently being processed",monitor.getActiveRequests());
+		gauge(sb,"phpjavabridge_handler_threads","Threads serving connections, datagrams or shared memory slots",monitor.getHandlerThreads());
+		counter(sb,"phpjavabridge_reaped_connections_total","Connections closed because of an expired idle, read or write timeout",monitor.getReapedConnections());
+		counter(sb,"phpjavabridge_rejected_requests_total","Requests rejected because of a per-connection limit",monitor.getRejectedRequests());
+		
+		if(monitor.getBatchMaxPoolSize()>=0) {
+			gauge(sb,"phpjavabridge_batch_queue_depth","Batched Packets waiting for a thread",monitor.getBatchQueueDepth());
+			gauge(sb,"phpjavabridge_batch_active_threads","Threads of the batch executor handling Packets",monitor.getBatchActiveThreads());
+			gauge(sb,"phpjavabridge_batch_pool_threads","Threads of the batch executor",monitor.getBatchPoolSize());
+			gauge(sb,"phpjavabridge_batch_pool_utilization","Active threads relative to the max. number of threads of the batch executor",monitor.getBatchPoolUtilization());
+		}
+		
+		BridgeMetrics metrics=bridge.metrics;
+		
+		if(metrics==null)
+			return sb.toString();
+		
+		Iterable<BridgeMetrics.PacketStats>all=metrics.getAll().values();
+		
+		header(sb,"phpjavabridge_requests_total","Received requests","counter");
+		
+		for(BridgeMetrics.PacketStats stats:all)
+			sample(sb,"phpjavabridge_requests_total",pid(stats),stats.getRequestCount());
+		
+		header(sb,"phpjavabridge_errors_total","Requests which could not be processed","counter");
+		
+		for(BridgeMetrics.PacketStats stats:all)
+			sample(sb,"phpjavabridge_errors_total",pid(stats),stats.getErrorCount());
+		
+		header(sb,"phpjavabridge_received_bytes_total","Bytes received (frames, excluding streams)","counter");
+		
+		for(BridgeMetrics.PacketStats stats:all)
+			sample(sb,"phpjavabridge_received_bytes_total",pid(stats),stats.getBytesIn());
+		
+		header(sb,"phpjavabridge_sent_bytes_total","Bytes sent (frames, excluding streams)","counter");
+		
+		for(BridgeMetrics.PacketStats stats:all)
+			sample(sb,"phpjavabridge_sent_bytes_total",pid(stats),stats.getBytesOut());
+		
+		header(sb,"phpjavabridge_stage_duration_seconds","Latency of the stages of a request","histogram");
+		
+		for(BridgeMetrics.PacketStats stats:all)
+			for(BridgeMetrics.Stage stage:BridgeMetrics.Stage.values()) {
+				BridgeMetrics.Histogram histogram=stats.getLatency(stage);
+				String labels=pid(stats)+",stage=\""+stage.name().toLowerCase(Locale.ROOT)+"\"";
+				
+				long[]buckets=histogram.getBuckets();
+				long count=0;
+				
+				for(int i=0;i<=LAST_BUCKET;++i) {
+					count+=buckets[i];
+					
+					if(i>=FIRST_BUCKET&&(i-FIRST_BUCKET)%2==0)
+						sample(sb,"phpjavabridge_stage_duration_seconds_bucket",labels+",le=\""+seconds(BridgeMetrics.Histogram.getUpperBound(i))+"\"",count);
+				}
+				
+				for(int i=LAST_BUCKET+1;i<buckets.length;++i)
+					count+=buckets[i];
+				
+				sample(sb,"phpjavabridge_stage_duration_seconds_bucket",labels+",le=\"+Inf\"",count);
+				sample(sb,"phpjavabridge_stage_duration_seconds_sum",labels,seconds(histogram.getSum()));
+				sample(sb,"phpjavabridge_stage_duration_seconds_count",labels,count);
+			}
+		
+		return sb.toString();
+	}
+	
+	private static String pid(BridgeMetrics.PacketStats stats) {
+		return "pid=\""+stats.getPacketID()+"\"";
+	}
+	
+	private static String seconds(long nanos) {
+		return Double.toString(nanos/1e9);
+	}
+	
+	private static void header(StringBuilder sb,String name,String help,String type) {
+		sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+	
+	private static void gauge(StringBuilder sb,String name,String help,Number value) {
+		header(sb,name,help,"gauge");
+		sb.append(name).append(' ').append(value).append('\n');
+	}
+	
+	private static void counter(StringBuilder sb,String name,String help,long value) {
+		header(sb,name,help,"counter");
+		sb.append(name).append(' ').append(value).append('\n');
+	}
+	
+	private static void sample(StringBuilder sb,String name,String labels,Object value) {
+		sb.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+	}
+	
+}
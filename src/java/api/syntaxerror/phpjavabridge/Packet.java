@@ -2,6 +2,18 @@ package api.syntaxerror.phpjavabridge;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
@@ -37,7 +49,7 @@ import java.io.IOException;
  * <hr>
  * 
  * A {@code Packet} is used to send and receive data.<br>
- * Currently, there are 14 differen data types supported:
+ * Currently, there are 18 differen data types supported:
  * <table border=1 style="border-collapse:collapse;text-align:center">
  * 	<caption>Available Data Types</caption>
  * 	<thead style="font-weight:bold">
@@ -133,6 +145,36 @@ import java.io.IOException;
  * 			<td>{@link #readByteArray()}</td>
  * 			<td>{@link #writeByteArray(byte[])}</td>
  * 		</tr>
+ * 			<tr>
+ * 			<td>#14</td>
+ * 			<td>stream</td>
+ * 			<td>{@link #readStream()}</td>
+ * 			<td>{@link #writeStream(StreamWriter)}</td>
+ * 		</tr>
+ * 			<tr>
+ * 			<td>#15</td>
+ * 			<td>list</td>
+ * 			<td>{@link #readList()}</td>
+ * 			<td>{@link #writeList(List)}</td>
+ * 		</tr>
+ * 			<tr>
+ * 			<td>#16</td>
+ * 			<td>map</td>
+ * 			<td>{@link #readMap()}</td>
+ * 			<td>{@link #writeMap(Map)}</td>
+ * 		</tr>
+ * 			<tr>
+ * 			<td>#17</td>
+ * 			<td>String (dictionary)</td>
+ * 			<td>{@link #readStringUTF8()}</td>
+ * 			<td>{@link #writeStringUTF8(String)} (replaced by the Bridge)</td>
+ * 		</tr>
+ * 			<tr>
+ * 			<td>#18</td>
+ * 			<td>trace context (in front of the data only)</td>
+ * 			<td>{@link #getTraceContext()}</td>
+ * 			<td>{@code Bridge::setTraceParent()} (PHP)</td>
+ * 		</tr>
  * 	</tbody>
  * </table>
  * 
@@ -146,19 +188,55 @@ public class Packet implements Closeable {
 	private int pid;
 	protected boolean littleEndian,closed;
 	
+	/** the data type of a container's elements if they don't share the same data type */
+	private static final int MIXED=0xFF;
+	/** the max. depth of nested containers */
+	private static final int MAX_DEPTH=32;
+	
+	/** outgoing: the offsets of the UTF-8 strings, which may be replaced by the {@link StringDictionary} */
+	int[]stringOffsets;
+	int stringCount;
+	/** incoming: the dictionary of the connection, or {@code null} if the client doesn't use one */
+	StringDictionary dictionary;
+	/** incoming: whether or not the Packet contains dictionary strings, i.e. its data depends on the connection */
+	boolean usesDictionary;
+	/** incoming: the span of the request, or {@code null} if the client didn't send a trace context */
+	TraceContext traceContext;
+	
+	/** the number of streams announced by an incoming Packet */
+	int streamCount;
+	/** incoming: the streams which haven't been returned by {@link #readStream()} yet */
+	final Deque<ChunkInputStream>inputStreams=new ArrayDeque<>();
+	/** outgoing: the streams to be sent after the Packet */
+	final List<StreamWriter>outputStreams=new ArrayList<>();
+	
 	/**
 	 * Instantiates a new Packet
 	 * 
 	 * @param pid The Packet-ID. must be in range [0;255]
 	 */
 	public Packet(int pid) {
+		this(pid,128);
+	}
+	
+	/**
+	 * Instantiates a new Packet with a pre-sized buffer.<br>
+	 * If the encoded size of the data is known in advance, the buffer never has to grow.
+	 * 
+	 * @param pid The Packet-ID. must be in range [0;255]
+	 * @param capacity the initial size of the buffer in bytes
+	 */
+	public Packet(int pid,int capacity) {
 		if(pid<0||pid>255)
 			throw new IllegalArgumentException("PacketIDs cannot be lower than 0 or greater than 255: "+pid);
 		
+		if(capacity<0)
+			throw new IllegalArgumentException("Capacity cannot be negative: "+capacity);
+		
 		this.pid=pid;
 		
 		littleEndian=closed=false;
-		data=new byte[128];
+		data=new byte[Math.max(1,capacity)];
 		pointer=-1;
 	}
 	
@@ -169,14 +247,20 @@ public class Packet implements Closeable {
 		return pid;
 	}
 	
+	/**
+	 * @return the span of the request, if the client sent a trace context (#18, see {@link TraceContext}), {@code null} otherwise
+	 */
+	public TraceContext getTraceContext() {
+		return traceContext;
+	}
+	
 	/**
 	 * @return a single (unsigned) byte from the packet
 	 */
 	private int read() {
-		if(closed)
-			throw new UnsupportedOperationException("Packet is closed");
+		ensureAccessible();
 		
-		if(pointer>=size)
+		if(pointer+1>=size)
 			throw new IndexOutOfBoundsException("End of data reached");
 		
 		return data[++pointer]&0xFF; // &0xFF to make it an 'unsigned byte'
@@ -200,6 +284,14 @@ public class Packet implements Closeable {
 			}
 	}
 	
+	/**
+	 * @throws UnsupportedOperationException if data can neither be read nor written
+	 */
+	void ensureAccessible() {
+		if(closed)
+			throw new UnsupportedOperationException("Packet is closed");
+	}
+	
 	/**
 	 * Checks for a single byte (used for data-type IDs)
 	 * 
@@ -217,11 +309,10 @@ public class Packet implements Closeable {
 	 * @param i the byte to be written
 	 */
 	private void write(int i) {
-		if(closed)
-			throw new UnsupportedOperationException("Packet is closed");
+		ensureAccessible();
 		
-		if(++pointer>data.length) {
-			byte[]copy=new byte[data.length+128];
+		if(++pointer>=data.length) {
+			byte[]copy=new byte[data.length<<1];
 			System.arraycopy(data,0,copy,0,data.length);
 			data=copy;
 		}
@@ -239,6 +330,15 @@ public class Packet implements Closeable {
 	 */
 	public boolean readBoolean() {
 		checkFlag(0);
+		return readBoolean0();
+	}
+	
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * @return boolean without {@link #checkFlag(int)} being called
+	 */
+	private boolean readBoolean0() {
 		return read()!=0;
 	}
 	/**
@@ -250,6 +350,15 @@ public class Packet implements Closeable {
 	 */
 	public byte readByte() {
 		checkFlag(1);
+		return readByte0();
+	}
+	
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * @return byte without {@link #checkFlag(int)} being called
+	 */
+	private byte readByte0() {
 		return(byte)read();
 	}
 	/**
@@ -261,6 +370,15 @@ public class Packet implements Closeable {
 	 */
 	public int readUnsignedByte() {
 		checkFlag(2);
+		return readUnsignedByte0();
+	}
+	
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * @return unsigned byte without {@link #checkFlag(int)} being called
+	 */
+	private int readUnsignedByte0() {
 		return read();
 	}
 	/**
@@ -272,6 +390,15 @@ public class Packet implements Closeable {
 	 */
 	public short readShort() {
 		checkFlag(3);
+		return readShort0();
+	}
+	
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * @return short without {@link #checkFlag(int)} being called
+	 */
+	private short readShort0() {
 		byte[]bytes=new byte[2];
 		read(bytes,true);
 		return(short)(((bytes[0]&0xFF)<<8)|(bytes[1]&0xFF));
@@ -400,6 +527,15 @@ public class Packet implements Closeable {
 	 */
 	public float readFloat() {
 		checkFlag(8);
+		return readFloat0();
+	}
+	
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * @return float without {@link #checkFlag(int)} being called
+	 */
+	private float readFloat0() {
 		return Float.intBitsToFloat((int)readUnsignedInt0());
 	}
 	/**
@@ -414,6 +550,15 @@ public class Packet implements Closeable {
 	 */
 	public double readDouble() {
 		checkFlag(9);
+		return readDouble0();
+	}
+	
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * @return double without {@link #checkFlag(int)} being called
+	 */
+	private double readDouble0() {
 		long l=readLong0(false);
 		return Double.longBitsToDouble(l);
 	}
@@ -423,13 +568,69 @@ public class Packet implements Closeable {
 	 * each character uses 1 to 3 bytes of space<br>
 	 * additionally, 2 bytes are used for the length of the string<br>
 	 * <br>
-	 * Space required (in bytes): 2+n (min) to 2+3*n (max)
+	 * Space required (in bytes): 2+n (min) to 2+3*n (max)<br>
+	 * <br>
+	 * If the client uses a string dictionary, repeated strings are sent as dictionary strings (#17) instead,
+	 * which only require 3 bytes and return the same {@link String} instance every time.
 	 * 
 	 * @return a UTF-8 encoded string
 	 */
 	public String readStringUTF8() {
-		checkFlag(10);
+		int type=read();
 		
+		if(type==17)
+			return readDictionaryString(false);
+		
+		if(type!=10)
+			throw new IllegalArgumentException("Type mismatch: 10 and "+type);
+		
+		return readUTF8String0();
+	}
+	
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * Reads a dictionary string (#17, see {@link StringDictionary}).
+	 * Entries are defined while validating, afterwards definitions are just skipped.
+	 * 
+	 * @param define whether or not definitions are added to the dictionary
+	 * 
+	 * @return the string
+	 */
+	private String readDictionaryString(boolean define) {
+		if(dictionary==null)
+			throw new UnsupportedOperationException("Dictionary strings require a stream-based Bridge (TCP or Unix)");
+		
+		int ref=readUnsignedShort0();
+		
+		if((ref&StringDictionary.DEFINITION)==0)
+			return dictionary.get(ref);
+		
+		int index=ref&~StringDictionary.DEFINITION;
+		
+		if(!define) {
+			int len=readUnsignedShort0();
+			
+			if(pointer+len>=size)
+				throw new IndexOutOfBoundsException("End of data reached");
+			
+			pointer+=len;
+			return dictionary.get(index);
+		}
+		
+		int start=pointer;
+		String str=readUTF8String0();
+		
+		dictionary.define(index,str,pointer-start-2);
+		return str;
+	}
+	
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * @return UTF-8 string without {@link #checkFlag(int)} being called
+	 */
+	private String readUTF8String0() {
 		int len=readUnsignedShort0();
 		
 		String str="";
@@ -467,7 +668,15 @@ public class Packet implements Closeable {
 	 */
 	public String readStringASCII() {
 		checkFlag(11);
-
+		return readStringASCII0();
+	}
+	
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * @return ASCII string without {@link #checkFlag(int)} being called
+	 */
+	private String readStringASCII0() {
 		int len=readUnsignedShort0();
 		
 		String str="";
@@ -509,7 +718,15 @@ public class Packet implements Closeable {
 	 */
 	public String readStringC() {
 		checkFlag(12);
-		
+		return readStringC0();
+	}
+	
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * @return C string without {@link #checkFlag(int)} being called
+	 */
+	private String readStringC0() {
 		String str="";
 		
 		for(int i=read();i!=0;i=read())
@@ -526,13 +743,210 @@ public class Packet implements Closeable {
 	 */
 	public byte[]readByteArray() {
 		checkFlag(13);
-		int len=((int)readInt0())&0x7FFFFFFF;
+		return readByteArray0();
+	}
+	
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * @return byte array without {@link #checkFlag(int)} being called
+	 */
+	private byte[]readByteArray0() {
+		int offset=readByteArrayLength();
+		
+		return Arrays.copyOfRange(data,offset,pointer+1);
+	}
+	
+	/**
+	 * A read-only view of a byte array (#13), without copying it.<br>
+	 * The view shares the Packet's buffer, so it must not be used after the Packet has been closed
+	 * (i.e. after the {@link PacketHandler} returned).
+	 * 
+	 * @return the byte array, as a read-only {@link ByteBuffer} with position 0
+	 * 
+	 * @see #readByteArray()
+	 */
+	public ByteBuffer readByteArrayBuffer() {
+		checkFlag(13);
+		
+		int offset=readByteArrayLength();
+		
+		return ByteBuffer.wrap(data,offset,pointer+1-offset).slice().asReadOnlyBuffer();
+	}
+	
+	/**
+	 * Writes a byte array (#13) to a stream, without copying it first.
+	 * 
+	 * @param out the stream, e.g. of a file or a socket
+	 * 
+	 * @return the number of bytes written
+	 * 
+	 * @throws IOException if an I/O error occurs
+	 * 
+	 * @see #readByteArray()
+	 */
+	public int readByteArray(OutputStream out)throws IOException {
+		checkFlag(13);
+		
+		int offset=readByteArrayLength();
+		
+		out.write(data,offset,pointer+1-offset);
+		return pointer+1-offset;
+	}
+	
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * Reads the length of a byte array and skips its data
+	 * 
+	 * @return the offset of the data
+	 */
+	private int readByteArrayLength() {
+		int len=readInt0()&0x7FFFFFFF;
+		
+		if(len>size-pointer-1)
+			throw new IndexOutOfBoundsException("End of data reached");
+		
+		int offset=pointer+1;
+		pointer+=len;
+		
+		return offset;
+	}
+	
+	/**
+	 * Streams an arbitrary amount of bytes<br>
+	 * <br>
+	 * The data is not part of the Packet itself, but is sent in chunks after the Packet.
+	 * This way, the size of the data is neither limited by the max. Packet length nor by the available memory.<br>
+	 * Streams must be read in the order they were written; calling this method again skips the unread rest of the previous stream.<br>
+	 * The returned {@link InputStream} is valid until the {@link PacketHandler} returns.<br>
+	 * <br>
+	 * <b>Note:</b> streams are only supported by stream-based Bridges ({@link BridgeImpl.TCP TCP} and {@link BridgeImpl.Unix Unix})<br>
+	 * <br>
+	 * Space required (in bytes): 0 (in the Packet)
+	 * 
+	 * @return the stream's data
+	 */
+	public InputStream readStream() {
+		checkFlag(14);
+		
+		InputStream in=inputStreams.poll();
+		
+		if(in==null)
+			throw new UnsupportedOperationException("Streams require a stream-based Bridge (TCP or Unix)");
+		
+		return in;
+	}
+	
+	/**
+	 * A list of values of the data types #0 to #13, #15 and #16<br>
+	 * <br>
+	 * If all elements share the same data type, it is stored once in front of the elements (homogeneous list).
+	 * Otherwise, every element is preceded by its data type (heterogeneous list).<br>
+	 * Nested lists and maps are supported, streams are not.<br>
+	 * <br>
+	 * Space required (in bytes): 5+n (homogeneous) or 5+n+count (heterogeneous)
+	 * 
+	 * @return a modifiable list of the elements
+	 */
+	public List<Object>readList() {
+		checkFlag(15);
+		return readList0(0);
+	}
+	
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * @return list without {@link #checkFlag(int)} being called
+	 */
+	private List<Object>readList0(int depth) {
+		int type=readContainerType(depth);
+		int count=readInt0()&0x7FFFFFFF;
+		
+		List<Object>list=new ArrayList<>(Math.min(count,size-pointer));
+		
+		for(int i=0;i<count;++i)
+			list.add(readValue(type==MIXED?readContainerType(depth):type,depth+1));
+		
+		return list;
+	}
+	
+	/**
+	 * A map of keys and values of the data types #0 to #13, #15 and #16<br>
+	 * <br>
+	 * The data types of keys and values are hoisted separately, just like the data type of a list's elements (see {@link #readList()}).<br>
+	 * <br>
+	 * Space required (in bytes): 6+n (homogeneous) or 6+n+2*count (heterogeneous)
+	 * 
+	 * @return a modifiable map of the entries, in the order they were written
+	 */
+	public Map<Object,Object>readMap() {
+		checkFlag(16);
+		return readMap0(0);
+	}
+	
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * @return map without {@link #checkFlag(int)} being called
+	 */
+	private Map<Object,Object>readMap0(int depth) {
+		int keyType=readContainerType(depth);
+		int valueType=readContainerType(depth);
+		int count=readInt0()&0x7FFFFFFF;
 		
-		byte[]buf=new byte[len];
+		Map<Object,Object>map=new LinkedHashMap<>(Math.min(count,size-pointer));
 		
-		read(buf,false);
+		for(int i=0;i<count;++i) {
+			Object key=readValue(keyType==MIXED?readContainerType(depth):keyType,depth+1);
+			map.put(key,readValue(valueType==MIXED?readContainerType(depth):valueType,depth+1));
+		}
+		
+		return map;
+	}
+	
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * @return the data type of a container's elements
+	 */
+	private int readContainerType(int depth) {
+		if(depth>=MAX_DEPTH)
+			throw new IllegalArgumentException("Containers are nested too deeply");
+		
+		int type=read();
 		
-		return buf;
+		if(type!=MIXED&&(type<0||type>16||type==14))
+			throw new IllegalArgumentException("Invalid element DataType: "+type);
+		
+		return type;
+	}
+	
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * @return a container's element without its data type
+	 */
+	private Object readValue(int type,int depth) {
+		switch(type) {
+		case 0:return readBoolean0();
+		case 1:return readByte0();
+		case 2:return readUnsignedByte0();
+		case 3:return readShort0();
+		case 4:return readUnsignedShort0();
+		case 5:return readInt0();
+		case 6:return readUnsignedInt0();
+		case 7:return readLong0(true);
+		case 8:return readFloat0();
+		case 9:return readDouble0();
+		case 10:return readUTF8String0();
+		case 11:return readStringASCII0();
+		case 12:return readStringC0();
+		case 13:return readByteArray0();
+		case 15:return readList0(depth);
+		case 16:return readMap0(depth);
+		default:throw new IllegalArgumentException("Invalid element DataType: "+type);
+		}
 	}
 	
 	/**
@@ -542,6 +956,14 @@ public class Packet implements Closeable {
 	 */
 	public void writeBoolean(boolean b) {
 		write(0);
+		writeBoolean0(b);
+	}
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * writes the value without its data type
+	 */
+	private void writeBoolean0(boolean b) {
 		write(b?1:0);
 	}
 	/**
@@ -551,6 +973,14 @@ public class Packet implements Closeable {
 	 */
 	public void writeByte(byte b) {
 		write(1);
+		writeByte0(b);
+	}
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * writes the value without its data type
+	 */
+	private void writeByte0(byte b) {
 		write(b);
 	}
 	/**
@@ -560,6 +990,14 @@ public class Packet implements Closeable {
 	 */
 	public void writeUnsignedByte(int b) {
 		write(2);
+		writeUnsignedByte0(b);
+	}
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * writes the value without its data type
+	 */
+	private void writeUnsignedByte0(int b) {
 		write(b&0xFF);
 	}
 	/**
@@ -569,6 +1007,14 @@ public class Packet implements Closeable {
 	 */
 	public void writeShort(short s) {
 		write(3);
+		writeShort0(s);
+	}
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * writes the value without its data type
+	 */
+	private void writeShort0(short s) {
 		write(s>>>8);
 		write(s);
 	}
@@ -579,6 +1025,14 @@ public class Packet implements Closeable {
 	 */
 	public void writeUnsignedShort(int s) {
 		write(4);
+		writeUnsignedShort0(s);
+	}
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * writes the value without its data type
+	 */
+	private void writeUnsignedShort0(int s) {
 		write(s>>>8);
 		write(s);
 	}
@@ -589,6 +1043,14 @@ public class Packet implements Closeable {
 	 */
 	public void writeInt(int i) {
 		write(5);
+		writeInt0(i);
+	}
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * writes the value without its data type
+	 */
+	private void writeInt0(int i) {
 		write(i>>24);
 		write(i>>16);
 		write(i>>8);
@@ -601,6 +1063,14 @@ public class Packet implements Closeable {
 	 */
 	public void writeUnsignedInt(long i) {
 		write(6);
+		writeUnsignedInt0(i);
+	}
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * writes the value without its data type
+	 */
+	private void writeUnsignedInt0(long i) {
 		write((int)(i>>24));
 		write((int)(i>>16));
 		write((int)(i>>8));
@@ -613,6 +1083,14 @@ public class Packet implements Closeable {
 	 */
 	public void writeLong(long l) {
 		write(7);
+		writeLong0(l);
+	}
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * writes the value without its data type
+	 */
+	private void writeLong0(long l) {
 		write((int)(l>>56));
 		write((int)(l>>48));
 		write((int)(l>>40));
@@ -628,8 +1106,8 @@ public class Packet implements Closeable {
 	 * @see #readFloat()
 	 */
 	public void writeFloat(float f) {
-		writeInt(Float.floatToIntBits(f));
-		data[pointer-4]=8;
+		write(8);
+		writeInt0(Float.floatToIntBits(f));
 	}
 	/**
 	 * @param d the double to be written
@@ -637,8 +1115,8 @@ public class Packet implements Closeable {
 	 * @see #readDouble()
 	 */
 	public void writeDouble(double d) {
-		writeLong(Double.doubleToLongBits(d));
-		data[pointer-8]=9;
+		write(9);
+		writeLong0(Double.doubleToLongBits(d));
 	}
 
 	/**
@@ -649,6 +1127,20 @@ public class Packet implements Closeable {
 	public void writeStringUTF8(String s) {
 		write(10);
 		
+		if(stringOffsets==null)
+			stringOffsets=new int[8];
+		else if(stringCount==stringOffsets.length)
+			stringOffsets=Arrays.copyOf(stringOffsets,stringCount<<1);
+		
+		stringOffsets[stringCount++]=pointer;
+		writeUTF8String0(s);
+	}
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * writes the value without its data type
+	 */
+	private void writeUTF8String0(String s) {
 		int utflen=0;
 		
 		for(char c:s.toCharArray()) {
@@ -682,7 +1174,14 @@ public class Packet implements Closeable {
 	 */
 	public void writeStringASCII(String s) {
 		write(11);
-		
+		writeStringASCII0(s);
+	}
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * writes the value without its data type
+	 */
+	private void writeStringASCII0(String s) {
 		int len=s.length()&0xFFFF;
 		
 		write(len>>8);
@@ -715,7 +1214,14 @@ public class Packet implements Closeable {
 	 */
 	public void writeStringC(String s) {
 		write(12);
-		
+		writeStringC0(s);
+	}
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * writes the value without its data type
+	 */
+	private void writeStringC0(String s) {
 		for(char c:s.toCharArray()) {
 			if(c==0||c>0x7F)
 				throw new IllegalArgumentException("only US-ASCII (without NUL) strings are allowed");
@@ -731,7 +1237,14 @@ public class Packet implements Closeable {
 	 */
 	public void writeByteArray(byte[]b) {
 		write(13);
-		
+		writeByteArray0(b);
+	}
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * writes the value without its data type
+	 */
+	private void writeByteArray0(byte[]b) {
 		int len=b.length;
 		
 		write(len>>24);
@@ -743,6 +1256,232 @@ public class Packet implements Closeable {
 			write(x);
 	}
 	
+	/**
+	 * @param writer writes the stream's data once the Packet has been sent
+	 * 
+	 * @see #readStream()
+	 */
+	public void writeStream(StreamWriter writer) {
+		write(14);
+		outputStreams.add(writer);
+	}
+	/**
+	 * @param in the stream to be sent. It is closed once it has been sent completely
+	 * 
+	 * @see #readStream()
+	 */
+	public void writeStream(InputStream in) {
+		writeStream(out->{
+			try(in) {
+				in.transferTo(out);
+			}
+		});
+	}
+	/**
+	 * Sends a file as a stream. The file is opened once the Packet is sent.
+	 * 
+	 * @param file the file
+	 * 
+	 * @see #writeFile(Path, long, long)
+	 */
+	public void writeFile(Path file) {
+		writeFile(file,0,Long.MAX_VALUE);
+	}
+	/**
+	 * Sends a region of a file as a stream. The file is opened once the Packet is sent.<br>
+	 * <br>
+	 * If the {@link Bridge} doesn't use AES and the client accepts binary chunks, the region is copied
+	 * from the file to the connection by the operating system, without being loaded into memory.
+	 * 
+	 * @param file the file
+	 * @param position the offset of the region's first byte
+	 * @param count the max. number of bytes. The region ends at the end of the file at the latest
+	 * 
+	 * @see #readStream()
+	 */
+	public void writeFile(Path file,long position,long count) {
+		if(position<0||count<0)
+			throw new IllegalArgumentException("Invalid file region: "+position+"+"+count);
+		
+		writeStream(new FileRegion(file,position,count));
+	}
+	
+	/**
+	 * Writes a list. The data type of each element is derived from its class:<br>
+	 * {@link Boolean} (#0), {@link Byte} (#1), {@link Short} (#3), {@link Integer} (#5), {@link Long} (#7),
+	 * {@link Float} (#8), {@link Double} (#9), {@link String} (#10), {@code byte[]} (#13), {@link List} (#15) and {@link Map} (#16)
+	 * 
+	 * @param list the list to be written
+	 * 
+	 * @throws IllegalArgumentException if an element's type is not supported
+	 * @throws NullPointerException if an element is {@code null}
+	 * 
+	 * @see #readList()
+	 */
+	public void writeList(List<?>list) {
+		write(15);
+		writeList0(list);
+	}
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * writes the value without its data type
+	 */
+	private void writeList0(List<?>list) {
+		int type=commonType(list);
+		
+		write(type);
+		writeInt0(list.size());
+		
+		for(Object o:list)
+			writeValue(type,o);
+	}
+	
+	/**
+	 * Writes a map. The data types of keys and values are derived from their classes (see {@link #writeList(List)}).
+	 * 
+	 * @param map the map to be written
+	 * 
+	 * @throws IllegalArgumentException if the type of a key or value is not supported
+	 * @throws NullPointerException if a key or value is {@code null}
+	 * 
+	 * @see #readMap()
+	 */
+	public void writeMap(Map<?,?>map) {
+		write(16);
+		writeMap0(map);
+	}
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * writes the value without its data type
+	 */
+	private void writeMap0(Map<?,?>map) {
+		int keyType=commonType(map.keySet());
+		int valueType=commonType(map.values());
+		
+		write(keyType);
+		write(valueType);
+		writeInt0(map.size());
+		
+		for(Map.Entry<?,?>entry:map.entrySet()) {
+			writeValue(keyType,entry.getKey());
+			writeValue(valueType,entry.getValue());
+		}
+	}
+	
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * @return the data type shared by all the elements, or {@link #MIXED}
+	 */
+	private static int commonType(Collection<?>values) {
+		int type=MIXED;
+		
+		for(Object o:values) {
+			int t=typeOf(o);
+			
+			if(type==MIXED)
+				type=t;
+			else if(type!=t)
+				return MIXED;
+		}
+		
+		return type;
+	}
+	
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * @return the data type of a container's element
+	 */
+	private static int typeOf(Object o) {
+		if(o==null)
+			throw new NullPointerException("Containers cannot contain null");
+		
+		if(o instanceof Boolean)	return 0;
+		if(o instanceof Byte)		return 1;
+		if(o instanceof Short)		return 3;
+		if(o instanceof Integer)	return 5;
+		if(o instanceof Long)		return 7;
+		if(o instanceof Float)		return 8;
+		if(o instanceof Double)		return 9;
+		if(o instanceof String)		return 10;
+		if(o instanceof byte[])		return 13;
+		if(o instanceof List)		return 15;
+		if(o instanceof Map)		return 16;
+		
+		throw new IllegalArgumentException("Unsupported element type: "+o.getClass().getName());
+	}
+	
+	/**
+	 * internal use only<br>
+	 * <br>
+	 * writes a container's element, preceded by its data type if the container is heterogeneous
+	 */
+	private void writeValue(int type,Object o) {
+		if(type==MIXED)
+			write(type=typeOf(o));
+		
+		switch(type) {
+		case 0:writeBoolean0((Boolean)o);break;
+		case 1:writeByte0((Byte)o);break;
+		case 3:writeShort0((Short)o);break;
+		case 5:writeInt0((Integer)o);break;
+		case 7:writeLong0((Long)o);break;
+		case 8:writeInt0(Float.floatToIntBits((Float)o));break;
+		case 9:writeLong0(Double.doubleToLongBits((Double)o));break;
+		case 10:writeUTF8String0((String)o);break;
+		case 13:writeByteArray0((byte[])o);break;
+		case 15:writeList0((List<?>)o);break;
+		case 16:writeMap0((Map<?,?>)o);break;
+		}
+	}
+	
+	/**
+	 * Writes the components of a record, in the order they are declared.<br>
+	 * The mapping onto the data types is created once per class (see {@link RecordCodec} for the supported component types).
+	 * The buffer is grown once in advance, if necessary.
+	 * 
+	 * @param record the record to be written
+	 * 
+	 * @throws IllegalArgumentException if a component's type is not supported
+	 * @throws NullPointerException if a component is {@code null}
+	 * 
+	 * @see #readRecord(Class)
+	 */
+	public void writeRecord(Record record) {
+		RecordCodec codec=RecordCodec.of(record.getClass());
+		
+		ensureCapacity(codec.size(record));
+		codec.write(this,record);
+	}
+	/**
+	 * @param <R> the type of the record
+	 * @param type the class of the record
+	 * 
+	 * @return the record
+	 * 
+	 * @throws IllegalArgumentException if a component's type is not supported
+	 * 
+	 * @see #writeRecord(Record)
+	 */
+	public <R extends Record>R readRecord(Class<R>type) {
+		return type.cast(RecordCodec.of(type).read(this));
+	}
+	
+	/**
+	 * Grows the buffer, so that at least {@code n} more bytes can be written without growing it again
+	 * 
+	 * @param n the number of bytes
+	 */
+	private void ensureCapacity(int n) {
+		ensureAccessible();
+		
+		if(pointer+1+n>data.length)
+			data=Arrays.copyOf(data,Math.max(data.length<<1,pointer+1+n));
+	}
+	
 	/**
 	 * @return whether or not short, int and long are stored in Little Endian format
 	 */
@@ -757,6 +1496,23 @@ public class Packet implements Closeable {
 		return size;
 	}
 	
+	/**
+	 * Creates an immutable copy of this {@link Packet} which caches its encoded form.<br>
+	 * Use this for responses which are sent often and (almost) never change, e.g. configurations or acknowledgements.
+	 * 
+	 * @return the {@link FrozenPacket}
+	 * 
+	 * @throws UnsupportedOperationException if the Packet contains streams or is closed
+	 */
+	public FrozenPacket freeze() {
+		ensureAccessible();
+		
+		if(!outputStreams.isEmpty())
+			throw new UnsupportedOperationException("Packets containing streams cannot be frozen");
+		
+		return new FrozenPacket(this);
+	}
+	
 	/**
 	 * deletes all the {@code data} in the {@link Packet} and disables read and write access
 	 */
@@ -795,6 +1551,10 @@ public class Packet implements Closeable {
 			case 11:readStringASCII();break;
 			case 12:readStringC();break;
 			case 13:readByteArray();break;
+			case 14:checkFlag(14);++streamCount;break;
+			case 15:readList();break;
+			case 16:readMap();break;
+			case 17:read();readDictionaryString(true);usesDictionary=true;break;
 			default:throw new MalformedRequestException("Invalid DataType: "+dataType);
 			}
 		}
@@ -802,4 +1562,23 @@ public class Packet implements Closeable {
 		pointer=-1;
 	}
 	
+	/**
+	 * Writes the data of a stream (see {@link Packet#writeStream(StreamWriter)})
+	 */
+	@FunctionalInterface
+	public static interface StreamWriter {
+		
+		/**
+		 * Called once the {@link Packet} has been sent.<br>
+		 * <br>
+		 * If an exception is thrown, the stream is aborted: the connection is closed without sending the end of the stream.
+		 * 
+		 * @param out the stream's data. Closing it is not required
+		 * 
+		 * @throws IOException if an I/O error occurs
+		 */
+		void writeTo(OutputStream out)throws IOException;
+		
+	}
+	
 }
@@ -0,0 +1,500 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * internal use only<br><br>
+ * 
+ * Maps the components of a {@link Record} onto the {@link Packet}'s data types (see {@link Packet#writeRecord(Record)}).<br>
+ * The mapping is created once per class, using {@link MethodHandle}s for the accessors and the canonical constructor.<br>
+ * <br>
+ * Supported component types:
+ * <ul>
+ * 	<li>{@code boolean}, {@code byte}, {@code short}, {@code int}, {@code long}, {@code float}, {@code double} and their wrappers</li>
+ * 	<li>{@code char} (unsigned short)</li>
+ * 	<li>{@link String} (UTF-8)</li>
+ * 	<li>{@code byte[]}</li>
+ * 	<li>{@link Enum}s (their ordinal as unsigned short)</li>
+ * 	<li>{@link Record}s (their components, without a header)</li>
+ * 	<li>{@link List}s of wrappers, {@link String}s and {@code byte[]}s (native lists, see {@link Packet#writeList(List)})</li>
+ * 	<li>other {@link List}s and arrays of the above (their size as int, followed by the elements)</li>
+ * </ul>
+ * {@code null} is not supported.
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+final class RecordCodec {
+	
+	/** the element types of lists which are written as native lists (see {@link Packet#writeList(List)}) */
+	private static final Set<Type>NATIVE_ELEMENTS=Set.of(
+		Boolean.class,Byte.class,Short.class,Integer.class,Long.class,
+		Float.class,Double.class,String.class,byte[].class
+	);
+	
+	private static final ClassValue<RecordCodec>CODECS=new ClassValue<>() {
+		
+		@Override
+		protected RecordCodec computeValue(Class<?>type) {
+			return new RecordCodec(type);
+		}
+		
+	};
+	
+	private final Class<?>type;
+	private final MethodHandle constructor;
+	private final MethodHandle[]accessors;
+	private final String[]names;
+	private final Codec[]codecs;
+	
+	private RecordCodec(Class<?>type) {
+		this.type=type;
+		
+		RecordComponent[]components=type.getRecordComponents();
+		Class<?>[]parameters=new Class<?>[components.length];
+		
+		accessors=new MethodHandle[components.length];
+		names=new String[components.length];
+		codecs=new Codec[components.length];
+		
+		MethodHandles.Lookup lookup=MethodHandles.lookup();
+		
+		try {
+			for(int i=0;i<components.length;++i) {
+				RecordComponent component=components[i];
+				
+				component.getAccessor().setAccessible(true);
+				
+				accessors[i]=lookup.unreflect(component.getAccessor()).asType(MethodType.methodType(Object.class,Object.class));
+				names[i]=component.getName();
+				codecs[i]=codecOf(component.getGenericType());
+				parameters[i]=component.getType();
+			}
+			
+			Constructor<?>canonical=type.getDeclaredConstructor(parameters);
+			canonical.setAccessible(true);
+			
+			constructor=lookup.unreflectConstructor(canonical)
+				.asSpreader(Object[].class,components.length)
+				.asType(MethodType.methodType(Object.class,Object[].class));
+		} catch(ReflectiveOperationException|RuntimeException e) {
+			throw new IllegalArgumentException("Cannot map record "+type.getName()+": "+e.getMessage(),e);
+		}
+	}
+	
+	/**
+	 * @param type the record class
+	 * 
+	 * @return the (cached) RecordCodec
+	 */
+	static RecordCodec of(Class<?>type) {
+		if(!type.isRecord())
+			throw new IllegalArgumentException("Not a record: "+type.getName());
+		
+		return CODECS.get(type);
+	}
+	
+	/**
+	 * @param packet the {@link Packet} to be written to
+	 * @param record the record
+	 */
+	void write(Packet packet,Object record) {
+		for(int i=0;i<codecs.length;++i) {
+			Object value;
+			
+			try {
+				value=(Object)accessors[i].invokeExact(record);
+			} catch(Throwable e) {
+				throw rethrow(e);
+			}
+			
+			if(value==null)
+				throw new NullPointerException("Component "+type.getSimpleName()+"."+names[i]+" is null");
+			
+			codecs[i].write(packet,value);
+		}
+	}
+	
+	/**
+	 * @param packet the {@link Packet} to be read from
+	 * 
+	 * @return the record
+	 */
+	Object read(Packet packet) {
+		Object[]values=new Object[codecs.length];
+		
+		for(int i=0;i<codecs.length;++i)
+			values[i]=codecs[i].read(packet);
+		
+		try {
+			return (Object)constructor.invokeExact(values);
+		} catch(Throwable e) {
+			throw rethrow(e);
+		}
+	}
+	
+	/**
+	 * @param record the record
+	 * 
+	 * @return the encoded size of the record
+	 */
+	int size(Object record) {
+		int size=0;
+		
+		for(int i=0;i<codecs.length;++i)
+			try {
+				Object value=(Object)accessors[i].invokeExact(record);
+				
+				if(value!=null)
+					size+=codecs[i].size(value);
+			} catch(Throwable e) {
+				throw rethrow(e);
+			}
+		
+		return size;
+	}
+	
+	private static RuntimeException rethrow(Throwable e) {
+		if(e instanceof RuntimeException)
+			return (RuntimeException)e;
+		
+		if(e instanceof Error)
+			throw (Error)e;
+		
+		return new IllegalStateException(e);
+	}
+	
+	/**
+	 * @param type the component type
+	 * 
+	 * @return the {@link Codec} for values of the type
+	 */
+	private static Codec codecOf(Type type) {
+		if(type instanceof ParameterizedType&&((ParameterizedType)type).getRawType()==List.class) {
+			Type elementType=((ParameterizedType)type).getActualTypeArguments()[0];
+			
+			if(NATIVE_ELEMENTS.contains(elementType))
+				return new NativeListCodec((Class<?>)elementType,codecOf(elementType));
+			
+			return new ListCodec(codecOf(elementType));
+		}
+		
+		if(type instanceof GenericArrayType)
+			throw new IllegalArgumentException("Unsupported type: "+type.getTypeName());
+		
+		if(!(type instanceof Class))
+			throw new IllegalArgumentException("Unsupported type: "+type.getTypeName());
+		
+		Class<?>c=(Class<?>)type;
+		
+		if(c==boolean.class||c==Boolean.class)
+			return new SimpleCodec(2,(p,v)->p.writeBoolean((Boolean)v),Packet::readBoolean);
+		if(c==byte.class||c==Byte.class)
+			return new SimpleCodec(2,(p,v)->p.writeByte((Byte)v),Packet::readByte);
+		if(c==short.class||c==Short.class)
+			return new SimpleCodec(3,(p,v)->p.writeShort((Short)v),Packet::readShort);
+		if(c==char.class||c==Character.class)
+			return new SimpleCodec(3,(p,v)->p.writeUnsignedShort((Character)v),p->(char)p.readUnsignedShort());
+		if(c==int.class||c==Integer.class)
+			return new SimpleCodec(5,(p,v)->p.writeInt((Integer)v),Packet::readInt);
+		if(c==long.class||c==Long.class)
+			return new SimpleCodec(9,(p,v)->p.writeLong((Long)v),Packet::readLong);
+		if(c==float.class||c==Float.class)
+			return new SimpleCodec(5,(p,v)->p.writeFloat((Float)v),Packet::readFloat);
+		if(c==double.class||c==Double.class)
+			return new SimpleCodec(9,(p,v)->p.writeDouble((Double)v),Packet::readDouble);
+		if(c==byte[].class)
+			return new Codec() {
+				
+				public void write(Packet packet,Object value) {
+					packet.writeByteArray((byte[])value);
+				}
+				public Object read(Packet packet) {
+					return packet.readByteArray();
+				}
+				public int size(Object value) {
+					return 5+((byte[])value).length;
+				}
+				
+			};
+		if(c==String.class)
+			return new Codec() {
+				
+				public void write(Packet packet,Object value) {
+					packet.writeStringUTF8((String)value);
+				}
+				public Object read(Packet packet) {
+					return packet.readStringUTF8();
+				}
+				public int size(Object value) {
+					String s=(String)value;
+					int len=3;
+					
+					for(int i=0;i<s.length();++i) {
+						char chr=s.charAt(i);
+						len+=chr>0&&chr<=0x7F?1:chr>0x7FF?3:2;
+					}
+					
+					return len;
+				}
+				
+			};
+		if(c.isEnum()) {
+			Object[]constants=c.getEnumConstants();
+			
+			return new SimpleCodec(3,(p,v)->p.writeUnsignedShort(((Enum<?>)v).ordinal()),p->{
+				int ordinal=p.readUnsignedShort();
+				
+				if(ordinal>=constants.length)
+					throw new IllegalArgumentException("Invalid ordinal for "+c.getName()+": "+ordinal);
+				
+				return constants[ordinal];
+			});
+		}
+		if(c.isRecord())
+			return new Codec() {
+				
+				// resolved lazily, so records may contain themselves (e.g. in lists)
+				public void write(Packet packet,Object value) {
+					RecordCodec.of(c).write(packet,value);
+				}
+				public Object read(Packet packet) {
+					return RecordCodec.of(c).read(packet);
+				}
+				public int size(Object value) {
+					return RecordCodec.of(c).size(value);
+				}
+				
+			};
+		if(c.isArray())
+			return new ArrayCodec(c.getComponentType(),codecOf(c.getComponentType()));
+		
+		throw new IllegalArgumentException("Unsupported type: "+c.getName());
+	}
+	
+	/**
+	 * Writes and reads values of a single type
+	 */
+	private static interface Codec {
+		
+		void write(Packet packet,Object value);
+		
+		Object read(Packet packet);
+		
+		/**
+		 * @param value the value
+		 * 
+		 * @return the encoded size (including the type ID)
+		 */
+		int size(Object value);
+		
+	}
+	
+	private static interface Writer {
+		
+		void write(Packet packet,Object value);
+		
+	}
+	
+	private static interface Reader {
+		
+		Object read(Packet packet);
+		
+	}
+	
+	/**
+	 * A {@link Codec} for values with a fixed size
+	 */
+	private static class SimpleCodec implements Codec {
+		
+		private final int size;
+		private final Writer writer;
+		private final Reader reader;
+		
+		SimpleCodec(int size,Writer writer,Reader reader) {
+			this.size=size;
+			this.writer=writer;
+			this.reader=reader;
+		}
+		
+		public void write(Packet packet,Object value) {
+			writer.write(packet,value);
+		}
+		public Object read(Packet packet) {
+			return reader.read(packet);
+		}
+		public int size(Object value) {
+			return size;
+		}
+		
+	}
+	
+	/**
+	 * A {@link Codec} for lists of elements which are supported by {@link Packet#writeList(List)} directly
+	 */
+	private static class NativeListCodec implements Codec {
+		
+		private final Class<?>elementType;
+		private final Codec element;
+		
+		NativeListCodec(Class<?>elementType,Codec element) {
+			this.elementType=elementType;
+			this.element=element;
+		}
+		
+		public void write(Packet packet,Object value) {
+			packet.writeList((List<?>)value);
+		}
+		public Object read(Packet packet) {
+			List<Object>list=packet.readList();
+			
+			for(Object x:list)
+				if(!elementType.isInstance(x))
+					throw new IllegalArgumentException("Type mismatch: expected "+elementType.getSimpleName()+", got "+x.getClass().getSimpleName());
+			
+			return Collections.unmodifiableList(list);
+		}
+		public int size(Object value) {
+			int size=6;
+			
+			// the data type is only written once
+			for(Object x:(List<?>)value)
+				size+=element.size(x)-1;
+			
+			return size;
+		}
+		
+	}
+	
+	private static class ListCodec implements Codec {
+		
+		private final Codec element;
+		
+		ListCodec(Codec element) {
+			this.element=element;
+		}
+		
+		public void write(Packet packet,Object value) {
+			List<?>list=(List<?>)value;
+			
+			packet.writeInt(list.size());
+			
+			for(Object x:list)
+				element.write(packet,x);
+		}
+		public Object read(Packet packet) {
+			int size=packet.readInt();
+			
+			if(size<0)
+				throw new IllegalArgumentException("Invalid list size: "+size);
+			
+			List<Object>list=new ArrayList<>(Math.min(size,1024));
+			
+			for(int i=0;i<size;++i)
+				list.add(element.read(packet));
+			
+			return List.copyOf(list);
+		}
+		public int size(Object value) {
+			int size=5;
+			
+			for(Object x:(List<?>)value)
+				size+=element.size(x);
+			
+			return size;
+		}
+		
+	}
+	
+	private static class ArrayCodec implements Codec {
+		
+		private final Class<?>componentType;
+		private final Codec element;
+		
+		ArrayCodec(Class<?>componentType,Codec element) {
+			this.componentType=componentType;
+			this.element=element;
+		}
+		
+		public void write(Packet packet,Object value) {
+			int len=Array.getLength(value);
+			
+			packet.writeInt(len);
+			
+			for(int i=0;i<len;++i)
+				element.write(packet,Array.get(value,i));
+		}
+		public Object read(Packet packet) {
+			int len=packet.readInt();
+			
+			if(len<0)
+				throw new IllegalArgumentException("Invalid array length: "+len);
+			
+			List<Object>values=new ArrayList<>(Math.min(len,1024));
+			
+			for(int i=0;i<len;++i)
+				values.add(element.read(packet));
+			
+			Object array=Array.newInstance(componentType,len);
+			
+			for(int i=0;i<len;++i)
+				Array.set(array,i,values.get(i));
+			
+			return array;
+		}
+		public int size(Object value) {
+			int len=Array.getLength(value),size=5;
+			
+			for(int i=0;i<len;++i)
+				size+=element.size(Array.get(value,i));
+			
+			return size;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,97 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.util.Arrays;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * internal use only<br><br>
+ * 
+ * Identifies a request by its Packet-ID, its flags and its decrypted data (see {@link ResponseCache}).<br>
+ * The same data means different values in a different byte order, so {@link Bridge#FLAG_LITTLE_ENDIAN} is part of the key.
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+final class RequestKey {
+	
+	private final int pid,flags,hash;
+	private final byte[]data;
+	
+	/**
+	 * @param pid the Packet-ID
+	 * @param flags the flags which affect how the data is read, i.e. {@link Bridge#FLAG_LITTLE_ENDIAN}
+	 * @param data the decrypted data (copied)
+	 * @param size the number of bytes used in {@code data}
+	 */
+	RequestKey(int pid,int flags,byte[]data,int size) {
+		this.pid=pid;
+		this.flags=flags;
+		this.data=Arrays.copyOf(data,size);
+		
+		hash=31*(31*pid+flags)+Arrays.hashCode(this.data);
+	}
+	
+	/**
+	 * @return the Packet-ID
+	 */
+	int getPacketID() {
+		return pid;
+	}
+	
+	/**
+	 * @return the number of bytes of the request
+	 */
+	int size() {
+		return data.length;
+	}
+	
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if(this==obj)
+			return true;
+		
+		if(!(obj instanceof RequestKey))
+			return false;
+		
+		RequestKey other=(RequestKey)obj;
+		
+		return pid==other.pid&&flags==other.flags&&hash==other.hash&&Arrays.equals(data,other.data);
+	}
+	
+}
@@ -0,0 +1,274 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Caches the responses of {@link PacketHandler}s which always answer the same request with the same response (e.g. pure lookups).<br>
+ * <br>
+ * Caching is opt-in per Packet-ID (see {@link #enable(Duration, int...)}). Requests are identified by their Packet-ID, their byte order and their decrypted data.
+ * If a response is cached, the {@link PacketHandler} is not called at all.
+ * Responses are cached as {@link FrozenPacket}s, so they are not encoded again either.
+ * Requests and responses containing streams are never cached.<br>
+ * <br>
+ * The cache holds at most a fixed number of entries; if it is full, the least recently used entry is evicted.<br>
+ * <br>
+ * see {@link Bridge#setResponseCache(ResponseCache)}
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+public class ResponseCache {
+	
+	private final int maxEntries;
+	private final Map<Integer,Long>ttls=new ConcurrentHashMap<>();
+	private final LinkedHashMap<RequestKey,Entry>entries;
+	private final LongAdder hits=new LongAdder(),misses=new LongAdder(),evictions=new LongAdder(),expirations=new LongAdder();
+	
+	/**
+	 * Instantiates a new ResponseCache
+	 * 
+	 * @param maxEntries the max. number of cached responses
+	 */
+	public ResponseCache(int maxEntries) {
+		if(maxEntries<1)
+			throw new IllegalArgumentException("maxEntries must be greater than 0: "+maxEntries);
+		
+		this.maxEntries=maxEntries;
+		
+		entries=new LinkedHashMap<>(16,0.75f,true) {
+			
+			private static final long serialVersionUID=1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<RequestKey,Entry>eldest) {
+				if(size()<=ResponseCache.this.maxEntries)
+					return false;
+				
+				evictions.increment();
+				return true;
+			}
+			
+		};
+	}
+	
+	/**
+	 * Enables caching for specific Packet-IDs
+	 * 
+	 * @param ttl how long a response is cached
+	 * @param pids the Packet-IDs
+	 * 
+	 * @return this ResponseCache
+	 */
+	public ResponseCache enable(Duration ttl,int...pids) {
+		if(ttl.isNegative()||ttl.isZero())
+			throw new IllegalArgumentException("TTL must be positive: "+ttl);
+		
+		for(int pid:pids)
+			ttls.put(pid,ttl.toNanos());
+		
+		return this;
+	}
+	
+	/**
+	 * Disables caching for specific Packet-IDs and removes their cached responses
+	 * 
+	 * @param pids the Packet-IDs
+	 */
+	public void disable(int...pids) {
+		for(int pid:pids) {
+			ttls.remove(pid);
+			invalidate(pid);
+		}
+	}
+	
+	/**
+	 * @param pid the Packet-ID
+	 * 
+	 * @return whether or not responses to this Packet-ID are cached
+	 */
+	public boolean isEnabled(int pid) {
+		return ttls.containsKey(pid);
+	}
+	
+	/**
+	 * Removes all cached responses to a specific Packet-ID
+	 * 
+	 * @param pid the Packet-ID
+	 */
+	public synchronized void invalidate(int pid) {
+		entries.keySet().removeIf(key->key.getPacketID()==pid);
+	}
+	
+	/**
+	 * Removes the cached responses to a specific request, in either byte order
+	 * 
+	 * @param request a {@link Packet} with the same ID and data as the request
+	 */
+	public synchronized void invalidate(Packet request) {
+		entries.remove(new RequestKey(request.getPacketID(),0,request.data,request.size()));
+		entries.remove(new RequestKey(request.getPacketID(),Bridge.FLAG_LITTLE_ENDIAN,request.data,request.size()));
+	}
+	
+	/**
+	 * Removes all cached responses
+	 */
+	public synchronized void invalidateAll() {
+		entries.clear();
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * @param key the request
+	 * 
+	 * @return the cached response, or {@code null} if there is none
+	 */
+	synchronized Packet get(RequestKey key) {
+		Entry entry=entries.get(key);
+		
+		if(entry!=null&&entry.expires-System.nanoTime()<=0) {
+			entries.remove(key);
+			expirations.increment();
+			entry=null;
+		}
+		
+		if(entry==null) {
+			misses.increment();
+			return null;
+		}
+		
+		hits.increment();
+		
+		return entry.response;
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * Caches a response, unless it contains streams
+	 * 
+	 * @param key the request
+	 * @param response the response
+	 * 
+	 * @return the cached {@link FrozenPacket}, or {@code response} if it is not cached
+	 */
+	Packet put(RequestKey key,Packet response) {
+		Long ttl=ttls.get(key.getPacketID());
+		
+		if(ttl==null||!response.outputStreams.isEmpty())
+			return response;
+		
+		Entry entry=new Entry(response.freeze(),System.nanoTime()+ttl);
+		
+		synchronized(this) {
+			entries.put(key,entry);
+			
+			// drop the least recently used entries if they have expired, so they don't push out valid ones
+			for(Iterator<Entry>it=entries.values().iterator();it.hasNext();) {
+				Entry eldest=it.next();
+				
+				if(eldest.expires-System.nanoTime()>0)
+					break;
+				
+				it.remove();
+				expirations.increment();
+			}
+		}
+		
+		return entry.response;
+	}
+	
+	/**
+	 * @return the number of cached responses
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * @return the number of requests answered from the cache
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+	
+	/**
+	 * @return the number of requests which had to be handled by a {@link PacketHandler}
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+	
+	/**
+	 * @return the ratio of hits to all requests in range [0;1], or 0 if there were no requests yet
+	 */
+	public double getHitRate() {
+		long hits=getHitCount(),total=hits+getMissCount();
+		
+		return total==0?0:(double)hits/total;
+	}
+	
+	/**
+	 * @return the number of responses removed because the cache was full
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+	
+	/**
+	 * @return the number of responses removed because their TTL expired
+	 */
+	public long getExpirationCount() {
+		return expirations.sum();
+	}
+	
+	private static class Entry {
+		
+		final FrozenPacket response;
+		final long expires;
+		
+		Entry(FrozenPacket response,long expires) {
+			this.response=response;
+			this.expires=expires;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,114 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.time.Duration;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * The result of {@link Bridge#shutdown(Duration)}
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+public class ShutdownReport {
+	
+	private final int inFlightRequests,closedIdleConnections,droppedConnections,droppedRequests,rejectedRequests;
+	private final Duration duration;
+	
+	ShutdownReport(int inFlightRequests,int closedIdleConnections,int droppedConnections,int droppedRequests,int rejectedRequests,Duration duration) {
+		this.inFlightRequests=inFlightRequests;
+		this.closedIdleConnections=closedIdleConnections;
+		this.droppedConnections=droppedConnections;
+		this.droppedRequests=droppedRequests;
+		this.rejectedRequests=rejectedRequests;
+		this.duration=duration;
+	}
+	
+	/**
+	 * @return the number of requests being processed when the shutdown started
+	 */
+	public int getInFlightRequests() {
+		return inFlightRequests;
+	}
+	
+	/**
+	 * @return the number of idle connections closed (including the ones which became idle after their last answer)
+	 */
+	public int getClosedIdleConnections() {
+		return closedIdleConnections;
+	}
+	
+	/**
+	 * @return the number of connections closed while they were still processing a request, because the timeout expired
+	 */
+	public int getDroppedConnections() {
+		return droppedConnections;
+	}
+	
+	/**
+	 * @return the number of requests still being processed when the timeout expired.
+	 * The handlers of datagram-based {@link Bridge}s cannot be aborted, but their answers are not sent anymore.
+	 */
+	public int getDroppedRequests() {
+		return droppedRequests;
+	}
+	
+	/**
+	 * @return the number of requests which arrived on an idle connection while it was being closed.
+	 * They have not been processed, since their connection was already closed.
+	 */
+	public int getRejectedRequests() {
+		return rejectedRequests;
+	}
+	
+	/**
+	 * @return whether or not all the requests have been answered
+	 */
+	public boolean isClean() {
+		return droppedConnections==0&&droppedRequests==0&&rejectedRequests==0;
+	}
+	
+	/**
+	 * @return how long the shutdown took
+	 */
+	public Duration getDuration() {
+		return duration;
+	}
+	
+	@Override
+	public String toString() {
+		return "ShutdownReport [inFlightRequests="+inFlightRequests+", closedIdleConnections="+closedIdleConnections+
+				", droppedConnections="+droppedConnections+", droppedRequests="+droppedRequests+", rejectedRequests="+rejectedRequests+", duration="+duration+"]";
+	}
+	
+}
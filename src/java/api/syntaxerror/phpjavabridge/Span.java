@@ -0,0 +1,122 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * A finished request of a traced {@link Packet} (see {@link TraceContext}), passed to the {@link SpanExporter}.<br>
+ * <br>
+ * The span covers the {@link PacketHandler} (or the {@link ResponseCache} lookup or the coalesced request) answering the {@link Packet}.
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+public class Span {
+	
+	private final String name;
+	private final TraceContext context;
+	private final int pid;
+	private final SocketAddress remoteAddress;
+	private final Instant start;
+	private final Duration duration;
+	private final Throwable error;
+	
+	Span(TraceContext context,int pid,SocketAddress remoteAddress,Instant start,Duration duration,Throwable error) {
+		this.context=context;
+		this.pid=pid;
+		this.remoteAddress=remoteAddress;
+		this.start=start;
+		this.duration=duration;
+		this.error=error;
+		
+		name="PHP-Java-Bridge #"+pid;
+	}
+	
+	/**
+	 * @return the name of the span: {@code PHP-Java-Bridge #<Packet-ID>}
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * @return the context of the span, its parent is the client's span
+	 */
+	public TraceContext getContext() {
+		return context;
+	}
+	
+	/**
+	 * @return the Packet-ID
+	 */
+	public int getPacketID() {
+		return pid;
+	}
+	
+	/**
+	 * @return the client's address
+	 */
+	public SocketAddress getRemoteAddress() {
+		return remoteAddress;
+	}
+	
+	/**
+	 * @return the start time
+	 */
+	public Instant getStart() {
+		return start;
+	}
+	
+	/**
+	 * @return the duration
+	 */
+	public Duration getDuration() {
+		return duration;
+	}
+	
+	/**
+	 * @return the exception thrown while handling the {@link Packet}, or {@code null} if it succeeded
+	 */
+	public Throwable getError() {
+		return error;
+	}
+	
+	@Override
+	public String toString() {
+		return name+" ["+context+", "+duration.toNanos()/1000+" us"+(error==null?"":", "+error)+"]";
+	}
+	
+}
@@ -0,0 +1,54 @@
+package api.syntaxerror.phpjavabridge;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Receives the {@link Span}s of traced requests (see {@link TraceContext}), e.g. to forward them to a tracing backend.<br>
+ * <br>
+ * see {@link Bridge#setSpanExporter(SpanExporter)}, {@link InMemorySpanExporter}
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+public interface SpanExporter {
+	
+	/**
+	 * Exports a finished {@link Span}.<br>
+	 * This method is called by the thread which handled the request, before the answer is sent.
+	 * It is called concurrently and should not block.
+	 * 
+	 * @param span the {@link Span}
+	 */
+	void export(Span span);
+	
+}
@@ -0,0 +1,187 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * internal use only<br><br>
+ * 
+ * The string dictionary of a single connection ({@link BridgeImpl.TCP TCP} or {@link BridgeImpl.Unix Unix}).<br>
+ * <br>
+ * Once a client sets {@link Bridge#FLAG_DICTIONARY} on a request, both sides may replace UTF-8 strings (#10) with
+ * dictionary strings (#17). The first occurrence of a string defines a new entry, every further occurrence only refers to it:
+ * <pre>
+ * definition: &lt;int8 17&gt; &lt;uint16 0x8000|index&gt; &lt;uint16 length&gt; &lt;data&gt;
+ * reference:  &lt;int8 17&gt; &lt;uint16 index&gt;
+ * </pre>
+ * Each direction has its own set of entries, which are numbered consecutively from 0.
+ * There are at most {@link #MAX_ENTRIES} entries per direction, and only strings of at most {@link #MAX_LENGTH} bytes are added,
+ * so the memory used per connection is bounded. The decoded strings are shared by all the {@link Packet}s of the connection.<br>
+ * A dictionary is only used by the thread serving its connection, thus it is not thread-safe.<br>
+ * <br>
+ * Only strings written by {@link Packet#writeStringUTF8(String)} are replaced, strings contained in lists and maps are not.
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+final class StringDictionary {
+	
+	/** the max. number of entries per direction */
+	static final int MAX_ENTRIES=4096;
+	/** the max. length (in bytes) of a string to be added */
+	static final int MAX_LENGTH=255;
+	/** marks a reference as a definition */
+	static final int DEFINITION=0x8000;
+	
+	/** incoming: the strings defined by the client */
+	private String[]strings;
+	private int stringCount;
+	
+	/** outgoing: the indices of the strings defined by the server. Keys are the encoded strings as ISO-8859-1 */
+	private final Map<String,Integer>indices=new HashMap<>();
+	/** outgoing: the strings defined by the last {@link #encode(Packet)}, which the client doesn't know until the frame has been sent */
+	private final Map<String,Integer>pending=new HashMap<>();
+	
+	/**
+	 * Adds a string defined by the client
+	 * 
+	 * @param index the index of the entry
+	 * @param str the string
+	 * @param length the encoded length of the string
+	 * 
+	 * @throws IllegalArgumentException if the index is not the next one or the string is too long
+	 */
+	void define(int index,String str,int length) {
+		if(index!=stringCount||index>=MAX_ENTRIES)
+			throw new IllegalArgumentException("Invalid dictionary index: "+index+" (expected "+stringCount+")");
+		
+		if(length>MAX_LENGTH)
+			throw new IllegalArgumentException("Dictionary string too long: "+length+" bytes (max. "+MAX_LENGTH+")");
+		
+		if(strings==null)
+			strings=new String[16];
+		else if(stringCount==strings.length)
+			strings=Arrays.copyOf(strings,Math.min(strings.length<<1,MAX_ENTRIES));
+		
+		strings[stringCount++]=str;
+	}
+	
+	/**
+	 * @param index the index of the entry
+	 * 
+	 * @return the string defined by the client
+	 * 
+	 * @throws IllegalArgumentException if there is no such entry
+	 */
+	String get(int index) {
+		if(index>=stringCount)
+			throw new IllegalArgumentException("Undefined dictionary index: "+index);
+		
+		return strings[index];
+	}
+	
+	/**
+	 * Replaces the UTF-8 strings (#10) of an outgoing {@link Packet} with dictionary strings (#17).<br>
+	 * New entries only become valid after {@link #commit()}, otherwise they are discarded by the next call.
+	 * 
+	 * @param packet the {@link Packet} to be sent
+	 * 
+	 * @return the Packet's data
+	 */
+	byte[]encode(Packet packet) {
+		pending.clear();
+		
+		byte[]data=packet.data;
+		int size=packet.size();
+		
+		// a definition is 2 bytes longer than the string itself
+		byte[]buf=new byte[size+2*packet.stringCount];
+		int pos=0,copied=0;
+		
+		for(int i=0;i<packet.stringCount;++i) {
+			int offset=packet.stringOffsets[i];
+			int len=((data[offset+1]&0xFF)<<8)|(data[offset+2]&0xFF);
+			
+			if(len>MAX_LENGTH)
+				continue;
+			
+			String key=new String(data,offset+3,len,StandardCharsets.ISO_8859_1);
+			Integer index=indices.get(key);
+			
+			if(index==null)
+				index=pending.get(key);
+			
+			if(index==null&&indices.size()+pending.size()>=MAX_ENTRIES)
+				continue;
+			
+			System.arraycopy(data,copied,buf,pos,offset-copied);
+			pos+=offset-copied;
+			copied=offset+3+len;
+			
+			buf[pos++]=17;
+			
+			if(index!=null) {
+				buf[pos++]=(byte)(index>>8);
+				buf[pos++]=(byte)(int)index;
+				continue;
+			}
+			
+			index=indices.size()+pending.size();
+			pending.put(key,index);
+			
+			buf[pos++]=(byte)((DEFINITION|index)>>8);
+			buf[pos++]=(byte)(int)index;
+			
+			System.arraycopy(data,offset+1,buf,pos,2+len);
+			pos+=2+len;
+		}
+		
+		System.arraycopy(data,copied,buf,pos,size-copied);
+		pos+=size-copied;
+		
+		return Arrays.copyOf(buf,pos);
+	}
+	
+	/**
+	 * Adds the entries defined by the last {@link #encode(Packet)}, after its frame has been sent
+	 */
+	void commit() {
+		indices.putAll(pending);
+		pending.clear();
+	}
+	
+}
@@ -0,0 +1,150 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * A hashed timer wheel which runs the timeouts of all the {@link Connection}s on a single daemon thread (see {@link Bridge#setIdleTimeout(long)})<br>
+ * <br>
+ * Timeouts are sorted into {@link #SLOTS} buckets by their deadline, each bucket covers {@link #TICK} milliseconds.
+ * Scheduling and cancelling are O(1) and don't wake the thread, so timeouts can be re-armed for every {@link Packet}.
+ * Timeouts fire up to two ticks late.
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+final class TimerWheel {
+	
+	/** the resolution in milliseconds */
+	static final long TICK=100;
+	/** the number of buckets, one revolution takes {@code TICK*SLOTS} milliseconds */
+	static final int SLOTS=512;
+	
+	/** the timer wheel shared by all {@link Bridge}s, its thread is started when the first timeout is scheduled */
+	static final TimerWheel SHARED=new TimerWheel();
+	
+	private final Set<Timeout>[]wheel;
+	private volatile Thread thread;
+	
+	@SuppressWarnings({"unchecked","rawtypes"})
+	private TimerWheel() {
+		wheel=new Set[SLOTS];
+		
+		for(int i=0;i<SLOTS;++i)
+			wheel[i]=ConcurrentHashMap.newKeySet();
+	}
+	
+	/**
+	 * Schedules a task
+	 * 
+	 * @param task the task, it must not block
+	 * @param delay the delay in milliseconds
+	 * 
+	 * @return the handle to cancel the task
+	 */
+	Timeout schedule(Runnable task,long delay) {
+		long deadline=System.currentTimeMillis()+Math.max(delay,0);
+		// the bucket of the following tick, it is visited after the deadline has passed
+		Timeout timeout=new Timeout(task,deadline,wheel[(int)((deadline/TICK+1)%SLOTS)]);
+		timeout.bucket.add(timeout);
+		
+		if(thread==null)
+			start0();
+		
+		return timeout;
+	}
+	
+	private synchronized void start0() {
+		if(thread!=null)
+			return;
+		
+		Thread thread=new Thread(this::run0,"TimerWheel PHP-Java");
+		thread.setDaemon(true);
+		thread.start();
+		
+		this.thread=thread;
+	}
+	
+	private void run0() {
+		long last=System.currentTimeMillis()/TICK;
+		
+		while(true) {
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(TICK-System.currentTimeMillis()%TICK));
+			
+			long now=System.currentTimeMillis(),current=now/TICK;
+			
+			// catches up if the thread was delayed, but visits every bucket at most once
+			for(long tick=Math.max(last+1,current-SLOTS+1);tick<=current;++tick)
+				expire0(wheel[(int)(tick%SLOTS)],now);
+			
+			last=current;
+		}
+	}
+	
+	private void expire0(Set<Timeout>bucket,long now) {
+		for(Timeout timeout:bucket)
+			if(timeout.deadline<=now&&bucket.remove(timeout))
+				try {
+					timeout.task.run();
+				} catch(RuntimeException e) {}
+	}
+	
+	/**
+	 * A scheduled task
+	 */
+	static final class Timeout {
+		
+		private final Runnable task;
+		private final long deadline;
+		private final Set<Timeout>bucket;
+		
+		private Timeout(Runnable task,long deadline,Set<Timeout>bucket) {
+			this.task=task;
+			this.deadline=deadline;
+			this.bucket=bucket;
+		}
+		
+		/**
+		 * Cancels the task, unless it is already running
+		 */
+		void cancel() {
+			bucket.remove(this);
+		}
+		
+	}
+	
+}
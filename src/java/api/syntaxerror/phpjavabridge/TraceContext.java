@@ -0,0 +1,239 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * A distributed tracing context, compatible with the <a href=https://www.w3.org/TR/trace-context/>W3C Trace Context</a> ({@code traceparent}).<br>
+ * <br>
+ * A client may put the context of its own span in front of a {@link Packet}'s data (PHP: {@code Bridge::setTraceParent()}):
+ * <pre>
+ * &lt;int8 18&gt; &lt;int8 version&gt; &lt;16 bytes trace-id&gt; &lt;8 bytes parent-id&gt; &lt;int8 trace-flags&gt;
+ * </pre>
+ * The Bridge removes it before the {@link Packet} is validated and starts a new span (child of the client's span) for the request.
+ * Its context is available via {@link Packet#getTraceContext()}, and via {@link #current()} while the {@link PacketHandler} is running.
+ * If the client's span is sampled, the span is passed to the {@link SpanExporter} (see {@link Bridge#setSpanExporter(SpanExporter)}).
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+public final class TraceContext {
+	
+	/** the data type preceding a trace context in the data of a {@link Packet} */
+	static final int DATA_TYPE=18;
+	/** the length of an encoded trace context, including its data type */
+	static final int LENGTH=27;
+	/** trace-flags: the caller may have recorded its span */
+	public static final int FLAG_SAMPLED=0x01;
+	
+	private static final Pattern TRACEPARENT=Pattern.compile("([0-9a-f]{2})-([0-9a-f]{32})-([0-9a-f]{16})-([0-9a-f]{2})(-.*)?");
+	private static final HexFormat HEX=HexFormat.of();
+	private static final ThreadLocal<TraceContext>CURRENT=new ThreadLocal<>();
+	
+	private final String traceId,spanId,parentSpanId;
+	private final int flags;
+	
+	private TraceContext(String traceId,String spanId,String parentSpanId,int flags) {
+		this.traceId=traceId;
+		this.spanId=spanId;
+		this.parentSpanId=parentSpanId;
+		this.flags=flags;
+	}
+	
+	/**
+	 * Parses a {@code traceparent} header, e.g. {@code 00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01}
+	 * 
+	 * @param traceparent the header
+	 * 
+	 * @return the context of the span described by the header
+	 * 
+	 * @throws IllegalArgumentException if the header is malformed
+	 */
+	public static TraceContext parse(String traceparent) {
+		Matcher matcher=TRACEPARENT.matcher(Objects.requireNonNull(traceparent).trim());
+		
+		if(!matcher.matches())
+			throw new IllegalArgumentException("Malformed traceparent: "+traceparent);
+		
+		String version=matcher.group(1),traceId=matcher.group(2),spanId=matcher.group(3);
+		
+		// versions other than 00 may append further fields
+		if(version.equals("ff")||version.equals("00")&&matcher.group(5)!=null)
+			throw new IllegalArgumentException("Unsupported traceparent version: "+traceparent);
+		
+		if(isZero(traceId)||isZero(spanId))
+			throw new IllegalArgumentException("Invalid trace-id or parent-id: "+traceparent);
+		
+		return new TraceContext(traceId,spanId,null,Integer.parseInt(matcher.group(4),16));
+	}
+	
+	/**
+	 * @return the context of the span of the {@link PacketHandler} running on the current thread,
+	 * or {@code null} if the {@link Packet} it handles didn't contain a trace context
+	 */
+	public static TraceContext current() {
+		return CURRENT.get();
+	}
+	
+	/**
+	 * @return a new span of the same trace, whose parent is this span
+	 */
+	public TraceContext newChild() {
+		long id;
+		
+		do id=ThreadLocalRandom.current().nextLong();
+		while(id==0);
+		
+		return new TraceContext(traceId,HEX.toHexDigits(id),spanId,flags);
+	}
+	
+	/**
+	 * @return the ID of the trace (32 lowercase hex digits)
+	 */
+	public String getTraceId() {
+		return traceId;
+	}
+	
+	/**
+	 * @return the ID of this span (16 lowercase hex digits)
+	 */
+	public String getSpanId() {
+		return spanId;
+	}
+	
+	/**
+	 * @return the ID of the parent span, or {@code null} if it is unknown
+	 */
+	public String getParentSpanId() {
+		return parentSpanId;
+	}
+	
+	/**
+	 * @return the trace-flags (see {@link #FLAG_SAMPLED})
+	 */
+	public int getFlags() {
+		return flags;
+	}
+	
+	/**
+	 * @return whether or not the caller may have recorded its span
+	 */
+	public boolean isSampled() {
+		return(flags&FLAG_SAMPLED)!=0;
+	}
+	
+	/**
+	 * @return the {@code traceparent} header of this span, used to propagate it to other services
+	 */
+	public String toTraceParent() {
+		return "00-"+traceId+"-"+spanId+"-"+HEX.toHexDigits((byte)flags);
+	}
+	
+	@Override
+	public String toString() {
+		return toTraceParent();
+	}
+	
+	private static boolean isZero(String hex) {
+		for(int i=0;i<hex.length();++i)
+			if(hex.charAt(i)!='0')
+				return false;
+		
+		return true;
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * Removes the trace context in front of the data of an incoming {@link Packet}, if there is one,
+	 * and sets {@link Packet#traceContext} to a new span of the trace
+	 * 
+	 * @param incoming the incoming {@link Packet}
+	 * @param buf the decrypted data
+	 * 
+	 * @return the data without the trace context
+	 * 
+	 * @throws MalformedRequestException if the trace context is malformed
+	 */
+	static byte[]extract(Packet incoming,byte[]buf)throws MalformedRequestException {
+		if(buf.length==0||buf[0]!=DATA_TYPE)
+			return buf;
+		
+		if(buf.length<LENGTH)
+			throw new MalformedRequestException("Expected a "+LENGTH+" byte trace context, got "+buf.length+" bytes instead");
+		
+		if((buf[1]&0xFF)==0xFF)
+			throw new MalformedRequestException("Invalid trace context version: 255");
+		
+		String traceId=HEX.formatHex(buf,2,18),parentId=HEX.formatHex(buf,18,26);
+		
+		if(isZero(traceId)||isZero(parentId))
+			throw new MalformedRequestException("Invalid trace-id or parent-id: "+traceId+"-"+parentId);
+		
+		incoming.traceContext=new TraceContext(traceId,parentId,null,buf[26]&0xFF).newChild();
+		
+		return Arrays.copyOfRange(buf,LENGTH,buf.length);
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * @param context the context of the {@link PacketHandler} about to run on the current thread
+	 * 
+	 * @return the previous context, to be restored via {@link #restore(TraceContext)}
+	 */
+	static TraceContext enter(TraceContext context) {
+		TraceContext previous=CURRENT.get();
+		CURRENT.set(context);
+		return previous;
+	}
+	
+	/**
+	 * internal use only<br><br>
+	 * 
+	 * @param previous the context returned by {@link #enter(TraceContext)}
+	 */
+	static void restore(TraceContext previous) {
+		if(previous==null)
+			CURRENT.remove();
+		
+		else CURRENT.set(previous);
+	}
+	
+}
@@ -0,0 +1,357 @@
+package api.syntaxerror.phpjavabridge.codegen;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * A set of message definitions, from which {@link SchemaCompiler} generates Java and PHP classes.<br>
+ * <br>
+ * Syntax:
+ * <pre>
+ * # comment
+ * message UserLookup 5 {
+ * 	int id
+ * 	string name
+ * 	bool active
+ * }
+ * </pre>
+ * Each message has a name, a Packet-ID and a list of fields, which are written in the given order.
+ * Names must not be reserved words in Java or PHP (e.g. {@code class}, {@code int}, {@code list} or {@code function}).
+ * Valid field types are listed in {@link Type}.
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+public class Schema {
+	
+	private static final Pattern MESSAGE=Pattern.compile("message\\s+([A-Za-z_][A-Za-z0-9_]*)\\s+(\\d+)\\s*\\{"),
+			FIELD=Pattern.compile("([a-z]+)\\s+([A-Za-z_][A-Za-z0-9_]*)\\s*;?"),
+			END=Pattern.compile("\\}\\s*;?");
+	
+	/** keywords, literals and restricted identifiers of Java */
+	private static final Set<String>JAVA_KEYWORDS=Set.of(
+		"abstract","assert","boolean","break","byte","case","catch","char","class","const","continue","default","do","double",
+		"else","enum","extends","final","finally","float","for","goto","if","implements","import","instanceof","int","interface",
+		"long","native","new","package","private","protected","public","record","return","short","static","strictfp","super",
+		"switch","synchronized","this","throw","throws","transient","try","var","void","volatile","while","yield",
+		"true","false","null","_"
+	);
+	
+	/** keywords and reserved type names of PHP (lower case, PHP ignores their case) */
+	private static final Set<String>PHP_KEYWORDS=Set.of(
+		"__halt_compiler","abstract","and","array","as","break","callable","case","catch","class","clone","const","continue",
+		"declare","default","die","do","echo","else","elseif","empty","enddeclare","endfor","endforeach","endif","endswitch",
+		"endwhile","enum","eval","exit","extends","final","finally","fn","for","foreach","function","global","goto","if",
+		"implements","include","include_once","instanceof","insteadof","interface","isset","list","match","namespace","new",
+		"or","print","private","protected","public","readonly","require","require_once","return","static","switch","throw",
+		"trait","try","unset","use","var","while","xor","yield",
+		"bool","false","float","int","iterable","mixed","never","null","object","parent","self","string","true","void"
+	);
+	
+	private final String source;
+	private final List<Message>messages;
+	
+	private Schema(String source,List<Message>messages) {
+		this.source=source;
+		this.messages=Collections.unmodifiableList(messages);
+	}
+	
+	/**
+	 * @return the name of the schema's source (e.g. the file name)
+	 */
+	public String getSource() {
+		return source;
+	}
+	
+	/**
+	 * @return the messages in the order they are defined
+	 */
+	public List<Message>getMessages() {
+		return messages;
+	}
+	
+	/**
+	 * Parses a schema
+	 * 
+	 * @param source the name of the schema's source, used in error messages
+	 * @param reader the schema
+	 * 
+	 * @return the Schema
+	 * 
+	 * @throws IOException if an I/O error occurs
+	 * @throws SchemaException if the schema is invalid
+	 */
+	public static Schema parse(String source,Reader reader)throws IOException,SchemaException {
+		List<Message>messages=new ArrayList<>();
+		Set<String>names=new HashSet<>();
+		Set<Integer>pids=new HashSet<>();
+		
+		Message message=null;
+		Set<String>fieldNames=null;
+		
+		BufferedReader in=new BufferedReader(reader);
+		String line;
+		int lineNumber=0;
+		
+		while((line=in.readLine())!=null) {
+			++lineNumber;
+			
+			int comment=line.indexOf('#');
+			
+			if(comment>=0)
+				line=line.substring(0,comment);
+			
+			line=line.strip();
+			
+			if(line.isEmpty())
+				continue;
+			
+			Matcher m;
+			
+			if(message==null) {
+				if(!(m=MESSAGE.matcher(line)).matches())
+					throw new SchemaException(source,lineNumber,"Expected 'message <name> <Packet-ID> {', got '"+line+"' instead");
+				
+				int pid=Integer.parseInt(m.group(2));
+				
+				if(pid>255)
+					throw new SchemaException(source,lineNumber,"Packet-ID out of range [0;255]: "+pid);
+				
+				if(isReserved(m.group(1)))
+					throw new SchemaException(source,lineNumber,"Reserved word: "+m.group(1));
+				
+				if(!names.add(m.group(1)))
+					throw new SchemaException(source,lineNumber,"Duplicate message: "+m.group(1));
+				
+				if(!pids.add(pid))
+					throw new SchemaException(source,lineNumber,"Duplicate Packet-ID: "+pid);
+				
+				message=new Message(m.group(1),pid);
+				fieldNames=new HashSet<>();
+			} else if(END.matcher(line).matches()) {
+				messages.add(message);
+				message=null;
+			} else {
+				if(!(m=FIELD.matcher(line)).matches())
+					throw new SchemaException(source,lineNumber,"Expected '<type> <name>' or '}', got '"+line+"' instead");
+				
+				Type type=Type.of(m.group(1));
+				
+				if(type==null)
+					throw new SchemaException(source,lineNumber,"Unknown type: "+m.group(1));
+				
+				if(isReserved(m.group(2)))
+					throw new SchemaException(source,lineNumber,"Reserved word: "+m.group(2));
+				
+				if(!fieldNames.add(m.group(2)))
+					throw new SchemaException(source,lineNumber,"Duplicate field: "+m.group(2));
+				
+				message.fields.add(new Field(m.group(2),type));
+			}
+		}
+		
+		if(message!=null)
+			throw new SchemaException(source,lineNumber,"Unterminated message: "+message.name);
+		
+		return new Schema(source,messages);
+	}
+	
+	/**
+	 * @param name a message or field name
+	 * 
+	 * @return whether or not {@code name} is reserved in Java or PHP (PHP keywords are case-insensitive)
+	 */
+	private static boolean isReserved(String name) {
+		return JAVA_KEYWORDS.contains(name)||PHP_KEYWORDS.contains(name.toLowerCase(Locale.ROOT));
+	}
+	
+	/**
+	 * A message definition
+	 */
+	public static class Message {
+		
+		private final String name;
+		private final int pid;
+		private final List<Field>fields=new ArrayList<>();
+		
+		Message(String name,int pid) {
+			this.name=name;
+			this.pid=pid;
+		}
+		
+		/**
+		 * @return the name of the generated classes
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * @return the Packet-ID
+		 */
+		public int getPacketID() {
+			return pid;
+		}
+		
+		/**
+		 * @return the fields in the order they are written
+		 */
+		public List<Field>getFields() {
+			return Collections.unmodifiableList(fields);
+		}
+		
+	}
+	
+	/**
+	 * A field of a message
+	 */
+	public static class Field {
+		
+		private final String name;
+		private final Type type;
+		
+		Field(String name,Type type) {
+			this.name=name;
+			this.type=type;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		public Type getType() {
+			return type;
+		}
+		
+	}
+	
+	/**
+	 * The field types and the {@link api.syntaxerror.phpjavabridge.Packet Packet} data types they are mapped to
+	 */
+	public static enum Type {
+		
+		BOOL	("bool",	"boolean",	"Boolean",		"DATA_BOOL",			2),
+		BYTE	("byte",	"byte",		"Byte",			"DATA_BYTE",			2),
+		UBYTE	("ubyte",	"int",		"UnsignedByte",	"DATA_UNSIGNED_BYTE",	2),
+		SHORT	("short",	"short",	"Short",		"DATA_SHORT",			3),
+		USHORT	("ushort",	"int",		"UnsignedShort","DATA_UNSIGNED_SHORT",	3),
+		INT		("int",		"int",		"Int",			"DATA_INT",				5),
+		UINT	("uint",	"long",		"UnsignedInt",	"DATA_UNSIGNED_INT",	5),
+		LONG	("long",	"long",		"Long",			"DATA_LONG",			9),
+		FLOAT	("float",	"float",	"Float",		"DATA_FLOAT",			5),
+		DOUBLE	("double",	"double",	"Double",		"DATA_DOUBLE",			9),
+		STRING	("string",	"String",	"StringUTF8",	"DATA_STRING_UTF8",		3),
+		ASCII	("ascii",	"String",	"StringASCII",	"DATA_STRING_ASCII",	3),
+		CSTRING	("cstring",	"String",	"StringC",		"DATA_STRING_C",		2),
+		BYTES	("bytes",	"byte[]",	"ByteArray",	"DATA_BYTE_ARRAY",		5);
+		
+		private final String name,javaType,method,phpConstant;
+		private final int size;
+		
+		private Type(String name,String javaType,String method,String phpConstant,int size) {
+			this.name=name;
+			this.javaType=javaType;
+			this.method=method;
+			this.phpConstant=phpConstant;
+			this.size=size;
+		}
+		
+		/**
+		 * @param name the name used in schemas
+		 * 
+		 * @return the Type, or {@code null} if there is none with this name
+		 */
+		public static Type of(String name) {
+			for(Type type:values())
+				if(type.name.equals(name))
+					return type;
+			
+			return null;
+		}
+		
+		/**
+		 * @return the name used in schemas
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * @return the Java type of the field
+		 */
+		public String getJavaType() {
+			return javaType;
+		}
+		
+		/**
+		 * @return the suffix of the Packet's read and write methods, e.g. {@code Int} for {@code readInt()} and {@code writeInt(int)}
+		 */
+		public String getMethod() {
+			return method;
+		}
+		
+		/**
+		 * @return the name of the PHP constant
+		 */
+		public String getPHPConstant() {
+			return phpConstant;
+		}
+		
+		/**
+		 * @return the encoded size (including the type ID), or the size of the header if the size depends on the value
+		 */
+		public int getSize() {
+			return size;
+		}
+		
+		/**
+		 * @return whether or not the encoded size depends on the value
+		 */
+		public boolean isVariableSize() {
+			return ordinal()>=STRING.ordinal();
+		}
+		
+	}
+	
+}
@@ -0,0 +1,248 @@
+package api.syntaxerror.phpjavabridge.codegen;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Generates a Java class and a matching PHP class for each message of a {@link Schema}.<br>
+ * <br>
+ * The generated classes contain one public field per schema field and read and write them in straight-line code, so Java and PHP always agree on the order and types of the fields.
+ * The Java classes compute the encoded size in advance, so the {@link api.syntaxerror.phpjavabridge.Packet Packet} never has to grow.<br>
+ * <br>
+ * Usage:
+ * <pre>
+ * java api.syntaxerror.phpjavabridge.codegen.SchemaCompiler &lt;schema&gt; &lt;java output dir&gt; &lt;java package&gt; &lt;php output dir&gt; [php namespace]
+ * </pre>
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+public class SchemaCompiler {
+	
+	private final Schema schema;
+	
+	/**
+	 * @param schema the {@link Schema} to be compiled
+	 */
+	public SchemaCompiler(Schema schema) {
+		this.schema=schema;
+	}
+	
+	public static void main(String[] args)throws IOException {
+		if(args.length!=4&&args.length!=5) {
+			System.err.println("Usage: SchemaCompiler <schema> <java output dir> <java package> <php output dir> [php namespace]");
+			System.exit(2);
+		}
+		
+		Path file=Path.of(args[0]);
+		Schema schema;
+		
+		try(Reader reader=Files.newBufferedReader(file,StandardCharsets.UTF_8)) {
+			schema=Schema.parse(file.getFileName().toString(),reader);
+		} catch(SchemaException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+		
+		SchemaCompiler compiler=new SchemaCompiler(schema);
+		
+		compiler.writeJava(Path.of(args[1]),args[2]);
+		compiler.writePHP(Path.of(args[3]),args.length==5?args[4]:null);
+	}
+	
+	/**
+	 * Writes the Java classes into the package's directory (created if necessary)
+	 * 
+	 * @param root the source root directory
+	 * @param pkg the package of the generated classes (may be empty)
+	 * 
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void writeJava(Path root,String pkg)throws IOException {
+		Path dir=pkg.isEmpty()?root:root.resolve(pkg.replace('.','/'));
+		
+		Files.createDirectories(dir);
+		
+		for(Schema.Message message:schema.getMessages())
+			Files.writeString(dir.resolve(message.getName()+".java"),generateJava(message,pkg),StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Writes the PHP classes into a directory (created if necessary)
+	 * 
+	 * @param dir the output directory
+	 * @param namespace the namespace of the generated classes, or {@code null}
+	 * 
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void writePHP(Path dir,String namespace)throws IOException {
+		Files.createDirectories(dir);
+		
+		for(Schema.Message message:schema.getMessages())
+			Files.writeString(dir.resolve(message.getName()+".php"),generatePHP(message,namespace),StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * @param message the message
+	 * @param pkg the package of the generated class (may be empty)
+	 * 
+	 * @return the source code of the Java class
+	 */
+	public String generateJava(Schema.Message message,String pkg) {
+		StringBuilder sb=new StringBuilder();
+		String name=message.getName();
+		
+		sb.append("// generated by ").append(SchemaCompiler.class.getName()).append(" from ").append(schema.getSource()).append(" - do not edit\n");
+		
+		if(!pkg.isEmpty())
+			sb.append("package ").append(pkg).append(";\n");
+		
+		sb.append("\nimport api.syntaxerror.phpjavabridge.Packet;\n\n");
+		sb.append("/**\n * Packet #").append(message.getPacketID()).append("\n */\n");
+		sb.append("public class ").append(name).append(" {\n\t\n");
+		sb.append("\tpublic static final int PACKET_ID=").append(message.getPacketID()).append(";\n\t\n");
+		
+		for(Schema.Field field:message.getFields())
+			sb.append("\tpublic ").append(field.getType().getJavaType()).append(' ').append(field.getName()).append(";\n");
+		
+		// read
+		sb.append("\t\n\t/**\n\t * @param packet the {@link Packet} to be read\n\t * \n\t * @return the message\n\t */\n");
+		sb.append("\tpublic static ").append(name).append(" read(Packet packet) {\n");
+		sb.append("\t\tif(packet.getPacketID()!=PACKET_ID)\n");
+		sb.append("\t\t\tthrow new IllegalArgumentException(\"Expected Packet #\"+PACKET_ID+\", got #\"+packet.getPacketID()+\" instead\");\n\t\t\n");
+		sb.append("\t\t").append(name).append(" message=new ").append(name).append("();\n");
+		
+		for(Schema.Field field:message.getFields())
+			sb.append("\t\tmessage.").append(field.getName()).append("=packet.read").append(field.getType().getMethod()).append("();\n");
+		
+		sb.append("\t\t\n\t\treturn message;\n\t}\n");
+		
+		// write
+		sb.append("\t\n\t/**\n\t * @return a new {@link Packet} containing this message\n\t */\n");
+		sb.append("\tpublic Packet toPacket() {\n");
+		sb.append("\t\tPacket packet=new Packet(PACKET_ID,size());\n");
+		
+		for(Schema.Field field:message.getFields())
+			sb.append("\t\tpacket.write").append(field.getType().getMethod()).append('(').append(field.getName()).append(");\n");
+		
+		sb.append("\t\t\n\t\treturn packet;\n\t}\n");
+		
+		// size
+		int fixed=0;
+		StringBuilder variable=new StringBuilder();
+		boolean utf8=false;
+		
+		for(Schema.Field field:message.getFields()) {
+			Schema.Type type=field.getType();
+			String f=field.getName();
+			
+			fixed+=type.getSize();
+			
+			switch(type) {
+			case STRING:variable.append("+utf8Length(").append(f).append(')');utf8=true;break;
+			case ASCII:variable.append("+(").append(f).append(".length()*7+7)/8");break;
+			case CSTRING:variable.append('+').append(f).append(".length()");break;
+			case BYTES:variable.append('+').append(f).append(".length");break;
+			default:break;
+			}
+		}
+		
+		sb.append("\t\n\t/**\n\t * @return the encoded size of this message\n\t */\n");
+		sb.append("\tpublic int size() {\n\t\treturn ").append(fixed).append(variable).append(";\n\t}\n");
+		
+		if(utf8) {
+			sb.append("\t\n\tprivate static int utf8Length(String s) {\n");
+			sb.append("\t\tint len=0;\n\t\t\n");
+			sb.append("\t\tfor(int i=0;i<s.length();++i) {\n");
+			sb.append("\t\t\tchar c=s.charAt(i);\n\t\t\t\n");
+			sb.append("\t\t\tlen+=c>0&&c<=0x7F?1:c>0x7FF?3:2;\n");
+			sb.append("\t\t}\n\t\t\n\t\treturn len;\n\t}\n");
+		}
+		
+		sb.append("\t\n}\n");
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * @param message the message
+	 * @param namespace the namespace of the generated class, or {@code null}
+	 * 
+	 * @return the source code of the PHP class
+	 */
+	public String generatePHP(Schema.Message message,String namespace) {
+		StringBuilder sb=new StringBuilder();
+		String name=message.getName();
+		
+		sb.append("<?php\n// generated by ").append(SchemaCompiler.class.getName()).append(" from ").append(schema.getSource()).append(" - do not edit\n");
+		
+		if(namespace!=null)
+			sb.append("namespace ").append(namespace).append(";\n");
+		
+		sb.append("\nuse Exception;\nuse phpjava\\Packet;\n\n");
+		sb.append("/**\n * Packet #").append(message.getPacketID()).append("\n */\n");
+		sb.append("class ").append(name).append(" {\n\n");
+		sb.append("    const PACKET_ID=").append(message.getPacketID()).append(";\n\n");
+		
+		for(Schema.Field field:message.getFields())
+			sb.append("    public$").append(field.getName()).append(";\n");
+		
+		sb.append("\n    /**\n     * @param packet the Packet to be read\n     * \n     * @return ").append(name).append(" the message\n     */\n");
+		sb.append("    public static function read(Packet $packet):").append(name).append(" {\n");
+		sb.append("        if($packet->getPacketID()!=self::PACKET_ID)\n");
+		sb.append("            throw new Exception(\"Expected Packet #\".self::PACKET_ID.\", got #\".$packet->getPacketID().\" instead\");\n\n");
+		sb.append("        $message=new ").append(name).append("();\n");
+		
+		for(Schema.Field field:message.getFields())
+			sb.append("        $message->").append(field.getName()).append("=$packet->read(").append(field.getType().getPHPConstant()).append(");\n");
+		
+		sb.append("\n        return$message;\n    }\n");
+		sb.append("\n    /**\n     * @return Packet a new Packet containing this message\n     */\n");
+		sb.append("    public function toPacket():Packet {\n");
+		sb.append("        $packet=new Packet(self::PACKET_ID);\n");
+		
+		for(Schema.Field field:message.getFields())
+			sb.append("        $packet->write(").append(field.getType().getPHPConstant()).append(",$this->").append(field.getName()).append(");\n");
+		
+		sb.append("\n        return$packet;\n    }\n\n}\n?>");
+		
+		return sb.toString();
+	}
+	
+}
@@ -33,4 +33,7 @@
  * @author SyntaxError404, 2020
  */
 module phpjavabridge {
+	requires java.management;
+	requires jdk.httpserver;
+	requires jdk.jfr;
 }
\ No newline at end of file
@@ -1,6 +1,6 @@
 <?php
 /**
- * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)
+ * PHP-Java-Bridge provides a TCP-, UDP-, Unix Domain Socket- or Shared Memory-based connection between PHP (Client) and Java (Server)
  * 
  * licensed under the Apache License 2.0:
  * 
@@ -38,6 +38,8 @@ require_once 'lib/Aes.php';
 
 define('BRIDGE_TCP',0);
 define('BRIDGE_UDP',1);
+define('BRIDGE_UNIX',2);
+define('BRIDGE_SHM',3); // experimental
 
 /**
  * send a warning message if the 'E_WARNING' bitmask for 'error_reporting(?int)' is set
@@ -65,11 +67,43 @@ class Bridge {
 
     private$sock,$hostname,$port,$useAES,$passwd,$maxPacketSize,$method;
 
+    /**
+     * BRIDGE_SHM only: the claimed slot, its lock file handle, its offset in the shared memory and its size
+     */
+    private$slot,$slotLock,$slotOffset,$slotSize;
+
+    /**
+     * the PacketStreams following the last received Packet. Unread data is skipped before the next Packet is sent
+     */
+    private$openStreams=[];
+
+    /**
+     * BRIDGE_UDP only: the max. number of data bytes per fragment (0: fragmentation disabled) and
+     * the time (in seconds) to wait for a fragmented response
+     */
+    private$fragmentSize=0,$fragmentTimeout=5.0;
+
+    /**
+     * the min. size of data before it is compressed (-1: compression disabled)
+     */
+    private$compressionThreshold=-1;
+
+    /**
+     * BRIDGE_TCP and BRIDGE_UNIX only: whether or not repeated strings are sent as back-references, and the dictionary of the current connection
+     */
+    private$useDictionary=false,$dictionary=null;
+
+    /**
+     * the encoded trace context (DATA_TRACE_CONTEXT) put in front of every Packet, or null
+     */
+    private$traceContext=null;
+
     /**
      * Instantiates a new PHP-Java-Bridge
      * 
-     * @param method the method to be used: either TCP (BRIGE_TCP) or UDP (BRIDGE_UDP)
-     * @param hostname the address (IPv4 or domain) to connect to the server
+     * @param method the method to be used: either TCP (BRIGE_TCP), UDP (BRIDGE_UDP), Unix Domain Sockets (BRIDGE_UNIX) or Shared Memory (BRIDGE_SHM)
+     * @param hostname the address (IPv4 or domain) to connect to the server. For BRIDGE_UNIX, this is the path of the socket file,
+     *                 for BRIDGE_SHM the path of the memory-mapped file
      * @param port the port of the server. default 8998
      * @param useAES whether or not the data should be AES-256-CBC encrypted. default false
      * @param passwd only required if useAES is true. Hashed with SHA3-256. default null
@@ -93,7 +127,7 @@ class Bridge {
 
         $this->maxPacketSize=$maxPacketSize;
 
-        if($method!=BRIDGE_TCP&&$method!=BRIDGE_UDP)
+        if($method!=BRIDGE_TCP&&$method!=BRIDGE_UDP&&$method!=BRIDGE_UNIX&&$method!=BRIDGE_SHM)
             throw new Exception("Unrecognized method: $method");
 
         $this->method=$method;
@@ -113,16 +147,29 @@ class Bridge {
     /**
      * TCP: establishes connection to the server
      * UDP: initialized socket (doesn't throw Exception if the server is not reachable)
+     * UNIX: establishes connection to the server's socket file
+     * SHM: opens the server's memory-mapped file and claims a slot
      */
     public function connect() {
         if(!is_null($this->sock))
             throw new ConnectionAlreadyEstablishedException("Already connected");
 
+        if($this->method==BRIDGE_SHM) {
+            $this->connectSharedMemory();
+            return;
+        }
+
         if($this->method==BRIDGE_TCP)
             $this->sock=socket_create(AF_INET,SOCK_STREAM,SOL_TCP);
+        elseif($this->method==BRIDGE_UNIX)
+            $this->sock=socket_create(AF_UNIX,SOCK_STREAM,0);
         else$this->sock=socket_create(AF_INET,SOCK_DGRAM,SOL_UDP);
 
-        socket_connect($this->sock,$this->hostname,$this->port);
+        if($this->method==BRIDGE_UNIX)
+            socket_connect($this->sock,$this->hostname);
+        else socket_connect($this->sock,$this->hostname,$this->port);
+
+        $this->dictionary=$this->useDictionary?new StringDictionary():null;
 
         if(!$this->sock) {
             $errno=socket_last_error();
@@ -134,9 +181,265 @@ class Bridge {
         if(is_null($this->sock))
             throw new ConnectionNotEstablishedYetException("Not connected yet");
 
-        if($this->method==BRIDGE_TCP)
+        if($this->method==BRIDGE_SHM) {
+            // removed while still locked, see connectSharedMemory()
+            @unlink("{$this->hostname}.{$this->slot}.lock");
+            flock($this->slotLock,LOCK_UN);
+            fclose($this->slotLock);
+            fclose($this->sock);
+            $this->slotLock=null;
+        } elseif($this->method!=BRIDGE_UDP)
             socket_close($this->sock);
         $this->sock=null;
+        $this->dictionary=null;
+    }
+
+    /**
+     * Opens the memory-mapped file and claims a slot.
+     * 
+     * The file is accessed via unbuffered file operations, which operate on the same (page cache) memory the server has mapped.
+     * Slots are claimed by locking the file '<path>.<slot>.lock', so every slot is used by one PHP process at a time.
+     * The lock file is removed on disconnect. A lock acquired on a file which has been removed in the meantime is not valid anymore.
+     * 
+     * The file is created by the Java server with permissions 0600, so PHP must run as the same user as the server.
+     */
+    private function connectSharedMemory() {
+        $fp=@fopen($this->hostname,'r+b');
+
+        if(!$fp)
+            throw new ConnectionFailedException("Couldn't open shared memory: {$this->hostname}");
+
+        stream_set_read_buffer($fp,0);
+        stream_set_write_buffer($fp,0);
+
+        $header=unpack('Nmagic/Nversion/Nslots/NslotSize',fread($fp,16));
+
+        if($header['magic']!=0x504A534D||$header['version']!=1) {
+            fclose($fp);
+            throw new ConnectionFailedException("Not a PHP-Java-Bridge shared memory file: {$this->hostname}");
+        }
+
+        $slots=$header['slots'];
+
+        for($i=0;$i<$slots;++$i) {
+            $slot=(getmypid()+$i)%$slots;
+            $path="{$this->hostname}.$slot.lock";
+            $lock=@fopen($path,'c');
+
+            if($lock&&flock($lock,LOCK_EX|LOCK_NB)) {
+                $stat=@stat($path);
+
+                // the previous owner removed the file after it has been opened, someone else might have locked a new one
+                if($stat===false||$stat['ino']!=fstat($lock)['ino']) {
+                    flock($lock,LOCK_UN);
+                    fclose($lock);
+                    --$i;
+                    continue;
+                }
+
+                $this->slot=$slot;
+                $this->slotLock=$lock;
+                $this->slotSize=$header['slotSize'];
+                $this->slotOffset=64+$slot*(16+$this->slotSize);
+                $this->sock=$fp;
+                return;
+            }
+
+            if($lock)
+                fclose($lock);
+        }
+
+        fclose($fp);
+        throw new ConnectionFailedException("Couldn't claim a shared memory slot: all $slots slots are in use");
+    }
+
+    /**
+     * Writes the request into the claimed slot and waits for the server's response.
+     * Every poll is a system call, so the process sleeps between polls (with exponential backoff, 10 µs up to 1 ms).
+     * 
+     * @param message the request (header and encrypted data)
+     * 
+     * @return string the response (header and encrypted data)
+     */
+    private function exchangeSharedMemory(string $message):string {
+        if(strlen($message)>$this->slotSize)
+            throw new Exception("Packets exceeds slot size: ".strlen($message)." (max. {$this->slotSize})");
+
+        fseek($this->sock,$this->slotOffset+16);
+        fwrite($this->sock,$message);
+        fseek($this->sock,$this->slotOffset);
+        fwrite($this->sock,pack('N',1)); // STATE_REQUEST
+
+        $sleep=10;
+
+        for(;;) {
+            fseek($this->sock,$this->slotOffset);
+            $state=unpack('N',fread($this->sock,4))[1];
+
+            if($state==3||$state==4) // STATE_RESPONSE, STATE_ERROR
+                break;
+
+            usleep($sleep);
+            $sleep=min($sleep<<1,1000);
+        }
+
+        $buffer='';
+
+        if($state==3) {
+            fseek($this->sock,$this->slotOffset+16);
+            $buffer=fread($this->sock,6);
+            $size=unpack('N',substr($buffer,2,4))[1];
+
+            if($size>0)
+                $buffer.=fread($this->sock,$size);
+        }
+
+        fseek($this->sock,$this->slotOffset);
+        fwrite($this->sock,pack('N',0)); // STATE_FREE
+
+        if($state==4)
+            throw new Exception("Couldn't send packet: the server failed to process it");
+
+        return$buffer;
+    }
+
+    /**
+     * BRIDGE_UDP only: sends Packets as fragments, so they may exceed the size of a single datagram.
+     * Lost fragments are requested again (in both directions) and the server responds with fragments, too.
+     * 
+     * Requires a Java server supporting fragmentation
+     * 
+     * @param fragmentSize the max. number of data bytes per fragment. default 1400 (fits into a single Ethernet frame)
+     * @param timeout the time (in seconds) to wait for the response before giving up. default 5
+     */
+    public function enableFragmentation(int $fragmentSize=1400,float $timeout=5.0) {
+        if($this->method!=BRIDGE_UDP)
+            throw new Exception("Fragmentation requires BRIDGE_UDP");
+
+        if($fragmentSize<1||$fragmentSize>65493)
+            throw new Exception("Fragment size out of range: $fragmentSize [1;65,493]");
+
+        $this->fragmentSize=$fragmentSize;
+        $this->fragmentTimeout=$timeout;
+    }
+
+    /**
+     * BRIDGE_UDP only: sends a message as fragments and receives the fragmented response.
+     * 
+     * Missing response fragments are requested via NACKs. If nothing is received at all,
+     * the request is sent again (with an increasing delay); the server ignores duplicates.
+     * 
+     * @param message the message (header and encrypted data)
+     * 
+     * @return string the response (header and encrypted data)
+     */
+    private function exchangeFragmented(string $message):string {
+        $messageID=random_int(0,0x7fffffff);
+        $pid=unpack('C',$message)[1];
+        $flags=unpack('C',substr($message,1,1))[1];
+        $data=substr($message,6);
+        $count=max(1,intdiv(strlen($data)+$this->fragmentSize-1,$this->fragmentSize));
+
+        if($count>0xffff)
+            throw new Exception("Packet requires too many fragments: $count (max. 65,535)");
+
+        $fragments=[];
+
+        for($i=0;$i<$count;++$i) {
+            $part=substr($data,$i*$this->fragmentSize,$this->fragmentSize);
+            $fragments[]=pack('C',$pid).pack('C',$flags|0x04).pack('N',strlen($part)).pack('N',$messageID).pack('n',$i).pack('n',$count).$part; // 0x04: fragment flag
+        }
+
+        foreach($fragments as$fragment)
+            $this->sendDatagram($fragment);
+
+        socket_set_option($this->sock,SOL_SOCKET,SO_RCVTIMEO,['sec'=>0,'usec'=>50000]);
+
+        $deadline=microtime(true)+$this->fragmentTimeout;
+        $retry=microtime(true)+0.1;
+        $delay=0.1;
+        $parts=[];
+        $total=0;
+        $responseFlags=0;
+
+        while($total==0||count($parts)<$total) {
+            if(microtime(true)>$deadline)
+                throw new Exception("Couldn't receive packet: timed out after {$this->fragmentTimeout} seconds");
+
+            $len=@socket_recv($this->sock,$buffer,65535,0);
+
+            if($len===FALSE||$len<6) {
+                if($total>0) {
+                    // selectively request the missing fragments
+                    $missing='';
+
+                    for($i=0;$i<$total&&strlen($missing)<$this->fragmentSize-4;++$i)
+                        if(!isset($parts[$i]))
+                            $missing.=pack('n',$i);
+
+                    $this->sendDatagram(pack('C',$pid).pack('C',0x08).pack('N',strlen($missing)+4).pack('N',$messageID).$missing); // 0x08: NACK flag
+                } elseif(microtime(true)>=$retry) {
+                    foreach($fragments as$fragment)
+                        $this->sendDatagram($fragment);
+
+                    $delay*=2;
+                    $retry=microtime(true)+$delay;
+                }
+
+                continue;
+            }
+
+            $header=unpack('Cpid/Cflags/Nsize',$buffer);
+
+            if(($header['flags']&0x08)!=0) {
+                // the server requests lost fragments again
+                if($len<10||unpack('N',substr($buffer,6,4))[1]!=$messageID)
+                    continue;
+
+                foreach(unpack('n*',substr($buffer,10,$len-10)) as$index)
+                    if(isset($fragments[$index]))
+                        $this->sendDatagram($fragments[$index]);
+
+                continue;
+            }
+
+            if(($header['flags']&0x04)==0)
+                return$buffer;
+
+            if($len<14)
+                continue;
+
+            $fragment=unpack('NmessageID/nindex/ncount',substr($buffer,6,8));
+
+            if($fragment['messageID']!=$messageID||$fragment['index']>=$fragment['count'])
+                continue;
+
+            $total=$fragment['count'];
+            $pid=$header['pid'];
+            $responseFlags=$header['flags']&~0x04;
+            $parts[$fragment['index']]=substr($buffer,14,$header['size']);
+        }
+
+        ksort($parts);
+        $data=implode('',$parts);
+
+        if(strlen($data)+6>$this->maxPacketSize)
+            throw new Exception("Incoming Packet too large: ".(strlen($data)+6)." (max. {$this->maxPacketSize})");
+
+        return pack('C',$pid).pack('C',$responseFlags).pack('N',strlen($data)).$data;
+    }
+
+    /**
+     * BRIDGE_UDP only: sends a single datagram to the server
+     * 
+     * @param message the datagram
+     */
+    private function sendDatagram(string $message) {
+        if(!socket_sendto($this->sock,$message,strlen($message),0,$this->hostname,$this->port)) {
+            $errno=socket_last_error();
+            $errstr=socket_strerror($errno);
+            throw new Exception("Couldn't send packet: $errstr [#$errno]");
+        }
     }
 
     /**
@@ -151,40 +454,332 @@ class Bridge {
         if(is_null($this->sock))
             throw new ConnectionNotEstablishedYetException("Not connected yet");
 
-        $raw=$packet->raw();
+        foreach($this->openStreams as$stream)
+            $stream->drain();
+        $this->openStreams=[];
 
-        $data=$this->encrypt($raw);
-        $len=strlen($data);
+        $pid=$packet->getPacketID();
+        $streams=$packet->streams();
 
-        if($len+6>$this->maxPacketSize)
-            throw new Exception("Packets exceeds max. allowed size: $len");
+        if(!empty($streams)&&($this->method==BRIDGE_UDP||$this->method==BRIDGE_SHM))
+            throw new Exception("Streams require BRIDGE_TCP or BRIDGE_UNIX");
 
-        $message=pack('C',$packet->getPacketID()).pack('C',isLittleEndian()?1:0).pack('N',$len&0x7fffffff).$data;
+        $raw=$this->traceContext.$packet->raw($this->dictionary);
 
         $packet->__destruct();
-        
-        if(!socket_sendto($this->sock,$message,strlen($message),0,$this->hostname,$this->port)) {
-            $errno=socket_last_error();
-            $errstr=socket_strerror($errno);
-            throw new Exception("Couldn't send packet: $errstr [#$errno]");
+
+        $flags=isLittleEndian()?1:0;
+
+        if(!is_null($this->dictionary))
+            $flags|=0x40; // uses the string dictionary
+
+        if(!$this->useAES)
+            $flags|=0x80; // accepts binary chunks
+
+        $buffer=$this->exchange($pid,$flags,$raw,$streams);
+        $pid=unpack('C',$buffer)[1];
+
+        $response=new Packet($pid);
+        $response->setAndValidate($this->decrypt(substr($buffer,6)),$this->dictionary);
+
+        if($response->streamCount()>0&&$this->method!=BRIDGE_UDP&&$this->method!=BRIDGE_SHM) {
+            $previous=null;
+
+            for($i=0;$i<$response->streamCount();++$i)
+                array_push($this->openStreams,$previous=new PacketStream($this,$pid,$previous));
+
+            $response->setStreams($this->openStreams);
         }
+
+        return$response;
+    }
+
+    /**
+     * Sends several packets in a single frame and receives their responses.
+     * 
+     * The server handles the packets in parallel (if possible) and sends all the responses back in a single frame,
+     * so there is only one round trip (and one encryption pass) for the whole batch. Streams are not supported.
+     * 
+     * Requires a Java server supporting batches
+     * 
+     * @param packets the Packets to be sent to the server
+     * 
+     * @return array the Packets received from the server, in the same order (and with the same keys) as packets
+     */
+    public function sendBatch(array $packets):array {
         
-        if(($len=socket_recv($this->sock,$buffer,$this->maxPacketSize,$this->method==BRIDGE_UDP?0:MSG_WAITALL))===FALSE) {
-            $errno=socket_last_error();
-            $errstr=socket_strerror($errno);
-            throw new Exception("Couldn't send packet: $errstr [#$errno]");
+        if(is_null($this->sock))
+            throw new ConnectionNotEstablishedYetException("Not connected yet");
+
+        foreach($this->openStreams as$stream)
+            $stream->drain();
+        $this->openStreams=[];
+
+        $raw='';
+
+        foreach($packets as$packet) {
+            if(!empty($packet->streams()))
+                throw new Exception("Streams are not supported in batches");
+
+            $data=$this->traceContext.$packet->raw();
+            $raw.=pack('C',$packet->getPacketID()).pack('N',strlen($data)).$data;
+        }
+
+        $buffer=$this->decrypt(substr($this->exchange(0,(isLittleEndian()?1:0)|0x10,$raw,[]),6)); // 0x10: batch flag
+
+        $responses=[];
+        $offset=0;
+
+        foreach(array_keys($packets) as$key) {
+            if($offset+5>strlen($buffer))
+                throw new Exception("Received too few bytes: Expected ".count($packets)." Packets, got ".count($responses)." instead");
+
+            $pid=unpack('C',substr($buffer,$offset,1))[1];
+            $size=unpack('N',substr($buffer,$offset+1,4))[1];
+            $offset+=5;
+
+            if($offset+$size>strlen($buffer))
+                throw new Exception("Received too few bytes: Expected $size, got ".(strlen($buffer)-$offset)." instead");
+
+            $response=new Packet($pid);
+            $response->setAndValidate(substr($buffer,$offset,$size));
+            $responses[$key]=$response;
+
+            $offset+=$size;
+        }
+
+        foreach($packets as$packet)
+            $packet->__destruct();
+
+        return$responses;
+    }
+
+    /**
+     * Compresses (zlib, before encryption) the data sent to the server if it exceeds the threshold,
+     * and tells the server that it may compress its responses, too.
+     * 
+     * Requires a Java server supporting compression and the zlib extension
+     * 
+     * @param threshold the min. size (in bytes) of data to be compressed. default 1024
+     */
+    public function enableCompression(int $threshold=1024) {
+        if(!function_exists('gzcompress'))
+            throw new Exception("Compression requires the zlib extension");
+
+        $this->compressionThreshold=max(0,$threshold);
+    }
+
+    /**
+     * Sends repeated strings (DATA_STRING_UTF8) as back-references to their first occurrence on the connection,
+     * and lets the server do the same. Repeated strings then require only 3 bytes, and reading them doesn't create new strings.
+     * 
+     * The dictionary is bound to the connection, it is discarded by disconnect(). Batches (sendBatch(array)) don't use it.
+     * 
+     * Requires BRIDGE_TCP or BRIDGE_UNIX and a Java server supporting string dictionaries
+     */
+    public function enableStringDictionary() {
+        if($this->method!=BRIDGE_TCP&&$this->method!=BRIDGE_UNIX)
+            throw new Exception("String dictionaries require BRIDGE_TCP or BRIDGE_UNIX");
+
+        $this->useDictionary=true;
+
+        if(!is_null($this->sock)&&is_null($this->dictionary))
+            $this->dictionary=new StringDictionary();
+    }
+
+    /**
+     * Propagates a distributed trace to the server: the W3C trace context of the current span
+     * is sent with every following Packet, so the server's spans become its children.
+     * 
+     * Requires a Java server supporting trace contexts
+     * 
+     * @param traceparent the traceparent header of the current span (e.g. '00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01'),
+     *                    or null to stop sending it
+     */
+    public function setTraceParent(?string $traceparent) {
+        if(is_null($traceparent)) {
+            $this->traceContext=null;
+            return;
+        }
+
+        if(!preg_match('/^([0-9a-f]{2})-([0-9a-f]{32})-([0-9a-f]{16})-([0-9a-f]{2})$/',trim($traceparent),$match)||$match[1]==='ff')
+            throw new Exception("Malformed traceparent: $traceparent");
+
+        if(trim($match[2],'0')===''||trim($match[3],'0')==='')
+            throw new Exception("Invalid trace-id or parent-id: $traceparent");
+
+        $this->traceContext=pack('C',DATA_TRACE_CONTEXT).hex2bin($match[1].$match[2].$match[3].$match[4]);
+    }
+
+    /**
+     * Encrypts and sends a frame and receives the response.
+     * 
+     * @param pid the Packet-ID
+     * @param flags the header flags
+     * @param raw the unencrypted data
+     * @param streams the resources to be sent as streams after the frame (TCP, UNIX only)
+     * 
+     * @return string the response (header and encrypted data)
+     */
+    private function exchange(int $pid,int $flags,string $raw,array $streams):string {
+        $data=$this->encrypt($raw);
+        $len=strlen($data);
+
+        if($len+6>$this->maxPacketSize)
+            throw new Exception("Packets exceeds max. allowed size: $len");
+
+        if($this->compressionThreshold>=0)
+            $flags|=0x20; // accepts compressed data
+
+        $message=pack('C',$pid).pack('C',$flags).pack('N',$len&0x7fffffff).$data;
+
+        if($this->method==BRIDGE_SHM) {
+            $buffer=$this->exchangeSharedMemory($message);
+            $len=strlen($buffer);
+        } elseif($this->method==BRIDGE_UDP&&$this->fragmentSize>0) {
+            $buffer=$this->exchangeFragmented($message);
+            $len=strlen($buffer);
+        } elseif($this->method==BRIDGE_UDP) {
+            $this->sendDatagram($message);
+            
+            if(($len=socket_recv($this->sock,$buffer,$this->maxPacketSize,0))===FALSE) {
+                $errno=socket_last_error();
+                $errstr=socket_strerror($errno);
+                throw new Exception("Couldn't send packet: $errstr [#$errno]");
+            }
+        } else {
+            $this->sendAll($message);
+
+            foreach($streams as$stream)
+                $this->sendStream($pid,$stream);
+
+            $buffer=$this->receiveAll(6);
+            $size=unpack('N',substr($buffer,2,4))[1];
+
+            if($size+6>$this->maxPacketSize)
+                throw new Exception("Incoming Packet too large: ".($size+6)." (max. {$this->maxPacketSize})");
+
+            $buffer.=$this->receiveAll($size);
+            $len=strlen($buffer);
         }
 
-        $pid=unpack('C',$buffer)[1];
         $size=unpack('N',substr($buffer,2,4))[1];
 
         if($len<$size+6)
             throw new Exception("Received too few bytes: Expected at least ".($size+6).", got $len instead");
 
-        $response=new Packet($pid);
-        $response->setAndValidate($this->decrypt(substr($buffer,6,$size)));
+        return substr($buffer,0,$size+6);
+    }
 
-        return$response;
+    /**
+     * TCP, UNIX: sends a resource's data in chunks, followed by an empty chunk
+     * 
+     * @param pid the Packet-ID the stream belongs to
+     * @param stream the resource to be read until EOF
+     */
+    private function sendStream(int $pid,$stream) {
+        $chunkLength=$this->maxChunkLength();
+
+        while(!feof($stream)) {
+            if(($data=fread($stream,$chunkLength))===FALSE)
+                throw new Exception("Couldn't read stream");
+
+            if(strlen($data)>0)
+                $this->sendAll($this->chunk($pid,$data));
+        }
+
+        $this->sendAll($this->chunk($pid,''));
+    }
+
+    /**
+     * @param pid the Packet-ID the chunk belongs to
+     * @param data the chunk's raw data
+     * 
+     * @return string the encrypted chunk, including the header
+     */
+    private function chunk(int $pid,string $data):string {
+        $data=$this->encrypt($data);
+
+        return pack('C',$pid).pack('C',0x02).pack('N',strlen($data)).$data; // 0x02: chunk flag
+    }
+
+    /**
+     * @return int the max. number of raw bytes per chunk, so that an encrypted chunk does not exceed the max. Packet size
+     */
+    private function maxChunkLength():int {
+        // Base64 (4/3), IV (16), length (4), padding (up to 16) and Base64 padding (up to 2)
+        return max(1,min(65536,intdiv($this->maxPacketSize-6,4)*3-38));
+    }
+
+    /**
+     * internal use only
+     * 
+     * TCP, UNIX: receives and decrypts (unless it is binary) the next chunk of a stream
+     * 
+     * @param pid the Packet-ID the stream belongs to
+     * 
+     * @return string the chunk's data. An empty string marks the end of the stream
+     */
+    public function receiveChunk(int $pid):string {
+        $header=$this->receiveAll(6);
+        $id=unpack('C',$header)[1];
+        $flags=unpack('C',substr($header,1,1))[1];
+        $size=unpack('N',substr($header,2,4))[1];
+
+        if($id!=$pid||($flags&0x02)==0)
+            throw new Exception("Expected a chunk of Packet #$pid, got Packet #$id instead");
+
+        if($size+6>$this->maxPacketSize)
+            throw new Exception("Incoming chunk too large: ".($size+6)." (max. {$this->maxPacketSize})");
+
+        if(($flags&0x80)!=0) // binary chunk: neither encrypted nor Base64-encoded
+            return$this->receiveAll($size);
+
+        return$this->decrypt($this->receiveAll($size));
+    }
+
+    /**
+     * TCP, UNIX: sends the whole message, even if the socket only accepts parts of it at a time
+     * 
+     * @param message the message to be sent
+     */
+    private function sendAll(string $message) {
+        while(strlen($message)>0) {
+            // connected sockets don't need (AF_UNIX: don't accept) a destination address
+            if(($sent=socket_send($this->sock,$message,strlen($message),0))===FALSE) {
+                $errno=socket_last_error();
+                $errstr=socket_strerror($errno);
+                throw new Exception("Couldn't send packet: $errstr [#$errno]");
+            }
+
+            $message=substr($message,$sent);
+        }
+    }
+
+    /**
+     * TCP, UNIX: receives exactly len bytes, even if they arrive in several segments
+     * 
+     * @param len the number of bytes to be received
+     * 
+     * @return string the received bytes
+     */
+    private function receiveAll(int $len):string {
+        $buffer='';
+
+        while(strlen($buffer)<$len) {
+            if(($received=socket_recv($this->sock,$chunk,$len-strlen($buffer),MSG_WAITALL))===FALSE) {
+                $errno=socket_last_error();
+                $errstr=socket_strerror($errno);
+                throw new Exception("Couldn't receive packet: $errstr [#$errno]");
+            }
+
+            if($received===0)
+                throw new Exception("Connection closed by the server: expected $len bytes, got ".strlen($buffer)." instead");
+
+            $buffer.=$chunk;
+        }
+
+        return$buffer;
     }
 
     /**
@@ -193,8 +788,19 @@ class Bridge {
      * @return string the AES-256-CBC encrypted string. The password is hashed with SHA3-256
      */
     private function encrypt(string $plainText):string {
+        $len=strlen($plainText);
+        $plainText=pack('N',$len).$plainText;
+
+        if($this->compressionThreshold>=0&&$len>=$this->compressionThreshold) {
+            $compressed=gzcompress(substr($plainText,4),1);
+
+            // the highest bit of the length marks compressed data, which is preceded by its uncompressed length
+            if($compressed!==FALSE&&strlen($compressed)+4<$len)
+                $plainText=pack('N',(strlen($compressed)+4)|0x80000000).pack('N',$len).$compressed;
+        }
+
         if(!$this->useAES)
-            return base64_encode(pack('N',strlen($plainText)).$plainText);
+            return base64_encode($plainText);
 
         $iv=openssl_random_pseudo_bytes(16);
 
@@ -205,8 +811,8 @@ class Bridge {
 
         $aes=new Aes($this->passwd,'CBC',$iv);
         
-        return base64_encode($iv.$aes->encrypt(pack('N',strlen($plainText)).$plainText));
-        //return base64_encode($iv.openssl_encrypt(pack('N',strlen($plainText)).$plainText,'AES-256-CBC',$this->passwd,OPENSSL_RAW_DATA,$iv));
+        return base64_encode($iv.$aes->encrypt($plainText));
+        //return base64_encode($iv.openssl_encrypt($plainText,'AES-256-CBC',$this->passwd,OPENSSL_RAW_DATA,$iv));
     }
     /**
      * @param cipherText the encrypted text
@@ -214,14 +820,10 @@ class Bridge {
      * @return string the decrypted plain text
      */
     private function decrypt(string $cipherText):string {
-        echo"<hr>decrin ".strlen($cipherText)." => ";
-        foreach(array_map(fn($x)=>unpack('c',pack('C',ord($x)))[1],str_split($cipherText))as$v)echo"$v, ";
-        echo"<hr>";
-
         $cipherText=base64_decode($cipherText);
 
         if(!$this->useAES)
-            return substr($cipherText,4,unpack('N',$cipherText));
+            return$this->unwrap($cipherText);
         
         $iv=substr($cipherText,0,16);
         $cipherText=substr($cipherText,16);
@@ -231,11 +833,113 @@ class Bridge {
         $buf=$aes->decrypt($cipherText);
         //$buf=openssl_decrypt($cipherText,'AES-256-CBC',$this->passwd,OPENSSL_RAW_DATA,$iv);
         
-        echo"<hr>decr ".strlen($buf)." => ";
-        foreach(array_map(fn($x)=>unpack('c',pack('C',ord($x)))[1],str_split($buf))as$v)echo"$v, ";
-        echo"<hr>";
+        return$this->unwrap($buf);
+    }
 
-        return substr($buf,4,unpack('N',$buf)[1]);
+    /**
+     * @param buf the decrypted data (length, data and padding)
+     * 
+     * @return string the plain text, decompressed if necessary
+     */
+    private function unwrap(string $buf):string {
+        $len=unpack('N',$buf)[1];
+
+        if(($len&0x80000000)==0)
+            return substr($buf,4,$len);
+
+        $len&=0x7fffffff;
+        $rawLength=unpack('N',substr($buf,4,4))[1];
+
+        if($rawLength>$this->maxPacketSize)
+            throw new Exception("Decompressed data too large: $rawLength (max. {$this->maxPacketSize})");
+
+        $plainText=$rawLength==0?'':gzuncompress(substr($buf,8,$len-4),$rawLength);
+
+        if($plainText===FALSE||strlen($plainText)!=$rawLength)
+            throw new Exception("Couldn't decompress data");
+
+        return$plainText;
+    }
+
+}
+
+/**
+ * A stream received after a Packet (see DATA_STREAM)
+ * 
+ * Streams must be read in the order they were written; reading a stream skips the unread rest of the previous one.
+ * A stream is valid until the next Packet is sent.
+ */
+class PacketStream {
+
+    private$bridge,$pid,$previous,$finished=false;
+
+    /**
+     * internal use only
+     * 
+     * @param bridge the Bridge which received the stream
+     * @param pid the Packet-ID the stream belongs to
+     * @param previous the stream sent before this one, or null
+     */
+    public function __construct(Bridge $bridge,int $pid,?PacketStream $previous) {
+        $this->bridge=$bridge;
+        $this->pid=$pid;
+        $this->previous=$previous;
+    }
+
+    /**
+     * @return ?string the next chunk of data, or null if the end of the stream has been reached
+     */
+    public function read():?string {
+        if(!is_null($this->previous)) {
+            $this->previous->drain();
+            $this->previous=null;
+        }
+
+        if($this->finished)
+            return null;
+
+        $chunk=$this->bridge->receiveChunk($this->pid);
+
+        if(strlen($chunk)==0) {
+            $this->finished=true;
+            return null;
+        }
+
+        return$chunk;
+    }
+
+    /**
+     * Writes the remaining data to a resource (e.g. returned by fopen(string,string))
+     * 
+     * @param resource the resource to be written to
+     * 
+     * @return int the number of bytes written
+     */
+    public function copyTo($resource):int {
+        $total=0;
+
+        while(!is_null($chunk=$this->read())) {
+            if(fwrite($resource,$chunk)===FALSE)
+                throw new Exception("Couldn't write stream");
+
+            $total+=strlen($chunk);
+        }
+
+        return$total;
+    }
+
+    /**
+     * skips the remaining data
+     */
+    public function drain() {
+        while(!is_null($this->read()));
+    }
+
+    /**
+     * @return bool whether or not the end of the stream has been reached
+     */
+    public function isFinished():bool {
+        return$this->finished;
     }
 
 }
@@ -173,6 +173,69 @@ define('DATA_STRING_C',12);
  * Space required (in bytes): 4+n
  */
 define('DATA_BYTE_ARRAY',13);
+/**
+ * Streams an arbitrary amount of bytes
+ * 
+ * The data is not part of the Packet itself, but is sent in chunks after the Packet,
+ * so its size is neither limited by the max. Packet size nor by the available memory.
+ * 
+ * write: expects a readable resource (e.g. returned by fopen(string,string)), which is read until EOF
+ * read: returns a PacketStream. Streams must be read in the order they were written and are valid until the next Packet is sent
+ * 
+ * Note: only supported by BRIDGE_TCP and BRIDGE_UNIX
+ * 
+ * Space required (in bytes): 0 (in the Packet)
+ */
+define('DATA_STREAM',14);
+/**
+ * A list of values of the data types DATA_BOOL to DATA_BYTE_ARRAY, DATA_LIST and DATA_MAP
+ * 
+ * If all elements share the same data type, it is stored once in front of the elements (homogeneous list).
+ * Otherwise, every element is preceded by its data type (heterogeneous list).
+ * 
+ * write: expects an array with the keys 0 to n-1. The data types are derived from the values:
+ *        bool => DATA_BOOL, int => DATA_INT (or DATA_LONG if it exceeds 32 bits), float => DATA_DOUBLE,
+ *        string => DATA_STRING_UTF8, array => DATA_LIST (keys 0 to n-1) or DATA_MAP (any other keys)
+ * read: returns an array
+ * 
+ * Note: DATA_STREAM and null are not supported
+ * 
+ * Space required (in bytes): 5+n (homogeneous) or 5+n+count (heterogeneous)
+ */
+define('DATA_LIST',15);
+/**
+ * A map of keys and values of the data types DATA_BOOL to DATA_BYTE_ARRAY, DATA_LIST and DATA_MAP
+ * 
+ * The data types of keys and values are stored like the data type of a list's elements (see DATA_LIST).
+ * 
+ * write: expects an array
+ * read: returns an array. Keys must be either int or string
+ * 
+ * Space required (in bytes): 6+n (homogeneous) or 6+n+2*count (heterogeneous)
+ */
+define('DATA_MAP',16);
+/**
+ * A repeated string, sent as a back-reference to its first occurrence (see Bridge::enableStringDictionary())
+ * 
+ * Strings written as DATA_STRING_UTF8 are replaced by the Bridge, and DATA_STRING_UTF8 reads them transparently.
+ * There is no need to write or read this data type directly.
+ * 
+ * Space required (in bytes): 2 (references) or 4+n (first occurrence), plus 1 byte for the data type
+ */
+define('DATA_STRING_DICT',17);
+/**
+ * A W3C trace context (traceparent), put in front of a Packet's data by the Bridge (see Bridge::setTraceParent())
+ * 
+ * There is no need to write or read this data type directly.
+ * 
+ * Space required (in bytes): 26 (version, trace-id, parent-id and trace-flags), plus 1 byte for the data type
+ */
+define('DATA_TRACE_CONTEXT',18);
+
+/**
+ * the data type of a container's elements if they don't share the same data type
+ */
+define('DATA_MIXED',0xFF);
 
 /**
  * checks if the system is LE (Little Endian) or BE (Big Endian).
@@ -203,6 +266,10 @@ function isLittleEndian():bool {
  *  - DATA_STRING_C
  *  - DATA_STRING_UTF8
  *  - DATA_BYTE_ARRAY
+ *  - DATA_STREAM
+ *  - DATA_LIST
+ *  - DATA_MAP
+ *  - DATA_STRING_DICT (read as DATA_STRING_UTF8)
  * 
  * To write data to the packet, use Packet::write(int,mixed), where the first argument is the data type and the second one is the actual data
  * To read data from the packet, use Packet::read(int), where the first argument is the data type
@@ -237,6 +304,23 @@ class Packet {
 
     private$data,$pid;
 
+    /**
+     * outgoing: the resources to be streamed after the Packet
+     * incoming: the PacketStreams which haven't been read yet (null while validating) and the number of announced streams
+     */
+    private$streams=[],$incomingStreams=null,$streamCount=0;
+
+    /**
+     * the depth of the containers (DATA_LIST and DATA_MAP) being read
+     */
+    private$depth=0;
+
+    /**
+     * outgoing: the offsets of the strings written as DATA_STRING_UTF8
+     * incoming: the string dictionary of the connection (null if not used), and whether or not the Packet is being validated
+     */
+    private$strings=[],$dictionary=null,$validating=false;
+
     /**
      * Instantiates a new Packet
      * 
@@ -294,6 +378,9 @@ class Packet {
      *                  - DATA_STRING_C
      *                  - DATA_STRING_UTF8
      *                  - DATA_BYTE_ARRAY
+     *                  - DATA_STREAM
+     *                  - DATA_LIST
+     *                  - DATA_MAP
      * @param writeType internal use only
      */
     public function write(int $data_type,$data,bool $writeType=true) {
@@ -317,8 +404,10 @@ class Packet {
             if(!is_string($data))
                 throw InvalidTypeException::notTypeOf($data,'string');
 
-            if($writeType)
+            if($writeType) {
+                array_push($this->strings,strlen($this->data));
                 $this->data.=pack('C',DATA_STRING_UTF8);
+            }
             $this->write(DATA_UNSIGNED_SHORT,strlen($data),false);
 
             for($i=0;$i<strlen($data);++$i)
@@ -396,6 +485,54 @@ class Packet {
             $this->write(DATA_INT,sizeof($byteOnly),false);
             foreach($byteOnly as$value)$this->write(DATA_UNSIGNED_BYTE,$value,false); // write as unsigned byte, but read as signed byte
 
+            break;
+        case DATA_STREAM:
+
+            if(!is_resource($data))
+                throw InvalidTypeException::notTypeOf($data,'resource');
+
+            if($writeType)
+                $this->data.=pack('C',DATA_STREAM);
+
+            array_push($this->streams,$data);
+
+            break;
+        case DATA_LIST:
+
+            if(!is_array($data)||!Packet::isList($data))
+                throw InvalidTypeException::notTypeOf($data,'list');
+
+            if($writeType)
+                $this->data.=pack('C',DATA_LIST);
+
+            $type=Packet::commonType($data);
+
+            $this->data.=pack('C',$type);
+            $this->write(DATA_INT,sizeof($data),false);
+
+            foreach($data as$value)
+                $this->writeElement($type,$value);
+
+            break;
+        case DATA_MAP:
+
+            if(!is_array($data))
+                throw InvalidTypeException::notTypeOf($data,'array');
+
+            if($writeType)
+                $this->data.=pack('C',DATA_MAP);
+
+            $keyType=Packet::commonType(array_keys($data));
+            $valueType=Packet::commonType($data);
+
+            $this->data.=pack('CC',$keyType,$valueType);
+            $this->write(DATA_INT,sizeof($data),false);
+
+            foreach($data as$key=>$value) {
+                $this->writeElement($keyType,$key);
+                $this->writeElement($valueType,$value);
+            }
+
             break;
         default:
             throw new InvalidTypeException("Unrecognized type: $data_type");
@@ -444,6 +581,9 @@ class Packet {
      *                  - DATA_STRING_C
      *                  - DATA_STRING_UTF8
      *                  - DATA_BYTE_ARRAY
+     *                  - DATA_STREAM
+     *                  - DATA_LIST
+     *                  - DATA_MAP
      * @param readType internal use only
      * 
      * @return mixed the read data 
@@ -453,7 +593,9 @@ class Packet {
         if($readType) {
             $type=$this->read(DATA_UNSIGNED_BYTE,false);
 
-            if($type!==$data_type)
+            if($type===DATA_STRING_DICT&&$data_type===DATA_STRING_UTF8)
+                $data_type=DATA_STRING_DICT;
+            elseif($type!==$data_type)
                 throw new InvalidTypeException('Types don\'t match: '.(is_null($type)?'NULL':$type)." != $data_type");
         }
 
@@ -552,11 +694,191 @@ class Packet {
                 array_push($bytes,$this->read(DATA_BYTE,false));
 
             return$bytes;
+        case DATA_STREAM:
+
+            if(is_null($this->incomingStreams)) { // validating
+                ++$this->streamCount;
+                return null;
+            }
+
+            if(empty($this->incomingStreams))
+                throw new Exception("Streams require BRIDGE_TCP or BRIDGE_UNIX");
+
+            return array_shift($this->incomingStreams);
+        case DATA_STRING_DICT:
+
+            if(is_null($this->dictionary))
+                throw new Exception("Dictionary strings require Bridge::enableStringDictionary()");
+
+            $ref=$this->read(DATA_UNSIGNED_SHORT,false);
+
+            if(($ref&0x8000)==0)
+                return$this->dictionary->get($ref);
+
+            $index=$ref&0x7FFF;
+
+            if(!$this->validating) { // already defined
+                $len=$this->read(DATA_UNSIGNED_SHORT,false);
+
+                if(strlen($this->data)<$len)
+                    throw new IndexOutOfBoundsException("Too few data left: need $len, ".strlen($this->data)." left");
+
+                $this->data=substr($this->data,$len);
+
+                return$this->dictionary->get($index);
+            }
+
+            $left=strlen($this->data);
+            $str=$this->read(DATA_STRING_UTF8,false);
+
+            $this->dictionary->define($index,$str,$left-strlen($this->data)-2);
+
+            return$str;
+        case DATA_LIST:
+        case DATA_MAP:
+
+            if(++$this->depth>32)
+                throw new Exception('Containers are nested too deeply');
+
+            try {
+                if($data_type==DATA_LIST) {
+                    $type=$this->readElementType();
+                    $len=$this->read(DATA_INT,false);
+
+                    $list=[];
+
+                    for($i=0;$i<$len;++$i)
+                        array_push($list,$this->readElement($type));
+
+                    return$list;
+                }
+
+                $keyType=$this->readElementType();
+                $valueType=$this->readElementType();
+                $len=$this->read(DATA_INT,false);
+
+                $map=[];
+
+                for($i=0;$i<$len;++$i) {
+                    $key=$this->readElement($keyType);
+
+                    if(!is_int($key)&&!is_string($key))
+                        throw new InvalidTypeException('Map keys must be either int or string, got '.gettype($key).' instead');
+
+                    $map[$key]=$this->readElement($valueType);
+                }
+
+                return$map;
+            } finally {
+                --$this->depth;
+            }
         default:
             throw new InvalidTypeException("Unrecognized type: $data_type");
         }
     }
 
+    /**
+     * Writes a container's element, preceded by its data type if the container is heterogeneous. internal use only
+     * 
+     * @param type the data type of the container's elements
+     * @param value the element
+     */
+    private function writeElement(int $type,$value) {
+        if($type==DATA_MIXED) {
+            $type=Packet::typeOf($value);
+            $this->data.=pack('C',$type);
+        }
+
+        // ints are promoted to longs if the container holds both
+        $this->write($type,$type==DATA_LONG?intval($value):$value,false);
+    }
+
+    /**
+     * internal use only
+     * 
+     * @param values the elements of a container
+     * 
+     * @return int the data type shared by all the elements, DATA_LONG if they are ints and longs, or DATA_MIXED
+     */
+    private static function commonType(array $values):int {
+        $type=DATA_MIXED;
+
+        foreach($values as$value) {
+            $t=Packet::typeOf($value);
+
+            if($type==DATA_MIXED)
+                $type=$t;
+            elseif(($type==DATA_INT||$type==DATA_LONG)&&($t==DATA_INT||$t==DATA_LONG))
+                $type=DATA_LONG;
+            elseif($type!=$t)
+                return DATA_MIXED;
+        }
+
+        return$type;
+    }
+
+    /**
+     * internal use only
+     * 
+     * @param value a container's element
+     * 
+     * @return int the data type of the element
+     */
+    private static function typeOf($value):int {
+        if(is_bool($value))
+            return DATA_BOOL;
+        if(is_int($value))
+            return -2147483648<=$value&&$value<=2147483647?DATA_INT:DATA_LONG;
+        if(is_float($value))
+            return DATA_DOUBLE;
+        if(is_string($value))
+            return DATA_STRING_UTF8;
+        if(is_array($value))
+            return Packet::isList($value)?DATA_LIST:DATA_MAP;
+
+        throw new InvalidTypeException('Unsupported element type: '.gettype($value));
+    }
+
+    /**
+     * internal use only
+     * 
+     * @return bool whether or not the array's keys are 0 to n-1
+     */
+    private static function isList(array $array):bool {
+        $i=0;
+
+        foreach($array as$key=>$_)
+            if($key!==$i++)
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Reads the data type of a container's elements. internal use only
+     * 
+     * @return int the data type
+     */
+    private function readElementType():int {
+        $type=$this->read(DATA_UNSIGNED_BYTE,false);
+
+        if($type!=DATA_MIXED&&($type>DATA_MAP||$type==DATA_STREAM))
+            throw new InvalidTypeException("Invalid element type: $type");
+
+        return$type;
+    }
+
+    /**
+     * Reads a container's element. internal use only
+     * 
+     * @param type the data type of the container's elements
+     * 
+     * @return mixed the element
+     */
+    private function readElement(int $type) {
+        return$this->read($type==DATA_MIXED?$this->readElementType():$type,false);
+    }
+
     /**
      * Ensures a string consists only of US-ASCII (without NUL) characters
      * 
@@ -607,27 +929,149 @@ class Packet {
 
     /**
      * internal use only
+     * 
+     * @param dictionary the string dictionary of the connection, or null if not used
      */
-    public function raw() {
+    public function raw(?StringDictionary $dictionary=null) {
         $data=$this->data;
         $this->data='';
+
+        if(!is_null($dictionary)&&!empty($this->strings))
+            $data=$dictionary->encode($data,$this->strings);
+        $this->strings=[];
+
         return$data;
     }
 
     /**
      * internal use only
+     * 
+     * @return array the resources to be streamed after the Packet
+     */
+    public function streams():array {
+        return$this->streams;
+    }
+
+    /**
+     * internal use only
+     * 
+     * @return int the number of streams announced by the received Packet
+     */
+    public function streamCount():int {
+        return$this->streamCount;
+    }
+
+    /**
+     * internal use only
+     * 
+     * @param streams the PacketStreams following the received Packet
      */
-    public function setAndValidate(string $new) {
+    public function setStreams(array $streams) {
+        $this->incomingStreams=$streams;
+    }
+
+    /**
+     * internal use only
+     * 
+     * @param dictionary the string dictionary of the connection, or null if not used
+     */
+    public function setAndValidate(string $new,?StringDictionary $dictionary=null) {
         $this->data=$new;
+        $this->dictionary=$dictionary;
 
-        echo"<hr>final ".strlen($new)." => ";
-        foreach(array_map(fn($x)=>unpack('c',pack('C',ord($x)))[1],str_split($new))as$v)echo"$v, ";
-        echo"<hr>";
+        $this->validating=true;
 
         while(strlen($this->data)>0)
             $this->read(unpack('C',$this->data)[1]);
 
+        $this->validating=false;
         $this->data=$new;
     }
 
+}
+
+/**
+ * The string dictionary of a connection (see Bridge::enableStringDictionary()). internal use only
+ * 
+ * The first occurrence of a string defines a new entry, every further occurrence only refers to it:
+ * 
+ * definition: <int8 17> <uint16 0x8000|index> <uint16 length> <data>
+ * reference:  <int8 17> <uint16 index>
+ * 
+ * Each direction has its own entries, which are numbered consecutively from 0.
+ * There are at most 4096 entries per direction, and only strings of at most 255 bytes are added.
+ */
+class StringDictionary {
+
+    /**
+     * incoming: the strings defined by the server
+     * outgoing: the indices of the strings defined by the client
+     */
+    private$strings=[],$indices=[];
+
+    /**
+     * Adds a string defined by the server
+     * 
+     * @param index the index of the entry
+     * @param str the string
+     * @param length the encoded length of the string
+     */
+    public function define(int $index,string $str,int $length) {
+        if($index!=count($this->strings)||$index>=4096)
+            throw new Exception("Invalid dictionary index: $index (expected ".count($this->strings).")");
+
+        if($length>255)
+            throw new Exception("Dictionary string too long: $length bytes (max. 255)");
+
+        array_push($this->strings,$str);
+    }
+
+    /**
+     * @param index the index of the entry
+     * 
+     * @return string the string defined by the server
+     */
+    public function get(int $index):string {
+        if(!isset($this->strings[$index]))
+            throw new Exception("Undefined dictionary index: $index");
+
+        return$this->strings[$index];
+    }
+
+    /**
+     * Replaces the strings written as DATA_STRING_UTF8 with DATA_STRING_DICT
+     * 
+     * @param data the Packet's data
+     * @param offsets the offsets of the strings
+     * 
+     * @return string the Packet's data
+     */
+    public function encode(string $data,array $offsets):string {
+        $encoded='';
+        $copied=0;
+
+        foreach($offsets as$offset) {
+            $len=unpack('n',substr($data,$offset+1,2))[1];
+
+            if($len>255)
+                continue;
+
+            $key=substr($data,$offset+3,$len);
+
+            if(isset($this->indices[$key]))
+                $ref=pack('Cn',DATA_STRING_DICT,$this->indices[$key]);
+            elseif(count($this->indices)<4096) {
+                $index=count($this->indices);
+                $this->indices[$key]=$index;
+
+                $ref=pack('Cn',DATA_STRING_DICT,0x8000|$index).substr($data,$offset+1,2+$len);
+            } else continue;
+
+            $encoded.=substr($data,$copied,$offset-$copied).$ref;
+            $copied=$offset+3+$len;
+        }
+
+        return$encoded.substr($data,$copied);
+    }
+
 }
\ No newline at end of file
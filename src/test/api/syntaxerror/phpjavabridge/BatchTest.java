@@ -0,0 +1,191 @@
+package api.syntaxerror.phpjavabridge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Tests batched requests (see {@link BridgeImpl#batch(Bridge, java.net.SocketAddress, int, int, byte[])})
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class BatchTest {
+	
+	private Bridge bridge;
+	
+	@BeforeEach
+	void setUp() {
+		bridge=Bridge.newTCP(0);
+		bridge.setPacketHandler((sender,in)->{
+			int value=in.readInt();
+			
+			if(value<0)
+				throw new IllegalStateException("negative");
+			
+			try {
+				// later entries are answered first
+				Thread.sleep(5*(10-value));
+			} catch(InterruptedException e) {}
+			
+			Packet out=new Packet(1);
+			out.writeInt(value*2);
+			return out;
+		},1);
+	}
+	
+	@AfterEach
+	void tearDown()throws Exception {
+		bridge.stop();
+		bridge.closeServer(); // not closed by stop() if it has never been started
+	}
+	
+	@Test
+	void answersInOrder()throws Exception {
+		List<Packet>responses=responses(BridgeImpl.batch(bridge,null,7,Bridge.FLAG_LITTLE_ENDIAN,batch(0,1,2,3,4,5)));
+		
+		assertEquals(6,responses.size());
+		
+		for(int i=0;i<6;++i) {
+			assertEquals(1,responses.get(i).getPacketID());
+			assertEquals(i*2,responses.get(i).readInt());
+		}
+	}
+	
+	@Test
+	void answersEmptyBatches()throws Exception {
+		assertTrue(responses(BridgeImpl.batch(bridge,null,7,Bridge.FLAG_LITTLE_ENDIAN,batch(new Packet[0]))).isEmpty());
+	}
+	
+	@Test
+	void answersOverTheConnection()throws Exception {
+		bridge.start();
+		
+		try(TestClient client=TestClient.connect(bridge)) {
+			client.sendFrame(7,Bridge.FLAG_BATCH|Bridge.FLAG_LITTLE_ENDIAN,batch(3,4));
+			
+			List<Packet>responses=entries(client.receiveData());
+			
+			assertEquals(7,client.pid);
+			assertEquals(Bridge.FLAG_BATCH,client.flags);
+			assertEquals(6,responses.get(0).readInt());
+			assertEquals(8,responses.get(1).readInt());
+		}
+	}
+	
+	@Test
+	void rejectsTooManyPackets() {
+		bridge.setMaxOutstandingRequests(2);
+		
+		assertThrows(MalformedRequestException.class,()->BridgeImpl.batch(bridge,null,7,Bridge.FLAG_LITTLE_ENDIAN,batch(1,2,3)));
+		assertEquals(1,bridge.rejectedRequests.sum());
+	}
+	
+	@Test
+	void rejectsTruncatedEntries()throws Exception {
+		byte[]buf=bridge.decrypt(batch(1));
+		
+		assertThrows(MalformedRequestException.class,()->BridgeImpl.batch(bridge,null,7,0,bridge.encrypt(Arrays.copyOf(buf,buf.length-1))));
+		assertThrows(MalformedRequestException.class,()->BridgeImpl.batch(bridge,null,7,0,bridge.encrypt(Arrays.copyOf(buf,3))));
+	}
+	
+	@Test
+	void rejectsStreams()throws Exception {
+		Packet request=new Packet(1);
+		request.writeStream(out->{});
+		
+		assertThrows(UnsupportedOperationException.class,()->BridgeImpl.batch(bridge,null,7,0,batch(request)));
+	}
+	
+	@Test
+	void propagatesHandlerFailures() {
+		IllegalStateException e=assertThrows(IllegalStateException.class,()->BridgeImpl.batch(bridge,null,7,Bridge.FLAG_LITTLE_ENDIAN,batch(1,-1,2)));
+		
+		assertEquals("negative",e.getMessage());
+	}
+	
+	private byte[]batch(int...values)throws Exception {
+		Packet[]requests=new Packet[values.length];
+		
+		for(int i=0;i<values.length;++i)
+			requests[i]=UnixTransportTest.request(values[i]);
+		
+		return batch(requests);
+	}
+	
+	private byte[]batch(Packet...requests)throws Exception {
+		ByteArrayOutputStream buf=new ByteArrayOutputStream();
+		DataOutputStream out=new DataOutputStream(buf);
+		
+		for(Packet request:requests) {
+			out.write(request.getPacketID());
+			out.writeInt(request.size());
+			out.write(request.data,0,request.size());
+		}
+		
+		return bridge.encrypt(buf.toByteArray());
+	}
+	
+	private List<Packet>responses(byte[]frame)throws Exception {
+		assertEquals(7,frame[0]);
+		assertEquals(Bridge.FLAG_BATCH,frame[1]);
+		assertEquals(frame.length-6,BridgeImpl.readLength(frame,2));
+		
+		return entries(bridge.decrypt(Arrays.copyOfRange(frame,6,frame.length)));
+	}
+	
+	private static List<Packet>entries(byte[]buf)throws IOException {
+		List<Packet>entries=new ArrayList<>();
+		
+		for(int offset=0;offset<buf.length;) {
+			int length=(int)BridgeImpl.readLength(buf,offset+1);
+			
+			entries.add(TestClient.received(buf[offset]&0xFF,Arrays.copyOfRange(buf,offset+5,offset+5+length)));
+			offset+=5+length;
+		}
+		
+		return entries;
+	}
+	
+}
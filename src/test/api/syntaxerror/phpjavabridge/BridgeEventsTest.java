@@ -0,0 +1,190 @@
+package api.syntaxerror.phpjavabridge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Tests the JDK Flight Recorder events emitted for every request (see {@link BridgeEvents})
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class BridgeEventsTest {
+	
+	private static final String PREFIX="api.syntaxerror.phpjavabridge.";
+	
+	@TempDir
+	Path dir;
+	
+	private Bridge bridge;
+	
+	@BeforeEach
+	void setUp() {
+		bridge=Bridge.newTCP(0);
+		bridge.setPacketHandler((sender,in)->{
+			int value=in.readInt();
+			
+			if(value<0)
+				throw new IllegalStateException("negative");
+			
+			Packet out=new Packet(1);
+			out.writeStringUTF8("echo "+value);
+			
+			if(value==2)
+				out.writeStream(stream->stream.write(2));
+			
+			return out;
+		},1);
+		bridge.start();
+	}
+	
+	@AfterEach
+	void tearDown()throws Exception {
+		bridge.stop();
+	}
+	
+	@Test
+	void recordsEveryStage()throws Exception {
+		List<RecordedEvent>events=record(()->{
+			try(TestClient client=TestClient.connect(bridge)) {
+				assertEquals("echo 1",client.call(UnixTransportTest.request(1)).readStringUTF8());
+				assertEquals("echo 2",client.call(UnixTransportTest.request(2)).readStringUTF8());
+				assertArrayEquals(new byte[] { 2 },client.receiveStream());
+			}
+		});
+		
+		List<RecordedEvent>accepted=events(events,"RequestAccepted"),
+				decoded=events(events,"FrameDecoded"),
+				invoked=events(events,"HandlerInvoked"),
+				written=events(events,"ResponseWritten");
+		
+		assertEquals(2,accepted.size());
+		assertEquals(2,decoded.size());
+		assertEquals(2,invoked.size());
+		assertEquals(2,written.size());
+		
+		RecordedEvent request=accepted.get(0);
+		
+		assertEquals(1,request.getInt("packetID"));
+		assertEquals(Bridge.FLAG_LITTLE_ENDIAN,request.getInt("flags"));
+		assertTrue(request.getLong("frameSize")>6);
+		assertNotEquals("null",request.getString("remoteAddress"));
+		
+		assertEquals(request.getLong("frameSize")-6,decoded.get(0).getLong("encryptedSize"));
+		assertEquals(5,decoded.get(0).getLong("decodedSize")); // <int> is 1 byte type ID + 4 bytes
+		
+		RecordedEvent handled=invoked.get(0);
+		
+		assertTrue(handled.getString("handler").startsWith(BridgeEventsTest.class.getName()));
+		assertTrue(handled.getBoolean("succeeded"));
+		assertNull(handled.getString("traceId"));
+		assertEquals(5,handled.getLong("requestSize"));
+		assertTrue(handled.getLong("responseSize")>0);
+		
+		assertEquals(0,written.get(0).getInt("streams"));
+		assertEquals(1,written.get(1).getInt("streams"));
+		assertTrue(written.get(0).getLong("frameSize")>6);
+	}
+	
+	@Test
+	void recordsFailedHandlers()throws Exception {
+		List<RecordedEvent>events=record(()->{
+			try(TestClient client=TestClient.connect(bridge)) {
+				client.send(UnixTransportTest.request(-1),Bridge.FLAG_LITTLE_ENDIAN);
+				
+				// the connection is closed after a failed request
+				assertTrue(client.isClosedByServer());
+			}
+		});
+		
+		List<RecordedEvent>invoked=events(events,"HandlerInvoked");
+		
+		assertEquals(1,invoked.size());
+		assertFalse(invoked.get(0).getBoolean("succeeded"));
+		assertEquals(0,invoked.get(0).getLong("responseSize"));
+		assertTrue(events(events,"ResponseWritten").isEmpty());
+	}
+	
+	@Test
+	void isOnlyCommittedWhileRecording() {
+		assertFalse(new BridgeEvents.RequestAccepted().shouldCommit());
+	}
+	
+	private List<RecordedEvent>record(Requests requests)throws Exception {
+		Path file=dir.resolve("recording.jfr");
+		
+		try(Recording recording=new Recording()) {
+			for(String name:List.of("RequestAccepted","FrameDecoded","HandlerInvoked","ResponseWritten"))
+				recording.enable(PREFIX+name).withThreshold(Duration.ZERO);
+			
+			recording.start();
+			requests.run();
+			
+			// ResponseWritten is committed after the answer has been flushed
+			for(long deadline=System.currentTimeMillis()+5000;bridge.activeRequests.get()>0;Thread.sleep(1))
+				if(System.currentTimeMillis()>deadline)
+					fail("The requests have not been completed");
+			
+			recording.stop();
+			recording.dump(file);
+		}
+		
+		return RecordingFile.readAllEvents(file);
+	}
+	
+	private static List<RecordedEvent>events(List<RecordedEvent>events,String name) {
+		return events.stream().filter(event->event.getEventType().getName().equals(PREFIX+name)).toList();
+	}
+	
+	@FunctionalInterface
+	private static interface Requests {
+		
+		void run()throws Exception;
+		
+	}
+	
+}
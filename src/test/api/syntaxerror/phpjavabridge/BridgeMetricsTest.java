@@ -0,0 +1,215 @@
+package api.syntaxerror.phpjavabridge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Tests the request statistics and their latency histograms (see {@link BridgeMetrics})
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class BridgeMetricsTest {
+	
+	private Bridge bridge;
+	
+	@AfterEach
+	void tearDown()throws Exception {
+		if(bridge!=null)
+			bridge.stop();
+	}
+	
+	@Test
+	void sortsValuesIntoBuckets() {
+		BridgeMetrics.Histogram histogram=new BridgeMetrics.Histogram();
+		
+		histogram.record(-5);
+		histogram.record(0);
+		histogram.record(1);
+		histogram.record(1000);
+		histogram.record(1023);
+		histogram.record(1024);
+		histogram.record(Long.MAX_VALUE);
+		
+		long[]buckets=histogram.getBuckets();
+		
+		assertEquals(BridgeMetrics.Histogram.BUCKETS,buckets.length);
+		assertEquals(2,buckets[0]);
+		assertEquals(1,buckets[1]);
+		assertEquals(2,buckets[10]);
+		assertEquals(1,buckets[11]);
+		assertEquals(1,buckets[63]);
+		assertEquals(7,histogram.getCount());
+		
+		assertEquals(0,BridgeMetrics.Histogram.getUpperBound(0));
+		assertEquals(1023,BridgeMetrics.Histogram.getUpperBound(10));
+		assertEquals(Long.MAX_VALUE,BridgeMetrics.Histogram.getUpperBound(63));
+	}
+	
+	@Test
+	void computesPercentiles() {
+		BridgeMetrics.Histogram histogram=new BridgeMetrics.Histogram();
+		
+		assertEquals(0,histogram.getPercentile(50));
+		assertEquals(0,histogram.getMean());
+		
+		for(int i=0;i<90;++i)
+			histogram.record(100);
+		
+		for(int i=0;i<10;++i)
+			histogram.record(10000);
+		
+		assertEquals(127,histogram.getPercentile(0));
+		assertEquals(127,histogram.getPercentile(50));
+		assertEquals(127,histogram.getPercentile(90));
+		// limited by the max. value instead of the bucket's upper bound (16383)
+		assertEquals(10000,histogram.getPercentile(99));
+		assertEquals(10000,histogram.getPercentile(100));
+		
+		assertEquals(90*100+10*10000,histogram.getSum());
+		assertEquals(1090,histogram.getMean());
+		assertEquals(10000,histogram.getMax());
+		
+		assertThrows(IllegalArgumentException.class,()->histogram.getPercentile(-1));
+		assertThrows(IllegalArgumentException.class,()->histogram.getPercentile(100.5));
+	}
+	
+	@Test
+	void isDisabledByDefault() {
+		bridge=Bridge.newTCP(0);
+		
+		assertNull(bridge.getMetrics());
+		assertNull(BridgeMetrics.stats(bridge,1));
+		assertEquals(0,BridgeMetrics.start(null));
+		assertEquals(0,BridgeMetrics.record(null,BridgeMetrics.Stage.READ,0));
+	}
+	
+	@Test
+	void collectsStatsPerPacketID() {
+		BridgeMetrics metrics=new BridgeMetrics();
+		
+		metrics.stats(7).request(10);
+		metrics.stats(7).request(20);
+		metrics.stats(7).response(5);
+		metrics.stats(7).error();
+		metrics.stats(3).request(1);
+		
+		BridgeMetrics.PacketStats stats=metrics.get(7);
+		
+		assertEquals(7,stats.getPacketID());
+		assertEquals(2,stats.getRequestCount());
+		assertEquals(1,stats.getErrorCount());
+		assertEquals(30,stats.getBytesIn());
+		assertEquals(5,stats.getBytesOut());
+		
+		assertNull(metrics.get(8));
+		assertEquals(List.of(3,7),List.copyOf(metrics.getAll().keySet()));
+		assertThrows(IndexOutOfBoundsException.class,()->metrics.get(256));
+		
+		metrics.reset();
+		
+		assertTrue(metrics.getAll().isEmpty());
+	}
+	
+	@Test
+	void measuresServedRequests()throws Exception {
+		bridge=Bridge.newTCP(0);
+		bridge.setPacketHandler((sender,in)->{
+			int value=in.readInt();
+			
+			if(value<0)
+				throw new IllegalStateException("negative");
+			
+			Packet out=new Packet(1);
+			out.writeInt(value);
+			return out;
+		},1);
+		
+		BridgeMetrics metrics=bridge.enableMetrics();
+		
+		assertSame(metrics,bridge.getMetrics());
+		
+		bridge.start();
+		
+		long bytesIn=0;
+		
+		try(TestClient client=TestClient.connect(bridge)) {
+			for(int i=0;i<3;++i) {
+				Packet request=UnixTransportTest.request(i);
+				
+				bytesIn+=BridgeImpl.frame(bridge,1,0,bridge.encrypt(Arrays.copyOf(request.data,request.size()))).length;
+				assertEquals(i,client.call(request).readInt());
+			}
+			
+			// the connection is closed after a failed request
+			client.send(UnixTransportTest.request(-1),Bridge.FLAG_LITTLE_ENDIAN);
+			assertTrue(client.isClosedByServer());
+		}
+		
+		BridgeMetrics.PacketStats stats=metrics.get(1);
+		
+		// the statistics are updated after the answer has been written
+		await(()->stats.getErrorCount()==1&&stats.getLatency(BridgeMetrics.Stage.WRITE).getCount()==3);
+		
+		assertEquals(4,stats.getRequestCount());
+		assertEquals(bytesIn+(bytesIn/3),stats.getBytesIn());
+		assertTrue(stats.getBytesOut()>0);
+		
+		for(BridgeMetrics.Stage stage:BridgeMetrics.Stage.values())
+			if(stage.compareTo(BridgeMetrics.Stage.HANDLE)<=0)
+				assertEquals(4,stats.getLatency(stage).getCount(),stage::name);
+			else assertEquals(3,stats.getLatency(stage).getCount(),stage::name);
+		
+		bridge.disableMetrics();
+		
+		assertNull(bridge.getMetrics());
+	}
+	
+	private static void await(BooleanSupplier condition)throws InterruptedException {
+		long deadline=System.currentTimeMillis()+5000;
+		
+		while(!condition.getAsBoolean())
+			if(System.currentTimeMillis()>deadline)
+				fail("Condition not met within 5 seconds");
+			else Thread.sleep(1);
+	}
+	
+}
@@ -0,0 +1,255 @@
+package api.syntaxerror.phpjavabridge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Tests request coalescing (see {@link Bridge#enableCoalescing(int...)} and {@link BridgeImpl#coalesce(Bridge, java.net.SocketAddress, Packet, RequestKey)})
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class CoalescingTest {
+	
+	private static final int WAITERS=4;
+	
+	private Bridge bridge;
+	private ExecutorService executor;
+	
+	private final AtomicInteger invocations=new AtomicInteger();
+	/** counted down by the handler once it has been invoked */
+	private final CountDownLatch invoked=new CountDownLatch(1);
+	/** blocks the handler until the waiters have arrived */
+	private final CountDownLatch release=new CountDownLatch(1);
+	
+	@BeforeEach
+	void setUp() {
+		bridge=Bridge.newTCP(0);
+		bridge.enableCoalescing(1,2);
+		bridge.setPacketHandler((sender,in)->{
+			int value=in.readInt();
+			
+			invocations.incrementAndGet();
+			invoked.countDown();
+			
+			try {
+				release.await(5,TimeUnit.SECONDS);
+			} catch(InterruptedException e) {}
+			
+			if(value<0)
+				throw new IllegalStateException("negative");
+			
+			Packet out=new Packet(in.getPacketID());
+			out.writeInt(value*2);
+			
+			if(in.getPacketID()==2)
+				out.writeStream(stream->stream.write(value));
+			
+			return out;
+		},1,2,3);
+		
+		executor=Executors.newCachedThreadPool();
+	}
+	
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+		bridge.closeServer();
+	}
+	
+	@Test
+	void wakesAllWaiters()throws Exception {
+		List<Future<Packet>>responses=dispatchConcurrently(1,21);
+		
+		release.countDown();
+		
+		for(Future<Packet>response:responses)
+			assertEquals(42,TestClient.received(response.get(5,TimeUnit.SECONDS)).readInt());
+		
+		assertEquals(1,invocations.get());
+		assertTrue(bridge.inFlight.isEmpty());
+	}
+	
+	@Test
+	void sharesAFrozenCopy()throws Exception {
+		List<Future<Packet>>responses=dispatchConcurrently(1,21);
+		
+		release.countDown();
+		
+		Packet leader=responses.get(0).get(5,TimeUnit.SECONDS);
+		
+		assertFalse(leader instanceof FrozenPacket);
+		
+		for(int i=1;i<responses.size();++i)
+			assertInstanceOf(FrozenPacket.class,responses.get(i).get(5,TimeUnit.SECONDS));
+	}
+	
+	@Test
+	void keepsDifferentRequestsApart()throws Exception {
+		Future<Packet>first=executor.submit(()->dispatch(1,1));
+		
+		assertTrue(invoked.await(5,TimeUnit.SECONDS));
+		
+		Future<Packet>second=executor.submit(()->dispatch(1,2));
+		
+		awaitInvocations(2);
+		release.countDown();
+		
+		assertEquals(2,TestClient.received(first.get(5,TimeUnit.SECONDS)).readInt());
+		assertEquals(4,TestClient.received(second.get(5,TimeUnit.SECONDS)).readInt());
+	}
+	
+	@Test
+	void invokesDisabledPacketIDs()throws Exception {
+		Future<Packet>first=executor.submit(()->dispatch(3,1));
+		Future<Packet>second=executor.submit(()->dispatch(3,1));
+		
+		awaitInvocations(2);
+		release.countDown();
+		
+		first.get(5,TimeUnit.SECONDS);
+		second.get(5,TimeUnit.SECONDS);
+	}
+	
+	@Test
+	void invokesAgainOnceTheLeaderIsDone()throws Exception {
+		release.countDown();
+		
+		dispatch(1,1);
+		dispatch(1,1);
+		
+		assertEquals(2,invocations.get());
+	}
+	
+	@Test
+	void propagatesFailures()throws Exception {
+		List<Future<Packet>>responses=dispatchConcurrently(1,-1);
+		
+		release.countDown();
+		
+		for(Future<Packet>response:responses) {
+			ExecutionException e=assertThrows(ExecutionException.class,()->response.get(5,TimeUnit.SECONDS));
+			
+			assertInstanceOf(IllegalStateException.class,e.getCause());
+		}
+		
+		assertEquals(1,invocations.get());
+		assertTrue(bridge.inFlight.isEmpty());
+	}
+	
+	@Test
+	void reinvokesForStreams()throws Exception {
+		List<Future<Packet>>responses=dispatchConcurrently(2,21);
+		
+		release.countDown();
+		
+		for(Future<Packet>response:responses)
+			assertEquals(1,response.get(5,TimeUnit.SECONDS).outputStreams.size());
+		
+		// a stream can only be sent once, so each waiter gets its own
+		assertEquals(WAITERS+1,invocations.get());
+	}
+	
+	/**
+	 * Dispatches identical requests: the leader is blocked in the handler until {@link #release} is counted down,
+	 * the other requests are waiting for its response
+	 */
+	private List<Future<Packet>>dispatchConcurrently(int pid,int value)throws Exception {
+		List<Future<Packet>>responses=new ArrayList<>();
+		List<Thread>threads=new ArrayList<>();
+		
+		responses.add(executor.submit(()->dispatch(pid,value)));
+		assertTrue(invoked.await(5,TimeUnit.SECONDS));
+		
+		for(int i=0;i<WAITERS;++i)
+			responses.add(executor.submit(()->{
+				synchronized(threads) {
+					threads.add(Thread.currentThread());
+				}
+				
+				return dispatch(pid,value);
+			}));
+		
+		long deadline=System.currentTimeMillis()+5000;
+		
+		// the waiters park in CompletableFuture#join()
+		while(!parked(threads))
+			if(System.currentTimeMillis()>deadline)
+				fail("The waiters did not arrive");
+			else Thread.sleep(1);
+		
+		return responses;
+	}
+	
+	private static boolean parked(List<Thread>threads) {
+		synchronized(threads) {
+			return threads.size()==WAITERS&&threads.stream().allMatch(thread->thread.getState()==Thread.State.WAITING);
+		}
+	}
+	
+	private void awaitInvocations(int count)throws InterruptedException {
+		long deadline=System.currentTimeMillis()+5000;
+		
+		while(invocations.get()<count)
+			if(System.currentTimeMillis()>deadline)
+				fail("The handler was invoked "+invocations.get()+" times instead of "+count);
+			else Thread.sleep(1);
+	}
+	
+	private Packet dispatch(int pid,int value)throws Exception {
+		Packet request=UnixTransportTest.request(value);
+		Packet incoming=new Packet(pid);
+		
+		incoming.littleEndian=true;
+		BridgeImpl.decode(bridge,incoming,bridge.encrypt(Arrays.copyOf(request.data,request.size())));
+		
+		return BridgeImpl.dispatch(bridge,null,incoming);
+	}
+	
+}
@@ -0,0 +1,208 @@
+package api.syntaxerror.phpjavabridge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Tests the compression of encrypted data (see {@link Bridge#setCompressionThreshold(int)})
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class CompressionTest {
+	
+	private Bridge bridge;
+	
+	@AfterEach
+	void tearDown()throws Exception {
+		bridge.stop();
+		bridge.closeServer();
+	}
+	
+	@Test
+	void compressesAboveTheThreshold() {
+		bridge=Bridge.newTCP(0);
+		
+		byte[]data=compressible(2048);
+		byte[]encrypted=bridge.encrypt(data,true);
+		
+		assertTrue(isCompressed(encrypted));
+		assertTrue(encrypted.length<data.length/2);
+		assertArrayEquals(data,bridge.decrypt(encrypted));
+	}
+	
+	@Test
+	void keepsSmallDataUncompressed() {
+		bridge=Bridge.newTCP(0);
+		
+		byte[]data=compressible(1023);
+		byte[]encrypted=bridge.encrypt(data,true);
+		
+		assertFalse(isCompressed(encrypted));
+		assertArrayEquals(data,bridge.decrypt(encrypted));
+	}
+	
+	@Test
+	void compressesOnlyIfTheClientAcceptsIt() {
+		bridge=Bridge.newTCP(0);
+		
+		assertFalse(isCompressed(bridge.encrypt(compressible(2048),false)));
+		assertFalse(isCompressed(bridge.encrypt(compressible(2048))));
+	}
+	
+	@Test
+	void keepsIncompressibleDataUncompressed() {
+		bridge=Bridge.newTCP(0);
+		
+		byte[]data=new byte[2048];
+		new Random(42).nextBytes(data);
+		
+		byte[]encrypted=bridge.encrypt(data,true);
+		
+		assertFalse(isCompressed(encrypted));
+		assertArrayEquals(data,bridge.decrypt(encrypted));
+	}
+	
+	@Test
+	void honorsTheThreshold() {
+		bridge=Bridge.newTCP(0);
+		
+		bridge.setCompressionThreshold(16);
+		assertTrue(isCompressed(bridge.encrypt(compressible(64),true)));
+		
+		bridge.setCompressionThreshold(-1);
+		assertFalse(isCompressed(bridge.encrypt(compressible(4096),true)));
+	}
+	
+	@Test
+	void compressesBeforeEncrypting() {
+		bridge=Bridge.newTCP(0,true,"password");
+		
+		byte[]data=compressible(4096);
+		byte[]encrypted=bridge.encrypt(data,true);
+		
+		assertTrue(encrypted.length<data.length/2);
+		assertArrayEquals(data,bridge.decrypt(encrypted));
+	}
+	
+	@Test
+	void rejectsMismatchedLengths() {
+		bridge=Bridge.newTCP(0);
+		
+		byte[]compressed=deflate(compressible(2048));
+		
+		assertThrows(IllegalArgumentException.class,()->bridge.decrypt(compressed(2047,compressed)));
+		assertThrows(IllegalArgumentException.class,()->bridge.decrypt(compressed(2049,compressed)));
+		assertArrayEquals(compressible(2048),bridge.decrypt(compressed(2048,compressed)));
+	}
+	
+	@Test
+	void rejectsOversizedData() {
+		bridge=Bridge.newTCP(0,4096);
+		
+		byte[]compressed=deflate(compressible(8192));
+		
+		assertThrows(IllegalArgumentException.class,()->bridge.decrypt(compressed(8192,compressed)));
+		assertThrows(IllegalArgumentException.class,()->bridge.decrypt(compressed(-1,compressed)));
+	}
+	
+	@Test
+	void compressesAnswers()throws Exception {
+		bridge=Bridge.newTCP(0);
+		bridge.setPacketHandler((sender,in)->{
+			Packet out=new Packet(1);
+			out.writeStringUTF8(new String(compressible(in.readInt())));
+			return out;
+		},1);
+		bridge.start();
+		
+		try(TestClient client=TestClient.connect(bridge)) {
+			client.send(UnixTransportTest.request(4096),Bridge.FLAG_LITTLE_ENDIAN|Bridge.FLAG_COMPRESSION);
+			assertEquals(new String(compressible(4096)),client.receive().readStringUTF8());
+			
+			client.send(UnixTransportTest.request(4096),Bridge.FLAG_LITTLE_ENDIAN);
+			assertEquals(new String(compressible(4096)),client.receive().readStringUTF8());
+		}
+	}
+	
+	/** the length is the first thing encrypted, its most significant bit marks compressed data */
+	private static boolean isCompressed(byte[]encrypted) {
+		return Base64.getDecoder().decode(encrypted)[0]<0;
+	}
+	
+	private byte[]compressed(int rawLength,byte[]compressed) {
+		byte[]raw=new byte[8+compressed.length];
+		int header=(4+compressed.length)|0x80000000;
+		
+		for(int i=0;i<4;++i) {
+			raw[i]=(byte)(header>>>(24-8*i));
+			raw[4+i]=(byte)(rawLength>>>(24-8*i));
+		}
+		
+		System.arraycopy(compressed,0,raw,8,compressed.length);
+		
+		return bridge.seal(Arrays.copyOf(raw,raw.length+16-raw.length%16));
+	}
+	
+	private static byte[]deflate(byte[]data) {
+		Deflater deflater=new Deflater();
+		deflater.setInput(data);
+		deflater.finish();
+		
+		byte[]buf=new byte[data.length];
+		int n=deflater.deflate(buf);
+		
+		deflater.end();
+		
+		return Arrays.copyOf(buf,n);
+	}
+	
+	private static byte[]compressible(int length) {
+		byte[]data=new byte[length];
+		
+		for(int i=0;i<length;++i)
+			data[i]=(byte)('a'+i%7);
+		
+		return data;
+	}
+	
+}
@@ -0,0 +1,143 @@
+package api.syntaxerror.phpjavabridge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Tests the timeouts and limits of a {@link Connection} and the reaping of stalled connections
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class ConnectionTest {
+	
+	private Bridge bridge;
+	private CountDownLatch closed;
+	private Connection connection;
+	
+	@BeforeEach
+	void setUp() {
+		bridge=Bridge.newTCP(0);
+		closed=new CountDownLatch(1);
+		connection=new Connection(bridge,closed::countDown);
+	}
+	
+	@AfterEach
+	void tearDown() {
+		connection.close();
+		bridge.closeServer();
+	}
+	
+	@Test
+	void reapsIdleConnections()throws Exception {
+		bridge.setIdleTimeout(150);
+		connection.await();
+		
+		assertTrue(closed.await(2,TimeUnit.SECONDS));
+		assertTrue(connection.isClosed());
+		assertTrue(connection.getExpired().startsWith("Idle timeout"),connection.getExpired());
+		assertEquals(1,bridge.reapedConnections.sum());
+	}
+	
+	@Test
+	void reapsStalledRequests()throws Exception {
+		bridge.setIdleTimeout(0);
+		bridge.setReadTimeout(150);
+		connection.await();
+		
+		assertTrue(connection.begin());
+		assertTrue(closed.await(2,TimeUnit.SECONDS));
+		assertTrue(connection.getExpired().startsWith("Read timeout"),connection.getExpired());
+	}
+	
+	@Test
+	void reapsStalledAnswers()throws Exception {
+		bridge.setWriteTimeout(150);
+		
+		assertTrue(connection.begin());
+		connection.received();
+		connection.send(10);
+		
+		assertTrue(closed.await(2,TimeUnit.SECONDS));
+		assertTrue(connection.getExpired().startsWith("Write timeout"),connection.getExpired());
+	}
+	
+	@Test
+	void doesNotReapHandlers()throws Exception {
+		bridge.setIdleTimeout(150);
+		bridge.setReadTimeout(150);
+		connection.await();
+		
+		assertTrue(connection.begin());
+		connection.received();
+		
+		assertFalse(closed.await(500,TimeUnit.MILLISECONDS));
+		assertTrue(connection.isBusy());
+		assertFalse(connection.closeIfIdle());
+		
+		connection.end();
+		
+		assertFalse(connection.isBusy());
+		assertTrue(connection.closeIfIdle());
+		assertEquals(0,closed.getCount());
+		assertNull(connection.getExpired());
+	}
+	
+	@Test
+	void limitsBufferedBytes()throws Exception {
+		bridge.setMaxConnectionBufferedBytes(100);
+		
+		assertTrue(connection.begin());
+		connection.receive(60);
+		connection.received();
+		
+		assertThrows(MalformedRequestException.class,()->connection.send(50));
+		assertEquals(1,bridge.rejectedRequests.sum());
+		
+		connection.end();
+		
+		assertTrue(connection.begin());
+		connection.receive(60);
+		connection.send(40);
+		connection.end();
+	}
+	
+}
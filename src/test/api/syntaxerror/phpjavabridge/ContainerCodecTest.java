@@ -0,0 +1,157 @@
+package api.syntaxerror.phpjavabridge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Tests the list (#15) and map (#16) data types of a {@link Packet}
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class ContainerCodecTest {
+	
+	@Test
+	void homogeneousListStoresTheTypeOnce()throws Exception {
+		Packet packet=new Packet(1);
+		packet.writeList(List.of(1,2,3));
+		
+		// data type, element type, count and the elements
+		assertEquals(1+1+4+3*4,packet.size());
+		assertEquals(List.of(1,2,3),TestClient.received(packet).readList());
+	}
+	
+	@Test
+	void heterogeneousListStoresEveryType()throws Exception {
+		Packet packet=new Packet(1);
+		packet.writeList(List.of(1,(short)2,3L));
+		
+		assertEquals(1+1+4+(1+4)+(1+2)+(1+8),packet.size());
+		assertEquals(List.of(1,(short)2,3L),TestClient.received(packet).readList());
+	}
+	
+	@Test
+	void roundTripsAllElementTypes()throws Exception {
+		List<Object>list=List.of(true,(byte)-1,(short)-2,-3,-4L,1.5f,2.5,"ünïcode",List.of(),List.of("a",List.of(1)),Map.of("k",1));
+		
+		Packet packet=new Packet(1);
+		packet.writeList(list);
+		
+		assertEquals(list,TestClient.received(packet).readList());
+	}
+	
+	@Test
+	void roundTripsByteArrays()throws Exception {
+		Packet packet=new Packet(1);
+		packet.writeList(List.of(new byte[]{1,2},new byte[0]));
+		
+		List<Object>list=TestClient.received(packet).readList();
+		
+		assertArrayEquals(new byte[]{1,2},(byte[])list.get(0));
+		assertArrayEquals(new byte[0],(byte[])list.get(1));
+	}
+	
+	@Test
+	void mapPreservesOrder()throws Exception {
+		Map<Object,Object>map=new LinkedHashMap<>();
+		map.put("z",1);
+		map.put("a",List.of(2L));
+		map.put(3,"mixed key");
+		
+		Packet packet=new Packet(1);
+		packet.writeMap(map);
+		
+		Map<Object,Object>read=TestClient.received(packet).readMap();
+		
+		assertEquals(map,read);
+		assertEquals(new ArrayList<>(map.keySet()),new ArrayList<>(read.keySet()));
+	}
+	
+	@Test
+	void mixedWithOtherDataTypes()throws Exception {
+		Packet packet=new Packet(1);
+		packet.writeInt(7);
+		packet.writeList(List.of());
+		packet.writeMap(Map.of());
+		packet.writeStringUTF8("end");
+		
+		Packet read=TestClient.received(packet);
+		
+		assertEquals(7,read.readInt());
+		assertEquals(List.of(),read.readList());
+		assertEquals(Map.of(),read.readMap());
+		assertEquals("end",read.readStringUTF8());
+	}
+	
+	@Test
+	void rejectsUnsupportedElements() {
+		Packet packet=new Packet(1);
+		
+		assertThrows(NullPointerException.class,()->packet.writeList(Arrays.asList(1,null)));
+		assertThrows(IllegalArgumentException.class,()->packet.writeList(List.of(new Object())));
+	}
+	
+	@Test
+	void rejectsDeeplyNestedContainers() {
+		List<Object>list=List.of();
+		
+		for(int i=0;i<40;++i)
+			list=List.of(list);
+		
+		Packet packet=new Packet(1);
+		packet.writeList(list);
+		
+		assertThrows(IllegalArgumentException.class,()->TestClient.received(packet));
+	}
+	
+	@Test
+	void rejectsInvalidElementTypes() {
+		Packet packet=new Packet(1);
+		packet.writeList(List.of(1));
+		
+		byte[]data=Arrays.copyOf(packet.data,packet.size());
+		data[1]=14; // streams cannot be elements
+		
+		assertThrows(IllegalArgumentException.class,()->new Packet(1).validate(data));
+	}
+	
+}
@@ -0,0 +1,185 @@
+package api.syntaxerror.phpjavabridge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Tests sending files as streams (see {@link Packet#writeFile(Path, long, long)} and {@link FileRegion})
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class FileRegionTest {
+	
+	private static final int MAX_PACKET_LENGTH=4096;
+	
+	@TempDir
+	Path dir;
+	
+	private Path file;
+	private byte[]content;
+	private Bridge bridge;
+	
+	@BeforeEach
+	void setUp()throws Exception {
+		content=new byte[10000];
+		new Random(42).nextBytes(content);
+		
+		file=Files.write(dir.resolve("file.bin"),content);
+	}
+	
+	@AfterEach
+	void tearDown()throws Exception {
+		if(bridge!=null)
+			bridge.stop();
+	}
+	
+	@Test
+	void transfersBinaryChunksOverUnixSockets()throws Exception {
+		bridge=start(Bridge.newUnix(dir.resolve("bridge.sock").toString(),MAX_PACKET_LENGTH));
+		
+		try(TestClient client=TestClient.connect(bridge)) {
+			// the connection stays usable afterwards
+			for(int i=0;i<2;++i)
+				assertArrayEquals(content,request(client,0,Long.MAX_VALUE,Bridge.FLAG_BINARY,Bridge.FLAG_CHUNK|Bridge.FLAG_BINARY));
+		}
+	}
+	
+	@Test
+	void sendsBinaryChunksOverTCP()throws Exception {
+		bridge=start(Bridge.newTCP(0,MAX_PACKET_LENGTH));
+		
+		try(TestClient client=TestClient.connect(bridge)) {
+			assertArrayEquals(content,request(client,0,Long.MAX_VALUE,Bridge.FLAG_BINARY,Bridge.FLAG_CHUNK|Bridge.FLAG_BINARY));
+		}
+	}
+	
+	@Test
+	void encryptsChunksWithAES()throws Exception {
+		bridge=start(Bridge.newUnix(dir.resolve("bridge.sock").toString(),true,"password",MAX_PACKET_LENGTH));
+		
+		try(TestClient client=TestClient.connect(bridge)) {
+			assertArrayEquals(content,request(client,0,Long.MAX_VALUE,Bridge.FLAG_BINARY,Bridge.FLAG_CHUNK));
+		}
+	}
+	
+	@Test
+	void encryptsChunksUnlessRequested()throws Exception {
+		bridge=start(Bridge.newUnix(dir.resolve("bridge.sock").toString(),MAX_PACKET_LENGTH));
+		
+		try(TestClient client=TestClient.connect(bridge)) {
+			assertArrayEquals(content,request(client,0,Long.MAX_VALUE,0,Bridge.FLAG_CHUNK));
+		}
+	}
+	
+	@Test
+	void sendsRegions()throws Exception {
+		bridge=start(Bridge.newUnix(dir.resolve("bridge.sock").toString(),MAX_PACKET_LENGTH));
+		
+		try(TestClient client=TestClient.connect(bridge)) {
+			assertArrayEquals(Arrays.copyOfRange(content,100,5100),request(client,100,5000,Bridge.FLAG_BINARY,Bridge.FLAG_CHUNK|Bridge.FLAG_BINARY));
+			assertArrayEquals(Arrays.copyOfRange(content,9000,10000),request(client,9000,5000,Bridge.FLAG_BINARY,Bridge.FLAG_CHUNK|Bridge.FLAG_BINARY));
+			assertArrayEquals(new byte[0],request(client,20000,10,Bridge.FLAG_BINARY,Bridge.FLAG_CHUNK|Bridge.FLAG_BINARY));
+		}
+	}
+	
+	@Test
+	void limitsTheRegionToTheFile()throws Exception {
+		assertArrayEquals(Arrays.copyOfRange(content,9990,10000),write(new FileRegion(file,9990,100)));
+		assertArrayEquals(new byte[0],write(new FileRegion(file,10000,100)));
+		assertArrayEquals(new byte[0],write(new FileRegion(file,20000,100)));
+		
+		Packet packet=new Packet(1);
+		
+		assertThrows(IllegalArgumentException.class,()->packet.writeFile(file,-1,10));
+		assertThrows(IllegalArgumentException.class,()->packet.writeFile(file,0,-1));
+	}
+	
+	/**
+	 * Requests a region of the file and checks the flags and length of its chunks
+	 * 
+	 * @return the stream's data
+	 */
+	private byte[]request(TestClient client,long position,long count,int flags,int chunkFlags)throws Exception {
+		Packet request=new Packet(1);
+		request.writeLong(position);
+		request.writeLong(count);
+		
+		client.send(request,Bridge.FLAG_LITTLE_ENDIAN|flags);
+		assertEquals("file",client.receive().readStringUTF8());
+		
+		ByteArrayOutputStream stream=new ByteArrayOutputStream();
+		
+		for(byte[]chunk;;stream.write(chunk)) {
+			chunk=client.receiveData();
+			
+			assertEquals(1,client.pid);
+			assertEquals(chunkFlags,client.flags);
+			assertTrue(chunk.length<=MAX_PACKET_LENGTH-6);
+			
+			if(chunk.length==0)
+				return stream.toByteArray();
+		}
+	}
+	
+	private Bridge start(Bridge bridge) {
+		bridge.setPacketHandler((sender,in)->{
+			Packet out=new Packet(1);
+			out.writeStringUTF8("file");
+			out.writeFile(file,in.readLong(),in.readLong());
+			return out;
+		},1);
+		bridge.start();
+		
+		return bridge;
+	}
+	
+	private static byte[]write(FileRegion region)throws Exception {
+		ByteArrayOutputStream out=new ByteArrayOutputStream();
+		region.writeTo(out);
+		return out.toByteArray();
+	}
+	
+}
@@ -0,0 +1,348 @@
+package api.syntaxerror.phpjavabridge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Tests the reassembly of fragmented requests, NACKs and the expiry of incomplete messages and kept responses (see {@link Fragmentation})
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class FragmentationTest {
+	
+	private static final int MESSAGE_ID=42;
+	
+	private Bridge bridge;
+	private Fragmentation fragmentation;
+	private DatagramSocket server,client;
+	private SocketAddress address;
+	private byte[]frame;
+	private byte[][]fragments;
+	
+	@BeforeEach
+	void setUp()throws Exception {
+		bridge=Bridge.newTCP(0,1<<16);
+		fragmentation=new Fragmentation(bridge);
+		fragmentation.fragmentSize=1000;
+		
+		server=new DatagramSocket(0,InetAddress.getLoopbackAddress());
+		client=new DatagramSocket(0,InetAddress.getLoopbackAddress());
+		client.setSoTimeout(2000);
+		address=client.getLocalSocketAddress();
+		
+		byte[]data=new byte[3000];
+		new Random(0).nextBytes(data);
+		
+		frame=BridgeImpl.frame(bridge,7,0,data);
+		fragments=Fragmentation.split(frame,MESSAGE_ID,1000);
+	}
+	
+	@AfterEach
+	void tearDown() {
+		server.close();
+		client.close();
+		bridge.closeServer();
+	}
+	
+	@Test
+	void splitCoversTheFrame() {
+		assertEquals(3,fragments.length);
+		
+		for(int i=0;i<fragments.length;++i) {
+			assertEquals(7,fragments[i][0]);
+			assertEquals(Bridge.FLAG_FRAGMENT,fragments[i][1]);
+			assertEquals(1000,BridgeImpl.readLength(fragments[i],2));
+			assertEquals(MESSAGE_ID,BridgeImpl.readLength(fragments[i],6));
+			assertEquals(i,fragments[i][11]);
+			assertEquals(3,fragments[i][13]);
+		}
+	}
+	
+	@Test
+	void reassemblesFragmentsInAnyOrder()throws Exception {
+		assertNull(receive(fragments[2]));
+		assertNull(receive(fragments[0]));
+		assertNull(receive(fragments[0]));
+		
+		Fragmentation.Message message=receive(fragments[1]);
+		
+		assertNotNull(message);
+		assertEquals(7,message.pid);
+		assertEquals(MESSAGE_ID,message.messageID);
+		assertArrayEquals(frame,message.toFrame());
+	}
+	
+	@Test
+	void rejectsMalformedFragments() {
+		byte[]fragment=fragments[0].clone();
+		fragment[11]=3;
+		assertThrows(MalformedRequestException.class,()->receive(fragment));
+		
+		assertThrows(MalformedRequestException.class,()->receive(Arrays.copyOf(fragments[0],500)));
+		assertThrows(MalformedRequestException.class,()->receive(new byte[Fragmentation.HEADER_SIZE-1]));
+	}
+	
+	@Test
+	void rejectsMessagesAboveMaxLength()throws Exception {
+		byte[][]large=Fragmentation.split(BridgeImpl.frame(bridge,7,0,new byte[(1<<16)-6]),MESSAGE_ID,1000);
+		large[large.length-1]=Arrays.copyOf(large[large.length-1],Fragmentation.HEADER_SIZE+1000);
+		large[large.length-1][5]=(byte)0xE8;
+		large[large.length-1][4]=0x03;
+		
+		assertThrows(MalformedRequestException.class,()->{
+			for(byte[]fragment:large)
+				receive(fragment);
+		});
+	}
+	
+	@Test
+	void ignoresRepeatedRequestsWhileProcessing()throws Exception {
+		receiveAll();
+		
+		assertNull(receive(fragments[0]));
+		
+		// the handler failed, the client may send the request again
+		fragmentation.discard(address,MESSAGE_ID);
+		
+		assertNotNull(receiveAll());
+	}
+	
+	@Test
+	void answersNacksAndRepeatedRequests()throws Exception {
+		receiveAll();
+		
+		byte[]response=BridgeImpl.frame(bridge,7,0,new byte[1500]);
+		byte[][]sent=Fragmentation.split(response,MESSAGE_ID,1000);
+		
+		fragmentation.send(server,address,MESSAGE_ID,response);
+		
+		for(byte[]fragment:sent)
+			assertArrayEquals(fragment,next());
+		
+		byte[]nack={7,Bridge.FLAG_NACK,0,0,0,6,0,0,0,MESSAGE_ID,0,1};
+		fragmentation.nack(server,new DatagramPacket(nack,nack.length,address));
+		
+		assertArrayEquals(sent[1],next());
+		
+		// the response has been lost completely
+		assertNull(receive(fragments[0]));
+		
+		for(byte[]fragment:sent)
+			assertArrayEquals(fragment,next());
+		
+		// the response is kept, discard() only removes placeholders
+		fragmentation.discard(address,MESSAGE_ID);
+		assertNull(receive(fragments[0]));
+		assertArrayEquals(sent[0],next());
+	}
+	
+	@Test
+	void sendsNacksForStalledMessages()throws Exception {
+		fragmentation.nackDelay=0;
+		
+		receive(fragments[0]);
+		receive(fragments[2]);
+		
+		Thread.sleep(10);
+		fragmentation.tick(server);
+		
+		byte[]nack=next();
+		
+		assertEquals(Bridge.FLAG_NACK,nack[1]);
+		assertEquals(MESSAGE_ID,BridgeImpl.readLength(nack,6));
+		assertEquals(12,nack.length);
+		assertEquals(1,nack[11]);
+	}
+	
+	@Test
+	void expiresIncompleteMessages()throws Exception {
+		fragmentation.nackDelay=Long.MAX_VALUE/2;
+		fragmentation.reassemblyTimeout=50;
+		
+		receive(fragments[0]);
+		receive(fragments[1]);
+		
+		Thread.sleep(100);
+		fragmentation.tick(server);
+		
+		assertNull(receive(fragments[2]));
+	}
+	
+	@Test
+	void expiresPlaceholdersOfUnansweredRequests()throws Exception {
+		fragmentation.retention=50;
+		
+		receiveAll();
+		assertNull(receive(fragments[0]));
+		
+		Thread.sleep(100);
+		fragmentation.tick(server);
+		
+		assertNotNull(receiveAll());
+	}
+	
+	@Test
+	void evictsMessagesAboveTheClientsLimit()throws Exception {
+		fragmentation.maxBufferedBytes=2500;
+		
+		receive(fragments[0]);
+		receive(fragments[1]);
+		receive(Fragmentation.split(frame,MESSAGE_ID+1,1000)[0]);
+		
+		// the oldest message has been evicted, its fragments are missing now
+		assertNull(receive(fragments[2]));
+	}
+	
+	@Test
+	void rejectsEmptyFragments()throws Exception {
+		assertThrows(MalformedRequestException.class,()->receive(fragment(MESSAGE_ID,0,3,0)));
+		
+		// a single empty fragment is an empty message
+		assertNotNull(receive(fragment(MESSAGE_ID,0,1,0)));
+	}
+	
+	@Test
+	void rejectsMoreFragmentsThanMaxLengthAllows() {
+		assertThrows(MalformedRequestException.class,()->receive(fragment(MESSAGE_ID,0,0xFFFF,1)));
+	}
+	
+	@Test
+	void chargesTheFragmentTable()throws Exception {
+		fragmentation.maxBufferedBytes=50000;
+		
+		receive(fragments[0]);
+		receive(fragments[1]);
+		
+		// a single byte, but 10000 slots
+		receive(fragment(MESSAGE_ID+1,0,10000,1));
+		
+		assertNull(receive(fragments[2]));
+	}
+	
+	@Test
+	void limitsPendingMessages()throws Exception {
+		fragmentation.maxPendingMessages=2;
+		
+		receive(fragments[0]);
+		receive(fragments[1]);
+		receive(fragment(MESSAGE_ID+1,0,2,1));
+		receive(fragment(MESSAGE_ID+2,0,2,1));
+		
+		assertNull(receive(fragments[2]));
+		assertNotNull(receive(fragment(MESSAGE_ID+2,1,2,1)));
+	}
+	
+	@Test
+	void reassemblesWhilePeersExpire()throws Exception {
+		fragmentation.nackDelay=Long.MAX_VALUE/2;
+		fragmentation.retention=-1;
+		
+		AtomicBoolean done=new AtomicBoolean();
+		Thread ticker=new Thread(()->{
+			try {
+				while(!done.get())
+					fragmentation.tick(server);
+			} catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		ticker.start();
+		
+		try {
+			for(int i=0;i<2000;++i) {
+				byte[][]message=Fragmentation.split(frame,i,1000);
+				
+				receive(message[0]);
+				receive(message[1]);
+				assertNotNull(receive(message[2]),"message #"+i);
+			}
+		} finally {
+			done.set(true);
+			ticker.join();
+		}
+	}
+	
+	private Fragmentation.Message receive(byte[]fragment)throws Exception {
+		return fragmentation.receive(server,new DatagramPacket(fragment,fragment.length,address));
+	}
+	
+	private Fragmentation.Message receiveAll()throws Exception {
+		Fragmentation.Message message=null;
+		
+		for(byte[]fragment:fragments)
+			message=receive(fragment);
+		
+		return message;
+	}
+	
+	/**
+	 * @return a fragment of {@code length} zero bytes
+	 */
+	private static byte[]fragment(int messageID,int index,int count,int length) {
+		byte[]fragment=new byte[Fragmentation.HEADER_SIZE+length];
+		
+		fragment[0]=7;
+		fragment[1]=(byte)Bridge.FLAG_FRAGMENT;
+		fragment[5]=(byte)length;
+		fragment[9]=(byte)messageID;
+		fragment[10]=(byte)(index>>8);
+		fragment[11]=(byte)index;
+		fragment[12]=(byte)(count>>8);
+		fragment[13]=(byte)count;
+		
+		return fragment;
+	}
+	
+		private byte[]next()throws Exception {
+		DatagramPacket datagram=new DatagramPacket(new byte[2048],2048);
+		client.receive(datagram);
+		return Arrays.copyOf(datagram.getData(),datagram.getLength());
+	}
+	
+}
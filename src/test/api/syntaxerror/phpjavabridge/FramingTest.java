@@ -0,0 +1,119 @@
+package api.syntaxerror.phpjavabridge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Tests the 6 byte frame header and its bounds (see {@link BridgeImpl#frame(Bridge, int, int, byte[])} and {@link BridgeImpl#serve(Bridge, java.net.SocketAddress, java.io.InputStream, java.io.OutputStream, java.nio.channels.WritableByteChannel, Connection)})
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class FramingTest {
+	
+	private Bridge bridge;
+	
+	@BeforeEach
+	void setUp() {
+		bridge=Bridge.newTCP(0,64);
+	}
+	
+	@AfterEach
+	void tearDown() {
+		bridge.closeServer();
+	}
+	
+	@Test
+	void frameWritesHeader()throws Exception {
+		byte[]frame=BridgeImpl.frame(bridge,0xAB,Bridge.FLAG_COMPRESSION,new byte[]{1,2,3});
+		
+		assertArrayEquals(new byte[]{(byte)0xAB,Bridge.FLAG_COMPRESSION,0,0,0,3,1,2,3},frame);
+		assertEquals(3,BridgeImpl.readLength(frame,2));
+	}
+	
+	@Test
+	void frameRejectsPacketsAboveMaxLength()throws Exception {
+		assertEquals(64,BridgeImpl.frame(bridge,1,0,new byte[58]).length);
+		assertThrows(MalformedRequestException.class,()->BridgeImpl.frame(bridge,1,0,new byte[59]));
+	}
+	
+	@Test
+	void readLengthIsUnsigned() {
+		assertEquals(0xFFFFFFFFL,BridgeImpl.readLength(new byte[]{0,(byte)0xFF,(byte)0xFF,(byte)0xFF,(byte)0xFF},1));
+	}
+	
+	@Test
+	void serveReturnsFalseAtEndOfStream()throws Exception {
+		assertFalse(serve(new byte[0]));
+	}
+	
+	@Test
+	void serveRejectsTruncatedHeader() {
+		MalformedRequestException e=assertThrows(MalformedRequestException.class,()->serve(new byte[]{1,0,0}));
+		assertTrue(e.getMessage().contains("6 byte header"),e.getMessage());
+	}
+	
+	@Test
+	void serveRejectsLengthAboveMaxBeforeReading() {
+		// the announced length (almost 4 GiB) must not be allocated
+		MalformedRequestException e=assertThrows(MalformedRequestException.class,()->serve(new byte[]{1,0,(byte)0xFF,(byte)0xFF,(byte)0xFF,(byte)0xFF}));
+		assertTrue(e.getMessage().contains("too large"),e.getMessage());
+		
+		assertThrows(MalformedRequestException.class,()->serve(new byte[]{1,0,0,0,0,59}));
+	}
+	
+	@Test
+	void serveRejectsTruncatedData() {
+		MalformedRequestException e=assertThrows(MalformedRequestException.class,()->serve(new byte[]{1,0,0,0,0,10,1,2,3}));
+		assertTrue(e.getMessage().contains("Expected 10 bytes"),e.getMessage());
+	}
+	
+	@Test
+	void serveDoesNotLeakActiveRequests() {
+		assertThrows(MalformedRequestException.class,()->serve(new byte[]{1,0,0,0,0,10}));
+		assertEquals(0,bridge.activeRequests.get());
+	}
+	
+	private boolean serve(byte[]request)throws Exception {
+		return BridgeImpl.serve(bridge,null,new ByteArrayInputStream(request),new ByteArrayOutputStream(),null,null);
+	}
+	
+}
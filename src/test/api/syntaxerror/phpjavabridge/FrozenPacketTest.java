@@ -0,0 +1,182 @@
+package api.syntaxerror.phpjavabridge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Tests immutable {@link Packet}s and the reuse of their encoded form (see {@link FrozenPacket})
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class FrozenPacketTest {
+	
+	private Bridge bridge;
+	
+	@AfterEach
+	void tearDown() {
+		if(bridge!=null)
+			bridge.closeServer();
+	}
+	
+	@Test
+	void copiesTheData()throws Exception {
+		Packet packet=packet();
+		FrozenPacket frozen=packet.freeze();
+		
+		packet.writeInt(3);
+		packet.close();
+		
+		Packet received=TestClient.received(frozen);
+		
+		assertEquals(1,received.getPacketID());
+		assertEquals("frozen",received.readStringUTF8());
+		assertEquals(42,received.readInt());
+		assertEquals(frozen.size(),received.size());
+	}
+	
+	@Test
+	void isImmutable() {
+		FrozenPacket frozen=packet().freeze();
+		
+		assertEquals("Packet is frozen",assertThrows(UnsupportedOperationException.class,()->frozen.writeInt(1)).getMessage());
+		assertThrows(UnsupportedOperationException.class,()->frozen.readStringUTF8());
+		assertSame(frozen,frozen.freeze());
+	}
+	
+	@Test
+	void ignoresClose()throws Exception {
+		FrozenPacket frozen=packet().freeze();
+		
+		frozen.close();
+		
+		Packet received=TestClient.received(frozen);
+		received.readStringUTF8();
+		
+		assertEquals(42,received.readInt());
+	}
+	
+	@Test
+	void copiesTheByteOrder() {
+		Packet packet=packet();
+		packet.littleEndian=true;
+		
+		assertTrue(packet.freeze().littleEndian);
+	}
+	
+	@Test
+	void rejectsStreams() {
+		Packet packet=packet();
+		packet.writeStream(out->{});
+		
+		assertThrows(UnsupportedOperationException.class,packet::freeze);
+	}
+	
+	@Test
+	void rejectsClosedPackets()throws Exception {
+		Packet packet=packet();
+		packet.close();
+		
+		assertThrows(UnsupportedOperationException.class,packet::freeze);
+	}
+	
+	@Test
+	void reusesTheFrameWithoutAES()throws Exception {
+		bridge=Bridge.newTCP(0);
+		
+		FrozenPacket frozen=packet().freeze();
+		byte[]frame=BridgeImpl.encode(bridge,frozen,false);
+		
+		assertSame(frame,BridgeImpl.encode(bridge,frozen,false));
+		assertArrayEquals(BridgeImpl.encode(bridge,packet(),false),frame);
+	}
+	
+	@Test
+	void encodesAgainIfTheSettingsChange()throws Exception {
+		bridge=Bridge.newTCP(0);
+		
+		FrozenPacket frozen=large().freeze();
+		byte[]frame=BridgeImpl.encode(bridge,frozen,true);
+		
+		byte[]uncompressed=BridgeImpl.encode(bridge,frozen,false);
+		assertTrue(uncompressed.length>frame.length);
+		
+		bridge.setCompressionThreshold(-1);
+		assertArrayEquals(uncompressed,BridgeImpl.encode(bridge,frozen,true));
+		
+		Bridge other=Bridge.newTCP(0,65535);
+		
+		try {
+			assertNotSame(uncompressed,BridgeImpl.encode(other,frozen,false));
+		} finally {
+			other.closeServer();
+		}
+	}
+	
+	@Test
+	void encryptsAgainWithAES()throws Exception {
+		bridge=Bridge.newTCP(0,true,"password");
+		
+		FrozenPacket frozen=packet().freeze();
+		byte[]first=BridgeImpl.encode(bridge,frozen,false),
+				second=BridgeImpl.encode(bridge,frozen,false);
+		
+		// every frame needs its own IV
+		assertFalse(Arrays.equals(first,second));
+		assertArrayEquals(body(first),body(second));
+	}
+	
+	private byte[]body(byte[]frame) {
+		return bridge.decrypt(Arrays.copyOfRange(frame,6,frame.length));
+	}
+	
+	private static Packet packet() {
+		Packet packet=new Packet(1);
+		packet.writeStringUTF8("frozen");
+		packet.writeInt(42);
+		return packet;
+	}
+	
+	private static Packet large() {
+		Packet packet=new Packet(1);
+		packet.writeStringUTF8("frozen".repeat(1000));
+		return packet;
+	}
+	
+}
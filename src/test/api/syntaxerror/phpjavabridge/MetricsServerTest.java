@@ -0,0 +1,199 @@
+package api.syntaxerror.phpjavabridge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Tests the Prometheus endpoint and the MBean (see {@link MetricsServer} and {@link BridgeMXBean})
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class MetricsServerTest {
+	
+	private Bridge bridge;
+	
+	@BeforeEach
+	void setUp() {
+		bridge=Bridge.newTCP(0);
+	}
+	
+	@AfterEach
+	void tearDown() {
+		bridge.stopMetricsServer();
+		bridge.unregisterMBean();
+		bridge.closeServer();
+	}
+	
+	@Test
+	void scrapesTheBridgeState()throws Exception {
+		bridge.rejectedRequests.add(3);
+		
+		String text=scrape();
+		
+		assertTrue(text.startsWith(
+			"# HELP phpjavabridge_active_connections Open connections (TCP and Unix Domain Sockets)\n"+
+			"# TYPE phpjavabridge_active_connections gauge\n"+
+			"phpjavabridge_active_connections 0\n"));
+		assertTrue(text.contains("# TYPE phpjavabridge_rejected_requests_total counter\nphpjavabridge_rejected_requests_total 3\n"));
+		
+		// no statistics without metrics
+		assertFalse(text.contains("phpjavabridge_requests_total"));
+		assertWellFormed(text);
+	}
+	
+	@Test
+	void scrapesTheStatistics()throws Exception {
+		BridgeMetrics.PacketStats stats=bridge.enableMetrics().stats(5);
+		
+		stats.request(100);
+		stats.request(50);
+		stats.response(20);
+		stats.error();
+		stats.getLatency(BridgeMetrics.Stage.READ).record(1500);
+		stats.getLatency(BridgeMetrics.Stage.READ).record(1L<<40);
+		
+		String text=scrape();
+		
+		assertTrue(text.contains("# TYPE phpjavabridge_requests_total counter\nphpjavabridge_requests_total{pid=\"5\"} 2\n"));
+		assertTrue(text.contains("phpjavabridge_errors_total{pid=\"5\"} 1\n"));
+		assertTrue(text.contains("phpjavabridge_received_bytes_total{pid=\"5\"} 150\n"));
+		assertTrue(text.contains("phpjavabridge_sent_bytes_total{pid=\"5\"} 20\n"));
+		
+		// cumulative buckets, every second one from 1023 ns (bucket 10) to about 69 s (bucket 36)
+		List<String>read=text.lines().filter(line->line.startsWith("phpjavabridge_stage_duration_seconds_bucket{pid=\"5\",stage=\"read\"")).toList();
+		
+		assertEquals(15,read.size());
+		assertEquals("phpjavabridge_stage_duration_seconds_bucket{pid=\"5\",stage=\"read\",le=\"1.023E-6\"} 0",read.get(0));
+		assertEquals("phpjavabridge_stage_duration_seconds_bucket{pid=\"5\",stage=\"read\",le=\"4.095E-6\"} 1",read.get(1));
+		assertEquals("phpjavabridge_stage_duration_seconds_bucket{pid=\"5\",stage=\"read\",le=\"68.719476735\"} 1",read.get(13));
+		assertEquals("phpjavabridge_stage_duration_seconds_bucket{pid=\"5\",stage=\"read\",le=\"+Inf\"} 2",read.get(14));
+		assertTrue(text.contains("phpjavabridge_stage_duration_seconds_sum{pid=\"5\",stage=\"read\"} "+(1500+(1L<<40))/1e9+"\n"));
+		assertTrue(text.contains("phpjavabridge_stage_duration_seconds_count{pid=\"5\",stage=\"read\"} 2\n"));
+		assertTrue(text.contains("phpjavabridge_stage_duration_seconds_count{pid=\"5\",stage=\"write\"} 0\n"));
+		
+		assertWellFormed(text);
+	}
+	
+	@Test
+	void servesTheMetrics()throws Exception {
+		bridge.enableMetrics().stats(5).request(100);
+		
+		InetSocketAddress address=bridge.startMetricsServer(new InetSocketAddress(InetAddress.getLoopbackAddress(),0));
+		URI uri=URI.create("http://"+address.getHostString()+":"+address.getPort()+"/metrics");
+		HttpClient client=HttpClient.newHttpClient();
+		
+		HttpResponse<String>get=client.send(HttpRequest.newBuilder(uri).GET().build(),HttpResponse.BodyHandlers.ofString());
+		
+		assertEquals(200,get.statusCode());
+		assertEquals("text/plain; version=0.0.4; charset=utf-8",get.headers().firstValue("Content-Type").orElse(null));
+		assertTrue(get.body().contains("phpjavabridge_requests_total{pid=\"5\"} 1\n"));
+		assertWellFormed(get.body());
+		
+		HttpResponse<String>post=client.send(HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofString("")).build(),HttpResponse.BodyHandlers.ofString());
+		
+		assertEquals(405,post.statusCode());
+		assertEquals("GET, HEAD",post.headers().firstValue("Allow").orElse(null));
+		
+		HttpResponse<String>head=client.send(HttpRequest.newBuilder(uri).method("HEAD",HttpRequest.BodyPublishers.noBody()).build(),HttpResponse.BodyHandlers.ofString());
+		
+		assertEquals(200,head.statusCode());
+		assertEquals("",head.body());
+		
+		assertThrows(IllegalStateException.class,()->bridge.startMetricsServer(0));
+		
+		bridge.stopMetricsServer();
+		bridge.stopMetricsServer();
+	}
+	
+	@Test
+	void registersTheMBean()throws Exception {
+		ObjectName name=bridge.registerMBean("MetricsServerTest");
+		MBeanServer server=ManagementFactory.getPlatformMBeanServer();
+		
+		assertEquals("api.syntaxerror.phpjavabridge:type=Bridge,name=\"MetricsServerTest\"",name.toString());
+		assertNotNull(bridge.getMetrics());
+		
+		bridge.rejectedRequests.add(2);
+		bridge.metrics.stats(1).request(10);
+		
+		assertEquals(0,server.getAttribute(name,"ActiveConnections"));
+		assertEquals(2L,server.getAttribute(name,"RejectedRequests"));
+		assertEquals(1L,server.getAttribute(name,"RequestCount"));
+		
+		assertThrows(IllegalStateException.class,()->bridge.registerMBean("MetricsServerTest"));
+		
+		bridge.unregisterMBean();
+		
+		assertFalse(server.isRegistered(name));
+	}
+	
+	private String scrape()throws IOException {
+		MetricsServer server=new MetricsServer(bridge,new InetSocketAddress(InetAddress.getLoopbackAddress(),0));
+		
+		try {
+			return server.scrape();
+		} finally {
+			server.stop();
+		}
+	}
+	
+	/**
+	 * Checks the basic syntax of the Prometheus text format: comments, or a name, optional labels and a value
+	 */
+	private static void assertWellFormed(String text) {
+		assertTrue(text.endsWith("\n"));
+		
+		for(String line:text.split("\n"))
+			assertTrue(line.matches("# (HELP|TYPE) [a-z_]+ .+|[a-z_]+(\\{([a-z]+=\"[^\"]*\",?)+\\})? [0-9.E+-]+|.* \\+?Inf"),line);
+	}
+	
+}
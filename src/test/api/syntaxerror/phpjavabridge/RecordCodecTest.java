@@ -0,0 +1,125 @@
+package api.syntaxerror.phpjavabridge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Tests the mapping of records onto a {@link Packet}'s data types (see {@link RecordCodec})
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class RecordCodecTest {
+	
+	enum Kind { POINT, LINE, POLYGON }
+	
+	record Point(int x,int y) {}
+	
+	record Shape(String name,Kind kind,char tag,boolean closed,byte layer,short z,long id,float scale,double angle,
+			Double weight,List<Point>points,List<String>labels,Point[]anchors) {}
+	
+	record Blob(byte[]data) {}
+	
+	record Unsupported(Object value) {}
+	
+	@Test
+	void roundTripsAllComponentTypes()throws Exception {
+		Shape shape=new Shape("ünïcode",Kind.POLYGON,'x',true,(byte)-1,(short)-2,-3L,1.5f,2.5,0.25,
+				List.of(new Point(1,2),new Point(-3,4)),List.of("a","b"),new Point[]{new Point(5,6)});
+		
+		Packet packet=new Packet(1);
+		packet.writeRecord(shape);
+		
+		Shape read=TestClient.received(packet).readRecord(Shape.class);
+		
+		assertEquals(shape.name(),read.name());
+		assertEquals(shape.kind(),read.kind());
+		assertEquals(shape.tag(),read.tag());
+		assertEquals(shape.closed(),read.closed());
+		assertEquals(shape.layer(),read.layer());
+		assertEquals(shape.z(),read.z());
+		assertEquals(shape.id(),read.id());
+		assertEquals(shape.scale(),read.scale());
+		assertEquals(shape.angle(),read.angle());
+		assertEquals(shape.weight(),read.weight());
+		assertEquals(shape.points(),read.points());
+		assertEquals(shape.labels(),read.labels());
+		assertArrayEquals(shape.anchors(),read.anchors());
+	}
+	
+	@Test
+	void writesComponentsAsDataTypes()throws Exception {
+		Packet packet=new Packet(1);
+		packet.writeRecord(new Point(1,2));
+		
+		Packet read=TestClient.received(packet);
+		
+		assertEquals(1,read.readInt());
+		assertEquals(2,read.readInt());
+	}
+	
+	@Test
+	void sizeMatchesTheEncoding() {
+		Blob blob=new Blob(new byte[100]);
+		
+		Packet packet=new Packet(1,1);
+		packet.writeInt(0);
+		
+		int before=packet.size();
+		packet.writeRecord(blob);
+		
+		assertEquals(RecordCodec.of(Blob.class).size(blob),packet.size()-before);
+	}
+	
+	@Test
+	void rejectsNullComponents() {
+		assertThrows(NullPointerException.class,()->new Packet(1).writeRecord(new Blob(null)));
+	}
+	
+	@Test
+	void rejectsUnsupportedComponents() {
+		assertThrows(IllegalArgumentException.class,()->new Packet(1).writeRecord(new Unsupported(1)));
+		assertThrows(IllegalArgumentException.class,()->RecordCodec.of(String.class));
+	}
+	
+	@Test
+	void cachesTheCodec() {
+		assertSame(RecordCodec.of(Point.class),RecordCodec.of(Point.class));
+	}
+	
+}
@@ -0,0 +1,210 @@
+package api.syntaxerror.phpjavabridge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Tests the TTL and LRU eviction of the {@link ResponseCache}
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class ResponseCacheTest {
+	
+	@Test
+	void cachesEnabledPacketIDsOnly() {
+		ResponseCache cache=new ResponseCache(10).enable(Duration.ofMinutes(1),1);
+		Packet response=response(2);
+		
+		assertSame(response,cache.put(key(2,0),response));
+		assertInstanceOf(FrozenPacket.class,cache.put(key(1,0),response(1)));
+		assertEquals(1,cache.size());
+	}
+	
+	@Test
+	void answersFromTheCache() {
+		ResponseCache cache=new ResponseCache(10).enable(Duration.ofMinutes(1),1);
+		Packet cached=cache.put(key(1,0),response(1));
+		
+		assertSame(cached,cache.get(key(1,0)));
+		assertNull(cache.get(key(1,1)));
+		assertEquals(1,cache.getHitCount());
+		assertEquals(1,cache.getMissCount());
+		assertEquals(0.5,cache.getHitRate());
+	}
+	
+	@Test
+	void expiresAfterTheTTL()throws Exception {
+		ResponseCache cache=new ResponseCache(10).enable(Duration.ofMillis(50),1);
+		cache.put(key(1,0),response(1));
+		
+		Thread.sleep(100);
+		
+		assertNull(cache.get(key(1,0)));
+		assertEquals(1,cache.getExpirationCount());
+		assertEquals(0,cache.size());
+	}
+	
+	@Test
+	void evictsTheLeastRecentlyUsed() {
+		ResponseCache cache=new ResponseCache(2).enable(Duration.ofMinutes(1),1);
+		cache.put(key(1,0),response(1));
+		cache.put(key(1,1),response(1));
+		
+		assertNotNull(cache.get(key(1,0)));
+		
+		cache.put(key(1,2),response(1));
+		
+		assertNull(cache.get(key(1,1)));
+		assertNotNull(cache.get(key(1,0)));
+		assertNotNull(cache.get(key(1,2)));
+		assertEquals(1,cache.getEvictionCount());
+	}
+	
+	@Test
+	void dropsExpiredEntriesBeforeValidOnes()throws Exception {
+		ResponseCache cache=new ResponseCache(2).enable(Duration.ofMillis(50),1).enable(Duration.ofMinutes(1),2);
+		cache.put(key(1,0),response(1));
+		
+		Thread.sleep(100);
+		
+		cache.put(key(2,0),response(2));
+		
+		assertEquals(1,cache.size());
+		assertEquals(1,cache.getExpirationCount());
+		assertEquals(0,cache.getEvictionCount());
+	}
+	
+	@Test
+	void doesNotCacheStreams() {
+		ResponseCache cache=new ResponseCache(10).enable(Duration.ofMinutes(1),1);
+		Packet response=response(1);
+		response.writeStream(out->{});
+		
+		assertSame(response,cache.put(key(1,0),response));
+		assertEquals(0,cache.size());
+	}
+	
+	@Test
+	void invalidates() {
+		ResponseCache cache=new ResponseCache(10).enable(Duration.ofMinutes(1),1,2);
+		cache.put(key(1,0),response(1));
+		cache.put(key(1,1),response(1));
+		cache.put(key(2,0),response(2));
+		
+		cache.invalidate(1);
+		assertEquals(1,cache.size());
+		
+		cache.disable(2);
+		assertEquals(0,cache.size());
+		assertFalse(cache.isEnabled(2));
+	}
+	
+	@Test
+	void separatesByteOrders() {
+		ResponseCache cache=new ResponseCache(10).enable(Duration.ofMinutes(1),1);
+		cache.put(key(1,1),response(1));
+		
+		assertNull(cache.get(key(1,1,Bridge.FLAG_LITTLE_ENDIAN)));
+		
+		cache.put(key(1,1,Bridge.FLAG_LITTLE_ENDIAN),response(1));
+		assertEquals(2,cache.size());
+		
+		Packet request=new Packet(1);
+		request.writeInt(1);
+		cache.invalidate(request);
+		
+		assertEquals(0,cache.size());
+	}
+	
+	@Test
+	void dispatchesByteOrdersSeparately()throws Exception {
+		Bridge bridge=Bridge.newTCP(0);
+		List<Integer>values=new ArrayList<>();
+		
+		try {
+			bridge.setResponseCache(new ResponseCache(10).enable(Duration.ofMinutes(1),1));
+			bridge.setPacketHandler((sender,in)->{
+				values.add(in.readInt());
+				return response(1);
+			},1);
+			
+			Packet request=UnixTransportTest.request(1);
+			byte[]data=bridge.encrypt(Arrays.copyOf(request.data,request.size()));
+			
+			for(boolean littleEndian:new boolean[]{true,false,true}) {
+				Packet incoming=new Packet(1);
+				incoming.littleEndian=littleEndian;
+				BridgeImpl.decode(bridge,incoming,data);
+				BridgeImpl.dispatch(bridge,null,incoming);
+			}
+			
+			// the same bytes are two different requests
+			assertEquals(2,values.size());
+			assertNotEquals(values.get(0),values.get(1));
+		} finally {
+			bridge.closeServer();
+		}
+	}
+	
+	@Test
+	void rejectsInvalidSettings() {
+		assertThrows(IllegalArgumentException.class,()->new ResponseCache(0));
+		assertThrows(IllegalArgumentException.class,()->new ResponseCache(1).enable(Duration.ZERO,1));
+	}
+	
+	private static RequestKey key(int pid,int value) {
+		return key(pid,value,0);
+	}
+	
+	private static RequestKey key(int pid,int value,int flags) {
+		Packet request=new Packet(pid);
+		request.writeInt(value);
+		return new RequestKey(pid,flags,request.data,request.size());
+	}
+	
+	private static Packet response(int pid) {
+		Packet response=new Packet(pid);
+		response.writeStringUTF8("response");
+		return response;
+	}
+	
+}
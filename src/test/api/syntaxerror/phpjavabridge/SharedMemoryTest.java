@@ -0,0 +1,202 @@
+package api.syntaxerror.phpjavabridge;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Tests the Shared Memory transport (see {@link BridgeImpl.SharedMemory}), acting as the PHP client
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class SharedMemoryTest {
+	
+	private static final int SLOTS=4;
+	
+	@TempDir
+	Path dir;
+	
+	private BridgeImpl.SharedMemory bridge;
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+	
+	@BeforeEach
+	void setUp()throws Exception {
+		bridge=(BridgeImpl.SharedMemory)Bridge.newSharedMemory(dir.resolve("bridge.shm").toString(),SLOTS,false,null,1001);
+		bridge.setPacketHandler((sender,in)->{
+			Packet out=new Packet(1);
+			out.writeStringUTF8("echo "+in.readInt());
+			return out;
+		},1);
+		bridge.setPacketHandler((sender,in)->{
+			Packet out=new Packet(2);
+			out.writeStream(stream->stream.write(1));
+			return out;
+		},2);
+		bridge.start();
+		
+		channel=FileChannel.open(bridge.getPath(),StandardOpenOption.READ,StandardOpenOption.WRITE);
+		buffer=channel.map(FileChannel.MapMode.READ_WRITE,0,channel.size());
+	}
+	
+	@AfterEach
+	void tearDown()throws Exception {
+		channel.close();
+		bridge.stop();
+	}
+	
+	@Test
+	void publishesTheLayout() {
+		assertEquals(BridgeImpl.SharedMemory.MAGIC,buffer.getInt(0));
+		assertEquals(BridgeImpl.SharedMemory.VERSION,buffer.getInt(4));
+		assertEquals(SLOTS,buffer.getInt(8));
+		assertEquals(1008,buffer.getInt(12)); // rounded up to a multiple of 8
+		assertEquals(BridgeImpl.SharedMemory.HEADER_SIZE+SLOTS*(BridgeImpl.SharedMemory.SLOT_HEADER_SIZE+1008),buffer.capacity());
+		
+		for(int i=0;i<SLOTS;++i)
+			assertEquals(BridgeImpl.SharedMemory.STATE_FREE,state(i));
+	}
+	
+	@Test
+	void restrictsTheFileToItsOwner()throws Exception {
+		assumeTrue(dir.getFileSystem().supportedFileAttributeViews().contains("posix"));
+		
+		assertEquals("rw-------",PosixFilePermissions.toString(Files.getPosixFilePermissions(bridge.getPath())));
+		
+		// existing files are truncated, their permissions are restricted, too
+		Path existing=Files.createFile(dir.resolve("existing.shm"),PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-rw-rw-")));
+		Bridge other=Bridge.newSharedMemory(existing.toString(),1);
+		
+		try {
+			assertEquals("rw-------",PosixFilePermissions.toString(Files.getPosixFilePermissions(existing)));
+		} finally {
+			other.closeServer();
+		}
+	}
+	
+		@Test
+	void answersRequests()throws Exception {
+		for(int i=0;i<SLOTS;++i)
+			request(i,UnixTransportTest.request(i));
+		
+		for(int i=0;i<SLOTS;++i) {
+			assertEquals(BridgeImpl.SharedMemory.STATE_RESPONSE,await(i));
+			assertEquals("echo "+i,response(i).readStringUTF8());
+		}
+	}
+	
+	@Test
+	void reusesReleasedSlots()throws Exception {
+		for(int i=0;i<3;++i) {
+			request(0,UnixTransportTest.request(i));
+			
+			assertEquals(BridgeImpl.SharedMemory.STATE_RESPONSE,await(0));
+			assertEquals("echo "+i,response(0).readStringUTF8());
+			
+			setState(0,BridgeImpl.SharedMemory.STATE_FREE);
+		}
+	}
+	
+	@Test
+	void rejectsOversizedRequests()throws Exception {
+		int offset=offset(0);
+		
+		buffer.put(offset,new byte[]{1,Bridge.FLAG_LITTLE_ENDIAN,0,0,0x10,0});
+		setState(0,BridgeImpl.SharedMemory.STATE_REQUEST);
+		
+		assertEquals(BridgeImpl.SharedMemory.STATE_ERROR,await(0));
+	}
+	
+	@Test
+	void rejectsStreams()throws Exception {
+		request(0,new Packet(2));
+		
+		assertEquals(BridgeImpl.SharedMemory.STATE_ERROR,await(0));
+	}
+	
+	private void request(int slot,Packet request)throws Exception {
+		// written data is never rotated, so the Bridge has to read it as is
+		buffer.put(offset(slot),BridgeImpl.frame(bridge,request.getPacketID(),Bridge.FLAG_LITTLE_ENDIAN,bridge.encrypt(Arrays.copyOf(request.data,request.size()))));
+		setState(slot,BridgeImpl.SharedMemory.STATE_REQUEST);
+	}
+	
+	private Packet response(int slot)throws Exception {
+		int offset=offset(slot);
+		
+		byte[]header=new byte[6];
+		buffer.get(offset,header);
+		
+		byte[]data=new byte[(int)BridgeImpl.readLength(header,2)];
+		buffer.get(offset+6,data);
+		
+		return TestClient.received(header[0]&0xFF,bridge.decrypt(data));
+	}
+	
+	private int await(int slot)throws InterruptedException {
+		long deadline=System.currentTimeMillis()+5000;
+		
+		for(int state;System.currentTimeMillis()<deadline;Thread.sleep(1))
+			if((state=state(slot))!=BridgeImpl.SharedMemory.STATE_REQUEST&&state!=BridgeImpl.SharedMemory.STATE_PROCESSING)
+				return state;
+		
+		return fail("Slot "+slot+" has not been answered");
+	}
+	
+	private int offset(int slot) {
+		return bridge.stateOffset(slot)+BridgeImpl.SharedMemory.SLOT_HEADER_SIZE;
+	}
+	
+	private int state(int slot) {
+		return bridge.getState(slot);
+	}
+	
+	private void setState(int slot,int state) {
+		bridge.setState(slot,state);
+	}
+	
+}
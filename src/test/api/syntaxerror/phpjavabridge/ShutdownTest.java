@@ -0,0 +1,185 @@
+package api.syntaxerror.phpjavabridge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Tests the graceful shutdown of a {@link Bridge} (see {@link Bridge#shutdown(Duration)} and {@link ShutdownReport})
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class ShutdownTest {
+	
+	private Bridge bridge;
+	
+	/** counted down by the handler once it has been invoked */
+	private final CountDownLatch invoked=new CountDownLatch(1);
+	/** blocks the handler of Packet #2 */
+	private final CountDownLatch release=new CountDownLatch(1);
+	
+	@BeforeEach
+	void setUp() {
+		bridge=Bridge.newTCP(0);
+		bridge.setPacketHandler((sender,in)->{
+			invoked.countDown();
+			
+			if(in.getPacketID()==2)
+				try {
+					release.await(10,TimeUnit.SECONDS);
+				} catch(InterruptedException e) {}
+			
+			Packet out=new Packet(in.getPacketID());
+			out.writeInt(in.readInt());
+			return out;
+		},1,2);
+		bridge.start();
+	}
+	
+	@AfterEach
+	void tearDown()throws Exception {
+		release.countDown();
+		bridge.stop();
+	}
+	
+	@Test
+	void closesIdleConnections()throws Exception {
+		try(TestClient client=TestClient.connect(bridge)) {
+			assertEquals(1,client.call(UnixTransportTest.request(1)).readInt());
+			
+			// the request is completed after its answer has been written
+			for(long deadline=System.currentTimeMillis()+5000;bridge.activeRequests.get()>0;Thread.sleep(1))
+				if(System.currentTimeMillis()>deadline)
+					fail("The request has not been completed");
+			
+			ShutdownReport report=bridge.shutdown(Duration.ofSeconds(5));
+			
+			assertTrue(report.isClean(),report::toString);
+			assertEquals(1,report.getClosedIdleConnections());
+			assertEquals(0,report.getInFlightRequests());
+			assertTrue(client.isClosedByServer());
+		}
+	}
+	
+	@Test
+	void drainsBusyConnections()throws Exception {
+		try(TestClient client=TestClient.connect(bridge)) {
+			client.send(request(2,42),Bridge.FLAG_LITTLE_ENDIAN);
+			assertTrue(invoked.await(5,TimeUnit.SECONDS));
+			
+			CompletableFuture<ShutdownReport>shutdown=CompletableFuture.supplyAsync(()->{
+				try {
+					return bridge.shutdown(Duration.ofSeconds(5));
+				} catch(InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+			});
+			
+			Thread.sleep(100);
+			assertFalse(shutdown.isDone());
+			release.countDown();
+			
+			// the answer is still sent, the connection is closed afterwards
+			assertEquals(42,client.receive().readInt());
+			
+			ShutdownReport report=shutdown.get(5,TimeUnit.SECONDS);
+			
+			assertTrue(report.isClean(),report::toString);
+			assertEquals(1,report.getInFlightRequests());
+			assertEquals(1,report.getClosedIdleConnections());
+			assertTrue(client.isClosedByServer());
+		}
+	}
+	
+	@Test
+	void dropsRequestsAfterTheTimeout()throws Exception {
+		try(TestClient client=TestClient.connect(bridge)) {
+			client.send(request(2,42),Bridge.FLAG_LITTLE_ENDIAN);
+			assertTrue(invoked.await(5,TimeUnit.SECONDS));
+			
+			ShutdownReport report=bridge.shutdown(Duration.ofMillis(200));
+			
+			assertFalse(report.isClean());
+			assertEquals(1,report.getInFlightRequests());
+			assertEquals(1,report.getDroppedConnections());
+			assertEquals(1,report.getDroppedRequests());
+			assertEquals(0,report.getClosedIdleConnections());
+			assertTrue(report.getDuration().compareTo(Duration.ofMillis(200))>=0);
+		}
+	}
+	
+	@Test
+	void rejectsRequestsOnClosedConnections()throws Exception {
+		Connection connection=new Connection(bridge,()->{});
+		
+		assertTrue(connection.closeIfIdle());
+		assertFalse(connection.begin());
+		
+		// the first byte of a request arrived while the connection was being closed
+		assertFalse(BridgeImpl.serve(bridge,null,new ByteArrayInputStream(new byte[]{1,0,0,0,0,0}),new ByteArrayOutputStream(),null,connection));
+		assertEquals(1,bridge.rejectedRequests.sum());
+		assertEquals(1,bridge.lateRequests.get());
+		assertEquals(0,bridge.activeRequests.get());
+	}
+	
+	@Test
+	void canBeRestarted()throws Exception {
+		assertTrue(bridge.shutdown(Duration.ofSeconds(5)).isClean());
+		assertEquals(0,bridge.shutdown(Duration.ofSeconds(5)).getClosedIdleConnections());
+		
+		bridge.start();
+		
+		try(TestClient client=TestClient.connect(bridge)) {
+			assertEquals(1,client.call(UnixTransportTest.request(1)).readInt());
+		}
+	}
+	
+	private static Packet request(int pid,int value) {
+		Packet request=new Packet(pid);
+		request.writeInt(value);
+		return request;
+	}
+	
+}
@@ -0,0 +1,190 @@
+package api.syntaxerror.phpjavabridge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketException;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Tests streams sent as chunks in both directions (see {@link ChunkInputStream} and {@link ChunkOutputStream})
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class StreamTest {
+	
+	private Bridge bridge;
+	private byte[]content;
+	
+	@BeforeEach
+	void setUp() {
+		content=new byte[10000];
+		new Random(42).nextBytes(content);
+		
+		bridge=Bridge.newTCP(0,4096);
+		bridge.setPacketHandler((sender,in)->{
+			Packet out=new Packet(1);
+			
+			try(InputStream stream=in.readStream()) {
+				out.writeInt(stream.readAllBytes().length);
+			} catch(IOException e) {
+				throw new IllegalStateException(e);
+			}
+			
+			return out;
+		},1);
+		bridge.setPacketHandler((sender,in)->{
+			boolean fail=in.readBoolean();
+			
+			Packet out=new Packet(2);
+			out.writeStream(stream->{
+				stream.write(content);
+				
+				if(fail)
+					throw new IOException("broken");
+			});
+			return out;
+		},2);
+		bridge.start();
+	}
+	
+	@AfterEach
+	void tearDown()throws Exception {
+		bridge.stop();
+	}
+	
+	@Test
+	void receivesStreams()throws Exception {
+		try(TestClient client=TestClient.connect(bridge)) {
+			Packet request=new Packet(1);
+			request.writeStream(out->{});
+			
+			client.send(request,Bridge.FLAG_LITTLE_ENDIAN);
+			client.sendStream(1,content,1000);
+			
+			assertEquals(content.length,client.receive().readInt());
+			
+			// the connection stays in sync
+			client.send(request,Bridge.FLAG_LITTLE_ENDIAN);
+			client.sendStream(1,new byte[0],1000);
+			
+			assertEquals(0,client.receive().readInt());
+		}
+	}
+	
+	@Test
+	void sendsStreams()throws Exception {
+		try(TestClient client=TestClient.connect(bridge)) {
+			for(int i=0;i<2;++i) {
+				assertEquals(2,client.call(request(false)).getPacketID());
+				assertArrayEquals(content,client.receiveStream());
+			}
+		}
+	}
+	
+	@Test
+	void abortsFailedStreams()throws Exception {
+		try(TestClient client=TestClient.connect(bridge)) {
+			assertEquals(2,client.call(request(true)).getPacketID());
+			
+			ByteArrayOutputStream received=new ByteArrayOutputStream();
+			
+			// the end of the stream is never sent, the connection is closed instead
+			assertThrows(EOFException.class,()->{
+				for(byte[]chunk;;received.write(chunk))
+					if((chunk=client.receiveData()).length==0)
+						fail("The truncated stream has been terminated");
+			});
+			
+			assertTrue(received.size()<=content.length);
+		}
+	}
+	
+	@Test
+	void reapsStalledChunks()throws Exception {
+		bridge.setReadTimeout(150);
+		
+		try(TestClient client=TestClient.connect(bridge)) {
+			client.send(streamRequest(),Bridge.FLAG_LITTLE_ENDIAN);
+			client.sendFrame(1,Bridge.FLAG_CHUNK,bridge.encrypt(new byte[10]));
+			
+			// the first chunk arrives in time, the rest of the stream never does
+			assertTrue(client.isClosedByServer());
+		}
+	}
+	
+	@Test
+	void limitsBufferedChunks()throws Exception {
+		bridge.setMaxConnectionBufferedBytes(2000);
+		
+		try(TestClient client=TestClient.connect(bridge)) {
+			// only a single chunk is buffered at a time
+			client.send(streamRequest(),Bridge.FLAG_LITTLE_ENDIAN);
+			client.sendStream(1,content,500);
+			
+			assertEquals(content.length,client.receive().readInt());
+			
+			client.send(streamRequest(),Bridge.FLAG_LITTLE_ENDIAN);
+			client.sendStream(1,content,3000);
+			
+			try {
+				assertTrue(client.isClosedByServer());
+			} catch(SocketException e) {
+				// the connection is reset, since the rest of the stream has not been read
+			}
+		}
+	}
+	
+	private static Packet streamRequest() {
+		Packet request=new Packet(1);
+		request.writeStream(out->{});
+		return request;
+	}
+	
+		private static Packet request(boolean fail) {
+		Packet request=new Packet(2);
+		request.writeBoolean(fail);
+		return request;
+	}
+	
+}
@@ -0,0 +1,139 @@
+package api.syntaxerror.phpjavabridge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Tests the {@link StringDictionary}, as if the server's answers were read by a client using its own dictionary
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class StringDictionaryTest {
+	
+	private final StringDictionary server=new StringDictionary(),client=new StringDictionary();
+	
+	@Test
+	void roundTrip()throws Exception {
+		Packet packet=packet("status","name","status");
+		
+		byte[]first=server.encode(packet);
+		server.commit();
+		assertStrings(first,"status","name","status");
+		
+		// the strings are only referenced, once they have been defined
+		byte[]second=server.encode(packet);
+		server.commit();
+		assertStrings(second,"status","name","status");
+		
+		assertTrue(second.length<first.length);
+		assertTrue(first.length<packet.size());
+	}
+	
+	@Test
+	void redefinesUncommittedStrings()throws Exception {
+		Packet packet=packet("status","name");
+		
+		// the frame has not been sent, the client doesn't know the strings
+		byte[]lost=server.encode(packet);
+		byte[]sent=server.encode(packet);
+		server.commit();
+		
+		assertArrayEquals(lost,sent);
+		assertStrings(sent,"status","name");
+		assertStrings(server.encode(packet),"status","name");
+	}
+	
+	@Test
+	void keepsLongStringsInline()throws Exception {
+		String large="x".repeat(StringDictionary.MAX_LENGTH+1);
+		Packet packet=packet(large);
+		
+		byte[]data=server.encode(packet);
+		server.commit();
+		
+		assertArrayEquals(Arrays.copyOf(packet.data,packet.size()),data);
+		assertStrings(data,large);
+	}
+	
+	@Test
+	void keepsOtherDataTypes()throws Exception {
+		Packet packet=new Packet(1);
+		packet.writeInt(1);
+		packet.writeStringUTF8("ünïcode");
+		packet.writeLong(2);
+		
+		Packet read=read(server.encode(packet));
+		
+		assertEquals(1,read.readInt());
+		assertEquals("ünïcode",read.readStringUTF8());
+		assertEquals(2,read.readLong());
+	}
+	
+	@Test
+	void rejectsInvalidIndices() {
+		assertThrows(IllegalArgumentException.class,()->client.get(0));
+		assertThrows(IllegalArgumentException.class,()->client.define(1,"skipped",7));
+		assertThrows(IllegalArgumentException.class,()->client.define(0,"long",StringDictionary.MAX_LENGTH+1));
+	}
+	
+	private void assertStrings(byte[]data,String...strings)throws Exception {
+		Packet read=read(data);
+		
+		for(String str:strings)
+			assertEquals(str,read.readStringUTF8());
+	}
+	
+	private Packet read(byte[]data)throws Exception {
+		Packet read=new Packet(1);
+		read.littleEndian=true;
+		read.dictionary=client;
+		read.validate(data);
+		return read;
+	}
+	
+	private static Packet packet(String...strings) {
+		Packet packet=new Packet(1);
+		
+		for(String str:strings)
+			packet.writeStringUTF8(str);
+		
+		return packet;
+	}
+	
+}
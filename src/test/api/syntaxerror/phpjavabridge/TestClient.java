@@ -0,0 +1,237 @@
+package api.syntaxerror.phpjavabridge;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Talks to a stream-based {@link Bridge} ({@link BridgeImpl.TCP TCP} or {@link BridgeImpl.Unix Unix}) the way the PHP client does
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+public final class TestClient implements Closeable {
+	
+	private final Bridge bridge;
+	private final Closeable socket;
+	private final DataInputStream in;
+	private final OutputStream out;
+	
+	/** the Packet-ID of the last frame received */
+	int pid;
+	/** the flags of the last frame received */
+	int flags;
+	
+	private TestClient(Bridge bridge,Closeable socket,InputStream in,OutputStream out) {
+		this.bridge=bridge;
+		this.socket=socket;
+		this.in=new DataInputStream(in);
+		this.out=out;
+	}
+	
+	/**
+	 * @param bridge a started {@link BridgeImpl.TCP TCP} or {@link BridgeImpl.Unix Unix} Bridge
+	 * 
+	 * @return a client connected to the Bridge
+	 * 
+	 * @throws IOException if the connection fails
+	 */
+	static TestClient connect(Bridge bridge)throws IOException {
+		if(bridge instanceof BridgeImpl.Unix) {
+			SocketChannel channel=SocketChannel.open(StandardProtocolFamily.UNIX);
+			channel.connect(UnixDomainSocketAddress.of(((BridgeImpl.Unix)bridge).getPath()));
+			
+			return new TestClient(bridge,channel,Channels.newInputStream(channel),Channels.newOutputStream(channel));
+		}
+		
+		Socket socket=new Socket();
+		socket.connect(((BridgeImpl.TCP)bridge).socket.getLocalSocketAddress(),2000);
+		socket.setSoTimeout(10000);
+		
+		return new TestClient(bridge,socket,socket.getInputStream(),socket.getOutputStream());
+	}
+	
+	/**
+	 * Sends a request and reads its answer
+	 * 
+	 * @param request the request
+	 * 
+	 * @return the answer
+	 * 
+	 * @throws IOException if an I/O error occurs
+	 */
+	Packet call(Packet request)throws IOException {
+		// written data is never rotated, so the Bridge has to read it as is
+		send(request,Bridge.FLAG_LITTLE_ENDIAN);
+		return receive();
+	}
+	
+	/**
+	 * @param request the request
+	 * @param flags the flags of the frame (see {@link Bridge#FLAG_LITTLE_ENDIAN})
+	 * 
+	 * @throws IOException if an I/O error occurs
+	 */
+	void send(Packet request,int flags)throws IOException {
+		sendFrame(request.getPacketID(),flags,bridge.encrypt(Arrays.copyOf(request.data,request.size())));
+	}
+	
+	/**
+	 * @param pid the Packet-ID
+	 * @param flags the flags
+	 * @param data the encrypted data
+	 * 
+	 * @throws IOException if an I/O error occurs
+	 */
+	void sendFrame(int pid,int flags,byte[]data)throws IOException {
+		out.write(BridgeImpl.frame(bridge,pid,flags,data));
+		out.flush();
+	}
+	
+	/**
+	 * Sends a stream as chunks, followed by the empty chunk
+	 * 
+	 * @param pid the ID of the {@link Packet} the stream belongs to
+	 * @param data the stream's data
+	 * @param chunkLength the max. length of a chunk
+	 * 
+	 * @throws IOException if an I/O error occurs
+	 */
+	void sendStream(int pid,byte[]data,int chunkLength)throws IOException {
+		for(int off=0;off<data.length;off+=chunkLength)
+			sendFrame(pid,Bridge.FLAG_CHUNK,bridge.encrypt(Arrays.copyOfRange(data,off,Math.min(data.length,off+chunkLength))));
+		
+		sendFrame(pid,Bridge.FLAG_CHUNK,bridge.encrypt(new byte[0]));
+	}
+	
+	/**
+	 * @return the decrypted data of the next frame
+	 * 
+	 * @throws IOException if an I/O error occurs
+	 */
+	byte[]receiveData()throws IOException {
+		pid=in.readUnsignedByte();
+		flags=in.readUnsignedByte();
+		
+		byte[]body=new byte[in.readInt()];
+		in.readFully(body);
+		
+		return(flags&Bridge.FLAG_BINARY)!=0?body:bridge.decrypt(body);
+	}
+	
+	/**
+	 * @return the next answer
+	 * 
+	 * @throws IOException if an I/O error occurs
+	 */
+	Packet receive()throws IOException {
+		byte[]data=receiveData();
+		
+		return received(pid,data);
+	}
+	
+	/**
+	 * Reads a stream sent as chunks, up to and including the empty chunk
+	 * 
+	 * @return the stream's data
+	 * 
+	 * @throws IOException if an I/O error occurs
+	 */
+	byte[]receiveStream()throws IOException {
+		ByteArrayOutputStream stream=new ByteArrayOutputStream();
+		
+		for(byte[]chunk;(chunk=receiveData()).length>0;) {
+			if((flags&Bridge.FLAG_CHUNK)==0)
+				throw new IOException("Expected a chunk, got flags "+flags+" instead");
+			
+			stream.write(chunk);
+		}
+		
+		return stream.toByteArray();
+	}
+	
+	/**
+	 * @return whether or not the server closed the connection
+	 * 
+	 * @throws IOException if an I/O error occurs
+	 */
+	boolean isClosedByServer()throws IOException {
+		return in.read()<0;
+	}
+	
+	@Override
+	public void close()throws IOException {
+		socket.close();
+	}
+	
+	/**
+	 * @param packet a {@link Packet} which has been written to
+	 * 
+	 * @return a {@link Packet} containing the data written to {@code packet}, as if it had been received
+	 * 
+	 * @throws MalformedRequestException if the data is malformed
+	 */
+	public static Packet received(Packet packet)throws MalformedRequestException {
+		return received(packet.getPacketID(),Arrays.copyOf(packet.data,packet.size()));
+	}
+	
+	/**
+	 * @param pid the Packet-ID
+	 * @param data the decrypted data
+	 * 
+	 * @return the received {@link Packet}
+	 * 
+	 * @throws MalformedRequestException if the data is malformed
+	 */
+	public static Packet received(int pid,byte[]data)throws MalformedRequestException {
+		Packet packet=new Packet(pid);
+		
+		// written data is never rotated, so it is read as is
+		packet.littleEndian=true;
+		packet.validate(data);
+		
+		return packet;
+	}
+	
+}
@@ -0,0 +1,106 @@
+package api.syntaxerror.phpjavabridge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Tests the {@link TimerWheel}
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class TimerWheelTest {
+	
+	@Test
+	void runsTasksAfterTheirDelay()throws Exception {
+		CountDownLatch latch=new CountDownLatch(1);
+		AtomicLong ran=new AtomicLong();
+		long start=System.currentTimeMillis();
+		
+		TimerWheel.SHARED.schedule(()->{
+			ran.set(System.currentTimeMillis());
+			latch.countDown();
+		},250);
+		
+		assertTrue(latch.await(2,TimeUnit.SECONDS));
+		assertTrue(ran.get()-start>=250,"ran after "+(ran.get()-start)+" ms");
+	}
+	
+	@Test
+	void runsDelaysLongerThanARevolution()throws Exception {
+		CountDownLatch latch=new CountDownLatch(1);
+		
+		// lands in the bucket of a shorter delay, but must not run before its deadline
+		TimerWheel.Timeout timeout=TimerWheel.SHARED.schedule(latch::countDown,TimerWheel.TICK*TimerWheel.SLOTS+200);
+		
+		assertFalse(latch.await(500,TimeUnit.MILLISECONDS));
+		timeout.cancel();
+	}
+	
+	@Test
+	void runsExpiredTasksOnTheNextTick()throws Exception {
+		CountDownLatch latch=new CountDownLatch(2);
+		
+		TimerWheel.SHARED.schedule(latch::countDown,0);
+		TimerWheel.SHARED.schedule(latch::countDown,-1);
+		
+		assertTrue(latch.await(4*TimerWheel.TICK,TimeUnit.MILLISECONDS));
+	}
+	
+	@Test
+	void cancelledTasksDoNotRun()throws Exception {
+		CountDownLatch latch=new CountDownLatch(1);
+		
+		TimerWheel.SHARED.schedule(latch::countDown,100).cancel();
+		
+		assertFalse(latch.await(500,TimeUnit.MILLISECONDS));
+	}
+	
+	@Test
+	void failingTasksDoNotStopTheWheel()throws Exception {
+		CountDownLatch latch=new CountDownLatch(1);
+		
+		TimerWheel.SHARED.schedule(()->{ throw new IllegalStateException(); },0);
+		TimerWheel.SHARED.schedule(latch::countDown,2*TimerWheel.TICK);
+		
+		assertTrue(latch.await(2,TimeUnit.SECONDS));
+	}
+	
+}
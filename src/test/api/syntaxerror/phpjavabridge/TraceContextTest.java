@@ -0,0 +1,162 @@
+package api.syntaxerror.phpjavabridge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HexFormat;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Tests the parsing and propagation of W3C trace contexts (see {@link TraceContext})
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class TraceContextTest {
+	
+	private static final String TRACE_ID="4bf92f3577b34da6a3ce929d0e0e4736",SPAN_ID="00f067aa0ba902b7";
+	
+	@Test
+	void parsesTraceParent() {
+		TraceContext context=TraceContext.parse("00-"+TRACE_ID+"-"+SPAN_ID+"-01");
+		
+		assertEquals(TRACE_ID,context.getTraceId());
+		assertEquals(SPAN_ID,context.getSpanId());
+		assertNull(context.getParentSpanId());
+		assertEquals(TraceContext.FLAG_SAMPLED,context.getFlags());
+		assertTrue(context.isSampled());
+		assertEquals("00-"+TRACE_ID+"-"+SPAN_ID+"-01",context.toTraceParent());
+	}
+	
+	@Test
+	void acceptsFutureVersions() {
+		TraceContext context=TraceContext.parse(" 01-"+TRACE_ID+"-"+SPAN_ID+"-00-future ");
+		
+		assertFalse(context.isSampled());
+		assertEquals("00-"+TRACE_ID+"-"+SPAN_ID+"-00",context.toTraceParent());
+	}
+	
+	@Test
+	void rejectsMalformedTraceParents() {
+		String[]malformed={
+			"",
+			"00-"+TRACE_ID+"-"+SPAN_ID,
+			"00-"+TRACE_ID.toUpperCase()+"-"+SPAN_ID+"-01",
+			"00-"+TRACE_ID+"-"+SPAN_ID+"-01-extra",
+			"ff-"+TRACE_ID+"-"+SPAN_ID+"-01",
+			"00-"+"0".repeat(32)+"-"+SPAN_ID+"-01",
+			"00-"+TRACE_ID+"-"+"0".repeat(16)+"-01",
+			"00-"+TRACE_ID+"0-"+SPAN_ID+"-01"
+		};
+		
+		for(String traceparent:malformed)
+			assertThrows(IllegalArgumentException.class,()->TraceContext.parse(traceparent),traceparent);
+		
+		assertThrows(NullPointerException.class,()->TraceContext.parse(null));
+	}
+	
+	@Test
+	void childrenBelongToTheSameTrace() {
+		TraceContext parent=TraceContext.parse("00-"+TRACE_ID+"-"+SPAN_ID+"-01"),child=parent.newChild();
+		
+		assertEquals(TRACE_ID,child.getTraceId());
+		assertEquals(SPAN_ID,child.getParentSpanId());
+		assertEquals(parent.getFlags(),child.getFlags());
+		assertTrue(child.getSpanId().matches("[0-9a-f]{16}"),child.getSpanId());
+		assertNotEquals(SPAN_ID,child.getSpanId());
+		assertNotEquals(child.getSpanId(),parent.newChild().getSpanId());
+	}
+	
+	@Test
+	void extractsTheContextOfIncomingPackets()throws Exception {
+		byte[]buf=encode(TRACE_ID,SPAN_ID,1,(byte)5,(byte)7);
+		Packet incoming=new Packet(1);
+		
+		assertArrayEquals(new byte[]{5,7},TraceContext.extract(incoming,buf));
+		assertEquals(TRACE_ID,incoming.getTraceContext().getTraceId());
+		assertEquals(SPAN_ID,incoming.getTraceContext().getParentSpanId());
+		assertTrue(incoming.getTraceContext().isSampled());
+	}
+	
+	@Test
+	void ignoresPacketsWithoutContext()throws Exception {
+		byte[]buf={5,0,0,0,7};
+		Packet incoming=new Packet(1);
+		
+		assertSame(buf,TraceContext.extract(incoming,buf));
+		assertNull(incoming.getTraceContext());
+	}
+	
+	@Test
+	void rejectsMalformedContexts() {
+		byte[]truncated=new byte[TraceContext.LENGTH-1];
+		truncated[0]=TraceContext.DATA_TYPE;
+		
+		byte[]version=encode(TRACE_ID,SPAN_ID,1);
+		version[1]=(byte)0xFF;
+		
+		assertThrows(MalformedRequestException.class,()->TraceContext.extract(new Packet(1),truncated));
+		assertThrows(MalformedRequestException.class,()->TraceContext.extract(new Packet(1),version));
+		assertThrows(MalformedRequestException.class,()->TraceContext.extract(new Packet(1),encode("0".repeat(32),SPAN_ID,1)));
+	}
+	
+	@Test
+	void restoresThePreviousContext() {
+		TraceContext context=TraceContext.parse("00-"+TRACE_ID+"-"+SPAN_ID+"-01");
+		TraceContext previous=TraceContext.enter(context);
+		
+		assertSame(context,TraceContext.current());
+		
+		TraceContext.restore(previous);
+		
+		assertNull(TraceContext.current());
+	}
+	
+	/**
+	 * @return the data of an incoming {@link Packet}, preceded by a trace context
+	 */
+	private static byte[]encode(String traceId,String parentId,int flags,byte...data) {
+		byte[]buf=new byte[TraceContext.LENGTH+data.length];
+		
+		buf[0]=TraceContext.DATA_TYPE;
+		System.arraycopy(HexFormat.of().parseHex(traceId),0,buf,2,16);
+		System.arraycopy(HexFormat.of().parseHex(parentId),0,buf,18,8);
+		buf[26]=(byte)flags;
+		System.arraycopy(data,0,buf,TraceContext.LENGTH,data.length);
+		
+		return buf;
+	}
+	
+}
@@ -0,0 +1,153 @@
+package api.syntaxerror.phpjavabridge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Tests the Unix Domain Socket transport (see {@link BridgeImpl.Unix})
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class UnixTransportTest {
+	
+	@TempDir
+	Path dir;
+	
+	private Path path;
+	private Bridge bridge;
+	
+	@BeforeEach
+	void setUp() {
+		path=dir.resolve("bridge.sock");
+	}
+	
+	@AfterEach
+	void tearDown()throws Exception {
+		if(bridge!=null)
+			bridge.stop();
+	}
+	
+	@Test
+	void answersRequests()throws Exception {
+		bridge=echo(Bridge.newUnix(path.toString()));
+		
+		try(TestClient client=TestClient.connect(bridge)) {
+			for(int i=0;i<3;++i)
+				assertEquals("echo "+i,client.call(request(i)).readStringUTF8());
+		}
+	}
+	
+	@Test
+	void answersEncryptedRequests()throws Exception {
+		bridge=echo(Bridge.newUnix(path.toString(),true,"password"));
+		
+		try(TestClient client=TestClient.connect(bridge)) {
+			assertEquals("echo 1",client.call(request(1)).readStringUTF8());
+		}
+	}
+	
+	@Test
+	void servesConcurrentConnections()throws Exception {
+		bridge=echo(Bridge.newUnix(path.toString()));
+		
+		try(TestClient first=TestClient.connect(bridge);TestClient second=TestClient.connect(bridge)) {
+			assertEquals("echo 1",first.call(request(1)).readStringUTF8());
+			assertEquals("echo 2",second.call(request(2)).readStringUTF8());
+			assertEquals("echo 3",first.call(request(3)).readStringUTF8());
+		}
+	}
+	
+	@Test
+	void replacesStaleSocketFiles()throws Exception {
+		echo(Bridge.newUnix(path.toString())).closeServer();
+		
+		// closeServer() deletes the file, a crashed server leaves it behind
+		try(var channel=java.nio.channels.ServerSocketChannel.open(java.net.StandardProtocolFamily.UNIX)) {
+			channel.bind(java.net.UnixDomainSocketAddress.of(path));
+		}
+		
+		assertTrue(Files.exists(path));
+		
+		bridge=echo(Bridge.newUnix(path.toString()));
+		
+		try(TestClient client=TestClient.connect(bridge)) {
+			assertEquals("echo 1",client.call(request(1)).readStringUTF8());
+		}
+	}
+	
+	@Test
+	void keepsOtherFiles()throws Exception {
+		Files.writeString(path,"not a socket");
+		
+		assertThrows(Exception.class,()->Bridge.newUnix(path.toString()));
+		assertEquals("not a socket",Files.readString(path));
+	}
+	
+	@Test
+	void deletesTheSocketFileOnShutdown()throws Exception {
+		bridge=echo(Bridge.newUnix(path.toString()));
+		
+		assertTrue(Files.exists(path));
+		assertTrue(bridge.shutdown(Duration.ofSeconds(1)).isClean());
+		assertFalse(Files.exists(path));
+	}
+	
+	private static Bridge echo(Bridge bridge) {
+		bridge.setPacketHandler((sender,in)->{
+			Packet out=new Packet(1);
+			out.writeStringUTF8("echo "+in.readInt());
+			return out;
+		},1);
+		bridge.start();
+		
+		return bridge;
+	}
+	
+	static Packet request(int value) {
+		Packet request=new Packet(1);
+		request.writeInt(value);
+		return request;
+	}
+	
+}
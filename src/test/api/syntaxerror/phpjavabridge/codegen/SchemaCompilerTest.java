@@ -0,0 +1,210 @@
+package api.syntaxerror.phpjavabridge.codegen;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import api.syntaxerror.phpjavabridge.Packet;
+import api.syntaxerror.phpjavabridge.TestClient;
+
+/**
+ * PHP-Java-Bridge provides a TCP- or UDP-based connection between PHP (Client) and Java (Server)<br>
+ * <br>
+ * licensed under the Apache License 2.0:<br>
+ * <br>
+ * Permissions:
+ * <ul>
+ *  <li>Commercial use</li>
+ *  <li>Modification</li>
+ *  <li>Distribution</li>
+ *  <li>Patent use</li>
+ *  <li>Private use</li>
+ * </ul>
+ * 
+ * Limitiations:
+ * <ul>
+ *  <li>Trademark use</li>
+ *  <li>Liability</li>
+ *  <li>Warranty</li>
+ * </ul>
+ * 
+ * Conditions:
+ * <ul>
+ *  <li>License and copyright notice</li>
+ *  <li>State changes</li>
+ * </ul>
+ * 
+ * License: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/blob/master/LICENSE</a><br>
+ * GitHub Repository: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/</a><br>
+ * Wiki: <a href=https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki>https://github.com/Synt4xErr0r4/PHP-Java-Bridge/wiki</a><br>
+ * 
+ * <hr>
+ * 
+ * Tests the parsing of schemas and the generated Java and PHP classes (see {@link Schema} and {@link SchemaCompiler})
+ * 
+ * @version 1.0
+ * @author SyntaxError404, 2020
+ */
+class SchemaCompilerTest {
+	
+	private static final String SCHEMA=
+			"# a user\n"+
+			"message User 7 {\n"+
+			"	int id;\n"+
+			"	string name\n"+
+			"	bool admin;\n"+
+			"	bytes avatar;\n"+
+			"	double score; # the latest score\n"+
+			"}\n"+
+			"\n"+
+			"message Ping 8 {\n"+
+			"}\n";
+	
+	@TempDir
+	Path dir;
+	
+	@Test
+	void parsesMessages()throws Exception {
+		Schema schema=parse(SCHEMA);
+		List<Schema.Message>messages=schema.getMessages();
+		
+		assertEquals("test.schema",schema.getSource());
+		assertEquals(2,messages.size());
+		
+		Schema.Message user=messages.get(0);
+		
+		assertEquals("User",user.getName());
+		assertEquals(7,user.getPacketID());
+		assertEquals(5,user.getFields().size());
+		assertEquals("name",user.getFields().get(1).getName());
+		assertEquals(Schema.Type.STRING,user.getFields().get(1).getType());
+		assertEquals(Schema.Type.DOUBLE,user.getFields().get(4).getType());
+		
+		assertEquals("Ping",messages.get(1).getName());
+		assertTrue(messages.get(1).getFields().isEmpty());
+	}
+	
+	@Test
+	void reportsErrorsWithTheirLine() {
+		assertError("test.schema:1: Expected 'message <name> <Packet-ID> {', got 'messsage A 1 {' instead","messsage A 1 {\n}");
+		assertError("test.schema:1: Packet-ID out of range [0;255]: 256","message A 256 {\n}");
+		assertError("test.schema:3: Duplicate message: A","message A 1 {\n}\nmessage A 2 {\n}");
+		assertError("test.schema:3: Duplicate Packet-ID: 1","message A 1 {\n}\nmessage B 1 {\n}");
+		assertError("test.schema:3: Unknown type: varint","message A 1 {\n\tint a;\n\tvarint b;\n}");
+		assertError("test.schema:3: Duplicate field: a","message A 1 {\n\tint a;\n\tlong a;\n}");
+		assertError("test.schema:2: Expected '<type> <name>' or '}', got 'int' instead","message A 1 {\n\tint\n}");
+		assertError("test.schema:2: Unterminated message: A","message A 1 {\n\tint a;");
+		assertError("test.schema:1: Reserved word: class","message class 1 {\n}");
+		assertError("test.schema:1: Reserved word: List","message List 1 {\n}");
+		assertError("test.schema:3: Reserved word: int","message A 1 {\n\tint a;\n\tint int;\n}");
+		assertError("test.schema:2: Reserved word: function","message A 1 {\n\tstring function;\n}");
+	}
+	
+	@Test
+	void generatesJava()throws Exception {
+		Schema schema=parse(SCHEMA);
+		new SchemaCompiler(schema).writeJava(dir,"generated");
+		
+		Path source=dir.resolve("generated/User.java");
+		
+		assertTrue(Files.exists(dir.resolve("generated/Ping.java")));
+		assertTrue(Files.readString(source).startsWith("// generated by "+SchemaCompiler.class.getName()+" from test.schema - do not edit\npackage generated;\n"));
+		
+		JavaCompiler compiler=ToolProvider.getSystemJavaCompiler();
+		StringWriter errors=new StringWriter();
+		
+		assertTrue(compiler.getTask(errors,null,null,
+			List.of("-classpath",System.getProperty("java.class.path"),"-d",dir.toString()),null,
+			compiler.getStandardFileManager(null,null,null).getJavaFileObjects(source,dir.resolve("generated/Ping.java"))).call(),errors::toString);
+		
+		try(URLClassLoader loader=new URLClassLoader(new URL[] { dir.toUri().toURL() },getClass().getClassLoader())) {
+			Class<?>type=loader.loadClass("generated.User");
+			
+			assertEquals(7,type.getField("PACKET_ID").getInt(null));
+			
+			Object user=type.getConstructor().newInstance();
+			
+			set(user,"id",42);
+			set(user,"name","Jürgen €");
+			set(user,"admin",true);
+			set(user,"avatar",new byte[] { 1,2,3 });
+			set(user,"score",1.5);
+			
+			Packet packet=(Packet)type.getMethod("toPacket").invoke(user);
+			
+			assertEquals(7,packet.getPacketID());
+			assertEquals(packet.size(),type.getMethod("size").invoke(user));
+			
+			Object read=type.getMethod("read",Packet.class).invoke(null,TestClient.received(packet));
+			
+			assertEquals(42,get(read,"id"));
+			assertEquals("Jürgen €",get(read,"name"));
+			assertEquals(true,get(read,"admin"));
+			assertArrayEquals(new byte[] { 1,2,3 },(byte[])get(read,"avatar"));
+			assertEquals(1.5,get(read,"score"));
+		}
+	}
+	
+	@Test
+	void generatesPHP()throws Exception {
+		Schema schema=parse(SCHEMA);
+		new SchemaCompiler(schema).writePHP(dir,"app\\messages");
+		
+		String php=Files.readString(dir.resolve("User.php"));
+		
+		assertTrue(php.startsWith("<?php\n// generated by "+SchemaCompiler.class.getName()+" from test.schema - do not edit\nnamespace app\\messages;\n"));
+		assertTrue(php.contains("class User {"));
+		assertTrue(php.contains("const PACKET_ID=7;"));
+		assertTrue(php.contains("public$admin;"));
+		
+		// fields are read and written in the order of the schema
+		assertOrdered(php,"$message->id=$packet->read(DATA_INT);","$message->name=$packet->read(DATA_STRING_UTF8);",
+			"$message->admin=$packet->read(DATA_BOOL);","$message->avatar=$packet->read(DATA_BYTE_ARRAY);","$message->score=$packet->read(DATA_DOUBLE);");
+		assertOrdered(php,"$packet->write(DATA_INT,$this->id);","$packet->write(DATA_STRING_UTF8,$this->name);",
+			"$packet->write(DATA_BOOL,$this->admin);","$packet->write(DATA_BYTE_ARRAY,$this->avatar);","$packet->write(DATA_DOUBLE,$this->score);");
+		
+		assertTrue(php.endsWith("}\n?>"));
+		assertFalse(new SchemaCompiler(schema).generatePHP(schema.getMessages().get(1),null).contains("namespace"));
+	}
+	
+	private static void assertOrdered(String s,String...parts) {
+		int offset=0;
+		
+		for(String part:parts) {
+			int index=s.indexOf(part,offset);
+			
+			assertTrue(index>=0,()->"Missing or out of order: "+part);
+			offset=index+part.length();
+		}
+	}
+	
+	private static void assertError(String expected,String schema) {
+		assertEquals(expected,assertThrows(SchemaException.class,()->parse(schema)).getMessage());
+	}
+	
+	private static Schema parse(String schema)throws IOException,SchemaException {
+		return Schema.parse("test.schema",new StringReader(schema));
+	}
+	
+	private static void set(Object o,String name,Object value)throws ReflectiveOperationException {
+		o.getClass().getField(name).set(o,value);
+	}
+	
+	private static Object get(Object o,String name)throws ReflectiveOperationException {
+		return o.getClass().getField(name).get(o);
+	}
+	
+}